@@ -3,9 +3,11 @@ package br.com.carro;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.data.web.config.EnableSpringDataWebSupport;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableSpringDataWebSupport
+@EnableScheduling
 public class CarroApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,57 @@
+package br.com.carro.autenticacao;
+
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletRequestWrapper;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * IP do cliente para o limite de tentativas de login.
+ * <p>
+ * O {@link org.springframework.web.filter.ForwardedHeaderFilter} reescreve {@code getRemoteAddr()} a partir
+ * de X-Forwarded-For / Forwarded, que o próprio cliente pode mandar: bastaria trocar o cabeçalho a cada
+ * tentativa para nunca esgotar o balde do IP. Aqui o ponto de partida é o endereço da conexão, lido da
+ * requisição do container (sem os wrappers). O X-Forwarded-For só é considerado quando a conexão vem de
+ * um proxy listado em {@code login.proxies-confiaveis}; vale então o último endereço da lista que não
+ * seja de um desses proxies (os anteriores foram escritos pelo cliente).
+ */
+@Component
+public class EnderecoCliente {
+
+    private final Set<String> proxiesConfiaveis;
+
+    public EnderecoCliente(@Value("${login.proxies-confiaveis:}") List<String> proxiesConfiaveis) {
+        this.proxiesConfiaveis = proxiesConfiaveis.stream()
+                .map(String::trim)
+                .filter(p -> !p.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    public String resolver(HttpServletRequest request) {
+        ServletRequest original = request;
+        while (original instanceof ServletRequestWrapper wrapper) {
+            original = wrapper.getRequest();
+        }
+        String conexao = original.getRemoteAddr();
+        if (!proxiesConfiaveis.contains(conexao) || !(original instanceof HttpServletRequest http)) {
+            return conexao;
+        }
+
+        // Cabeçalhos repetidos equivalem a uma lista só, na ordem em que chegaram
+        List<String> saltos = Collections.list(http.getHeaders("X-Forwarded-For")).stream()
+                .flatMap(valor -> List.of(valor.split(",")).stream())
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .toList();
+        for (int i = saltos.size() - 1; i >= 0; i--) {
+            if (!proxiesConfiaveis.contains(saltos.get(i))) return saltos.get(i);
+        }
+        return conexao;
+    }
+}
@@ -0,0 +1,173 @@
+package br.com.carro.autenticacao;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * {@link JwtDecoder} que guarda o resultado da verificação de cada token até a expiração dele.
+ * <p>
+ * O mesmo token chega em toda requisição do usuário até expirar; sem cache, cada uma refaz
+ * o parse, a verificação do HMAC e a conversão das roles em autoridades. Aqui a chave é o SHA-256 do
+ * token (o texto do token não vira chave do mapa), o valor é o {@link Jwt} já validado e as autoridades
+ * convertidas. Só tokens válidos entram; falhas sempre passam pelo decoder original.
+ * <p>
+ * Um {@link JwtAuthenticationToken} novo é montado a cada requisição (o Spring grava detalhes da
+ * requisição nele), reaproveitando o Jwt e as autoridades. A lista de revogação ({@code revogado}) é
+ * consultada em toda chamada, inclusive nos acertos do cache.
+ * <p>
+ * O mapa é um {@link ConcurrentHashMap}: os acertos não disputam lock entre si. Entradas vencidas saem
+ * quando são lidas, numa varredura a cada minuto ou quando o mapa passa de {@code maxEntradas}; nesse
+ * caso saem também as que expiram primeiro (não há ordem de uso a manter em cada leitura).
+ */
+public class JwtDecoderComCache implements JwtDecoder {
+
+    private static final class Entrada {
+        private final Jwt jwt;
+        private final Instant expiraEm;
+        private volatile Collection<GrantedAuthority> autoridades;
+
+        private Entrada(Jwt jwt) {
+            this.jwt = jwt;
+            this.expiraEm = jwt.getExpiresAt();
+        }
+    }
+
+    // Varredura das expiradas no máximo uma vez por este intervalo (além da poda ao passar do limite)
+    private static final long INTERVALO_LIMPEZA_MS = 60_000;
+
+    private final JwtDecoder delegate;
+    private final Converter<Jwt, ? extends AbstractAuthenticationToken> conversor;
+    private final Predicate<Jwt> revogado;
+    private final int maxEntradas;
+
+    // Leituras sem lock; só a poda é serializada (e quem não consegue o lock segue sem esperar)
+    private final ConcurrentHashMap<String, Entrada> cache = new ConcurrentHashMap<>();
+    private final ReentrantLock poda = new ReentrantLock();
+    private volatile long proximaLimpeza;
+    private final Counter acertos;
+    private final Counter faltas;
+
+    public JwtDecoderComCache(JwtDecoder delegate, Converter<Jwt, ? extends AbstractAuthenticationToken> conversor,
+                              Predicate<Jwt> revogado, int maxEntradas, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.conversor = conversor;
+        this.revogado = revogado;
+        this.maxEntradas = maxEntradas;
+        this.acertos = meterRegistry.counter("portal.auth.jwt.cache", "resultado", "hit");
+        this.faltas = meterRegistry.counter("portal.auth.jwt.cache", "resultado", "miss");
+        meterRegistry.gauge("portal.auth.jwt.cache.entradas", cache, Map::size);
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        String chave = chave(token);
+        Instant agora = Instant.now();
+        Entrada entrada = cache.get(chave);
+        if (entrada != null) {
+            if (entrada.expiraEm.isAfter(agora)) {
+                if (revogado.test(entrada.jwt)) {
+                    cache.remove(chave, entrada);
+                    throw new BadJwtException("Token revogado.");
+                }
+                acertos.increment();
+                return entrada.jwt;
+            }
+            cache.remove(chave, entrada);
+        }
+
+        faltas.increment();
+        Jwt jwt = delegate.decode(token);
+        if (revogado.test(jwt)) throw new BadJwtException("Token revogado.");
+        if (jwt.getExpiresAt() == null) return jwt;
+
+        // Dois decodes simultâneos do mesmo token: fica a primeira entrada (as autoridades ficam nela)
+        Entrada existente = cache.putIfAbsent(chave, new Entrada(jwt));
+        if (cache.size() > maxEntradas || agora.toEpochMilli() >= proximaLimpeza) {
+            podar(agora);
+        }
+        return existente != null && existente.expiraEm.isAfter(agora) ? existente.jwt : jwt;
+    }
+
+    // Remove as expiradas; se ainda passar do limite, as que expiram primeiro até sobrar 90% do limite
+    private void podar(Instant agora) {
+        if (!poda.tryLock()) return;
+        try {
+            proximaLimpeza = agora.toEpochMilli() + INTERVALO_LIMPEZA_MS;
+            cache.values().removeIf(e -> !e.expiraEm.isAfter(agora));
+            int excedente = cache.size() - maxEntradas * 9 / 10;
+            if (cache.size() > maxEntradas && excedente > 0) {
+                cache.entrySet().stream()
+                        .sorted(Comparator.comparing((Map.Entry<String, Entrada> e) -> e.getValue().expiraEm))
+                        .limit(excedente)
+                        .toList()
+                        .forEach(e -> cache.remove(e.getKey(), e.getValue()));
+            }
+        } finally {
+            poda.unlock();
+        }
+    }
+
+    /**
+     * Conversor para {@code oauth2ResourceServer().jwt().jwtAuthenticationConverter(...)}: as
+     * autoridades são calculadas uma vez por token.
+     */
+    public AbstractAuthenticationToken converter(Jwt jwt) {
+        Entrada entrada = cache.get(chave(jwt.getTokenValue()));
+        if (entrada == null || entrada.jwt != jwt) {
+            return conversor.convert(jwt);
+        }
+        Collection<GrantedAuthority> autoridades = entrada.autoridades;
+        if (autoridades == null) {
+            AbstractAuthenticationToken convertido = conversor.convert(jwt);
+            autoridades = convertido.getAuthorities();
+            entrada.autoridades = autoridades;
+        }
+        return new JwtAuthenticationToken(jwt, autoridades, jwt.getSubject());
+    }
+
+    // ========================
+    // REVOGAÇÃO
+    // ========================
+
+    // Descarta as entradas do usuário (a revogação em si é feita pelo predicado revogado)
+    public void invalidarUsuario(String username) {
+        invalidar(jwt -> username.equals(jwt.getSubject()));
+    }
+
+    public void invalidar(Predicate<Jwt> condicao) {
+        cache.values().removeIf(e -> condicao.test(e.jwt));
+    }
+
+    public void invalidarTodos() {
+        cache.clear();
+    }
+
+    private static String chave(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package br.com.carro.autenticacao;
+
+import br.com.carro.exceptions.LimiteExcedidoException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+
+/**
+ * Limite de tentativas de login por usuário e por IP (token bucket), antes de gastar CPU com BCrypt.
+ * <p>
+ * Cada chave tem um balde de {@code capacidade} fichas que se recarrega continuamente. Cada tentativa
+ * gasta, antes do BCrypt, uma ficha do IP e uma do usuário; sem fichas, é recusada. A do usuário sai
+ * já na entrada (e volta quando a senha confere, em {@link #devolver}) porque só conferir se ainda há
+ * ficha deixaria passar qualquer número de chutes simultâneos contra a mesma conta. As chaves ficam em {@value #FAIXAS} faixas independentes (um lock e um LRU limitado por
+ * faixa), então tentativas de usuários diferentes raramente disputam o mesmo lock e a memória fica
+ * limitada mesmo sob um ataque com muitos usernames ou IPs.
+ */
+@Component
+public class LimitadorTentativasLogin {
+
+    private static final int FAIXAS = 64;
+
+    private static final class Balde {
+        private double fichas;
+        private long atualizadoEm;
+    }
+
+    private record Limite(String prefixo, int capacidade, double fichasPorMs) {}
+
+    @SuppressWarnings("unchecked")
+    private final LinkedHashMap<String, Balde>[] faixas = new LinkedHashMap[FAIXAS];
+
+    private final Limite porUsuario;
+    private final Limite porIp;
+    private final int maxChavesPorFaixa;
+    private final MeterRegistry meterRegistry;
+
+    public LimitadorTentativasLogin(MeterRegistry meterRegistry,
+                                    @Value("${login.limite.usuario.capacidade:5}") int capacidadeUsuario,
+                                    @Value("${login.limite.usuario.por-minuto:5}") int porMinutoUsuario,
+                                    @Value("${login.limite.ip.capacidade:30}") int capacidadeIp,
+                                    @Value("${login.limite.ip.por-minuto:60}") int porMinutoIp,
+                                    @Value("${login.limite.max-chaves:100000}") int maxChaves) {
+        this.meterRegistry = meterRegistry;
+        this.porUsuario = new Limite("usuario", capacidadeUsuario, porMinutoUsuario / 60_000.0);
+        this.porIp = new Limite("ip", capacidadeIp, porMinutoIp / 60_000.0);
+        this.maxChavesPorFaixa = Math.max(1, maxChaves / FAIXAS);
+        for (int i = 0; i < FAIXAS; i++) faixas[i] = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Antes de verificar a senha: gasta uma ficha do IP e uma do usuário.
+     *
+     * @throws LimiteExcedidoException se algum dos dois baldes estiver vazio
+     */
+    public void verificar(String username, String ip) {
+        if (ip != null) gastar(porIp, ip);
+        gastar(porUsuario, normalizar(username));
+    }
+
+    // Senha certa (ou tentativa que nem chegou ao BCrypt): a ficha do usuário volta
+    public void devolver(String username) {
+        String chave = porUsuario.prefixo() + ":" + normalizar(username);
+        LinkedHashMap<String, Balde> faixa = faixa(chave);
+        synchronized (faixa) {
+            Balde balde = balde(faixa, chave, porUsuario, System.currentTimeMillis());
+            balde.fichas = Math.min(porUsuario.capacidade(), balde.fichas + 1);
+        }
+    }
+
+    // Tira uma ficha; recusa se o balde estiver vazio
+    private void gastar(Limite limite, String valor) {
+        String chave = limite.prefixo() + ":" + valor;
+        LinkedHashMap<String, Balde> faixa = faixa(chave);
+        double faltam;
+        synchronized (faixa) {
+            Balde balde = balde(faixa, chave, limite, System.currentTimeMillis());
+            if (balde.fichas >= 1) {
+                balde.fichas -= 1;
+                return;
+            }
+            faltam = 1 - balde.fichas;
+        }
+        meterRegistry.counter("portal.login.limitados", "por", limite.prefixo()).increment();
+        long segundos = Math.max(1, (long) Math.ceil(faltam / limite.fichasPorMs() / 1000));
+        throw new LimiteExcedidoException("Muitas tentativas de login. Tente novamente em " + segundos + " s.", segundos);
+    }
+
+    // Balde da chave com a recarga até agora; chamado com o lock da faixa
+    private Balde balde(LinkedHashMap<String, Balde> faixa, String chave, Limite limite, long agora) {
+        Balde balde = faixa.get(chave);
+        if (balde == null) {
+            balde = new Balde();
+            balde.fichas = limite.capacidade();
+            balde.atualizadoEm = agora;
+            faixa.put(chave, balde);
+            // Remove os menos usados até caber no limite
+            Iterator<Balde> it = faixa.values().iterator();
+            while (faixa.size() > maxChavesPorFaixa && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        } else {
+            balde.fichas = Math.min(limite.capacidade(),
+                    balde.fichas + (agora - balde.atualizadoEm) * limite.fichasPorMs());
+            balde.atualizadoEm = agora;
+        }
+        return balde;
+    }
+
+    private static String normalizar(String username) {
+        return username != null ? username.toLowerCase(Locale.ROOT) : "";
+    }
+
+    private LinkedHashMap<String, Balde> faixa(String chave) {
+        return faixas[Math.floorMod(chave.hashCode(), FAIXAS)];
+    }
+}
@@ -8,6 +8,8 @@ import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 
 import com.nimbusds.jose.jwk.source.ImmutableSecret;
+import br.com.carro.services.RevogacaoTokenService;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -30,7 +32,12 @@ import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
 import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
+import org.springframework.security.oauth2.server.resource.web.BearerTokenResolver;
+import org.springframework.security.oauth2.server.resource.web.DefaultBearerTokenResolver;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.servlet.util.matcher.PathPatternRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -118,19 +125,26 @@ public class SecurityConfigurations {
     // ========================
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http,
-                                                   SessionTrackingFilter sessionTrackingFilter) throws Exception {
+                                                   SessionTrackingFilter sessionTrackingFilter,
+                                                   JwtDecoderComCache jwtDecoder) throws Exception {
 
         http.csrf(csrf -> csrf.disable())
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers(HttpMethod.POST, "/login", "/api/login").permitAll()
+                        // Renovação e logout funcionam com o access token já expirado (o refresh token vai no corpo)
+                        .requestMatchers(HttpMethod.POST, "/api/token/refresh", "/api/logout").permitAll()
                         .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/publico/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/privado/pastas/download").authenticated()
                         .anyRequest().authenticated()
                 )
-                .oauth2ResourceServer(oauth2 -> oauth2.jwt(jwt -> jwt.jwtAuthenticationConverter(jwtAuthenticationConverter())));
+                .oauth2ResourceServer(oauth2 -> oauth2
+                        .bearerTokenResolver(bearerTokenResolver())
+                        .jwt(jwt -> jwt
+                                .decoder(jwtDecoder)
+                                .jwtAuthenticationConverter(jwtDecoder::converter)));
 
         // 🔥 Registra filtro de tracking
         http.addFilterAfter(sessionTrackingFilter,
@@ -153,6 +167,17 @@ public class SecurityConfigurations {
         return jwtConverter;
     }
 
+    // Renovação e logout ignoram o Authorization: um access token expirado ali daria 401 antes do permitAll
+    @Bean
+    public BearerTokenResolver bearerTokenResolver() {
+        PathPatternRequestMatcher.Builder caminhos = PathPatternRequestMatcher.withDefaults();
+        RequestMatcher semBearer = new OrRequestMatcher(
+                caminhos.matcher(HttpMethod.POST, "/api/token/refresh"),
+                caminhos.matcher(HttpMethod.POST, "/api/logout"));
+        DefaultBearerTokenResolver padrao = new DefaultBearerTokenResolver();
+        return request -> semBearer.matches(request) ? null : padrao.resolve(request);
+    }
+
     @Bean
     public AuthenticationManager authenticationManager(UserDetailsService userDetailsService,
                                                        PasswordEncoder passwordEncoder) {
@@ -167,14 +192,19 @@ public class SecurityConfigurations {
         return new NimbusJwtEncoder(new ImmutableSecret<>(this.hmacKey));
     }
 
+    // 🗃️ Token verificado uma vez e reaproveitado até expirar (ver JwtDecoderComCache)
     @Bean
-    public JwtDecoder jwtDecoder() {
-        return NimbusJwtDecoder.withSecretKey(this.hmacKey).build();
+    public JwtDecoderComCache jwtDecoder(MeterRegistry meterRegistry, RevogacaoTokenService revogacaoTokenService,
+                                         @Value("${jwt.cache.max-entradas:10000}") int maxEntradas) {
+        JwtDecoder nimbus = NimbusJwtDecoder.withSecretKey(this.hmacKey).build();
+        return new JwtDecoderComCache(nimbus, jwtAuthenticationConverter(), revogacaoTokenService::estaRevogado,
+                maxEntradas, meterRegistry);
     }
 
+    // ✅ Custo do BCrypt configurável; hashes com custo menor são refeitos no login (LoginService)
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${senha.bcrypt-custo:10}") int custo) {
+        return new BCryptPasswordEncoder(custo);
     }
 
     @Bean
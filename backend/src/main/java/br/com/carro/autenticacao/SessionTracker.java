@@ -1,42 +1,153 @@
 package br.com.carro.autenticacao;
 
+import br.com.carro.repositories.LoginAuditRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
+import java.time.Clock;
 import java.time.LocalDate;
-import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Usuários ativos agora e usuários que acessaram hoje, só em memória (o painel não consulta o banco).
+ * <p>
+ * Cada usuário guarda o minuto do último acesso e fica no balde desse minuto, num anel de
+ * {@code sessao.janela-minutos} baldes. "Ativos agora" é a soma dos baldes dentro da janela; quando um
+ * balde é reaproveitado para um minuto novo, quem ainda estava nele não aparece há uma janela inteira e
+ * é esquecido. O caminho comum (mesmo usuário no mesmo minuto) é só uma leitura no mapa.
+ * <p>
+ * "Acessaram hoje" é um conjunto de nomes trocado na virada do dia e semeado na inicialização com os
+ * logins de hoje em tb_login_audit, para não zerar a cada reinício.
+ */
 @Component
 public class SessionTracker {
+    private static final Logger logger = LoggerFactory.getLogger(SessionTracker.class);
 
-    // Usuários com sessão ativa agora
-    private final Set<String> usuariosAtivos = ConcurrentHashMap.newKeySet();
+    private static final class Balde {
+        private long minuto = -1;
+        private final Set<String> usuarios = ConcurrentHashMap.newKeySet();
+    }
+
+    private final LoginAuditRepository loginAuditRepository;
+    private final Clock clock;
+    private final int janelaMinutos;
+    private final Balde[] anel;
+
+    // username -> minuto (epoch) do último acesso
+    private final Map<String, Long> ultimoAcesso = new ConcurrentHashMap<>();
+
+    private volatile LocalDate diaAtual;
+    private volatile Set<String> usuariosDoDia = ConcurrentHashMap.newKeySet();
+
+    public SessionTracker(LoginAuditRepository loginAuditRepository, MeterRegistry meterRegistry,
+                          @Value("${sessao.janela-minutos:5}") int janelaMinutos) {
+        this.loginAuditRepository = loginAuditRepository;
+        this.clock = Clock.systemDefaultZone();
+        this.janelaMinutos = janelaMinutos;
+        this.anel = new Balde[janelaMinutos];
+        for (int i = 0; i < janelaMinutos; i++) anel[i] = new Balde();
+        this.diaAtual = LocalDate.now(clock);
+
+        meterRegistry.gauge("portal.sessoes.ativas", this, SessionTracker::getUsuariosAtivosAgora);
+        meterRegistry.gauge("portal.sessoes.hoje", this, SessionTracker::getUsuariosLogaramHoje);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void carregarLoginsDeHoje() {
+        LocalDate hoje = LocalDate.now(clock);
+        var usuarios = loginAuditRepository.findUsernamesDesde(hoje.atStartOfDay());
+        virarDiaSeNecessario(hoje).addAll(usuarios);
+        logger.info("SessionTracker iniciado com {} usuário(s) que já logaram hoje.", usuarios.size());
+    }
+
+    // ========================
+    // REGISTRO
+    // ========================
 
-    // Usuários que logaram hoje
-    private final Set<String> usuariosLogaramHoje = ConcurrentHashMap.newKeySet();
+    /**
+     * Registra um acesso autenticado (login ou qualquer requisição com token válido).
+     */
+    public void registrarAcesso(String username) {
+        long minuto = clock.millis() / 60_000;
+        Long anterior = ultimoAcesso.get(username);
+        if (anterior != null && anterior == minuto) return;
 
-    // Registra login no momento em que o usuário autentica
-    public void registrarLogin(String username) {
-        usuariosAtivos.add(username);
-        usuariosLogaramHoje.add(username);
+        virarDiaSeNecessario(LocalDate.now(clock)).add(username);
+        synchronized (anel) {
+            Balde balde = baldeDoMinuto(minuto);
+            anterior = ultimoAcesso.put(username, minuto);
+            if (anterior != null && anterior != minuto) {
+                Balde antigo = anel[indice(anterior)];
+                if (antigo.minuto == anterior) antigo.usuarios.remove(username);
+            }
+            balde.usuarios.add(username);
+        }
     }
 
     // Remove quando o usuário sai (ou token expira)
     public void removerSessaoAtiva(String username) {
-        usuariosAtivos.remove(username);
+        synchronized (anel) {
+            Long minuto = ultimoAcesso.remove(username);
+            if (minuto == null) return;
+            Balde balde = anel[indice(minuto)];
+            if (balde.minuto == minuto) balde.usuarios.remove(username);
+        }
     }
 
+    // ========================
+    // CONSULTA
+    // ========================
+
     public int getUsuariosAtivosAgora() {
-        return usuariosAtivos.size();
+        long agora = clock.millis() / 60_000;
+        int total = 0;
+        for (Balde balde : anel) {
+            if (agora - balde.minuto < janelaMinutos) total += balde.usuarios.size();
+        }
+        return total;
     }
 
     public int getUsuariosLogaramHoje() {
-        return usuariosLogaramHoje.size();
+        return virarDiaSeNecessario(LocalDate.now(clock)).size();
+    }
+
+    // ========================
+    // INTERNOS
+    // ========================
+
+    // Chamado com o lock do anel: reaproveita o balde e esquece quem ficou nele uma janela inteira
+    private Balde baldeDoMinuto(long minuto) {
+        Balde balde = anel[indice(minuto)];
+        if (balde.minuto != minuto) {
+            for (String usuario : balde.usuarios) {
+                ultimoAcesso.remove(usuario, balde.minuto);
+            }
+            balde.usuarios.clear();
+            balde.minuto = minuto;
+        }
+        return balde;
+    }
+
+    private int indice(long minuto) {
+        return (int) (minuto % janelaMinutos);
     }
 
-    // Reset diário (opcional, se quiser limpar a lista a cada dia)
-    public void resetarLoginsDoDia() {
-        usuariosLogaramHoje.clear();
+    private Set<String> virarDiaSeNecessario(LocalDate hoje) {
+        if (!hoje.equals(diaAtual)) {
+            synchronized (this) {
+                if (!hoje.equals(diaAtual)) {
+                    usuariosDoDia = ConcurrentHashMap.newKeySet();
+                    diaAtual = hoje;
+                }
+            }
+        }
+        return usuariosDoDia;
     }
 }
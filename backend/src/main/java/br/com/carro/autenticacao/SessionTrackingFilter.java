@@ -41,13 +41,13 @@ public class SessionTrackingFilter extends OncePerRequestFilter {
                     if (expiration != null && expiration.isBefore(Instant.now())) {
                         sessionTracker.removerSessaoAtiva(username);
                     } else {
-                        sessionTracker.registrarLogin(username);
+                        sessionTracker.registrarAcesso(username);
                     }
                 }
                 // 🔑 Caso o principal seja UserDetails (ex: auth direta)
                 else if (principal instanceof org.springframework.security.core.userdetails.UserDetails userDetails) {
                     String username = userDetails.getUsername();
-                    sessionTracker.registrarLogin(username);
+                    sessionTracker.registrarAcesso(username);
                 }
             }
         } catch (Exception e) {
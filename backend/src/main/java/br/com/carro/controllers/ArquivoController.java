@@ -3,20 +3,28 @@ package br.com.carro.controllers;
 import br.com.carro.entities.Arquivo;
 import br.com.carro.entities.Pasta;
 import br.com.carro.entities.DTO.ArquivoDTO;
+import br.com.carro.entities.DTO.JobDTO;
+import br.com.carro.entities.DTO.PaginaCursorDTO;
 import br.com.carro.entities.Usuario.Usuario;
 import br.com.carro.exceptions.ArquivoNaoEncontradoException;
 import br.com.carro.exceptions.ErrorMessage;
 import br.com.carro.exceptions.PermissaoNegadaException;
+import br.com.carro.exceptions.ResourceNotFoundException;
 import br.com.carro.repositories.ArquivoRepository;
 import br.com.carro.repositories.PastaRepository;
+import br.com.carro.services.ArquivoDownloadService;
 import br.com.carro.services.ArquivoService;
+import br.com.carro.services.PastaService;
 import br.com.carro.utils.AuthService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nimbusds.jose.util.Resource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.UrlResource;
 import org.springframework.data.domain.Page;
 import org.springframework.http.HttpHeaders;
@@ -27,12 +35,15 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.*;
 import java.net.MalformedURLException;
+import java.net.URI;
 import java.nio.file.*;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -42,15 +53,31 @@ public class ArquivoController {
     private static final Logger logger = LoggerFactory.getLogger(PastaController.class);
 
     private final ArquivoService arquivoService;
+    private final ArquivoDownloadService arquivoDownloadService;
     private final ArquivoRepository arquivoRepository;
     private final PastaRepository pastaRepository;
     private AuthService authService;
+    private final PastaService pastaService;
+    private final ObjectMapper objectMapper;
 
-    public ArquivoController(ArquivoService arquivoService, PastaRepository pastaRepository,ArquivoRepository arquivoRepository, AuthService authService) {
+    // 📊 Métricas do download de pastas em ZIP
+    private final Counter bytesZipEnviados;
+    private final Counter arquivosZipados;
+    private final AtomicInteger zipsEmAndamento = new AtomicInteger();
+
+    public ArquivoController(ArquivoService arquivoService, PastaRepository pastaRepository,ArquivoRepository arquivoRepository, AuthService authService,
+                             MeterRegistry meterRegistry, ArquivoDownloadService arquivoDownloadService,
+                             PastaService pastaService, ObjectMapper objectMapper) {
         this.arquivoService = arquivoService;
+        this.arquivoDownloadService = arquivoDownloadService;
         this.pastaRepository = pastaRepository;
         this.arquivoRepository = arquivoRepository;
         this.authService = authService;
+        this.pastaService = pastaService;
+        this.objectMapper = objectMapper;
+        this.bytesZipEnviados = meterRegistry.counter("portal.download.zip.bytes");
+        this.arquivosZipados = meterRegistry.counter("portal.download.zip.arquivos");
+        meterRegistry.gauge("portal.download.zip.em_andamento", zipsEmAndamento);
     }
 
     /**
@@ -355,7 +382,7 @@ public class ArquivoController {
                                             HttpServletRequest httpRequest) {
         try {
             Usuario usuarioLogado = authService.getUsuarioLogado(authentication);
-            List<Arquivo> arquivos = arquivoService.listarArquivosPorPasta(
+            List<ArquivoDTO> arquivos = arquivoService.listarArquivosPorPasta(
                     pastaId, nome, extensao, sortField, sortDirection, usuarioLogado
             );
             return ResponseEntity.ok(arquivos);
@@ -381,87 +408,142 @@ public class ArquivoController {
         }
     }
 
-    // ✅ ENDPOINT 10 - Download de arquivo por id
-    @GetMapping("/download/arquivo/{arquivoId}")
-    public ResponseEntity<?> downloadArquivo(@PathVariable Long arquivoId,
-                                             HttpServletRequest httpRequest) {
+    // ✅ ENDPOINT 09.1 - Listar arquivos com paginação por cursor (keyset)
+    @GetMapping("/pasta/{pastaId}/cursor")
+    public ResponseEntity<?> listarArquivosPorCursor(@PathVariable Long pastaId,
+                                                     @RequestParam(required = false) String nome,
+                                                     @RequestParam(required = false) String extensao,
+                                                     @RequestParam(defaultValue = "nomeArquivo") String sortField,
+                                                     @RequestParam(defaultValue = "asc") String sortDirection,
+                                                     @RequestParam(required = false) String cursor,
+                                                     @RequestParam(defaultValue = "50") int size,
+                                                     Authentication authentication,
+                                                     HttpServletRequest httpRequest) {
         try {
-            Arquivo arquivo = arquivoService.buscarPorId(arquivoId);
-            Path caminho = Paths.get(arquivo.getCaminhoArmazenamento());
-            if (!Files.exists(caminho)) {
-                throw new RuntimeException("Arquivo físico não encontrado");
-            }
-
-            InputStreamResource resource = new InputStreamResource(Files.newInputStream(caminho));
-
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + arquivo.getNomeArquivo() + "\"")
-                    .contentLength(Files.size(caminho))
-                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .body(resource);
-
+            Usuario usuarioLogado = authService.getUsuarioLogado(authentication);
+            PaginaCursorDTO<ArquivoDTO> pagina = arquivoService.listarArquivosPorPastaComCursor(
+                    pastaId, nome, extensao, sortField, sortDirection, cursor, size, usuarioLogado
+            );
+            return ResponseEntity.ok(pagina);
         } catch (EntityNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new ErrorMessage(HttpStatus.NOT_FOUND.value(),
-                            "Arquivo não encontrado",
+                            "Pasta não encontrada",
                             e.getMessage(),
                             httpRequest.getRequestURI()));
-        } catch (IOException e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(new ErrorMessage(HttpStatus.INTERNAL_SERVER_ERROR.value(),
-                            "Erro de I/O",
-                            "Erro ao ler arquivo: " + e.getMessage(),
+        } catch (SecurityException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(new ErrorMessage(HttpStatus.FORBIDDEN.value(),
+                            "Acesso negado",
+                            e.getMessage(),
+                            httpRequest.getRequestURI()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new ErrorMessage(HttpStatus.BAD_REQUEST.value(),
+                            "Requisição inválida",
+                            e.getMessage(),
                             httpRequest.getRequestURI()));
         } catch (Exception e) {
-            logger.error("Erro inesperado ao fazer download de arquivo", e);
+            logger.error("Erro ao listar arquivos", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(new ErrorMessage(HttpStatus.INTERNAL_SERVER_ERROR.value(),
                             "Erro inesperado",
-                            "Erro ao fazer download do arquivo: " + e.getMessage(),
+                            "Erro interno ao listar arquivos",
                             httpRequest.getRequestURI()));
         }
     }
 
+    // ✅ ENDPOINT 10 - Download de arquivo por id
+    // A resposta (inclusive Range/ETag) é escrita pelo ArquivoDownloadService; erros vão pelo escreverErro
+    @GetMapping("/download/arquivo/{arquivoId}")
+    public void downloadArquivo(@PathVariable Long arquivoId,
+                                HttpServletRequest httpRequest,
+                                HttpServletResponse httpResponse) throws IOException {
+        try {
+            Arquivo arquivo = arquivoService.buscarPorId(arquivoId);
+            arquivoDownloadService.enviar(arquivo, false, httpRequest, httpResponse);
+
+        } catch (EntityNotFoundException e) {
+            escreverErro(httpResponse, HttpStatus.NOT_FOUND, "Arquivo não encontrado",
+                    e.getMessage(), httpRequest);
+        } catch (IOException e) {
+            escreverErro(httpResponse, HttpStatus.INTERNAL_SERVER_ERROR, "Erro de I/O",
+                    "Erro ao ler arquivo: " + e.getMessage(), httpRequest);
+        } catch (Exception e) {
+            logger.error("Erro inesperado ao fazer download de arquivo", e);
+            escreverErro(httpResponse, HttpStatus.INTERNAL_SERVER_ERROR, "Erro inesperado",
+                    "Erro ao fazer download do arquivo: " + e.getMessage(), httpRequest);
+        }
+    }
+
     // ✅ ENDPOINT 11 - Download de pasta inteira (zip)
+    // O ZIP é escrito direto na saída do servlet conforme a árvore é percorrida,
+    // sem montar o arquivo inteiro em memória.
+    // O tipo de retorno precisa ser ResponseEntity<StreamingResponseBody> para o Spring tratar o
+    // corpo como streaming; erros antes do envio seguem para o ApiExceptionHandler.
     @GetMapping("/download/pasta/{pastaId}")
     @PreAuthorize("hasAnyRole('ADMIN','GERENTE')")
-    public ResponseEntity<?> downloadPastaZip(@PathVariable Long pastaId,
-                                              HttpServletRequest httpRequest) {
-        try {
-            Pasta pasta = pastaRepository.findById(pastaId)
-                    .orElseThrow(() -> new EntityNotFoundException("Pasta não encontrada"));
-
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            try (ZipOutputStream zos = new ZipOutputStream(baos)) {
-                zipPastaRecursiva(pasta, "", zos);
+    public ResponseEntity<StreamingResponseBody> downloadPastaZip(@PathVariable Long pastaId) {
+        Pasta pasta = pastaRepository.findById(pastaId)
+                .orElseThrow(() -> new ResourceNotFoundException("Pasta não encontrada"));
+
+        // As entradas vêm em páginas durante o streaming (CTE recursiva com keyset): só uma página de
+        // metadados fica em memória e nenhuma conexão fica presa enquanto o cliente recebe os bytes.
+        StreamingResponseBody corpo = outputStream -> {
+            zipsEmAndamento.incrementAndGet();
+            try (ZipOutputStream zos = new ZipOutputStream(new ContadorOutputStream(outputStream, bytesZipEnviados))) {
+                arquivoRepository.percorrerEntradasZip(pasta.getId(), (nome, caminhoArmazenamento) -> {
+                    Path caminho = Paths.get(caminhoArmazenamento);
+                    if (!Files.exists(caminho)) return;
+                    zos.putNextEntry(new ZipEntry(nome));
+                    Files.copy(caminho, zos);
+                    zos.closeEntry();
+                    arquivosZipados.increment();
+                });
+                zos.finish();
+            } finally {
+                zipsEmAndamento.decrementAndGet();
             }
+        };
 
-            InputStreamResource resource = new InputStreamResource(new ByteArrayInputStream(baos.toByteArray()));
-
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment;filename=" + pasta.getNomePasta() + ".zip")
-                    .contentLength(baos.size())
-                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                    .body(resource);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment;filename=" + pasta.getNomePasta() + ".zip")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(corpo);
+    }
 
+    // ✅ ENDPOINT  - Gerar o ZIP da pasta em segundo plano
+    // Para pastas grandes: responde 202 na hora; o andamento fica em /api/jobs/{id}
+    // e o arquivo pronto em /api/jobs/{id}/download.
+    @PostMapping("/download/pasta/{pastaId}/job")
+    @PreAuthorize("hasAnyRole('ADMIN','GERENTE')")
+    public ResponseEntity<?> gerarZipPastaEmSegundoPlano(@PathVariable Long pastaId,
+                                                         Authentication authentication,
+                                                         HttpServletRequest httpRequest) {
+        try {
+            Usuario usuarioLogado = authService.getUsuarioLogado(authentication);
+            JobDTO job = pastaService.gerarZipPasta(pastaId, usuarioLogado);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/jobs/" + job.id()))
+                    .body(job);
         } catch (EntityNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new ErrorMessage(HttpStatus.NOT_FOUND.value(),
                             "Pasta não encontrada",
                             e.getMessage(),
                             httpRequest.getRequestURI()));
-        } catch (IOException e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(new ErrorMessage(HttpStatus.INTERNAL_SERVER_ERROR.value(),
-                            "Erro de I/O",
-                            "Erro ao criar arquivo zip: " + e.getMessage(),
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(new ErrorMessage(HttpStatus.SERVICE_UNAVAILABLE.value(),
+                            "Servidor ocupado",
+                            e.getMessage(),
                             httpRequest.getRequestURI()));
         } catch (Exception e) {
-            logger.error("Erro inesperado ao fazer download da pasta", e);
+            logger.error("Erro ao agendar o ZIP da pasta", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(new ErrorMessage(HttpStatus.INTERNAL_SERVER_ERROR.value(),
-                            "Erro inesperado",
-                            "Erro ao fazer download da pasta: " + e.getMessage(),
+                            "Erro interno",
+                            "Erro ao agendar o ZIP da pasta.",
                             httpRequest.getRequestURI()));
         }
     }
@@ -499,59 +581,61 @@ public class ArquivoController {
 
     @GetMapping("/visualizar/{id}")
     @PreAuthorize("hasAnyRole('ADMIN','GERENTE','BASIC')")
-    public ResponseEntity<?> visualizarArquivo(@PathVariable Long id,
-                                               Authentication authentication,
-                                               HttpServletRequest request) {
+    public void visualizarArquivo(@PathVariable Long id,
+                                  Authentication authentication,
+                                  HttpServletRequest request,
+                                  HttpServletResponse response) throws IOException {
         try {
             Usuario usuarioLogado = authService.getUsuarioLogado(authentication);
-            return arquivoService.abrirNoNavegador(id, usuarioLogado);
+            arquivoService.abrirNoNavegador(id, usuarioLogado, request, response);
 
         } catch (EntityNotFoundException e) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                    .body(new ErrorMessage(HttpStatus.NOT_FOUND.value(),
-                            "Arquivo não encontrado",
-                            e.getMessage(),
-                            request.getRequestURI()));
+            escreverErro(response, HttpStatus.NOT_FOUND, "Arquivo não encontrado", e.getMessage(), request);
         } catch (AccessDeniedException e) {
-            return ResponseEntity.status(HttpStatus.FORBIDDEN)
-                    .body(new ErrorMessage(HttpStatus.FORBIDDEN.value(),
-                            "Acesso negado",
-                            e.getMessage(),
-                            request.getRequestURI()));
+            escreverErro(response, HttpStatus.FORBIDDEN, "Acesso negado", e.getMessage(), request);
         } catch (IOException e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(new ErrorMessage(HttpStatus.INTERNAL_SERVER_ERROR.value(),
-                            "Erro de leitura do arquivo",
-                            e.getMessage(),
-                            request.getRequestURI()));
+            escreverErro(response, HttpStatus.INTERNAL_SERVER_ERROR, "Erro de leitura do arquivo", e.getMessage(), request);
         } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(new ErrorMessage(HttpStatus.INTERNAL_SERVER_ERROR.value(),
-                            "Erro inesperado",
-                            "Erro ao abrir o arquivo no navegador",
-                            request.getRequestURI()));
+            escreverErro(response, HttpStatus.INTERNAL_SERVER_ERROR, "Erro inesperado",
+                    "Erro ao abrir o arquivo no navegador", request);
         }
     }
 
+    // ✅ Método Auxiliar: erro em JSON para os handlers que escrevem direto na resposta.
+    // Se parte do arquivo já foi enviada não há como trocar o status: a conexão só é encerrada.
+    private void escreverErro(HttpServletResponse response, HttpStatus status, String titulo, String mensagem,
+                              HttpServletRequest request) throws IOException {
+        if (response.isCommitted()) {
+            logger.warn("Erro após o início do envio de {}: {}", request.getRequestURI(), mensagem);
+            return;
+        }
+        response.reset();
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        objectMapper.writeValue(response.getOutputStream(),
+                new ErrorMessage(status.value(), titulo, mensagem, request.getRequestURI()));
+    }
 
+    // Conta os bytes efetivamente enviados ao cliente (progresso do download)
+    private static class ContadorOutputStream extends FilterOutputStream {
+        private final Counter contador;
 
-    // ✅ Método Auxiliar para zipar pasta recursivamente
-    private void zipPastaRecursiva(Pasta pasta, String caminhoRelativo, ZipOutputStream zos) throws IOException {
-        String prefixo = caminhoRelativo.isEmpty() ? "" : caminhoRelativo + "/";
+        ContadorOutputStream(OutputStream out, Counter contador) {
+            super(out);
+            this.contador = contador;
+        }
 
-        // Adiciona arquivos da pasta
-        for (Arquivo arquivo : pasta.getArquivos()) {
-            Path caminhoArquivo = Paths.get(arquivo.getCaminhoArmazenamento());
-            if (Files.exists(caminhoArquivo)) {
-                zos.putNextEntry(new ZipEntry(prefixo + arquivo.getNomeArquivo()));
-                Files.copy(caminhoArquivo, zos);
-                zos.closeEntry();
-            }
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            contador.increment();
         }
 
-        // Recursão para subpastas
-        for (Pasta sub : pasta.getSubPastas()) {
-            zipPastaRecursiva(sub, prefixo + sub.getNomePasta(), zos);
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            contador.increment(len);
         }
     }
 
@@ -1,16 +1,27 @@
 package br.com.carro.controllers;
+import br.com.carro.autenticacao.EnderecoCliente;
 import br.com.carro.entities.Login.LoginRequest;
 import br.com.carro.entities.Login.LoginResponse;
+import br.com.carro.entities.Login.RefreshRequest;
 import br.com.carro.entities.Usuario.Usuario;
+import br.com.carro.exceptions.ErrorMessage;
 import br.com.carro.repositories.UsuarioRepository;
+import br.com.carro.services.LoginService;
+import br.com.carro.services.RefreshTokenService;
+import br.com.carro.services.RevogacaoTokenService;
 import br.com.carro.services.TokenService;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -21,26 +32,35 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/api")
 public class AuthenticationController {
 
-    private final AuthenticationManager authenticationManager;
+    private final LoginService loginService;
     private final TokenService tokenService;
     private final UsuarioRepository usuarioRepository; // ✅ Injete o repositório
+    private final RefreshTokenService refreshTokenService;
+    private final RevogacaoTokenService revogacaoTokenService;
+    private final EnderecoCliente enderecoCliente;
+    private final JwtDecoder jwtDecoder;
 
-    public AuthenticationController(AuthenticationManager authenticationManager, TokenService tokenService,UsuarioRepository usuarioRepository) {
-        this.authenticationManager = authenticationManager;
+    public AuthenticationController(LoginService loginService, TokenService tokenService,UsuarioRepository usuarioRepository,
+                                    RefreshTokenService refreshTokenService, RevogacaoTokenService revogacaoTokenService,
+                                    EnderecoCliente enderecoCliente, JwtDecoder jwtDecoder) {
+        this.loginService = loginService;
         this.tokenService = tokenService;
         this.usuarioRepository = usuarioRepository;
+        this.refreshTokenService = refreshTokenService;
+        this.revogacaoTokenService = revogacaoTokenService;
+        this.enderecoCliente = enderecoCliente;
+        this.jwtDecoder = jwtDecoder;
     }
 
     @PostMapping("/login")
-    public LoginResponse login(@RequestBody LoginRequest loginRequest) {
+    public LoginResponse login(@RequestBody LoginRequest loginRequest, HttpServletRequest request) {
 
         // ✅ Coloque um breakpoint aqui
         System.out.println("Tentativa de login para usuário: " + loginRequest.username());
         // ... Sua lógica de autenticação
-        UsernamePasswordAuthenticationToken authenticationToken =
-                new UsernamePasswordAuthenticationToken(loginRequest.username(), loginRequest.password());
-
-        Authentication authentication = this.authenticationManager.authenticate(authenticationToken);
+        // ✅ Limite por usuário/IP e BCrypt no pool dedicado (429 quando excede)
+        Authentication authentication = loginService.autenticar(loginRequest.username(), loginRequest.password(),
+                enderecoCliente.resolver(request));
 
         String token = tokenService.gerarToken(authentication);
 
@@ -55,7 +75,41 @@ public class AuthenticationController {
         // 3. Constrói a resposta com a informação da senha provisória
         boolean isSenhaProvisoria = usuario.isSenhaProvisoria();
 
-        // 4. Retorna o token, o tempo de expiração e a senha provisoria conforme pede a assinatura do LoginResponse
-        return new LoginResponse(token, 36000L, isSenhaProvisoria);
+        // 4. Retorna o token, o tempo de expiração, a senha provisoria e o refresh token da nova sessão
+        String refreshToken = refreshTokenService.emitir(usuario);
+        return new LoginResponse(token, tokenService.getValidadeSegundos(), isSenhaProvisoria, refreshToken);
+    }
+
+    // ✅ Renova o access token sem senha: o refresh token apresentado é trocado por outro
+    @PostMapping("/token/refresh")
+    public ResponseEntity<?> renovar(@RequestBody RefreshRequest refreshRequest, HttpServletRequest request) {
+        try {
+            RefreshTokenService.Renovacao renovacao = refreshTokenService.renovar(refreshRequest.refreshToken());
+            Usuario usuario = renovacao.usuario();
+            String token = tokenService.gerarToken(usuario);
+            return ResponseEntity.ok(new LoginResponse(token, tokenService.getValidadeSegundos(),
+                    usuario.isSenhaProvisoria(), renovacao.refreshToken()));
+        } catch (SecurityException e) {
+            ErrorMessage error = new ErrorMessage(HttpStatus.UNAUTHORIZED.value(), "Sessão inválida", e.getMessage(), request.getRequestURI());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
+        }
+    }
+
+    // ✅ Encerra a sessão: revoga o refresh token e, se veio um access token ainda válido, também ele.
+    // O Authorization não passa pelo resource server nesta rota (ver SecurityConfigurations.bearerTokenResolver)
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(@RequestBody(required = false) RefreshRequest refreshRequest,
+                                       @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        if (refreshRequest != null) {
+            refreshTokenService.revogar(refreshRequest.refreshToken());
+        }
+        if (authorization != null && authorization.startsWith("Bearer ")) {
+            try {
+                revogacaoTokenService.revogarToken(jwtDecoder.decode(authorization.substring(7).trim()));
+            } catch (JwtException e) {
+                // Expirado, revogado ou inválido: não há o que revogar
+            }
+        }
+        return ResponseEntity.noContent().build();
     }
 }
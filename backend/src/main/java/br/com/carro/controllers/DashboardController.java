@@ -1,19 +1,29 @@
 package br.com.carro.controllers;
 
 import br.com.carro.entities.DTO.DashboardDTO;
+import br.com.carro.entities.DTO.SerieTemporalDTO;
+import br.com.carro.exceptions.ErrorMessage;
 import br.com.carro.services.DashboardService;
+import br.com.carro.services.SerieTemporalService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
+
 @RestController
 @RequestMapping("/api/estatisticas")
 public class DashboardController {
 
     private final DashboardService dashboardService;
+    private final SerieTemporalService serieTemporalService;
 
-    public DashboardController(DashboardService dashboardService) {
+    public DashboardController(DashboardService dashboardService, SerieTemporalService serieTemporalService) {
         this.dashboardService = dashboardService;
+        this.serieTemporalService = serieTemporalService;
     }
 
     /**
@@ -37,4 +47,35 @@ public class DashboardController {
             return ResponseEntity.internalServerError().build();
         }
     }
+
+    /**
+     * Série temporal densa (períodos sem ocorrência vêm com zero).
+     *
+     * @param metrica   uploads | logins
+     * @param intervalo dia | semana | mes (semanas começam na segunda-feira)
+     * @param inicio    primeiro dia (yyyy-MM-dd), no fuso informado
+     * @param fim       último dia, inclusive
+     * @param fuso      fuso dos períodos, ex.: America/Sao_Paulo (opcional, default o do servidor)
+     */
+    @GetMapping("/serie")
+    @PreAuthorize("hasAnyRole('ADMIN','GERENTE')")
+    public ResponseEntity<?> getSerie(
+            @RequestParam(value = "metrica", defaultValue = "uploads") String metrica,
+            @RequestParam(value = "intervalo", defaultValue = "dia") String intervalo,
+            @RequestParam("inicio") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate inicio,
+            @RequestParam("fim") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fim,
+            @RequestParam(value = "fuso", required = false) String fuso,
+            HttpServletRequest request
+    ) {
+        try {
+            return ResponseEntity.ok(serieTemporalService.gerarSerie(metrica, intervalo, inicio, fim, fuso));
+        } catch (IllegalArgumentException e) {
+            ErrorMessage error = new ErrorMessage(HttpStatus.BAD_REQUEST.value(), "Parâmetros inválidos", e.getMessage(), request.getRequestURI());
+            return ResponseEntity.badRequest().body(error);
+        } catch (Exception e) {
+            e.printStackTrace();
+            ErrorMessage error = new ErrorMessage(HttpStatus.INTERNAL_SERVER_ERROR.value(), "Erro interno", "Erro ao gerar a série.", request.getRequestURI());
+            return ResponseEntity.internalServerError().body(error);
+        }
+    }
 }
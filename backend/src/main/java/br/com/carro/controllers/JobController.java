@@ -0,0 +1,136 @@
+package br.com.carro.controllers;
+
+import br.com.carro.entities.DTO.JobDTO;
+import br.com.carro.entities.Job.Job;
+import br.com.carro.entities.Job.TipoJob;
+import br.com.carro.entities.Usuario.Usuario;
+import br.com.carro.exceptions.ErrorMessage;
+import br.com.carro.services.JobService;
+import br.com.carro.services.PastaJobService;
+import br.com.carro.utils.AuthService;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+
+/**
+ * Acompanhamento das tarefas em segundo plano (cópia, exclusão e substituição de pastas, geração de ZIP).
+ * <p>
+ * As operações longas respondem 202 com {@code Location: /api/jobs/{id}}; o cliente consulta
+ * esse endereço até o status ser CONCLUIDO, FALHOU ou CANCELADO.
+ */
+@RestController
+@RequestMapping("/api/jobs")
+public class JobController {
+    private static final Logger logger = LoggerFactory.getLogger(JobController.class);
+
+    private final JobService jobService;
+    private final PastaJobService pastaJobService;
+    private final AuthService authService;
+
+    public JobController(JobService jobService, PastaJobService pastaJobService, AuthService authService) {
+        this.jobService = jobService;
+        this.pastaJobService = pastaJobService;
+        this.authService = authService;
+    }
+
+    // ✅ ENDPOINT 01 - Tarefas do usuário logado (mais recentes primeiro)
+    @GetMapping
+    public ResponseEntity<?> listar(@RequestParam(defaultValue = "0") int page,
+                                    @RequestParam(defaultValue = "20") int size,
+                                    Authentication authentication,
+                                    HttpServletRequest httpRequest) {
+        try {
+            Usuario usuarioLogado = authService.getUsuarioLogado(authentication);
+            Page<JobDTO> jobs = jobService.listar(usuarioLogado, PageRequest.of(page, size));
+            return ResponseEntity.ok(jobs);
+        } catch (Exception e) {
+            return tratarErro(e, httpRequest);
+        }
+    }
+
+    // ✅ ENDPOINT 02 - Progresso da tarefa
+    @GetMapping("/{id}")
+    public ResponseEntity<?> consultar(@PathVariable String id,
+                                       Authentication authentication,
+                                       HttpServletRequest httpRequest) {
+        try {
+            Usuario usuarioLogado = authService.getUsuarioLogado(authentication);
+            return ResponseEntity.ok(jobService.consultar(id, usuarioLogado));
+        } catch (Exception e) {
+            return tratarErro(e, httpRequest);
+        }
+    }
+
+    // ✅ ENDPOINT 03 - Cancelar tarefa (atendido no fim do lote em andamento)
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> cancelar(@PathVariable String id,
+                                      Authentication authentication,
+                                      HttpServletRequest httpRequest) {
+        try {
+            Usuario usuarioLogado = authService.getUsuarioLogado(authentication);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(jobService.cancelar(id, usuarioLogado));
+        } catch (Exception e) {
+            return tratarErro(e, httpRequest);
+        }
+    }
+
+    // ✅ ENDPOINT 04 - Baixar o ZIP gerado por uma tarefa GERAR_ZIP_PASTA
+    @GetMapping("/{id}/download")
+    public ResponseEntity<?> baixarZip(@PathVariable String id,
+                                       Authentication authentication,
+                                       HttpServletRequest httpRequest) {
+        try {
+            Usuario usuarioLogado = authService.getUsuarioLogado(authentication);
+            Job job = jobService.buscarConcluido(id, TipoJob.GERAR_ZIP_PASTA, usuarioLogado);
+            PastaJobService.ZipGerado zip = pastaJobService.localizarZip(job.getResultado());
+
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                            .filename(zip.nomeArquivo(), StandardCharsets.UTF_8).build().toString())
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .body(zip.zip().comoResource(zip.nomeArquivo()));
+        } catch (Exception e) {
+            return tratarErro(e, httpRequest);
+        }
+    }
+
+    private ResponseEntity<ErrorMessage> tratarErro(Exception e, HttpServletRequest httpRequest) {
+        HttpStatus status;
+        String titulo;
+        if (e instanceof EntityNotFoundException) {
+            status = HttpStatus.NOT_FOUND;
+            titulo = "Não encontrado";
+        } else if (e instanceof AccessDeniedException || e instanceof SecurityException) {
+            status = HttpStatus.FORBIDDEN;
+            titulo = "Acesso negado";
+        } else if (e instanceof IllegalStateException) {
+            status = HttpStatus.CONFLICT;
+            titulo = "Conflito na tarefa";
+        } else if (e instanceof IllegalArgumentException) {
+            status = HttpStatus.BAD_REQUEST;
+            titulo = "Requisição inválida";
+        } else {
+            logger.error("Erro inesperado ao consultar tarefa", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ErrorMessage(HttpStatus.INTERNAL_SERVER_ERROR.value(),
+                            "Erro inesperado",
+                            "Erro ao processar a tarefa: " + e.getMessage(),
+                            httpRequest.getRequestURI()));
+        }
+        return ResponseEntity.status(status)
+                .body(new ErrorMessage(status.value(), titulo, e.getMessage(), httpRequest.getRequestURI()));
+    }
+}
@@ -25,6 +25,7 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
 
+import java.net.URI;
 import java.nio.file.AccessDeniedException;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -199,8 +200,8 @@ public class PastaController {
     public ResponseEntity<?> excluirPasta(@PathVariable Long id, Authentication authentication, HttpServletRequest request) {
         try {
             Usuario usuarioLogado = authService.getUsuarioLogado(authentication);
-            pastaService.excluirPasta(id, usuarioLogado);
-            return ResponseEntity.noContent().build();
+            JobDTO job = pastaService.excluirPasta(id, usuarioLogado);
+            return aceito(job);
         } catch (IllegalArgumentException | EntityNotFoundException e) {
             ErrorMessage error = new ErrorMessage(
                     HttpStatus.BAD_REQUEST.value(),
@@ -217,6 +218,8 @@ public class PastaController {
                     request.getRequestURI()
             );
             return ResponseEntity.status(HttpStatus.FORBIDDEN).body(error);
+        } catch (IllegalStateException e) {
+            return filaCheia(e, request);
         } catch (Exception e) {
             ErrorMessage error = new ErrorMessage(
                     HttpStatus.INTERNAL_SERVER_ERROR.value(),
@@ -380,8 +383,8 @@ public class PastaController {
                                          HttpServletRequest httpRequest) {
         try {
             Usuario usuarioLogado = authService.getUsuarioLogado(authentication);
-            var novaPasta = pastaService.copiarPasta(id, destinoPastaId, usuarioLogado);
-            return ResponseEntity.status(HttpStatus.CREATED).body(PastaDTO.fromEntity(novaPasta));
+            JobDTO job = pastaService.copiarPasta(id, destinoPastaId, usuarioLogado);
+            return aceito(job);
         } catch (AccessDeniedException e) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN)
                     .body(new ErrorMessage(HttpStatus.FORBIDDEN.value(),
@@ -400,6 +403,8 @@ public class PastaController {
                             "Erro ao copiar pasta",
                             e.getMessage(),
                             httpRequest.getRequestURI()));
+        } catch (IllegalStateException e) {
+            return filaCheia(e, httpRequest);
         } catch (Exception e) {
             logger.error("Erro inesperado ao copiar pasta", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -418,8 +423,8 @@ public class PastaController {
                                                  HttpServletRequest httpRequest) {
         try {
             Usuario usuarioLogado = authService.getUsuarioLogado(authentication);
-            pastaService.excluirPastasEmLote(pastaExcluirDTO.idsPastas(), pastaExcluirDTO.excluirConteudo(), usuarioLogado);
-            return ResponseEntity.noContent().build();
+            JobDTO job = pastaService.excluirPastasEmLote(pastaExcluirDTO.idsPastas(), pastaExcluirDTO.excluirConteudo(), usuarioLogado);
+            return aceito(job);
         } catch (AccessDeniedException e) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN)
                     .body(new ErrorMessage(HttpStatus.FORBIDDEN.value(),
@@ -438,6 +443,8 @@ public class PastaController {
                             "Erro ao excluir pastas",
                             e.getMessage(),
                             httpRequest.getRequestURI()));
+        } catch (IllegalStateException e) {
+            return filaCheia(e, httpRequest);
         } catch (Exception e) {
             logger.error("Erro ao excluir pastas em lote", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -457,8 +464,8 @@ public class PastaController {
                                              HttpServletRequest httpRequest) {
         try {
             Usuario usuarioLogado = authService.getUsuarioLogado(authentication);
-            Pasta pastaSubstituida = pastaService.substituirConteudoPasta(idOrigem, idDestino, usuarioLogado);
-            return ResponseEntity.ok(PastaDTO.fromEntity(pastaSubstituida));
+            JobDTO job = pastaService.substituirConteudoPasta(idOrigem, idDestino, usuarioLogado);
+            return aceito(job);
         } catch (EntityNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(new ErrorMessage(HttpStatus.NOT_FOUND.value(),
@@ -471,6 +478,14 @@ public class PastaController {
                             "Acesso negado",
                             e.getMessage(),
                             httpRequest.getRequestURI()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorMessage(HttpStatus.BAD_REQUEST.value(),
+                            "Erro ao substituir pasta",
+                            e.getMessage(),
+                            httpRequest.getRequestURI()));
+        } catch (IllegalStateException e) {
+            return filaCheia(e, httpRequest);
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(new ErrorMessage(HttpStatus.INTERNAL_SERVER_ERROR.value(),
@@ -586,4 +601,62 @@ public class PastaController {
 
 
 
-}
\ No newline at end of file
+
+    // ✅ ENDPOINT 15 - Expansão da árvore: subpastas diretas (raízes, sem paiId) com totais, por cursor
+    @GetMapping("/filhas")
+    @PreAuthorize("hasAnyRole('ADMIN','GERENTE','BASIC')")
+    public ResponseEntity<?> listarFilhas(@RequestParam(required = false) Long paiId,
+                                          @RequestParam(required = false) String cursor,
+                                          @RequestParam(defaultValue = "100") int size,
+                                          Authentication authentication,
+                                          HttpServletRequest httpRequest) {
+        try {
+            Usuario usuarioLogado = authService.getUsuarioLogado(authentication);
+            PaginaCursorDTO<PastaNoDTO> pagina = pastaService.listarFilhas(paiId, cursor, size, usuarioLogado);
+            return ResponseEntity.ok(pagina);
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new ErrorMessage(HttpStatus.NOT_FOUND.value(),
+                            "Pasta não encontrada",
+                            e.getMessage(),
+                            httpRequest.getRequestURI()));
+        } catch (SecurityException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(new ErrorMessage(HttpStatus.FORBIDDEN.value(),
+                            "Acesso negado",
+                            e.getMessage(),
+                            httpRequest.getRequestURI()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(new ErrorMessage(HttpStatus.BAD_REQUEST.value(),
+                            "Requisição inválida",
+                            e.getMessage(),
+                            httpRequest.getRequestURI()));
+        } catch (Exception e) {
+            logger.error("Erro ao listar subpastas", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ErrorMessage(HttpStatus.INTERNAL_SERVER_ERROR.value(),
+                            "Erro interno",
+                            "Erro ao listar subpastas",
+                            httpRequest.getRequestURI()));
+        }
+    }
+
+
+
+    // Operações longas viram tarefa: 202 com o endereço para acompanhar o progresso
+    private ResponseEntity<JobDTO> aceito(JobDTO job) {
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/jobs/" + job.id()))
+                .body(job);
+    }
+
+    // Fila de tarefas cheia
+    private ResponseEntity<ErrorMessage> filaCheia(IllegalStateException e, HttpServletRequest request) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(new ErrorMessage(HttpStatus.SERVICE_UNAVAILABLE.value(),
+                        "Servidor ocupado",
+                        e.getMessage(),
+                        request.getRequestURI()));
+    }
+}
@@ -3,6 +3,8 @@ package br.com.carro.controllers;
 import br.com.carro.entities.DTO.ArquivoPublicoDTO;
 import br.com.carro.entities.DTO.PastaPublicaDTO;
 import br.com.carro.services.PublicService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
 import org.springframework.data.domain.PageRequest;
@@ -13,6 +15,7 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
 
 @RestController
@@ -68,16 +71,24 @@ public class PublicController {
         return ResponseEntity.ok(publicService.listarArquivosPublicos(id, pageable, extensao, sortBy, order));
     }
 
+    // RF-003 - Mesma listagem com paginação por cursor (keyset), para pastas muito grandes
+    @GetMapping("/pastas/{id}/arquivos/cursor")
+    public ResponseEntity<?> listarArquivosPorCursor(
+            @PathVariable Long id,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "nome") String sortBy,
+            @RequestParam(defaultValue = "asc") String order,
+            @RequestParam(required = false) String extensao
+    ) {
+        return ResponseEntity.ok(publicService.listarArquivosPublicosPorCursor(id, cursor, size, extensao, sortBy, order));
+    }
+
 
     //Acesso na area publica - RF-005 – Download de Arquivos
     @GetMapping("/download/arquivo/{id}")
-    public ResponseEntity<Resource> downloadArquivo(@PathVariable Long id) {
-        Resource file = publicService.getArquivoResource(id);
-
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + file.getFilename())
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(file);
+    public void downloadArquivo(@PathVariable Long id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        publicService.enviarArquivo(id, false, request, response);
     }
 
     //Acesso na area publica - RF-006 – Download de Pastas Inteiras (ZIP)
@@ -93,16 +104,12 @@ public class PublicController {
 
 
     /**
-     * Retorna o conteúdo do arquivo diretamente, para visualização no navegador.
+     * Retorna o conteúdo do arquivo diretamente, para visualização no navegador
+     * (aceita Range, permitindo avançar em vídeos e PDFs grandes).
      */
     @GetMapping("/visualizar/arquivo/{id}")
-    public ResponseEntity<Resource> visualizarArquivo(@PathVariable Long id) {
-        Resource resource = publicService.getArquivoParaVisualizacao(id);
-        String contentType = publicService.getContentType(id);
-
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(contentType))
-                .body(resource);
+    public void visualizarArquivo(@PathVariable Long id, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        publicService.enviarArquivo(id, true, request, response);
     }
 
 
@@ -0,0 +1,141 @@
+package br.com.carro.controllers;
+
+import br.com.carro.entities.Arquivo;
+import br.com.carro.entities.DTO.UploadSessaoCreateDTO;
+import br.com.carro.entities.DTO.UploadSessaoDTO;
+import br.com.carro.entities.Usuario.Usuario;
+import br.com.carro.exceptions.ErrorMessage;
+import br.com.carro.services.UploadSessaoService;
+import br.com.carro.utils.AuthService;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.file.AccessDeniedException;
+
+/**
+ * Upload retomável em partes para arquivos grandes.
+ * <p>
+ * 1. POST /api/arquivos/uploads — abre a sessão (pastaId, nomeArquivo, tamanho, tipoMime)<br>
+ * 2. PUT /api/arquivos/uploads/{id}/chunks/{numero} — corpo binário do chunk (application/octet-stream)<br>
+ * 3. POST /api/arquivos/uploads/{id}/commit — conclui e registra o arquivo<br>
+ * Após uma interrupção, GET /api/arquivos/uploads/{id} informa o próximo chunk a enviar.
+ */
+@RestController
+@RequestMapping("/api/arquivos/uploads")
+public class UploadController {
+    private static final Logger logger = LoggerFactory.getLogger(UploadController.class);
+
+    private final UploadSessaoService uploadSessaoService;
+    private final AuthService authService;
+
+    public UploadController(UploadSessaoService uploadSessaoService, AuthService authService) {
+        this.uploadSessaoService = uploadSessaoService;
+        this.authService = authService;
+    }
+
+    // ✅ ENDPOINT 01 - Abrir sessão de upload
+    @PostMapping
+    @PreAuthorize("hasAnyRole('ADMIN','GERENTE')")
+    public ResponseEntity<?> iniciar(@RequestBody UploadSessaoCreateDTO dto,
+                                     Authentication authentication,
+                                     HttpServletRequest httpRequest) {
+        try {
+            Usuario usuarioLogado = authService.getUsuarioLogado(authentication);
+            UploadSessaoDTO sessao = uploadSessaoService.iniciar(dto, usuarioLogado);
+            return ResponseEntity.status(HttpStatus.CREATED).body(sessao);
+        } catch (Exception e) {
+            return tratarErro(e, httpRequest);
+        }
+    }
+
+    // ✅ ENDPOINT 02 - Estado da sessão (para retomar)
+    @GetMapping("/{id}")
+    public ResponseEntity<?> consultar(@PathVariable String id,
+                                       Authentication authentication,
+                                       HttpServletRequest httpRequest) {
+        try {
+            Usuario usuarioLogado = authService.getUsuarioLogado(authentication);
+            return ResponseEntity.ok(uploadSessaoService.consultar(id, usuarioLogado));
+        } catch (Exception e) {
+            return tratarErro(e, httpRequest);
+        }
+    }
+
+    // ✅ ENDPOINT 03 - Enviar chunk (corpo lido direto do request, sem multipart)
+    @PutMapping("/{id}/chunks/{numero}")
+    public ResponseEntity<?> enviarChunk(@PathVariable String id,
+                                         @PathVariable long numero,
+                                         Authentication authentication,
+                                         HttpServletRequest httpRequest) {
+        try {
+            Usuario usuarioLogado = authService.getUsuarioLogado(authentication);
+            UploadSessaoDTO sessao = uploadSessaoService.receberChunk(id, numero, httpRequest.getInputStream(),
+                    httpRequest.getContentLengthLong(), usuarioLogado);
+            return ResponseEntity.ok(sessao);
+        } catch (Exception e) {
+            return tratarErro(e, httpRequest);
+        }
+    }
+
+    // ✅ ENDPOINT 04 - Concluir upload
+    @PostMapping("/{id}/commit")
+    public ResponseEntity<?> concluir(@PathVariable String id,
+                                      Authentication authentication,
+                                      HttpServletRequest httpRequest) {
+        try {
+            Usuario usuarioLogado = authService.getUsuarioLogado(authentication);
+            Arquivo arquivo = uploadSessaoService.concluir(id, usuarioLogado);
+            return ResponseEntity.status(HttpStatus.CREATED).body(arquivo);
+        } catch (Exception e) {
+            return tratarErro(e, httpRequest);
+        }
+    }
+
+    // ✅ ENDPOINT 05 - Cancelar upload
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> cancelar(@PathVariable String id,
+                                      Authentication authentication,
+                                      HttpServletRequest httpRequest) {
+        try {
+            Usuario usuarioLogado = authService.getUsuarioLogado(authentication);
+            uploadSessaoService.cancelar(id, usuarioLogado);
+            return ResponseEntity.noContent().build();
+        } catch (Exception e) {
+            return tratarErro(e, httpRequest);
+        }
+    }
+
+    private ResponseEntity<ErrorMessage> tratarErro(Exception e, HttpServletRequest httpRequest) {
+        HttpStatus status;
+        String titulo;
+        if (e instanceof EntityNotFoundException) {
+            status = HttpStatus.NOT_FOUND;
+            titulo = "Não encontrado";
+        } else if (e instanceof AccessDeniedException || e instanceof SecurityException) {
+            status = HttpStatus.FORBIDDEN;
+            titulo = "Acesso negado";
+        } else if (e instanceof IllegalStateException) {
+            status = HttpStatus.CONFLICT;
+            titulo = "Conflito no upload";
+        } else if (e instanceof IllegalArgumentException) {
+            status = HttpStatus.BAD_REQUEST;
+            titulo = "Requisição inválida";
+        } else {
+            logger.error("Erro inesperado no upload em partes", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ErrorMessage(HttpStatus.INTERNAL_SERVER_ERROR.value(),
+                            "Erro inesperado",
+                            "Erro ao processar o upload: " + e.getMessage(),
+                            httpRequest.getRequestURI()));
+        }
+        return ResponseEntity.status(status)
+                .body(new ErrorMessage(status.value(), titulo, e.getMessage(), httpRequest.getRequestURI()));
+    }
+}
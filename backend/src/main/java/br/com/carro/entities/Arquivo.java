@@ -16,8 +16,11 @@ import java.time.LocalDateTime;
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
 public class Arquivo {
 
+    // Ids reservados em blocos de 50 (tb_id_alocador): com IDENTITY o Hibernate não agrupa os INSERTs
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "arquivo_id")
+    @TableGenerator(name = "arquivo_id", table = "tb_id_alocador", pkColumnName = "nome", valueColumnName = "proximo",
+            pkColumnValue = "tb_arquivo", allocationSize = 50)
     @EqualsAndHashCode.Include
     private Long id;
 
@@ -40,6 +43,10 @@ public class Arquivo {
     @Column(name = "hash_arquivo", length = 64)
     private String hashArquivo;
 
+    // Preenchido quando o conteúdo está no armazenamento deduplicado (tb_blob); NULL = layout antigo
+    @Column(name = "blob_hash", length = 64)
+    private String blobHash;
+
     @Column(name = "tipo_mime", length = 100)
     private String tipoMime;
 
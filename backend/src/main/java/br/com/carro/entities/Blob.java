@@ -0,0 +1,33 @@
+package br.com.carro.entities;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.time.LocalDateTime;
+
+/**
+ * Conteúdo armazenado uma única vez, identificado pelo SHA-256.
+ * Vários {@link Arquivo} podem apontar para o mesmo blob; {@code referencias} conta quantos.
+ * Blobs sem referência são removidos pela coleta do BlobStoreService.
+ */
+@Entity
+@Table(name = "tb_blob")
+@Data
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+public class Blob {
+
+    @Id
+    @Column(length = 64)
+    @EqualsAndHashCode.Include
+    private String hash;
+
+    @Column(name = "tamanho_bytes", nullable = false)
+    private Long tamanho;
+
+    @Column(nullable = false)
+    private Integer referencias;
+
+    @Column(name = "data_criacao", nullable = false, updatable = false)
+    private LocalDateTime dataCriacao;
+}
@@ -0,0 +1,60 @@
+package br.com.carro.entities.DTO;
+
+import br.com.carro.entities.Job.Job;
+import br.com.carro.entities.Job.StatusJob;
+import br.com.carro.entities.Job.TipoJob;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+// Andamento de uma tarefa assíncrona; percentual e vazão calculados no momento da consulta
+public record JobDTO(
+        String id,
+        TipoJob tipo,
+        StatusJob status,
+        String descricao,
+        long totalItens,
+        long itensProcessados,
+        double percentual,
+        double itensPorSegundo,
+        boolean cancelamentoSolicitado,
+        String resultado,
+        String erro,
+        LocalDateTime dataCriacao,
+        LocalDateTime dataInicio,
+        LocalDateTime dataFim
+) {
+    public static JobDTO fromEntity(Job job) {
+        return fromEntity(job, job.getTotalItens(), job.getItensProcessados());
+    }
+
+    // Usa os contadores informados (em memória, mais recentes que os gravados) no lugar dos da entidade
+    public static JobDTO fromEntity(Job job, long total, long processados) {
+        double percentual = total > 0 ? Math.min(100.0, processados * 100.0 / total)
+                : (job.getStatus() == StatusJob.CONCLUIDO ? 100.0 : 0.0);
+
+        double porSegundo = 0;
+        if (job.getDataInicio() != null) {
+            LocalDateTime fim = job.getDataFim() != null ? job.getDataFim() : LocalDateTime.now();
+            long ms = Duration.between(job.getDataInicio(), fim).toMillis();
+            if (ms > 0) porSegundo = processados * 1000.0 / ms;
+        }
+
+        return new JobDTO(
+                job.getId(),
+                job.getTipo(),
+                job.getStatus(),
+                job.getDescricao(),
+                total,
+                processados,
+                Math.round(percentual * 10) / 10.0,
+                Math.round(porSegundo * 10) / 10.0,
+                Boolean.TRUE.equals(job.getCancelamentoSolicitado()),
+                job.getResultado(),
+                job.getErro(),
+                job.getDataCriacao(),
+                job.getDataInicio(),
+                job.getDataFim()
+        );
+    }
+}
@@ -0,0 +1,9 @@
+package br.com.carro.entities.DTO;
+
+import java.util.List;
+
+// Resposta paginada por cursor (keyset): envie proximoCursor na próxima requisição
+public record PaginaCursorDTO<T>(
+        List<T> conteudo,
+        String proximoCursor,
+        boolean temMais) {}
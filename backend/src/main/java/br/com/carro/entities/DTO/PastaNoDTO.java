@@ -0,0 +1,15 @@
+package br.com.carro.entities.DTO;
+
+import java.time.LocalDateTime;
+
+// Nó da árvore de pastas para expansão sob demanda: só a pasta e seus totais, sem filhos nem arquivos
+public record PastaNoDTO(
+        Long id,
+        String nomePasta,
+        LocalDateTime dataCriacao,
+        LocalDateTime dataAtualizacao,
+        String criadoPor,
+        long quantidadeSubpastas,
+        long quantidadeArquivos,
+        long tamanhoTotal,
+        boolean temFilhos) {}
@@ -0,0 +1,20 @@
+package br.com.carro.entities.DTO;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Série temporal densa: um ponto por período (dia, semana ou mês) entre inicio e fim,
+ * com zero nos períodos sem ocorrências. Datas no fuso horário solicitado.
+ */
+public record SerieTemporalDTO(
+        String metrica,          // uploads ou logins
+        String intervalo,        // dia, semana (começa na segunda) ou mes
+        String fuso,             // fuso horário usado para separar os períodos
+        LocalDate inicio,
+        LocalDate fim,
+        long total,
+        List<Ponto> pontos
+) {
+    public record Ponto(LocalDate periodo, long quantidade) {}
+}
@@ -0,0 +1,9 @@
+package br.com.carro.entities.DTO;
+
+// Abertura de uma sessão de upload em partes
+public record UploadSessaoCreateDTO(
+        Long pastaId,
+        String nomeArquivo,
+        Long tamanho,
+        String tipoMime
+) {}
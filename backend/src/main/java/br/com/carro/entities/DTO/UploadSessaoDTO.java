@@ -0,0 +1,34 @@
+package br.com.carro.entities.DTO;
+
+import br.com.carro.entities.UploadSessao;
+
+import java.time.LocalDateTime;
+
+// Estado da sessão: o cliente retoma enviando a partir de proximoChunk
+public record UploadSessaoDTO(
+        String id,
+        String nomeArquivo,
+        Long tamanho,
+        Integer tamanhoChunk,
+        Long bytesRecebidos,
+        Long proximoChunk,
+        Long totalChunks,
+        boolean completo,
+        LocalDateTime dataAtualizacao
+) {
+    public static UploadSessaoDTO fromEntity(UploadSessao sessao) {
+        long tamanhoChunk = sessao.getTamanhoChunk();
+        long totalChunks = Math.max(1, (sessao.getTamanhoTotal() + tamanhoChunk - 1) / tamanhoChunk);
+        return new UploadSessaoDTO(
+                sessao.getId(),
+                sessao.getNomeArquivo(),
+                sessao.getTamanhoTotal(),
+                sessao.getTamanhoChunk(),
+                sessao.getBytesRecebidos(),
+                sessao.getBytesRecebidos() / tamanhoChunk,
+                totalChunks,
+                sessao.getBytesRecebidos().equals(sessao.getTamanhoTotal()),
+                sessao.getDataAtualizacao()
+        );
+    }
+}
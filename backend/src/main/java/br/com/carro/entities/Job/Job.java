@@ -0,0 +1,67 @@
+package br.com.carro.entities.Job;
+
+import br.com.carro.entities.Usuario.Usuario;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.time.LocalDateTime;
+
+/**
+ * Operação longa executada fora da requisição HTTP.
+ * O progresso (itens processados / total) é gravado periodicamente pelo JobService.
+ */
+@Entity
+@Table(name = "tb_job")
+@Data
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+public class Job {
+
+    @Id
+    @Column(length = 36)
+    @EqualsAndHashCode.Include
+    private String id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 40)
+    private TipoJob tipo;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private StatusJob status;
+
+    private String descricao;
+
+    @Column(name = "total_itens", nullable = false)
+    private Long totalItens;
+
+    @Column(name = "itens_processados", nullable = false)
+    private Long itensProcessados;
+
+    @Column(name = "cancelamento_solicitado", nullable = false)
+    private Boolean cancelamentoSolicitado;
+
+    @Column(length = 1024)
+    private String resultado;
+
+    @Column(length = 1024)
+    private String erro;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "criado_por_id", nullable = false)
+    @JsonIgnore
+    private Usuario criadoPor;
+
+    @Column(name = "data_criacao", nullable = false, updatable = false)
+    private LocalDateTime dataCriacao;
+
+    @Column(name = "data_inicio")
+    private LocalDateTime dataInicio;
+
+    @Column(name = "data_fim")
+    private LocalDateTime dataFim;
+
+    @Column(name = "data_atualizacao", nullable = false)
+    private LocalDateTime dataAtualizacao;
+}
@@ -0,0 +1,13 @@
+package br.com.carro.entities.Job;
+
+public enum StatusJob {
+    PENDENTE,
+    EXECUTANDO,
+    CONCLUIDO,
+    FALHOU,
+    CANCELADO;
+
+    public boolean isFinal() {
+        return this == CONCLUIDO || this == FALHOU || this == CANCELADO;
+    }
+}
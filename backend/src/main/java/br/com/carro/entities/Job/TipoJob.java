@@ -0,0 +1,9 @@
+package br.com.carro.entities.Job;
+
+public enum TipoJob {
+    COPIAR_PASTA,
+    EXCLUIR_PASTA,
+    EXCLUIR_PASTAS_LOTE,
+    SUBSTITUIR_CONTEUDO_PASTA,
+    GERAR_ZIP_PASTA
+}
@@ -2,5 +2,6 @@ package br.com.carro.entities.Login;
 
 
 // ✅ Novo campo: senhaProvisoria
-public record LoginResponse(String accessToken, Long expiresIn, boolean senhaProvisoria) {
+// refreshToken: troca por um novo access token em POST /api/token/refresh (cada um vale uma vez)
+public record LoginResponse(String accessToken, Long expiresIn, boolean senhaProvisoria, String refreshToken) {
 }
@@ -0,0 +1,4 @@
+package br.com.carro.entities.Login;
+
+public record RefreshRequest(String refreshToken) {
+}
@@ -18,8 +18,11 @@ import java.util.Set;
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
 public class Pasta {
 
+    // Ids reservados em blocos de 50 (tb_id_alocador): com IDENTITY o Hibernate não agrupa os INSERTs
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "pasta_id")
+    @TableGenerator(name = "pasta_id", table = "tb_id_alocador", pkColumnName = "nome", valueColumnName = "proximo",
+            pkColumnValue = "tb_pasta", allocationSize = 50)
     @EqualsAndHashCode.Include
     private Long id;
 
@@ -55,6 +58,26 @@ public class Pasta {
     @JoinColumn(name = "criado_por_id")
     private Usuario criadoPor;
 
+    // Totais mantidos pelo PastaAgregadoService direto no banco (somente leitura para o JPA)
+    @Column(name = "qtd_arquivos_diretos", insertable = false, updatable = false)
+    private Long quantidadeArquivosDiretos;
+
+    @Column(name = "bytes_diretos", insertable = false, updatable = false)
+    private Long bytesDiretos;
+
+    @Column(name = "qtd_arquivos_total", insertable = false, updatable = false)
+    private Long quantidadeArquivosTotal;
+
+    @Column(name = "bytes_total", insertable = false, updatable = false)
+    private Long bytesTotal;
+
+    @Column(name = "ultima_modificacao", insertable = false, updatable = false)
+    private LocalDateTime ultimaModificacao;
+
+    // false: a pasta não herda as permissões dos ancestrais, só valem as concedidas nela (e abaixo dela)
+    @Column(name = "herda_permissoes", nullable = false)
+    private boolean herdaPermissoes = true;
+
     @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(
             name = "tb_permissao_pasta",
@@ -0,0 +1,45 @@
+package br.com.carro.entities;
+
+import br.com.carro.entities.Usuario.Usuario;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.time.LocalDateTime;
+
+/**
+ * Refresh token emitido no login e trocado a cada renovação. Guarda só o hash do token;
+ * {@code familia} agrupa os tokens de uma mesma sessão de login.
+ */
+@Entity
+@Table(name = "tb_refresh_token")
+@Data
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+public class RefreshToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @EqualsAndHashCode.Include
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "usuario_id", nullable = false)
+    @JsonIgnore
+    private Usuario usuario;
+
+    @Column(name = "token_hash", nullable = false, length = 64, unique = true)
+    private String tokenHash;
+
+    @Column(nullable = false, length = 36)
+    private String familia;
+
+    @Column(name = "data_criacao", nullable = false, updatable = false)
+    private LocalDateTime dataCriacao;
+
+    @Column(name = "data_expiracao", nullable = false)
+    private LocalDateTime dataExpiracao;
+
+    @Column(name = "data_revogacao")
+    private LocalDateTime dataRevogacao;
+}
@@ -0,0 +1,60 @@
+package br.com.carro.entities;
+
+import br.com.carro.entities.Usuario.Usuario;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.time.LocalDateTime;
+
+/**
+ * Sessão de upload em partes (chunks). Os bytes são gravados direto em um arquivo
+ * temporário em storage.root-dir/.uploads; o registro guarda quanto já foi confirmado
+ * para permitir retomar o envio após uma interrupção.
+ */
+@Entity
+@Table(name = "tb_upload_sessao")
+@Data
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+public class UploadSessao {
+
+    @Id
+    @Column(length = 36)
+    @EqualsAndHashCode.Include
+    private String id;
+
+    @Column(name = "nome_arquivo", nullable = false)
+    private String nomeArquivo;
+
+    @Column(name = "tipo_mime", length = 100)
+    private String tipoMime;
+
+    @Column(name = "tamanho_total", nullable = false)
+    private Long tamanhoTotal;
+
+    @Column(name = "tamanho_chunk", nullable = false)
+    private Integer tamanhoChunk;
+
+    @Column(name = "bytes_recebidos", nullable = false)
+    private Long bytesRecebidos;
+
+    @Column(name = "caminho_temporario", nullable = false, length = 1024)
+    private String caminhoTemporario;
+
+    @Column(name = "data_criacao", nullable = false, updatable = false)
+    private LocalDateTime dataCriacao;
+
+    @Column(name = "data_atualizacao", nullable = false)
+    private LocalDateTime dataAtualizacao;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "pasta_id", nullable = false)
+    @JsonIgnore
+    private Pasta pasta;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "criado_por_id", nullable = false)
+    @JsonIgnore
+    private Usuario criadoPor;
+}
@@ -4,7 +4,9 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authorization.AuthorizationDeniedException;
 import org.springframework.security.core.AuthenticationException;
@@ -112,6 +114,18 @@ public class ApiExceptionHandler implements AuthenticationEntryPoint {
         );
     }
 
+    @ExceptionHandler(LimiteExcedidoException.class)
+    public ResponseEntity<ErrorMessage> handleLimiteExcedido(LimiteExcedidoException ex, HttpServletRequest request) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getSegundosParaNovaTentativa()))
+                .body(new ErrorMessage(
+                        HttpStatus.TOO_MANY_REQUESTS.value(),
+                        "Muitas tentativas",
+                        ex.getMessage(),
+                        request.getRequestURI()
+                ));
+    }
+
     @ResponseBody
     @ExceptionHandler(AuthorizationDeniedException.class)
     @ResponseStatus(HttpStatus.FORBIDDEN)
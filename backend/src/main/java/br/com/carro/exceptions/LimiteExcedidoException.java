@@ -0,0 +1,19 @@
+package br.com.carro.exceptions;
+
+/**
+ * Muitas tentativas (limite de login por usuário/IP) ou servidor sem capacidade no momento.
+ * Mapeada para HTTP 429 com o cabeçalho Retry-After.
+ */
+public class LimiteExcedidoException extends RuntimeException {
+
+    private final long segundosParaNovaTentativa;
+
+    public LimiteExcedidoException(String message, long segundosParaNovaTentativa) {
+        super(message);
+        this.segundosParaNovaTentativa = segundosParaNovaTentativa;
+    }
+
+    public long getSegundosParaNovaTentativa() {
+        return segundosParaNovaTentativa;
+    }
+}
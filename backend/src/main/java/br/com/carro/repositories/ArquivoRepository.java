@@ -7,9 +7,11 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.Arrays;
@@ -22,7 +24,7 @@ import java.util.List;
  * Estende JpaSpecificationExecutor para permitir consultas dinâmicas
  * usando a API de Criteria do JPA (o que resolve o erro de `findAll` com Specification).
  */
-public interface ArquivoRepository extends JpaRepository<Arquivo, Long> {
+public interface ArquivoRepository extends JpaRepository<Arquivo, Long>, ArquivoRepositoryCustom {
 
 
     List<Arquivo> findByPastaId(Long pastaId);
@@ -42,5 +44,95 @@ public interface ArquivoRepository extends JpaRepository<Arquivo, Long> {
     List<Arquivo> findByPastaAndNomeAndExtensao(@Param("pasta") Pasta pasta,
                                                 @Param("nomeFiltro") String nomeFiltro,
                                                 @Param("extensaoFiltro") String extensaoFiltro);
-}
 
+    // ========================
+    // HASH DE CONTEÚDO (backfill)
+    // ========================
+
+    interface ArquivoSemHash {
+        Long getId();
+        String getCaminhoArmazenamento();
+    }
+
+    // Próximo lote de arquivos ainda sem hash, em ordem de id (percorre a PK, sem OFFSET)
+    @Query("SELECT a.id AS id, a.caminhoArmazenamento AS caminhoArmazenamento FROM Arquivo a " +
+            "WHERE a.hashArquivo IS NULL AND a.id > :aposId ORDER BY a.id")
+    List<ArquivoSemHash> findSemHashAposId(@Param("aposId") Long aposId, Pageable pageable);
+
+    // Só grava se ninguém preencheu antes (ex.: arquivo substituído durante o cálculo)
+    @Modifying
+    @Transactional
+    @Query("UPDATE Arquivo a SET a.hashArquivo = :hash WHERE a.id = :id AND a.hashArquivo IS NULL")
+    int preencherHash(@Param("id") Long id, @Param("hash") String hash);
+
+    // ========================
+    // ARMAZENAMENTO DEDUPLICADO (migração do layout antigo)
+    // ========================
+
+    // Só os que já têm hash (preenchido na escrita ou pelo backfill): a migração não relê conteúdo
+    @Query("SELECT a.id FROM Arquivo a WHERE a.blobHash IS NULL AND a.hashArquivo IS NOT NULL " +
+            "AND a.id > :aposId ORDER BY a.id")
+    List<Long> findIdsParaMigrarAposId(@Param("aposId") Long aposId, Pageable pageable);
+
+    boolean existsByCaminhoArmazenamentoAndBlobHashIsNull(String caminhoArmazenamento);
+
+    // Blobs referenciados pelos arquivos de uma subárvore (pasta + descendentes), com repetição
+    @Query(value = "SELECT a.blob_hash FROM tb_arquivo a " +
+            "JOIN tb_pasta_closure c ON c.descendente_id = a.pasta_id " +
+            "WHERE c.ancestral_id = :pastaId AND a.blob_hash IS NOT NULL", nativeQuery = true)
+    List<String> findBlobHashesDaSubarvore(@Param("pastaId") Long pastaId);
+
+    // ========================
+    // OPERAÇÕES EM LOTE (tarefas em segundo plano)
+    // ========================
+
+    // Primeiros arquivos da subárvore; a exclusão em lotes sempre pede a "primeira página" de novo
+    @Query(value = "SELECT a.id FROM tb_arquivo a " +
+            "JOIN tb_pasta_closure c ON c.descendente_id = a.pasta_id " +
+            "WHERE c.ancestral_id = :pastaId ORDER BY a.id LIMIT :limite", nativeQuery = true)
+    List<Long> findIdsDaSubarvore(@Param("pastaId") Long pastaId, @Param("limite") int limite);
+
+    @Query(value = "SELECT COUNT(*) FROM tb_arquivo a " +
+            "JOIN tb_pasta_closure c ON c.descendente_id = a.pasta_id " +
+            "WHERE c.ancestral_id = :pastaId", nativeQuery = true)
+    long contarDaSubarvore(@Param("pastaId") Long pastaId);
+
+    /**
+     * Próximo lote de arquivos da subárvore inteira, em ordem de id (lotes cheios mesmo com muitas pastas pequenas).
+     * Resultado: [0]=id, [1]=nome, [2]=caminhoArmazenamento, [3]=pastaId, [4]=tamanho, [5]=hash, [6]=blobHash, [7]=tipoMime
+     */
+    @Query(value = "SELECT a.id, a.nome_arquivo, a.caminho_armazenamento, a.pasta_id, a.tamanho_bytes, " +
+            "a.hash_arquivo, a.blob_hash, a.tipo_mime " +
+            "FROM tb_arquivo a JOIN tb_pasta_closure c ON c.descendente_id = a.pasta_id " +
+            "WHERE c.ancestral_id = :pastaId AND a.id > :aposId ORDER BY a.id LIMIT :limite", nativeQuery = true)
+    List<Object[]> carregarLoteDaSubarvore(@Param("pastaId") Long pastaId, @Param("aposId") long aposId,
+                                           @Param("limite") int limite);
+
+    /**
+     * Impressão digital da subárvore numa consulta só, sem carregar pastas nem arquivos: cada pasta entra pelo
+     * id e caminho relativo, cada arquivo pelo id, nome, data de atualização, tamanho e caminho, combinados
+     * com XOR (independe da ordem). Criar, remover, renomear, mover ou atualizar qualquer item muda o resultado.
+     * Resultado: [0]=qtd pastas, [1]=XOR das pastas, [2]=qtd arquivos, [3]=bytes, [4]=XOR dos arquivos
+     */
+    @Query(value = "WITH RECURSIVE arvore (id, prefixo) AS ( " +
+            "  SELECT id, CAST('' AS CHAR(4000)) FROM tb_pasta WHERE id = :pastaId " +
+            "  UNION ALL " +
+            "  SELECT p.id, CONCAT(a.prefixo, p.nome_pasta, '/') FROM tb_pasta p JOIN arvore a ON p.pasta_pai_id = a.id " +
+            ") " +
+            "SELECT (SELECT COUNT(*) FROM arvore), " +
+            "  (SELECT BIT_XOR(CAST(CONV(LEFT(SHA2(CONCAT(x.id, '|', x.prefixo), 256), 16), 16, 10) AS UNSIGNED)) FROM arvore x), " +
+            "  COUNT(f.id), COALESCE(SUM(f.tamanho_bytes), 0), " +
+            "  BIT_XOR(CAST(CONV(LEFT(SHA2(CONCAT_WS('|', f.id, f.nome_arquivo, f.data_atualizacao, f.tamanho_bytes, " +
+            "    f.caminho_armazenamento), 256), 16), 16, 10) AS UNSIGNED)) " +
+            "FROM arvore a JOIN tb_arquivo f ON f.pasta_id = a.id", nativeQuery = true)
+    List<Object[]> carregarImpressaoDigitalDaSubarvore(@Param("pastaId") Long pastaId);
+
+    /**
+     * Metadados dos arquivos da subárvore para montar um ZIP.
+     * Resultado: [0]=id, [1]=nome, [2]=caminhoArmazenamento, [3]=pastaId, [4]=dataAtualizacao, [5]=tamanho
+     */
+    @Query(value = "SELECT a.id, a.nome_arquivo, a.caminho_armazenamento, a.pasta_id, a.data_atualizacao, a.tamanho_bytes " +
+            "FROM tb_arquivo a JOIN tb_pasta_closure c ON c.descendente_id = a.pasta_id " +
+            "WHERE c.ancestral_id = :pastaId ORDER BY a.id", nativeQuery = true)
+    List<Object[]> carregarEntradasZipDaSubarvore(@Param("pastaId") Long pastaId);
+}
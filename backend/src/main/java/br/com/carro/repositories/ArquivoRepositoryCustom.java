@@ -0,0 +1,45 @@
+package br.com.carro.repositories;
+
+import br.com.carro.entities.DTO.ArquivoDTO;
+import br.com.carro.entities.DTO.ArquivoPublicoDTO;
+import br.com.carro.entities.DTO.PaginaCursorDTO;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Listagens de arquivos por pasta com filtro, ordenação e limite resolvidos no banco,
+ * projetando direto para DTO (sem carregar as entidades).
+ * <p>
+ * {@code ordenarPor} é o nome do atributo da entidade: nomeArquivo, dataUpload,
+ * dataAtualizacao, tamanho ou tipoMime. O id é sempre usado como desempate.
+ * <p>
+ * As entradas de ZIP da subárvore são entregues página a página, também por keyset.
+ */
+public interface ArquivoRepositoryCustom {
+
+    @FunctionalInterface
+    interface ConsumidorEntradaZip {
+        // nome: caminho relativo à pasta do ZIP ("sub/outra/arquivo.txt")
+        void aceitar(String nome, String caminhoArmazenamento) throws IOException;
+    }
+
+    List<ArquivoDTO> listarPorPasta(Long pastaId, String nome, String extensao, String ordenarPor, boolean asc);
+
+    PaginaCursorDTO<ArquivoDTO> listarPorPastaComCursor(Long pastaId, String nome, String extensao,
+                                                        String ordenarPor, boolean asc, String cursor, int tamanho);
+
+    Page<ArquivoPublicoDTO> listarPublicosPorPasta(Long pastaId, String extensao, String ordenarPor, boolean asc,
+                                                   Pageable pageable);
+
+    PaginaCursorDTO<ArquivoPublicoDTO> listarPublicosPorPastaComCursor(Long pastaId, String extensao, String ordenarPor,
+                                                                       boolean asc, String cursor, int tamanho);
+
+    /**
+     * Percorre os arquivos da subárvore em ordem de (caminho da pasta, id), uma página por consulta:
+     * nem a lista inteira fica em memória nem uma conexão fica presa enquanto o consumidor escreve.
+     */
+    void percorrerEntradasZip(Long pastaId, ConsumidorEntradaZip consumidor) throws IOException;
+}
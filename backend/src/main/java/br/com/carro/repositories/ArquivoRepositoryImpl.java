@@ -0,0 +1,294 @@
+package br.com.carro.repositories;
+
+import br.com.carro.entities.Arquivo;
+import br.com.carro.entities.DTO.ArquivoDTO;
+import br.com.carro.entities.DTO.ArquivoPublicoDTO;
+import br.com.carro.entities.DTO.PaginaCursorDTO;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Implementação das listagens de {@link ArquivoRepositoryCustom} com Criteria API.
+ * <p>
+ * A paginação por cursor (keyset) filtra a partir da última linha entregue
+ * ({@code campo > valor OR (campo = valor AND id > ultimoId)}) em vez de usar OFFSET,
+ * então o custo de cada página não cresce com a posição na lista. As consultas se apoiam
+ * nos índices compostos de tb_arquivo (pasta_id, nome_arquivo / data_upload / tamanho_bytes).
+ */
+public class ArquivoRepositoryImpl implements ArquivoRepositoryCustom {
+
+    // Campos ordenáveis e o tipo usado para decodificar o cursor
+    private static final Map<String, Class<?>> CAMPOS_ORDENACAO = Map.of(
+            "nomeArquivo", String.class,
+            "tipoMime", String.class,
+            "tamanho", Long.class,
+            "dataUpload", LocalDateTime.class,
+            "dataAtualizacao", LocalDateTime.class
+    );
+
+    // Limite de linhas por página de cursor; o tamanho vem direto da query string
+    static final int TAMANHO_MAXIMO_PAGINA = 200;
+
+    static final int TAMANHO_PAGINA_ZIP = 1000;
+
+    // O caminho relativo de cada pasta é montado pela própria CTE recursiva; a página começa depois
+    // da última entrada lida (prefixo, id)
+    private static final String PAGINA_ZIP = "WITH RECURSIVE arvore (id, prefixo) AS ( " +
+            "  SELECT id, CAST('' AS CHAR(4000)) FROM tb_pasta WHERE id = :pastaId " +
+            "  UNION ALL " +
+            "  SELECT p.id, CONCAT(a.prefixo, p.nome_pasta, '/') FROM tb_pasta p JOIN arvore a ON p.pasta_pai_id = a.id " +
+            ") " +
+            "SELECT a.prefixo, f.id, f.nome_arquivo, f.caminho_armazenamento " +
+            "FROM arvore a JOIN tb_arquivo f ON f.pasta_id = a.id " +
+            "WHERE a.prefixo > :aposPrefixo OR (a.prefixo = :aposPrefixo AND f.id > :aposId) " +
+            "ORDER BY a.prefixo, f.id LIMIT :limite";
+
+    private record Cursor(Long id, Object valor) {}
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<ArquivoDTO> listarPorPasta(Long pastaId, String nome, String extensao, String ordenarPor, boolean asc) {
+        return consultar(pastaId, nome, extensao, ordenarPor, asc, true, null, null, null).stream()
+                .map(ArquivoRepositoryImpl::toArquivoDTO)
+                .toList();
+    }
+
+    @Override
+    public PaginaCursorDTO<ArquivoDTO> listarPorPastaComCursor(Long pastaId, String nome, String extensao,
+                                                               String ordenarPor, boolean asc, String cursor, int tamanho) {
+        validarTamanho(tamanho);
+        List<Tuple> linhas = consultar(pastaId, nome, extensao, ordenarPor, asc, true,
+                decodificarCursor(cursor, ordenarPor), null, tamanho + 1);
+        return montarPagina(linhas, ordenarPor, tamanho, ArquivoRepositoryImpl::toArquivoDTO);
+    }
+
+    @Override
+    public Page<ArquivoPublicoDTO> listarPublicosPorPasta(Long pastaId, String extensao, String ordenarPor, boolean asc,
+                                                          Pageable pageable) {
+        List<ArquivoPublicoDTO> conteudo = consultar(pastaId, null, extensao, ordenarPor, asc, false,
+                null, (int) pageable.getOffset(), pageable.getPageSize()).stream()
+                .map(ArquivoRepositoryImpl::toArquivoPublicoDTO)
+                .toList();
+        return new PageImpl<>(conteudo, pageable, contar(pastaId, null, extensao));
+    }
+
+    @Override
+    public PaginaCursorDTO<ArquivoPublicoDTO> listarPublicosPorPastaComCursor(Long pastaId, String extensao, String ordenarPor,
+                                                                              boolean asc, String cursor, int tamanho) {
+        validarTamanho(tamanho);
+        List<Tuple> linhas = consultar(pastaId, null, extensao, ordenarPor, asc, false,
+                decodificarCursor(cursor, ordenarPor), null, tamanho + 1);
+        return montarPagina(linhas, ordenarPor, tamanho, ArquivoRepositoryImpl::toArquivoPublicoDTO);
+    }
+
+    // ========================
+    // CONSULTA
+    // ========================
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void percorrerEntradasZip(Long pastaId, ConsumidorEntradaZip consumidor) throws IOException {
+        String aposPrefixo = "";
+        long aposId = 0;
+        List<Object[]> pagina;
+        do {
+            pagina = entityManager.createNativeQuery(PAGINA_ZIP)
+                    .setParameter("pastaId", pastaId)
+                    .setParameter("aposPrefixo", aposPrefixo)
+                    .setParameter("aposId", aposId)
+                    .setParameter("limite", TAMANHO_PAGINA_ZIP)
+                    .getResultList();
+            for (Object[] linha : pagina) {
+                aposPrefixo = (String) linha[0];
+                aposId = ((Number) linha[1]).longValue();
+                consumidor.aceitar(aposPrefixo + linha[2], (String) linha[3]);
+            }
+        } while (pagina.size() == TAMANHO_PAGINA_ZIP);
+    }
+
+    private List<Tuple> consultar(Long pastaId, String nome, String extensao, String ordenarPor, boolean asc,
+                                  boolean comCriador, Cursor apos, Integer offset, Integer limite) {
+        validarCampo(ordenarPor);
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Arquivo> arquivo = query.from(Arquivo.class);
+
+        List<Selection<?>> colunas = new ArrayList<>(List.of(
+                arquivo.get("id").alias("id"),
+                arquivo.get("nomeArquivo").alias("nomeArquivo"),
+                arquivo.get("tipoMime").alias("tipoMime"),
+                arquivo.get("tamanho").alias("tamanho"),
+                arquivo.get("dataUpload").alias("dataUpload"),
+                arquivo.get("dataAtualizacao").alias("dataAtualizacao")
+        ));
+        if (comCriador) {
+            colunas.add(arquivo.join("criadoPor", JoinType.LEFT).get("username").alias("criadoPor"));
+        }
+        query.multiselect(colunas);
+
+        List<Predicate> filtros = filtros(cb, arquivo, pastaId, nome, extensao);
+        if (apos != null) {
+            filtros.add(depoisDe(cb, arquivo, ordenarPor, asc, apos));
+        }
+        query.where(filtros.toArray(Predicate[]::new));
+
+        Path<?> campo = arquivo.get(ordenarPor);
+        Path<?> id = arquivo.get("id");
+        query.orderBy(asc
+                ? List.of(cb.asc(campo), cb.asc(id))
+                : List.of(cb.desc(campo), cb.desc(id)));
+
+        TypedQuery<Tuple> typed = entityManager.createQuery(query);
+        if (offset != null) typed.setFirstResult(offset);
+        if (limite != null) typed.setMaxResults(limite);
+        return typed.getResultList();
+    }
+
+    private long contar(Long pastaId, String nome, String extensao) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Arquivo> arquivo = query.from(Arquivo.class);
+        query.select(cb.count(arquivo))
+                .where(filtros(cb, arquivo, pastaId, nome, extensao).toArray(Predicate[]::new));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    private List<Predicate> filtros(CriteriaBuilder cb, Root<Arquivo> arquivo, Long pastaId, String nome, String extensao) {
+        List<Predicate> filtros = new ArrayList<>();
+        filtros.add(cb.equal(arquivo.get("pasta").get("id"), pastaId));
+        Expression<String> nomeLower = cb.lower(arquivo.get("nomeArquivo"));
+        if (nome != null && !nome.isBlank()) {
+            filtros.add(cb.like(nomeLower, "%" + escaparLike(nome.toLowerCase()) + "%", '\\'));
+        }
+        if (extensao != null && !extensao.isBlank()) {
+            filtros.add(cb.like(nomeLower, "%." + escaparLike(extensao.toLowerCase()), '\\'));
+        }
+        return filtros;
+    }
+
+    /**
+     * Predicado de seek: linhas posteriores ao cursor na ordem (campo, id).
+     * NULL vem primeiro na ordem ascendente e por último na descendente (comportamento do MySQL).
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Predicate depoisDe(CriteriaBuilder cb, Root<Arquivo> arquivo, String ordenarPor, boolean asc, Cursor cursor) {
+        Path<Comparable> campo = arquivo.get(ordenarPor);
+        Path<Long> id = arquivo.get("id");
+        Comparable valor = (Comparable) cursor.valor();
+
+        if (asc) {
+            if (valor == null) {
+                return cb.or(cb.and(cb.isNull(campo), cb.greaterThan(id, cursor.id())), cb.isNotNull(campo));
+            }
+            return cb.or(cb.greaterThan(campo, valor), cb.and(cb.equal(campo, valor), cb.greaterThan(id, cursor.id())));
+        }
+        if (valor == null) {
+            return cb.and(cb.isNull(campo), cb.lessThan(id, cursor.id()));
+        }
+        return cb.or(cb.lessThan(campo, valor), cb.and(cb.equal(campo, valor), cb.lessThan(id, cursor.id())), cb.isNull(campo));
+    }
+
+    private <T> PaginaCursorDTO<T> montarPagina(List<Tuple> linhas, String ordenarPor, int tamanho,
+                                                Function<Tuple, T> mapper) {
+        boolean temMais = linhas.size() > tamanho;
+        List<Tuple> pagina = temMais ? linhas.subList(0, tamanho) : linhas;
+        String proximo = null;
+        if (temMais) {
+            Tuple ultima = pagina.get(pagina.size() - 1);
+            proximo = codificarCursor(ordenarPor, ultima.get("id", Long.class), ultima.get(ordenarPor));
+        }
+        return new PaginaCursorDTO<>(pagina.stream().map(mapper).toList(), proximo, temMais);
+    }
+
+    // ========================
+    // CURSOR
+    // Formato (base64 url-safe): campo|id|valor, com valor vazio para NULL e "=" como prefixo quando presente.
+    // ========================
+
+    private static String codificarCursor(String campo, Long id, Object valor) {
+        String texto = campo + "|" + id + "|" + (valor == null ? "" : "=" + valor);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(texto.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void validarTamanho(int tamanho) {
+        if (tamanho < 1 || tamanho > TAMANHO_MAXIMO_PAGINA) {
+            throw new IllegalArgumentException("O tamanho da página deve estar entre 1 e " + TAMANHO_MAXIMO_PAGINA + ".");
+        }
+    }
+
+    private static Cursor decodificarCursor(String cursor, String ordenarPor) {
+        if (cursor == null || cursor.isBlank()) return null;
+        try {
+            String texto = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] partes = texto.split("\\|", 3);
+            if (partes.length != 3 || !partes[0].equals(ordenarPor)) {
+                throw new IllegalArgumentException("Cursor não corresponde à ordenação solicitada.");
+            }
+            Long id = Long.valueOf(partes[1]);
+            if (partes[2].isEmpty()) return new Cursor(id, null);
+
+            String valor = partes[2].substring(1);
+            Class<?> tipo = CAMPOS_ORDENACAO.get(ordenarPor);
+            if (tipo == Long.class) return new Cursor(id, Long.valueOf(valor));
+            if (tipo == LocalDateTime.class) return new Cursor(id, LocalDateTime.parse(valor));
+            return new Cursor(id, valor);
+        } catch (IllegalArgumentException | java.time.format.DateTimeParseException e) {
+            throw new IllegalArgumentException("Cursor de paginação inválido.", e);
+        }
+    }
+
+    private static void validarCampo(String ordenarPor) {
+        if (!CAMPOS_ORDENACAO.containsKey(ordenarPor)) {
+            throw new IllegalArgumentException("Campo de ordenação inválido: " + ordenarPor);
+        }
+    }
+
+    private static String escaparLike(String valor) {
+        return valor.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    // ========================
+    // PROJEÇÕES
+    // ========================
+
+    private static ArquivoDTO toArquivoDTO(Tuple t) {
+        String criadoPor = t.get("criadoPor", String.class);
+        return new ArquivoDTO(
+                t.get("id", Long.class),
+                t.get("nomeArquivo", String.class),
+                t.get("tipoMime", String.class),
+                t.get("tamanho", Long.class),
+                t.get("dataUpload", LocalDateTime.class),
+                t.get("dataAtualizacao", LocalDateTime.class),
+                criadoPor != null ? criadoPor : "Sistema"
+        );
+    }
+
+    private static ArquivoPublicoDTO toArquivoPublicoDTO(Tuple t) {
+        return new ArquivoPublicoDTO(
+                t.get("id", Long.class),
+                t.get("nomeArquivo", String.class),
+                t.get("tipoMime", String.class),
+                t.get("tamanho", Long.class),
+                t.get("dataUpload", LocalDateTime.class),
+                t.get("dataAtualizacao", LocalDateTime.class)
+        );
+    }
+}
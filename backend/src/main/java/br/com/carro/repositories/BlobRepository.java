@@ -0,0 +1,58 @@
+package br.com.carro.repositories;
+
+import br.com.carro.entities.Blob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface BlobRepository extends JpaRepository<Blob, String> {
+
+    // Contadores de referência só mudam junto com as linhas de tb_arquivo que os justificam: exigem a
+    // transação do chamador (MANDATORY) em vez de abrir uma própria e confirmar antes do resto da operação.
+
+    // Cria o blob com uma referência ou soma uma referência ao existente
+    @Modifying
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query(value = "INSERT INTO tb_blob (hash, tamanho_bytes, referencias, data_criacao) " +
+            "VALUES (:hash, :tamanho, 1, NOW(6)) " +
+            "ON DUPLICATE KEY UPDATE referencias = referencias + 1", nativeQuery = true)
+    int inserirOuReferenciar(@Param("hash") String hash, @Param("tamanho") long tamanho);
+
+    @Modifying
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query("UPDATE Blob b SET b.referencias = b.referencias + :quantidade WHERE b.hash = :hash")
+    int somarReferencias(@Param("hash") String hash, @Param("quantidade") int quantidade);
+
+    @Query("SELECT b.hash FROM Blob b WHERE b.referencias <= 0 ORDER BY b.hash")
+    List<String> findHashesSemReferencia(Pageable pageable);
+
+    // Trava a linha só se ninguém estiver usando: com NOWAIT, uma referência ainda não confirmada
+    // (linha travada por outra transação) faz a consulta falhar na hora em vez de esperar
+    @Query(value = "SELECT hash FROM tb_blob WHERE hash = :hash AND referencias <= 0 FOR UPDATE NOWAIT",
+            nativeQuery = true)
+    Optional<String> travarSemReferencia(@Param("hash") String hash);
+
+    @Modifying
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query("DELETE FROM Blob b WHERE b.hash = :hash AND b.referencias <= 0")
+    int excluirSeSemReferencia(@Param("hash") String hash);
+
+    // Trava a linha do blob ou, se ela não existe, o intervalo onde entraria (next-key lock): um registro
+    // concorrente do mesmo hash espera esta transação terminar
+    @Query(value = "SELECT hash FROM tb_blob WHERE hash = :hash FOR UPDATE", nativeQuery = true)
+    Optional<String> travar(@Param("hash") String hash);
+
+    // Corrige o contador a partir de tb_arquivo (usado quando a coleta encontra divergência)
+    @Modifying
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query(value = "UPDATE tb_blob b SET b.referencias = " +
+            "(SELECT COUNT(*) FROM tb_arquivo a WHERE a.blob_hash = b.hash) WHERE b.hash = :hash", nativeQuery = true)
+    int recontarReferencias(@Param("hash") String hash);
+}
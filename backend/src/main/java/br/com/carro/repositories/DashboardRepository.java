@@ -2,9 +2,11 @@ package br.com.carro.repositories;
 
 import br.com.carro.entities.Arquivo;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -16,9 +18,9 @@ public interface DashboardRepository extends JpaRepository<Arquivo, Long> {
     // ========================
 
     /**
-     * Conta o total de arquivos armazenados no sistema.
+     * Conta o total de arquivos armazenados no sistema (soma dos totais agregados das pastas raiz).
      */
-    @Query("SELECT COUNT(a) FROM Arquivo a")
+    @Query("SELECT COALESCE(SUM(p.quantidadeArquivosTotal), 0) FROM Pasta p WHERE p.pastaPai IS NULL")
     long contarTotalArquivos();
 
     /**
@@ -29,79 +31,157 @@ public interface DashboardRepository extends JpaRepository<Arquivo, Long> {
     long contarTotalPastas();
 
     /**
-     * Soma o tamanho de todos os arquivos em bytes.
+     * Soma o tamanho de todos os arquivos em bytes (totais agregados das pastas raiz).
      */
-    @Query("SELECT COALESCE(SUM(a.tamanho), 0) FROM Arquivo a")
+    @Query("SELECT COALESCE(SUM(p.bytesTotal), 0) FROM Pasta p WHERE p.pastaPai IS NULL")
     long somarEspacoTotalBytes();
 
     // ========================
-    // SÉRIE TEMPORAL
+    // SÉRIE TEMPORAL (tb_metricas_diarias)
     // ========================
 
     /**
-     * Retorna a quantidade de uploads agrupados por data (últimos N dias).
-     * Útil para gerar gráfico de evolução de uploads.
+     * Arquivos incluídos por dia a partir de {@code dataInicial}: uma linha por dia com movimento.
+     * Resultado: lista de Object[] -> [0]=dia, [1]=quantidade
      */
-    @Query("SELECT a.dataUpload, COUNT(a) " +
-            "FROM Arquivo a " +
-            "WHERE a.dataUpload >= :dataInicial " +
-            "GROUP BY a.dataUpload " +
-            "ORDER BY a.dataUpload ASC")
-    List<Object[]> contarUploadsPorDia(@Param("dataInicial") LocalDateTime dataInicial);
+    @Query(value = "SELECT dia, arquivos_incluidos FROM tb_metricas_diarias " +
+            "WHERE dia >= :dataInicial ORDER BY dia", nativeQuery = true)
+    List<Object[]> contarUploadsPorDia(@Param("dataInicial") LocalDate dataInicial);
 
     // ========================
-    // RANKINGS DE USUÁRIOS
+    // RANKINGS DE USUÁRIOS (tb_metricas_usuario)
     // ========================
 
     /**
      * Retorna os top N usuários que mais enviaram arquivos.
      * Resultado: lista de Object[] -> [0]=nomeUsuario, [1]=quantidadeArquivos
      */
-    @Query("SELECT a.criadoPor.username, COUNT(a) " +
-            "FROM Arquivo a " +
-            "GROUP BY a.criadoPor.username " +
-            "ORDER BY COUNT(a) DESC")
-    List<Object[]> topUsuariosPorUpload();
+    @Query(value = "SELECT u.username, m.qtd_arquivos FROM tb_metricas_usuario m " +
+            "JOIN tb_usuarios u ON u.id = m.usuario_id " +
+            "WHERE m.qtd_arquivos > 0 ORDER BY m.qtd_arquivos DESC LIMIT :limite", nativeQuery = true)
+    List<Object[]> topUsuariosPorUpload(@Param("limite") int limite);
 
     /**
      * Retorna os top N usuários que mais consumiram espaço (em bytes).
      * Resultado: lista de Object[] -> [0]=nomeUsuario, [1]=totalBytes
      */
-    @Query("SELECT a.criadoPor.username, COALESCE(SUM(a.tamanho), 0) " +
-            "FROM Arquivo a " +
-            "GROUP BY a.criadoPor.username " +
-            "ORDER BY SUM(a.tamanho) DESC")
-    List<Object[]> topUsuariosPorEspaco();
+    @Query(value = "SELECT u.username, m.bytes FROM tb_metricas_usuario m " +
+            "JOIN tb_usuarios u ON u.id = m.usuario_id " +
+            "WHERE m.qtd_arquivos > 0 ORDER BY m.bytes DESC LIMIT :limite", nativeQuery = true)
+    List<Object[]> topUsuariosPorEspaco(@Param("limite") int limite);
 
     // ========================
-    // DISTRIBUIÇÃO POR TIPO
+    // DISTRIBUIÇÃO POR TIPO (tb_metricas_tipo)
     // ========================
 
     /**
-     * Retorna a quantidade de arquivos agrupados por tipo/extensão.
-     * Resultado: lista de Object[] -> [0]=extensao, [1]=quantidade
+     * Retorna a quantidade de arquivos agrupados por tipo MIME ('' = desconhecido).
+     * Resultado: lista de Object[] -> [0]=tipoMime, [1]=quantidade
      */
-    @Query("SELECT a.tipoMime, COUNT(a) " +
-            "FROM Arquivo a " +
-            "GROUP BY a.tipoMime " +
-            "ORDER BY COUNT(a) DESC")
+    @Query(value = "SELECT tipo_mime, qtd_arquivos FROM tb_metricas_tipo " +
+            "WHERE qtd_arquivos > 0 ORDER BY qtd_arquivos DESC", nativeQuery = true)
     List<Object[]> distribuicaoPorTipo();
 
     /**
-     * Retorna o consumo de espaço agrupado por tipo/extensão.
-     * Resultado: lista de Object[] -> [0]=extensao, [1]=totalBytes
+     * Retorna o consumo de espaço agrupado por tipo MIME ('' = desconhecido).
+     * Resultado: lista de Object[] -> [0]=tipoMime, [1]=totalBytes
      */
-    @Query("SELECT a.tipoMime, COALESCE(SUM(a.tamanho), 0) " +
-            "FROM Arquivo a " +
-            "GROUP BY a.tipoMime " +
-            "ORDER BY SUM(a.tamanho) DESC")
-    List<Object[]> topTiposPorEspaco();
-
-    // Usuários que logaram hoje
-    @Query(value = "SELECT COUNT(DISTINCT username) FROM tb_login_audit WHERE DATE(data_login) = CURRENT_DATE", nativeQuery = true)
-    long contarUsuariosLogaramHoje();
-
-    // Usuários ativos agora (últimos 5 minutos, por exemplo)
-    @Query(value = "SELECT COUNT(DISTINCT username) FROM tb_login_audit WHERE data_login >= (NOW() - INTERVAL 5 MINUTE)", nativeQuery = true)
-    long contarUsuariosAtivosAgora();
+    @Query(value = "SELECT tipo_mime, bytes FROM tb_metricas_tipo " +
+            "WHERE qtd_arquivos > 0 ORDER BY bytes DESC LIMIT :limite", nativeQuery = true)
+    List<Object[]> topTiposPorEspaco(@Param("limite") int limite);
+
+    // ========================
+    // SÉRIES TEMPORAIS (SerieTemporalService)
+    // Filtro pela coluna crua (índice de data) e agrupamento por período no banco: uma linha por período.
+    // O período é calculado no fuso de destino, deslocando os horários de :deFuso para :paraFuso ('+HH:MM').
+    // ========================
+
+    String PERIODO =
+            "CASE :intervalo WHEN 'SEMANA' THEN DATE_SUB(DATE(t), INTERVAL WEEKDAY(t) DAY) " +
+            "WHEN 'MES' THEN DATE_SUB(DATE(t), INTERVAL DAYOFMONTH(t) - 1 DAY) " +
+            "ELSE DATE(t) END";
+
+    // Resultado: [0]=período (data de início), [1]=quantidade
+    @Query(value = "SELECT " + PERIODO + " AS periodo, COUNT(*) FROM (" +
+            "  SELECT CONVERT_TZ(data_upload, :deFuso, :paraFuso) AS t FROM tb_arquivo " +
+            "  WHERE data_upload >= :inicio AND data_upload < :fim) x " +
+            "GROUP BY periodo ORDER BY periodo", nativeQuery = true)
+    List<Object[]> serieUploads(@Param("intervalo") String intervalo,
+                                @Param("deFuso") String deFuso,
+                                @Param("paraFuso") String paraFuso,
+                                @Param("inicio") LocalDateTime inicio,
+                                @Param("fim") LocalDateTime fim);
+
+    @Query(value = "SELECT " + PERIODO + " AS periodo, COUNT(*) FROM (" +
+            "  SELECT CONVERT_TZ(data_login, :deFuso, :paraFuso) AS t FROM tb_login_audit " +
+            "  WHERE data_login >= :inicio AND data_login < :fim) x " +
+            "GROUP BY periodo ORDER BY periodo", nativeQuery = true)
+    List<Object[]> serieLogins(@Param("intervalo") String intervalo,
+                               @Param("deFuso") String deFuso,
+                               @Param("paraFuso") String paraFuso,
+                               @Param("inicio") LocalDateTime inicio,
+                               @Param("fim") LocalDateTime fim);
+
+    // Fuso com mudança de horário no período: contagem por hora (no fuso de armazenamento),
+    // reagrupada em Java com as regras completas do fuso. Resultado: [0]='yyyy-MM-dd HH:00:00', [1]=quantidade
+    @Query(value = "SELECT DATE_FORMAT(data_upload, '%Y-%m-%d %H:00:00') AS hora, COUNT(*) FROM tb_arquivo " +
+            "WHERE data_upload >= :inicio AND data_upload < :fim GROUP BY hora", nativeQuery = true)
+    List<Object[]> uploadsPorHora(@Param("inicio") LocalDateTime inicio, @Param("fim") LocalDateTime fim);
+
+    @Query(value = "SELECT DATE_FORMAT(data_login, '%Y-%m-%d %H:00:00') AS hora, COUNT(*) FROM tb_login_audit " +
+            "WHERE data_login >= :inicio AND data_login < :fim GROUP BY hora", nativeQuery = true)
+    List<Object[]> loginsPorHora(@Param("inicio") LocalDateTime inicio, @Param("fim") LocalDateTime fim);
+
+    // ========================
+    // ATUALIZAÇÃO INCREMENTAL (MetricasService)
+    // ========================
+
+    @Modifying
+    @Query(value = "INSERT INTO tb_metricas_diarias (dia, arquivos_incluidos, bytes_incluidos, arquivos_excluidos, bytes_excluidos) " +
+            "VALUES (:dia, :incluidos, :bytesIncluidos, :excluidos, :bytesExcluidos) " +
+            "ON DUPLICATE KEY UPDATE arquivos_incluidos = arquivos_incluidos + VALUES(arquivos_incluidos), " +
+            "bytes_incluidos = bytes_incluidos + VALUES(bytes_incluidos), " +
+            "arquivos_excluidos = arquivos_excluidos + VALUES(arquivos_excluidos), " +
+            "bytes_excluidos = bytes_excluidos + VALUES(bytes_excluidos)", nativeQuery = true)
+    void somarMetricaDiaria(@Param("dia") LocalDate dia,
+                            @Param("incluidos") long incluidos,
+                            @Param("bytesIncluidos") long bytesIncluidos,
+                            @Param("excluidos") long excluidos,
+                            @Param("bytesExcluidos") long bytesExcluidos);
+
+    @Modifying
+    @Query(value = "INSERT INTO tb_metricas_usuario (usuario_id, qtd_arquivos, bytes) VALUES (:usuarioId, :arquivos, :bytes) " +
+            "ON DUPLICATE KEY UPDATE qtd_arquivos = qtd_arquivos + VALUES(qtd_arquivos), bytes = bytes + VALUES(bytes)",
+            nativeQuery = true)
+    void somarMetricaUsuario(@Param("usuarioId") Long usuarioId, @Param("arquivos") long arquivos, @Param("bytes") long bytes);
+
+    @Modifying
+    @Query(value = "INSERT INTO tb_metricas_tipo (tipo_mime, qtd_arquivos, bytes) VALUES (:tipoMime, :arquivos, :bytes) " +
+            "ON DUPLICATE KEY UPDATE qtd_arquivos = qtd_arquivos + VALUES(qtd_arquivos), bytes = bytes + VALUES(bytes)",
+            nativeQuery = true)
+    void somarMetricaTipo(@Param("tipoMime") String tipoMime, @Param("arquivos") long arquivos, @Param("bytes") long bytes);
+
+    // ========================
+    // COMPACTAÇÃO (recalcula usuário/tipo a partir de tb_arquivo; linhas zeradas somem)
+    // ========================
+
+    @Modifying
+    @Query(value = "DELETE FROM tb_metricas_usuario", nativeQuery = true)
+    void limparMetricasUsuario();
+
+    @Modifying
+    @Query(value = "INSERT INTO tb_metricas_usuario (usuario_id, qtd_arquivos, bytes) " +
+            "SELECT criado_por_id, COUNT(*), COALESCE(SUM(tamanho_bytes), 0) FROM tb_arquivo " +
+            "WHERE criado_por_id IS NOT NULL GROUP BY criado_por_id", nativeQuery = true)
+    int recalcularMetricasUsuario();
+
+    @Modifying
+    @Query(value = "DELETE FROM tb_metricas_tipo", nativeQuery = true)
+    void limparMetricasTipo();
+
+    @Modifying
+    @Query(value = "INSERT INTO tb_metricas_tipo (tipo_mime, qtd_arquivos, bytes) " +
+            "SELECT COALESCE(tipo_mime, ''), COUNT(*), COALESCE(SUM(tamanho_bytes), 0) FROM tb_arquivo " +
+            "GROUP BY COALESCE(tipo_mime, '')", nativeQuery = true)
+    int recalcularMetricasTipo();
 }
@@ -0,0 +1,54 @@
+package br.com.carro.repositories;
+
+import br.com.carro.entities.Job.Job;
+import br.com.carro.entities.Job.StatusJob;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+public interface JobRepository extends JpaRepository<Job, String> {
+
+    Page<Job> findByCriadoPorIdOrderByDataCriacaoDesc(Long usuarioId, Pageable pageable);
+
+    // Atualizações pontuais em transação própria: o worker não segura a linha entre um lote e outro
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Job j SET j.status = :status, j.dataInicio = :agora, j.dataAtualizacao = :agora WHERE j.id = :id")
+    int marcarInicio(@Param("id") String id, @Param("status") StatusJob status, @Param("agora") LocalDateTime agora);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Job j SET j.totalItens = :total, j.itensProcessados = :processados, j.dataAtualizacao = :agora " +
+            "WHERE j.id = :id")
+    int atualizarProgresso(@Param("id") String id, @Param("total") long total,
+                           @Param("processados") long processados, @Param("agora") LocalDateTime agora);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Job j SET j.status = :status, j.totalItens = :total, j.itensProcessados = :processados, " +
+            "j.resultado = :resultado, j.erro = :erro, j.dataFim = :agora, j.dataAtualizacao = :agora WHERE j.id = :id")
+    int finalizar(@Param("id") String id, @Param("status") StatusJob status, @Param("total") long total,
+                  @Param("processados") long processados, @Param("resultado") String resultado,
+                  @Param("erro") String erro, @Param("agora") LocalDateTime agora);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Job j SET j.cancelamentoSolicitado = true, j.dataAtualizacao = :agora WHERE j.id = :id")
+    int solicitarCancelamento(@Param("id") String id, @Param("agora") LocalDateTime agora);
+
+    // Tarefas que estavam na fila ou rodando quando a aplicação parou
+    @Modifying
+    @Transactional
+    @Query("UPDATE Job j SET j.status = br.com.carro.entities.Job.StatusJob.FALHOU, j.erro = :erro, " +
+            "j.dataFim = :agora, j.dataAtualizacao = :agora WHERE j.status IN :status")
+    int marcarInterrompidos(@Param("status") Collection<StatusJob> status, @Param("erro") String erro,
+                            @Param("agora") LocalDateTime agora);
+}
@@ -2,17 +2,42 @@ package br.com.carro.repositories;
 
 import br.com.carro.entities.LoginAudit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.List;
 
 public interface LoginAuditRepository extends JpaRepository<LoginAudit, Long> {
 
-    // Quantos usuários logaram hoje
-    @Query("SELECT COUNT(l) FROM LoginAudit l WHERE DATE(l.dataLogin) = CURRENT_DATE")
+    // Quantos usuários logaram hoje (faixa a partir da meia-noite, sem função sobre a coluna)
+    @Query("SELECT COUNT(l) FROM LoginAudit l WHERE l.dataLogin >= CURRENT_DATE")
     long countLoginsHoje();
 
     // Quantos usuários logaram desde um instante
     long countByDataLoginAfter(LocalDateTime data);
-}
\ No newline at end of file
+
+    // Usuários distintos que logaram desde um instante (carga inicial do SessionTracker)
+    @Query("SELECT DISTINCT l.username FROM LoginAudit l WHERE l.dataLogin >= :inicio")
+    List<String> findUsernamesDesde(@Param("inicio") LocalDateTime inicio);
+
+    // ========================
+    // RESUMO DIÁRIO (LoginAuditRetencaoService)
+    // ========================
+
+    // yyyy-MM-dd ou null; texto para não depender do tipo Java que o driver devolve para DATE
+    @Query(value = "SELECT DATE_FORMAT(MAX(dia), '%Y-%m-%d') FROM tb_login_resumo_diario", nativeQuery = true)
+    String ultimoDiaResumido();
+
+    /**
+     * (Re)calcula o resumo dos dias em [inicio, fim). Idempotente: reprocessar um dia substitui a linha.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO tb_login_resumo_diario (dia, usuarios_distintos, logins) " +
+            "SELECT DATE(data_login), COUNT(DISTINCT username), COUNT(*) FROM tb_login_audit " +
+            "WHERE data_login >= :inicio AND data_login < :fim GROUP BY DATE(data_login) " +
+            "ON DUPLICATE KEY UPDATE usuarios_distintos = VALUES(usuarios_distintos), logins = VALUES(logins)",
+            nativeQuery = true)
+    int resumirDias(@Param("inicio") LocalDateTime inicio, @Param("fim") LocalDateTime fim);
+}
@@ -6,9 +6,13 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -52,4 +56,251 @@ public interface PastaRepository extends JpaRepository<Pasta, Long> {
     Page<Pasta> findAllBy(Pageable pageable);
 
     List<Pasta> findByPastaPaiIsNullAndUsuariosComPermissaoContains(Usuario usuarioLogado);
-}
\ No newline at end of file
+
+    @Query("SELECT p.id FROM Pasta p WHERE p.pastaPai IS NULL")
+    List<Long> findIdsPastasRaiz();
+
+    /**
+     * Subpastas diretas de {@code paiId} (raízes, se nulo) com seus totais, para expandir a árvore
+     * um nível por vez. Paginação por cursor em (nome, id); {@code usuarioId} restringe às pastas com
+     * concessão explícita do usuário (usado nas raízes, que não herdam de ninguém).
+     * Resultado: [0]=id, [1]=nome, [2]=dataCriacao, [3]=dataAtualizacao, [4]=usernameCriador,
+     * [5]=qtdSubpastas, [6]=qtdArquivos, [7]=tamanhoTotal (bytes da subárvore, agregado em tb_pasta)
+     */
+    @Query(value = "SELECT p.id, p.nome_pasta, p.data_criacao, p.data_atualizacao, u.username, " +
+            "  (SELECT COUNT(*) FROM tb_pasta f WHERE f.pasta_pai_id = p.id), " +
+            "  p.qtd_arquivos_diretos, p.bytes_total " +
+            "FROM tb_pasta p LEFT JOIN tb_usuarios u ON u.id = p.criado_por_id " +
+            "WHERE p.pasta_pai_id <=> :paiId " +
+            "AND (:usuarioId IS NULL OR EXISTS (SELECT 1 FROM tb_permissao_pasta pp " +
+            "     WHERE pp.pasta_id = p.id AND pp.usuario_id = :usuarioId)) " +
+            "AND (:aposNome IS NULL OR p.nome_pasta > :aposNome OR (p.nome_pasta = :aposNome AND p.id > :aposId)) " +
+            "ORDER BY p.nome_pasta, p.id LIMIT :limite", nativeQuery = true)
+    List<Object[]> listarFilhasComTotais(@Param("paiId") Long paiId,
+                                         @Param("usuarioId") Long usuarioId,
+                                         @Param("aposNome") String aposNome,
+                                         @Param("aposId") Long aposId,
+                                         @Param("limite") int limite);
+
+    // ========================
+    // SUBÁRVORE (CTE recursiva - MySQL 8+)
+    // Cada consulta percorre a subárvore inteira de uma vez, independente da profundidade.
+    // ========================
+
+    /**
+     * Pastas da subárvore das raízes informadas (inclusive as próprias raízes).
+     * Resultado: [0]=id, [1]=nome, [2]=caminho, [3]=dataCriacao, [4]=dataAtualizacao, [5]=pastaPaiId, [6]=usernameCriador,
+     * [7]=bytesTotal (agregado da subárvore), [8]=herdaPermissoes
+     */
+    @Query(value = "WITH RECURSIVE arvore (id) AS ( " +
+            "  SELECT id FROM tb_pasta WHERE id IN (:raizIds) " +
+            "  UNION ALL " +
+            "  SELECT p.id FROM tb_pasta p JOIN arvore a ON p.pasta_pai_id = a.id " +
+            ") " +
+            "SELECT p.id, p.nome_pasta, p.caminho_completo, p.data_criacao, p.data_atualizacao, p.pasta_pai_id, u.username, p.bytes_total, " +
+            "  p.herda_permissoes " +
+            "FROM arvore a JOIN tb_pasta p ON p.id = a.id " +
+            "LEFT JOIN tb_usuarios u ON u.id = p.criado_por_id", nativeQuery = true)
+    List<Object[]> carregarPastasDaSubarvore(@Param("raizIds") Collection<Long> raizIds);
+
+    /**
+     * Arquivos de todas as pastas da subárvore.
+     * Resultado: [0]=id, [1]=nome, [2]=tipoMime, [3]=tamanho, [4]=dataUpload, [5]=dataAtualizacao, [6]=pastaId, [7]=usernameCriador
+     */
+    @Query(value = "WITH RECURSIVE arvore (id) AS ( " +
+            "  SELECT id FROM tb_pasta WHERE id IN (:raizIds) " +
+            "  UNION ALL " +
+            "  SELECT p.id FROM tb_pasta p JOIN arvore a ON p.pasta_pai_id = a.id " +
+            ") " +
+            "SELECT f.id, f.nome_arquivo, f.tipo_mime, f.tamanho_bytes, f.data_upload, f.data_atualizacao, f.pasta_id, u.username " +
+            "FROM arvore a JOIN tb_arquivo f ON f.pasta_id = a.id " +
+            "LEFT JOIN tb_usuarios u ON u.id = f.criado_por_id", nativeQuery = true)
+    List<Object[]> carregarArquivosDaSubarvore(@Param("raizIds") Collection<Long> raizIds);
+
+    /**
+     * Permissões (tb_permissao_pasta) de todas as pastas da subárvore.
+     * Resultado: [0]=pastaId, [1]=usuarioId
+     */
+    @Query(value = "WITH RECURSIVE arvore (id) AS ( " +
+            "  SELECT id FROM tb_pasta WHERE id IN (:raizIds) " +
+            "  UNION ALL " +
+            "  SELECT p.id FROM tb_pasta p JOIN arvore a ON p.pasta_pai_id = a.id " +
+            ") " +
+            "SELECT pp.pasta_id, pp.usuario_id " +
+            "FROM arvore a JOIN tb_permissao_pasta pp ON pp.pasta_id = a.id", nativeQuery = true)
+    List<Object[]> carregarPermissoesDaSubarvore(@Param("raizIds") Collection<Long> raizIds);
+
+    // ========================
+    // PERMISSÕES (tb_permissao_pasta) - base do índice do PastaAclService
+    // ========================
+
+    // Resultado: [0]=usuarioId, [1]=pastaId
+    @Query(value = "SELECT usuario_id, pasta_id FROM tb_permissao_pasta", nativeQuery = true)
+    List<Object[]> carregarTodasPermissoes();
+
+    // Resultado: [0]=pastaId, [1]=usuarioId
+    @Query(value = "SELECT pasta_id, usuario_id FROM tb_permissao_pasta WHERE pasta_id IN (:pastaIds)", nativeQuery = true)
+    List<Object[]> carregarPermissoesDasPastas(@Param("pastaIds") Collection<Long> pastaIds);
+
+    @Query(value = "SELECT COUNT(*) FROM tb_permissao_pasta WHERE pasta_id = :pastaId AND usuario_id = :usuarioId", nativeQuery = true)
+    long contarPermissao(@Param("pastaId") Long pastaId, @Param("usuarioId") Long usuarioId);
+
+    // Concessão no ancestral c.ancestral_id só chega à pasta se nenhuma pasta do caminho abaixo dele
+    // (até a própria pasta) tiver a herança interrompida (herda_permissoes = FALSE)
+    String HERANCA_ATE_A_PASTA = "NOT EXISTS (SELECT 1 FROM tb_pasta_closure x " +
+            "  JOIN tb_pasta b ON b.id = x.ancestral_id AND b.herda_permissoes = FALSE " +
+            "  JOIN tb_pasta_closure y ON y.descendente_id = b.id AND y.ancestral_id = c.ancestral_id AND y.profundidade > 0 " +
+            "  WHERE x.descendente_id = c.descendente_id) ";
+
+    // Permissão efetiva: concessão na própria pasta ou herdada de um ancestral
+    @Query(value = "SELECT COUNT(*) FROM tb_pasta_closure c " +
+            "JOIN tb_permissao_pasta pp ON pp.pasta_id = c.ancestral_id " +
+            "WHERE c.descendente_id = :pastaId AND pp.usuario_id = :usuarioId AND " + HERANCA_ATE_A_PASTA, nativeQuery = true)
+    long contarPermissaoEfetiva(@Param("pastaId") Long pastaId, @Param("usuarioId") Long usuarioId);
+
+    // Só concessões herdadas de ancestrais estritos (sem a própria pasta)
+    @Query(value = "SELECT COUNT(*) FROM tb_pasta_closure c " +
+            "JOIN tb_permissao_pasta pp ON pp.pasta_id = c.ancestral_id " +
+            "WHERE c.descendente_id = :pastaId AND c.profundidade > 0 AND pp.usuario_id = :usuarioId AND " +
+            HERANCA_ATE_A_PASTA, nativeQuery = true)
+    long contarPermissaoHerdada(@Param("pastaId") Long pastaId, @Param("usuarioId") Long usuarioId);
+
+    // Usuários com permissão efetiva na pasta (concedida nela ou herdada)
+    @Query(value = "SELECT DISTINCT pp.usuario_id FROM tb_pasta_closure c " +
+            "JOIN tb_permissao_pasta pp ON pp.pasta_id = c.ancestral_id " +
+            "WHERE c.descendente_id = :pastaId AND " + HERANCA_ATE_A_PASTA, nativeQuery = true)
+    List<Long> findIdsUsuariosComPermissaoEfetiva(@Param("pastaId") Long pastaId);
+
+    // Resultado: [0]=pastaId, [1]=pastaPaiId (nulo nas raízes), [2]=herdaPermissoes
+    @Query(value = "SELECT id, pasta_pai_id, herda_permissoes FROM tb_pasta", nativeQuery = true)
+    List<Object[]> carregarHierarquia();
+
+    // ========================
+    // AGREGADOS (totais de arquivos e bytes) - mantidos pelo PastaAgregadoService
+    // ========================
+
+    /**
+     * Soma a diferença na pasta e em todos os ancestrais. Os contadores diretos só mudam na própria
+     * pasta, e só quando {@code diretos} (arquivos entrando ou saindo dela, não uma subárvore movida).
+     */
+    @Modifying
+    @Query(value = "UPDATE tb_pasta p JOIN tb_pasta_closure c ON c.ancestral_id = p.id " +
+            "SET p.qtd_arquivos_diretos = p.qtd_arquivos_diretos + IF(c.profundidade = 0 AND :diretos, :arquivos, 0), " +
+            "    p.bytes_diretos = p.bytes_diretos + IF(c.profundidade = 0 AND :diretos, :bytes, 0), " +
+            "    p.qtd_arquivos_total = p.qtd_arquivos_total + :arquivos, " +
+            "    p.bytes_total = p.bytes_total + :bytes, " +
+            "    p.ultima_modificacao = CASE WHEN :modificadoEm IS NULL THEN p.ultima_modificacao " +
+            "        WHEN p.ultima_modificacao IS NULL OR p.ultima_modificacao < :modificadoEm THEN :modificadoEm " +
+            "        ELSE p.ultima_modificacao END " +
+            "WHERE c.descendente_id = :pastaId", nativeQuery = true)
+    void somarAgregados(@Param("pastaId") Long pastaId,
+                        @Param("arquivos") long arquivos,
+                        @Param("bytes") long bytes,
+                        @Param("modificadoEm") LocalDateTime modificadoEm,
+                        @Param("diretos") boolean diretos);
+
+    // Resultado: [0]=qtdArquivosTotal, [1]=bytesTotal, [2]=ultimaModificacao
+    @Query(value = "SELECT qtd_arquivos_total, bytes_total, ultima_modificacao FROM tb_pasta WHERE id = :id", nativeQuery = true)
+    List<Object[]> carregarAgregados(@Param("id") Long id);
+
+    // Pastas cujos totais não batem com tb_arquivo (mesmo cálculo da reconciliação)
+    @Query(value = "SELECT COUNT(*) FROM tb_pasta p " +
+            AGREGADOS_CALCULADOS +
+            "WHERE p.qtd_arquivos_diretos <> COALESCE(d.qtd, 0) OR p.bytes_diretos <> COALESCE(d.bytes, 0) " +
+            "   OR p.qtd_arquivos_total <> COALESCE(t.qtd, 0) OR p.bytes_total <> COALESCE(t.bytes, 0) " +
+            "   OR NOT (p.ultima_modificacao <=> t.ultima)", nativeQuery = true)
+    long contarAgregadosDivergentes();
+
+    @Modifying
+    @Query(value = "UPDATE tb_pasta p " +
+            AGREGADOS_CALCULADOS +
+            "SET p.qtd_arquivos_diretos = COALESCE(d.qtd, 0), p.bytes_diretos = COALESCE(d.bytes, 0), " +
+            "    p.qtd_arquivos_total = COALESCE(t.qtd, 0), p.bytes_total = COALESCE(t.bytes, 0), " +
+            "    p.ultima_modificacao = t.ultima", nativeQuery = true)
+    int recalcularAgregados();
+
+    String AGREGADOS_CALCULADOS =
+            "LEFT JOIN (SELECT pasta_id, COUNT(*) AS qtd, COALESCE(SUM(tamanho_bytes), 0) AS bytes " +
+            "           FROM tb_arquivo GROUP BY pasta_id) d ON d.pasta_id = p.id " +
+            "LEFT JOIN (SELECT c.ancestral_id, COUNT(*) AS qtd, COALESCE(SUM(a.tamanho_bytes), 0) AS bytes, " +
+            "                  MAX(a.data_atualizacao) AS ultima " +
+            "           FROM tb_pasta_closure c JOIN tb_arquivo a ON a.pasta_id = c.descendente_id " +
+            "           GROUP BY c.ancestral_id) t ON t.ancestral_id = p.id ";
+
+    // ========================
+    // HIERARQUIA (tb_pasta_closure)
+    // Uma linha por par ancestral/descendente, incluindo a própria pasta (profundidade 0).
+    // As linhas são removidas em cascata pelo banco quando a pasta é excluída.
+    // ========================
+
+    @Modifying
+    @Query(value = "INSERT INTO tb_pasta_closure (ancestral_id, descendente_id, profundidade) VALUES (:id, :id, 0)", nativeQuery = true)
+    void inserirAutoReferenciaClosure(@Param("id") Long id);
+
+    @Modifying
+    @Query(value = "INSERT INTO tb_pasta_closure (ancestral_id, descendente_id, profundidade) " +
+            "SELECT c.ancestral_id, :id, c.profundidade + 1 FROM tb_pasta_closure c WHERE c.descendente_id = :paiId", nativeQuery = true)
+    void inserirAncestraisClosure(@Param("id") Long id, @Param("paiId") Long paiId);
+
+    /**
+     * Desliga a subárvore de seus ancestrais atuais (mantém as ligações internas da subárvore).
+     */
+    @Modifying
+    @Query(value = "DELETE c FROM tb_pasta_closure c " +
+            "JOIN tb_pasta_closure sub ON sub.descendente_id = c.descendente_id AND sub.ancestral_id = :id " +
+            "LEFT JOIN tb_pasta_closure interno ON interno.ancestral_id = :id AND interno.descendente_id = c.ancestral_id " +
+            "WHERE interno.ancestral_id IS NULL", nativeQuery = true)
+    void desligarSubarvoreClosure(@Param("id") Long id);
+
+    /**
+     * Liga a subárvore a todos os ancestrais do novo pai (inclusive ele próprio).
+     */
+    @Modifying
+    @Query(value = "INSERT INTO tb_pasta_closure (ancestral_id, descendente_id, profundidade) " +
+            "SELECT a.ancestral_id, d.descendente_id, a.profundidade + d.profundidade + 1 " +
+            "FROM tb_pasta_closure a JOIN tb_pasta_closure d ON d.ancestral_id = :id " +
+            "WHERE a.descendente_id = :novoPaiId", nativeQuery = true)
+    void ligarSubarvoreClosure(@Param("id") Long id, @Param("novoPaiId") Long novoPaiId);
+
+    @Query(value = "SELECT COUNT(*) FROM tb_pasta_closure WHERE ancestral_id = :ancestralId AND descendente_id = :descendenteId", nativeQuery = true)
+    long contarLigacaoClosure(@Param("ancestralId") Long ancestralId, @Param("descendenteId") Long descendenteId);
+
+    @Query(value = "SELECT descendente_id FROM tb_pasta_closure WHERE ancestral_id = :id", nativeQuery = true)
+    List<Long> findIdsDescendentes(@Param("id") Long id);
+
+    @Query(value = "SELECT ancestral_id FROM tb_pasta_closure WHERE descendente_id = :id ORDER BY profundidade", nativeQuery = true)
+    List<Long> findIdsAncestrais(@Param("id") Long id);
+
+    // Da pasta mais rasa para a mais funda: o pai sempre vem antes dos filhos (cópia)
+    @Query(value = "SELECT descendente_id FROM tb_pasta_closure WHERE ancestral_id = :id " +
+            "ORDER BY profundidade, descendente_id", nativeQuery = true)
+    List<Long> findIdsDescendentesPorNivel(@Param("id") Long id);
+
+    // Da mais funda para a mais rasa: os filhos sempre vêm antes do pai (exclusão)
+    @Query(value = "SELECT descendente_id FROM tb_pasta_closure WHERE ancestral_id = :id AND profundidade >= :profundidadeMinima " +
+            "ORDER BY profundidade DESC, descendente_id", nativeQuery = true)
+    List<Long> findIdsDescendentesDoMaisFundo(@Param("id") Long id, @Param("profundidadeMinima") int profundidadeMinima);
+
+    @Query(value = "SELECT COUNT(*) - 1 FROM tb_pasta_closure WHERE ancestral_id = :id", nativeQuery = true)
+    long contarDescendentes(@Param("id") Long id);
+
+    @Query(value = "SELECT COUNT(*) FROM tb_pasta_closure WHERE profundidade = 0", nativeQuery = true)
+    long contarAutoReferenciasClosure();
+
+    @Modifying
+    @Query(value = "DELETE FROM tb_pasta_closure", nativeQuery = true)
+    void limparClosure();
+
+    /**
+     * Recalcula toda a tabela a partir de pasta_pai_id (mesma lógica da migração V2).
+     */
+    @Modifying
+    @Query(value = "INSERT INTO tb_pasta_closure (ancestral_id, descendente_id, profundidade) " +
+            "WITH RECURSIVE cl (ancestral_id, descendente_id, profundidade) AS ( " +
+            "  SELECT id, id, 0 FROM tb_pasta " +
+            "  UNION ALL " +
+            "  SELECT cl.ancestral_id, p.id, cl.profundidade + 1 FROM tb_pasta p JOIN cl ON p.pasta_pai_id = cl.descendente_id " +
+            ") " +
+            "SELECT ancestral_id, descendente_id, profundidade FROM cl", nativeQuery = true)
+    void reconstruirClosure();
+}
@@ -0,0 +1,36 @@
+package br.com.carro.repositories;
+
+import br.com.carro.entities.RefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
+
+    // Renovação: uma consulta pelo índice único, já com o usuário e as roles para emitir o novo token
+    @Query("SELECT t FROM RefreshToken t JOIN FETCH t.usuario u LEFT JOIN FETCH u.roles WHERE t.tokenHash = :hash")
+    Optional<RefreshToken> findComUsuarioByTokenHash(@Param("hash") String hash);
+
+    Optional<RefreshToken> findByTokenHash(String hash);
+
+    // Retorna 0 se outra requisição já usou o token (renovação concorrente)
+    @Modifying
+    @Query("UPDATE RefreshToken t SET t.dataRevogacao = :agora WHERE t.id = :id AND t.dataRevogacao IS NULL")
+    int revogar(@Param("id") Long id, @Param("agora") LocalDateTime agora);
+
+    @Modifying
+    @Query("UPDATE RefreshToken t SET t.dataRevogacao = :agora WHERE t.familia = :familia AND t.dataRevogacao IS NULL")
+    int revogarFamilia(@Param("familia") String familia, @Param("agora") LocalDateTime agora);
+
+    @Modifying
+    @Query("UPDATE RefreshToken t SET t.dataRevogacao = :agora WHERE t.usuario.id = :usuarioId AND t.dataRevogacao IS NULL")
+    int revogarDoUsuario(@Param("usuarioId") Long usuarioId, @Param("agora") LocalDateTime agora);
+
+    @Modifying
+    @Query("DELETE FROM RefreshToken t WHERE t.dataExpiracao < :limite")
+    int excluirExpirados(@Param("limite") LocalDateTime limite);
+}
@@ -0,0 +1,22 @@
+package br.com.carro.repositories;
+
+import br.com.carro.entities.UploadSessao;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface UploadSessaoRepository extends JpaRepository<UploadSessao, String> {
+
+    // Serializa a confirmação de chunks e o commit/cancelamento da mesma sessão (bloqueio curto, sem I/O de arquivo)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM UploadSessao s WHERE s.id = :id")
+    Optional<UploadSessao> findComBloqueioById(@Param("id") String id);
+
+    List<UploadSessao> findByDataAtualizacaoBefore(LocalDateTime limite);
+}
@@ -4,6 +4,9 @@ import br.com.carro.entities.Usuario.Usuario;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -45,4 +48,9 @@ public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
 
 
     boolean existsByUsernameAndRolesNome(String username, String admin);
+
+    // Troca o hash só se ainda for o mesmo lido no login (a senha pode ter sido alterada no meio)
+    @Modifying
+    @Query("UPDATE Usuario u SET u.password = :novo WHERE u.id = :id AND u.password = :antigo")
+    int atualizarHashSenha(@Param("id") Long id, @Param("antigo") String antigo, @Param("novo") String novo);
 }
@@ -0,0 +1,308 @@
+package br.com.carro.services;
+
+import br.com.carro.entities.Arquivo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Envio de arquivos de tb_arquivo para download ou visualização, usado pela área
+ * autenticada e pela área pública.
+ * <p>
+ * Escreve a resposta diretamente no {@link HttpServletResponse}:
+ * <ul>
+ *   <li>ETag forte a partir de hash_arquivo (ou fraca por id/tamanho/data, enquanto o hash não existir)
+ *       e Last-Modified, respondendo 304 para If-None-Match / If-Modified-Since;</li>
+ *   <li>Range (RFC 7233) com um ou vários intervalos (multipart/byteranges) e If-Range;</li>
+ *   <li>com o sendfile do Tomcat (trechos a partir de 48 KB) o próprio conector envia do page cache
+ *       para o socket, sem cópia para o espaço do usuário; sem ele (trechos pequenos, multipart ou
+ *       conector sem suporte) os bytes são copiados em blocos para a saída do servlet.</li>
+ * </ul>
+ */
+@Service
+public class ArquivoDownloadService {
+
+    // Atributos de requisição do Tomcat para envio com sendfile (mesmos usados pelo DefaultServlet)
+    private static final String SENDFILE_SUPORTADO = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_ARQUIVO = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_INICIO = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FIM = "org.apache.tomcat.sendfile.end";
+
+    // Abaixo disso o custo de preparar o sendfile não compensa
+    private static final long LIMIAR_SENDFILE_BYTES = 48 * 1024;
+
+    private record Intervalo(long inicio, long fim) {
+        long tamanho() {
+            return fim - inicio + 1;
+        }
+    }
+
+    private final Counter respostasCompletas;
+    private final Counter respostasParciais;
+    private final Counter respostasNaoModificadas;
+    private final Counter bytesEnviados;
+
+    public ArquivoDownloadService(MeterRegistry meterRegistry) {
+        this.respostasCompletas = meterRegistry.counter("portal.download.arquivo", "resposta", "completa");
+        this.respostasParciais = meterRegistry.counter("portal.download.arquivo", "resposta", "parcial");
+        this.respostasNaoModificadas = meterRegistry.counter("portal.download.arquivo", "resposta", "nao_modificado");
+        this.bytesEnviados = meterRegistry.counter("portal.download.arquivo.bytes");
+    }
+
+    /**
+     * Envia o arquivo na resposta.
+     *
+     * @param inline true para exibir no navegador (Content-Disposition: inline), false para download
+     */
+    public void enviar(Arquivo arquivo, boolean inline, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path caminho = Paths.get(arquivo.getCaminhoArmazenamento());
+        if (!Files.isRegularFile(caminho)) {
+            throw new FileNotFoundException("Arquivo não encontrado no sistema de arquivos.");
+        }
+
+        long tamanho = Files.size(caminho);
+        // Datas HTTP têm precisão de segundos
+        long ultimaModificacao = Files.getLastModifiedTime(caminho).toMillis() / 1000 * 1000;
+        String etag = gerarEtag(arquivo, tamanho, ultimaModificacao);
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, ultimaModificacao);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+
+        if (naoModificado(request, etag, ultimaModificacao)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            respostasNaoModificadas.increment();
+            return;
+        }
+
+        String contentType = inline ? detectarContentType(arquivo, caminho) : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.builder(inline ? "inline" : "attachment")
+                        .filename(arquivo.getNomeArquivo(), StandardCharsets.UTF_8)
+                        .build()
+                        .toString());
+
+        boolean head = "HEAD".equalsIgnoreCase(request.getMethod());
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range == null || !ifRangeAtendido(request, etag, ultimaModificacao)) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setContentType(contentType);
+            response.setContentLengthLong(tamanho);
+            respostasCompletas.increment();
+            if (!head) transferir(caminho, 0, tamanho, request, response);
+            return;
+        }
+
+        List<Intervalo> intervalos = interpretarRange(range, tamanho);
+        if (intervalos.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + tamanho);
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        respostasParciais.increment();
+
+        if (intervalos.size() == 1) {
+            Intervalo intervalo = intervalos.get(0);
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.CONTENT_RANGE,
+                    "bytes " + intervalo.inicio() + "-" + intervalo.fim() + "/" + tamanho);
+            response.setContentLengthLong(intervalo.tamanho());
+            if (!head) transferir(caminho, intervalo.inicio(), intervalo.tamanho(), request, response);
+            return;
+        }
+
+        enviarMultipart(caminho, contentType, tamanho, intervalos, head, response);
+    }
+
+    // ========================
+    // CONDICIONAIS
+    // ========================
+
+    private String gerarEtag(Arquivo arquivo, long tamanho, long ultimaModificacao) {
+        if (arquivo.getHashArquivo() != null && !arquivo.getHashArquivo().isBlank()) {
+            return "\"" + arquivo.getHashArquivo() + "\"";
+        }
+        // Sem hash do conteúdo não há como garantir igualdade byte a byte: ETag fraca
+        return "W/\"" + arquivo.getId() + "-" + tamanho + "-" + ultimaModificacao + "\"";
+    }
+
+    private boolean naoModificado(HttpServletRequest request, String etag, long ultimaModificacao) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            // If-None-Match usa comparação fraca e, quando presente, tem precedência sobre If-Modified-Since
+            String semPrefixo = removerPrefixoFraco(etag);
+            for (String candidato : ifNoneMatch.split(",")) {
+                String valor = candidato.trim();
+                if (valor.equals("*") || removerPrefixoFraco(valor).equals(semPrefixo)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = lerData(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince != -1 && ultimaModificacao <= ifModifiedSince;
+    }
+
+    private boolean ifRangeAtendido(HttpServletRequest request, String etag, long ultimaModificacao) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) return true;
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // If-Range exige comparação forte: ETag fraca nunca atende
+            return !etag.startsWith("W/") && ifRange.trim().equals(etag);
+        }
+        long data = lerData(request, HttpHeaders.IF_RANGE);
+        return data != -1 && data == ultimaModificacao;
+    }
+
+    private static String removerPrefixoFraco(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    private static long lerData(HttpServletRequest request, String header) {
+        try {
+            return request.getDateHeader(header);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    // ========================
+    // RANGE
+    // ========================
+
+    // Retorna os intervalos satisfatórios; lista vazia significa 416
+    private List<Intervalo> interpretarRange(String range, long tamanho) {
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(range);
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
+
+        List<Intervalo> intervalos = new ArrayList<>();
+        long total = 0;
+        for (HttpRange r : ranges) {
+            try {
+                long inicio = r.getRangeStart(tamanho);
+                long fim = r.getRangeEnd(tamanho);
+                if (inicio >= tamanho || inicio > fim) continue;
+                Intervalo intervalo = new Intervalo(inicio, fim);
+                intervalos.add(intervalo);
+                total += intervalo.tamanho();
+            } catch (IllegalArgumentException e) {
+                // intervalo fora do arquivo: ignorado
+            }
+        }
+        // Evita pedidos com intervalos sobrepostos que multiplicam o tamanho da resposta
+        if (total > tamanho && intervalos.size() > 1) {
+            return List.of();
+        }
+        return intervalos;
+    }
+
+    private void enviarMultipart(Path caminho, String contentType, long tamanho, List<Intervalo> intervalos,
+                                 boolean head, HttpServletResponse response) throws IOException {
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+
+        List<byte[]> cabecalhos = new ArrayList<>();
+        long contentLength = 0;
+        for (Intervalo intervalo : intervalos) {
+            byte[] cabecalho = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": bytes " + intervalo.inicio() + "-" + intervalo.fim() + "/" + tamanho
+                    + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+            cabecalhos.add(cabecalho);
+            contentLength += cabecalho.length + intervalo.tamanho();
+        }
+        byte[] fechamento = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += fechamento.length;
+
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if (head) return;
+
+        ServletOutputStream saida = response.getOutputStream();
+        try (FileChannel canal = FileChannel.open(caminho, StandardOpenOption.READ)) {
+            WritableByteChannel destino = Channels.newChannel(saida);
+            for (int i = 0; i < intervalos.size(); i++) {
+                saida.write(cabecalhos.get(i));
+                Intervalo intervalo = intervalos.get(i);
+                copiar(canal, intervalo.inicio(), intervalo.tamanho(), destino);
+            }
+            saida.write(fechamento);
+        }
+    }
+
+    // ========================
+    // TRANSFERÊNCIA
+    // ========================
+
+    private void transferir(Path caminho, long inicio, long quantidade, HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
+        if (quantidade >= LIMIAR_SENDFILE_BYTES && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPORTADO))) {
+            // O Tomcat envia o trecho após o handler retornar, direto do page cache para o socket
+            request.setAttribute(SENDFILE_ARQUIVO, caminho.toRealPath().toString());
+            request.setAttribute(SENDFILE_INICIO, inicio);
+            request.setAttribute(SENDFILE_FIM, inicio + quantidade);
+            bytesEnviados.increment(quantidade);
+            return;
+        }
+
+        // Fallback: a saída do servlet não é um canal de arquivo/socket, então o transferTo abaixo
+        // vira uma cópia em buffer (não é zero-copy), com o mesmo custo de um Files.copy
+        try (FileChannel canal = FileChannel.open(caminho, StandardOpenOption.READ)) {
+            copiar(canal, inicio, quantidade, Channels.newChannel(response.getOutputStream()));
+        }
+    }
+
+    private void copiar(FileChannel canal, long inicio, long quantidade, WritableByteChannel destino) throws IOException {
+        long enviado = 0;
+        while (enviado < quantidade) {
+            long n = canal.transferTo(inicio + enviado, quantidade - enviado, destino);
+            if (n <= 0) break;
+            enviado += n;
+        }
+        bytesEnviados.increment(enviado);
+    }
+
+    // Prioriza a detecção no servidor; o tipo informado no upload vem do cliente.
+    // Usa o nome do arquivo: no armazenamento deduplicado o caminho físico não tem extensão.
+    private String detectarContentType(Arquivo arquivo, Path caminho) {
+        try {
+            String detectado = Files.probeContentType(Paths.get(arquivo.getNomeArquivo()));
+            if (detectado == null) detectado = Files.probeContentType(caminho);
+            if (detectado != null) return detectado;
+        } catch (IOException | InvalidPathException ignored) {
+            // tenta o tipo registrado no upload
+        }
+        if (arquivo.getTipoMime() != null && !arquivo.getTipoMime().isBlank()) {
+            return arquivo.getTipoMime();
+        }
+        return MediaType.APPLICATION_OCTET_STREAM_VALUE;
+    }
+}
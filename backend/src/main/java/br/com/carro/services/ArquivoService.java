@@ -4,11 +4,14 @@ import br.com.carro.entities.Arquivo;
 import br.com.carro.entities.Pasta;
 import br.com.carro.entities.Usuario.Usuario;
 import br.com.carro.entities.DTO.ArquivoDTO;
+import br.com.carro.entities.DTO.PaginaCursorDTO;
 import br.com.carro.repositories.ArquivoRepository;
 import br.com.carro.repositories.PastaRepository;
 import br.com.carro.utils.ArquivoUtils;
 import br.com.carro.utils.FileUtils;
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.FileSystemResource;
@@ -36,14 +39,30 @@ public class ArquivoService {
     private ArquivoRepository arquivoRepository;
     private PastaRepository pastaRepository;
     private ArquivoUtils fileUtils;
-
-    public ArquivoService(PastaRepository pastaRepository, ArquivoUtils fileUtils, ArquivoRepository arquivoRepository) {
+    private ZipCacheService zipCacheService;
+    private ArquivoDownloadService arquivoDownloadService;
+    private BlobStoreService blobStoreService;
+    private PastaAclService pastaAclService;
+    private PastaAgregadoService pastaAgregadoService;
+    private MetricasService metricasService;
+
+    public ArquivoService(PastaRepository pastaRepository, ArquivoUtils fileUtils, ArquivoRepository arquivoRepository,
+                          ZipCacheService zipCacheService, ArquivoDownloadService arquivoDownloadService,
+                          BlobStoreService blobStoreService, PastaAclService pastaAclService,
+                          PastaAgregadoService pastaAgregadoService, MetricasService metricasService) {
         this.pastaRepository = pastaRepository;
         this.fileUtils = fileUtils;
         this.arquivoRepository = arquivoRepository;
+        this.zipCacheService = zipCacheService;
+        this.arquivoDownloadService = arquivoDownloadService;
+        this.blobStoreService = blobStoreService;
+        this.pastaAclService = pastaAclService;
+        this.pastaAgregadoService = pastaAgregadoService;
+        this.metricasService = metricasService;
     }
 
     // RF-016: Upload de arquivo
+    @Transactional
     public Arquivo uploadArquivo(
             MultipartFile file,
             Long pastaId,
@@ -74,35 +93,34 @@ public class ArquivoService {
 
         // 3. Sanitizar nome do arquivo
         String nomeArquivo = FileUtils.sanitizeFileName(file.getOriginalFilename());
-        Path destino = Paths.get(pasta.getCaminhoCompleto(), nomeArquivo);
-
-        try {
-            // 4. Criar diretório se não existir
-            Files.createDirectories(destino.getParent());
-
-            // 5. Salvar arquivo no filesystem
-            Files.copy(file.getInputStream(), destino, StandardCopyOption.REPLACE_EXISTING);
 
+        // 4. Salvar conteúdo no armazenamento deduplicado (SHA-256 calculado na mesma passada)
+        BlobStoreService.BlobArmazenado blob;
+        try (InputStream in = file.getInputStream()) {
+            blob = blobStoreService.armazenar(in);
         } catch (IOException e) {
             throw new RuntimeException("Erro ao salvar o arquivo no sistema de arquivos: " + nomeArquivo, e);
         }
 
-        // 6. Criar registro no banco
+        // 5. Criar registro no banco
         Arquivo arquivo = new Arquivo();
         arquivo.setNomeArquivo(nomeArquivo);
-        arquivo.setCaminhoArmazenamento(destino.toString());
+        blobStoreService.vincular(arquivo, blob);
         arquivo.setTipoMime(file.getContentType());
-        arquivo.setTamanho(file.getSize());
         arquivo.setDataUpload(LocalDateTime.now());
         arquivo.setDataAtualizacao(LocalDateTime.now());
         arquivo.setPasta(pasta);
         arquivo.setCriadoPor(usuarioLogado);
 
-        return arquivoRepository.save(arquivo);
+        Arquivo salvo = arquivoRepository.save(arquivo);
+        pastaAgregadoService.arquivoAdicionado(salvo);
+        zipCacheService.invalidar(pasta);
+        return salvo;
     }
 
 
     // RF-017: Renomear arquivo
+    @Transactional
     public ArquivoDTO renomearArquivo(Long arquivoId, String novoNome, Usuario usuarioLogado) throws IOException {
         if (novoNome == null || novoNome.trim().isEmpty()) {
             throw new IllegalArgumentException("O novo nome do arquivo não pode ser vazio.");
@@ -111,31 +129,40 @@ public class ArquivoService {
         Arquivo arquivo = arquivoRepository.findById(arquivoId)
                 .orElseThrow(() -> new EntityNotFoundException("Arquivo não encontrado com ID: " + arquivoId));
 
-        if (!arquivo.getPasta().getUsuariosComPermissao().contains(usuarioLogado)) {
+        if (!pastaAclService.temPermissao(usuarioLogado, arquivo.getPasta())) {
             throw new AccessDeniedException("Usuário não possui permissão para renomear este arquivo.");
         }
 
-        Path novoCaminho = fileUtils.renomearArquivo(arquivo.getCaminhoArmazenamento(), novoNome);
+        // No armazenamento deduplicado o nome é só metadado
+        if (arquivo.getBlobHash() == null) {
+            Path novoCaminho = fileUtils.renomearArquivo(arquivo.getCaminhoArmazenamento(), novoNome);
+            arquivo.setCaminhoArmazenamento(novoCaminho.toString());
+        }
         arquivo.setNomeArquivo(novoNome);
-        arquivo.setCaminhoArmazenamento(novoCaminho.toString());
         arquivo.setDataAtualizacao(LocalDateTime.now());
 
         arquivo = arquivoRepository.save(arquivo);
+        pastaAgregadoService.arquivoAlterado(arquivo.getPasta().getId(), 0, arquivo.getDataAtualizacao());
+        zipCacheService.invalidar(arquivo.getPasta());
         return ArquivoDTO.fromEntity(arquivo);
     }
 
+    @Transactional
     public void excluirArquivo(Long arquivoId, Usuario usuarioLogado) throws IOException {
         Arquivo arquivo = arquivoRepository.findById(arquivoId)
                 .orElseThrow(() -> new EntityNotFoundException("Arquivo não encontrado com ID: " + arquivoId));
 
-        if (!arquivo.getPasta().getUsuariosComPermissao().contains(usuarioLogado)) {
+        if (!pastaAclService.temPermissao(usuarioLogado, arquivo.getPasta())) {
             throw new AccessDeniedException("Usuário não possui permissão para excluir este arquivo.");
         }
 
-        fileUtils.deleteFile(arquivo.getCaminhoArmazenamento());
+        blobStoreService.liberar(arquivo);
         arquivoRepository.delete(arquivo);
+        pastaAgregadoService.arquivoRemovido(arquivo);
+        zipCacheService.invalidar(arquivo.getPasta());
     }
 
+    @Transactional
     public ArquivoDTO moverArquivo(Long arquivoId, Long pastaDestinoId, Usuario usuarioLogado) throws IOException {
         Arquivo arquivo = arquivoRepository.findById(arquivoId)
                 .orElseThrow(() -> new EntityNotFoundException("Arquivo não encontrado com ID: " + arquivoId));
@@ -143,20 +170,27 @@ public class ArquivoService {
         Pasta pastaDestino = pastaRepository.findById(pastaDestinoId)
                 .orElseThrow(() -> new EntityNotFoundException("Pasta destino não encontrada com ID: " + pastaDestinoId));
 
-        if (!arquivo.getPasta().getUsuariosComPermissao().contains(usuarioLogado)
-                || !pastaDestino.getUsuariosComPermissao().contains(usuarioLogado)) {
+        if (!pastaAclService.temPermissao(usuarioLogado, arquivo.getPasta())
+                || !pastaAclService.temPermissao(usuarioLogado, pastaDestino)) {
             throw new AccessDeniedException("Usuário não possui permissão para mover este arquivo.");
         }
 
-        Path novoCaminho = fileUtils.moverArquivo(arquivo.getCaminhoArmazenamento(), pastaDestino.getCaminhoCompleto());
-        arquivo.setCaminhoArmazenamento(novoCaminho.toString());
+        if (arquivo.getBlobHash() == null) {
+            Path novoCaminho = fileUtils.moverArquivo(arquivo.getCaminhoArmazenamento(), pastaDestino.getCaminhoCompleto());
+            arquivo.setCaminhoArmazenamento(novoCaminho.toString());
+        }
+        zipCacheService.invalidar(arquivo.getPasta());
+        zipCacheService.invalidar(pastaDestino);
+        Long origemId = arquivo.getPasta().getId();
         arquivo.setPasta(pastaDestino);
         arquivo.setDataAtualizacao(LocalDateTime.now());
 
         arquivo = arquivoRepository.save(arquivo);
+        pastaAgregadoService.arquivoMovido(arquivo, origemId);
         return ArquivoDTO.fromEntity(arquivo);
     }
 
+    @Transactional
     public ArquivoDTO copiarArquivo(Long arquivoId, Long pastaDestinoId, Usuario usuarioLogado) throws IOException {
         Arquivo arquivo = arquivoRepository.findById(arquivoId)
                 .orElseThrow(() -> new EntityNotFoundException("Arquivo não encontrado com ID: " + arquivoId));
@@ -164,24 +198,26 @@ public class ArquivoService {
         Pasta pastaDestino = pastaRepository.findById(pastaDestinoId)
                 .orElseThrow(() -> new EntityNotFoundException("Pasta destino não encontrada com ID: " + pastaDestinoId));
 
-        if (!arquivo.getPasta().getUsuariosComPermissao().contains(usuarioLogado)
-                || !pastaDestino.getUsuariosComPermissao().contains(usuarioLogado)) {
+        if (!pastaAclService.temPermissao(usuarioLogado, arquivo.getPasta())
+                || !pastaAclService.temPermissao(usuarioLogado, pastaDestino)) {
             throw new AccessDeniedException("Usuário não possui permissão para copiar este arquivo.");
         }
 
-        Path destino = fileUtils.copiarArquivo(arquivo.getCaminhoArmazenamento(), pastaDestino.getCaminhoCompleto());
+        // Cópia = uma referência a mais ao mesmo conteúdo
+        BlobStoreService.BlobArmazenado blob = blobStoreService.referenciar(arquivo);
 
         Arquivo copia = new Arquivo();
         copia.setNomeArquivo(arquivo.getNomeArquivo());
-        copia.setCaminhoArmazenamento(destino.toString());
+        blobStoreService.vincular(copia, blob);
         copia.setTipoMime(arquivo.getTipoMime());
-        copia.setTamanho(arquivo.getTamanho());
         copia.setDataUpload(LocalDateTime.now());
         copia.setDataAtualizacao(LocalDateTime.now());
         copia.setCriadoPor(usuarioLogado);
         copia.setPasta(pastaDestino);
 
         copia = arquivoRepository.save(copia);
+        pastaAgregadoService.arquivoAdicionado(copia);
+        zipCacheService.invalidar(pastaDestino);
         return ArquivoDTO.fromEntity(copia);
     }
 
@@ -194,36 +230,34 @@ public class ArquivoService {
         Arquivo arquivoExistente = arquivoRepository.findById(arquivoId)
                 .orElseThrow(() -> new EntityNotFoundException("Arquivo não encontrado com o ID: " + arquivoId));
 
-        if (!arquivoExistente.getPasta().getUsuariosComPermissao().contains(usuarioLogado)) {
+        if (!pastaAclService.temPermissao(usuarioLogado, arquivoExistente.getPasta())) {
             throw new AccessDeniedException("Usuário não tem permissão para substituir este arquivo.");
         }
 
-        Path caminhoArquivoAntigo = Paths.get(arquivoExistente.getCaminhoArmazenamento());
-        Path diretorioDestino = caminhoArquivoAntigo.getParent();
         String novoNomeArquivo = novoArquivo.getOriginalFilename();
-        Path caminhoNovoArquivo = diretorioDestino.resolve(novoNomeArquivo);
 
+        BlobStoreService.BlobArmazenado blob;
         try (InputStream inputStream = novoArquivo.getInputStream()) {
-            Files.copy(inputStream, caminhoNovoArquivo, StandardCopyOption.REPLACE_EXISTING);
+            blob = blobStoreService.armazenar(inputStream);
         } catch (IOException e) {
             throw new IOException("Erro ao salvar o novo arquivo: " + e.getMessage(), e);
         }
 
-        if (!caminhoArquivoAntigo.equals(caminhoNovoArquivo) && Files.exists(caminhoArquivoAntigo)) {
-            try {
-                Files.delete(caminhoArquivoAntigo);
-            } catch (IOException e) {
-                System.err.println("Aviso: Não foi possível remover o arquivo antigo: " + caminhoArquivoAntigo);
-            }
-        }
+        // Solta o conteúdo anterior (referência do blob ou arquivo físico do layout antigo)
+        blobStoreService.liberar(arquivoExistente);
 
+        long tamanhoAnterior = arquivoExistente.getTamanho() != null ? arquivoExistente.getTamanho() : 0L;
+        String tipoAnterior = arquivoExistente.getTipoMime();
         arquivoExistente.setNomeArquivo(novoNomeArquivo);
-        arquivoExistente.setCaminhoArmazenamento(caminhoNovoArquivo.toString());
-        arquivoExistente.setTamanho(novoArquivo.getSize());
+        blobStoreService.vincular(arquivoExistente, blob);
         arquivoExistente.setTipoMime(novoArquivo.getContentType());
         arquivoExistente.setDataAtualizacao(LocalDateTime.now());
 
         Arquivo arquivoAtualizado = arquivoRepository.save(arquivoExistente);
+        pastaAgregadoService.arquivoAlterado(arquivoAtualizado.getPasta().getId(),
+                blob.tamanho() - tamanhoAnterior, arquivoAtualizado.getDataAtualizacao());
+        metricasService.arquivoSubstituido(tipoAnterior, tamanhoAnterior, arquivoAtualizado);
+        zipCacheService.invalidar(arquivoAtualizado.getPasta());
         return ArquivoDTO.fromEntity(arquivoAtualizado);
     }
 
@@ -235,7 +269,7 @@ public class ArquivoService {
                 .orElseThrow(() -> new EntityNotFoundException("Pasta não encontrada com ID: " + pastaId));
 
         // 2️⃣ Verificar permissão
-        if (!pasta.getUsuariosComPermissao().contains(usuarioLogado)) {
+        if (!pastaAclService.temPermissao(usuarioLogado, pasta)) {
             throw new AccessDeniedException("Usuário não possui permissão para excluir arquivos desta pasta.");
         }
 
@@ -253,15 +287,14 @@ public class ArquivoService {
         // 4️⃣ Apagar arquivos do disco
         List<ArquivoDTO> arquivosExcluidos = new ArrayList<>();
         for (Arquivo arquivo : arquivosParaExcluir) {
-            Path caminho = Path.of(arquivo.getCaminhoArmazenamento());
-            if (Files.exists(caminho)) {
-                Files.delete(caminho);
-            }
+            blobStoreService.liberar(arquivo);
             arquivosExcluidos.add(ArquivoDTO.fromEntity(arquivo));
         }
 
         // 5️⃣ Deletar registros do banco
         arquivoRepository.deleteAll(arquivosParaExcluir);
+        pastaAgregadoService.arquivosRemovidos(arquivosParaExcluir);
+        zipCacheService.invalidar(pasta);
 
         return arquivosExcluidos;
     }
@@ -277,35 +310,41 @@ public class ArquivoService {
                 .orElseThrow(() -> new EntityNotFoundException("Pasta não encontrada com ID: " + pastaId));
 
         // 2️⃣ Verificar permissão
-        if (!pasta.getUsuariosComPermissao().contains(usuarioLogado)) {
+        if (!pastaAclService.temPermissao(usuarioLogado, pasta)) {
             throw new AccessDeniedException("Usuário não possui permissão para enviar arquivos para esta pasta.");
         }
 
         List<ArquivoDTO> arquivosSalvos = new ArrayList<>();
+        List<Arquivo> novos = new ArrayList<>();
 
         for (MultipartFile file : arquivos) {
             if (file.isEmpty()) continue;
 
-            // 3️⃣ Salvar fisicamente
-            Path destino = fileUtils.salvarArquivo(file, pasta.getCaminhoCompleto());
+            // 3️⃣ Salvar fisicamente (armazenamento deduplicado)
+            BlobStoreService.BlobArmazenado blob;
+            try (InputStream in = file.getInputStream()) {
+                blob = blobStoreService.armazenar(in);
+            }
 
             // 4️⃣ Criar entidade Arquivo
             Arquivo novoArquivo = new Arquivo();
             novoArquivo.setNomeArquivo(file.getOriginalFilename());
-            novoArquivo.setCaminhoArmazenamento(destino.toString());
+            blobStoreService.vincular(novoArquivo, blob);
             novoArquivo.setTipoMime(file.getContentType());
-            novoArquivo.setTamanho(file.getSize());
             novoArquivo.setPasta(pasta);
             novoArquivo.setCriadoPor(usuarioLogado);
             novoArquivo.setDataUpload(LocalDateTime.now());
             novoArquivo.setDataAtualizacao(LocalDateTime.now());
+            novos.add(novoArquivo);
+        }
 
-            // 5️⃣ Salvar no banco
-            novoArquivo = arquivoRepository.save(novoArquivo);
-
-            arquivosSalvos.add(ArquivoDTO.fromEntity(novoArquivo));
+        // 5️⃣ Salvar no banco depois de todos os blobs: sem consultas no meio, os INSERTs saem num lote só
+        for (Arquivo salvo : arquivoRepository.saveAll(novos)) {
+            arquivosSalvos.add(ArquivoDTO.fromEntity(salvo));
         }
 
+        pastaAgregadoService.arquivosAdicionados(novos);
+        zipCacheService.invalidar(pasta);
         return arquivosSalvos;
     }
 
@@ -351,6 +390,7 @@ public class ArquivoService {
 
     /**
      * Lista arquivos de uma pasta, com filtros opcionais de nome e extensão e ordenação.
+     * Filtro e ordenação são feitos no banco, projetando direto para {@link ArquivoDTO}.
      *
      * @param pastaId        ID da pasta
      * @param nomeFiltro     Filtro por nome (opcional)
@@ -360,102 +400,76 @@ public class ArquivoService {
      * @param usuarioLogado  Usuário logado para validação de permissão
      * @return Lista de arquivos filtrada e ordenada
      */
-    public List<Arquivo> listarArquivosPorPasta(Long pastaId,
-                                                String nomeFiltro,
-                                                String extensaoFiltro,
-                                                String sortField,
-                                                String sortDirection,
-                                                Usuario usuarioLogado) {
+    public List<ArquivoDTO> listarArquivosPorPasta(Long pastaId,
+                                                   String nomeFiltro,
+                                                   String extensaoFiltro,
+                                                   String sortField,
+                                                   String sortDirection,
+                                                   Usuario usuarioLogado) {
+        validarAcessoListagem(pastaId, usuarioLogado);
+        return arquivoRepository.listarPorPasta(pastaId, nomeFiltro, extensaoFiltro,
+                campoOrdenacao(sortField), !"desc".equalsIgnoreCase(sortDirection));
+    }
+
+    /**
+     * Mesma listagem com paginação por cursor (keyset). O {@code cursor} vem de
+     * {@link PaginaCursorDTO#proximoCursor()} da página anterior (nulo na primeira).
+     */
+    public PaginaCursorDTO<ArquivoDTO> listarArquivosPorPastaComCursor(Long pastaId,
+                                                                     String nomeFiltro,
+                                                                     String extensaoFiltro,
+                                                                     String sortField,
+                                                                     String sortDirection,
+                                                                     String cursor,
+                                                                     int tamanho,
+                                                                     Usuario usuarioLogado) {
+        validarAcessoListagem(pastaId, usuarioLogado);
+        return arquivoRepository.listarPorPastaComCursor(pastaId, nomeFiltro, extensaoFiltro,
+                campoOrdenacao(sortField), !"desc".equalsIgnoreCase(sortDirection), cursor, tamanho);
+    }
+
+    private void validarAcessoListagem(Long pastaId, Usuario usuarioLogado) {
         // Busca a pasta
         Pasta pasta = pastaRepository.findById(pastaId)
                 .orElseThrow(() -> new EntityNotFoundException("Pasta não encontrada com ID: " + pastaId));
 
         // Verifica permissão
-        if (!pasta.getUsuariosComPermissao().contains(usuarioLogado)) {
+        if (!pastaAclService.temPermissao(usuarioLogado, pasta)) {
             throw new SecurityException("Usuário não possui permissão para acessar esta pasta.");
         }
+    }
 
-        // Busca arquivos da pasta
-        List<Arquivo> arquivos = arquivoRepository.findByPasta(pasta);
-
-        // Filtra por nome, se informado
-        if (nomeFiltro != null && !nomeFiltro.isBlank()) {
-            String nomeLower = nomeFiltro.toLowerCase();
-            arquivos = arquivos.stream()
-                    .filter(a -> a.getNomeArquivo() != null && a.getNomeArquivo().toLowerCase().contains(nomeLower))
-                    .collect(Collectors.toList());
-        }
-
-        // Filtra por extensão, se informado
-        if (extensaoFiltro != null && !extensaoFiltro.isBlank()) {
-            String extLower = extensaoFiltro.toLowerCase();
-            arquivos = arquivos.stream()
-                    .filter(a -> {
-                        String nome = a.getNomeArquivo();
-                        if (nome == null || !nome.contains(".")) return false;
-                        String arquivoExt = nome.substring(nome.lastIndexOf(".") + 1).toLowerCase();
-                        return arquivoExt.equals(extLower);
-                    })
-                    .collect(Collectors.toList());
-        }
-
-        // Ordenação
-        Comparator<Arquivo> comparator;
+    // Parâmetro da API -> atributo da entidade
+    private String campoOrdenacao(String sortField) {
         switch (sortField) {
             case "dataCriacao":
-                comparator = Comparator.comparing(Arquivo::getDataUpload);
-                break;
+                return "dataUpload";
             case "dataAtualizacao":
-                comparator = Comparator.comparing(Arquivo::getDataAtualizacao);
-                break;
+                return "dataAtualizacao";
             case "tamanhoBytes":
-                comparator = Comparator.comparing(Arquivo::getTamanho);
-                break;
+                return "tamanho";
             case "tipoMime":
-                comparator = Comparator.comparing(Arquivo::getTipoMime, Comparator.nullsLast(String::compareToIgnoreCase));
-                break;
+                return "tipoMime";
             default: // nomeArquivo
-                comparator = Comparator.comparing(Arquivo::getNomeArquivo, String.CASE_INSENSITIVE_ORDER);
-        }
-
-        if ("desc".equalsIgnoreCase(sortDirection)) {
-            comparator = comparator.reversed();
+                return "nomeArquivo";
         }
-
-        return arquivos.stream()
-                .sorted(comparator)
-                .collect(Collectors.toList());
     }
 
     /**
-     * Retorna o arquivo para ser exibido no navegador (Content-Disposition: inline).
+     * Envia o arquivo para ser exibido no navegador (Content-Disposition: inline),
+     * com suporte a Range e ETag via {@link ArquivoDownloadService}.
      */
-    public ResponseEntity<Resource> abrirNoNavegador(Long arquivoId, Usuario usuarioLogado) throws IOException {
+    public void abrirNoNavegador(Long arquivoId, Usuario usuarioLogado,
+                                 HttpServletRequest request, HttpServletResponse response) throws IOException {
         Arquivo arquivo = arquivoRepository.findById(arquivoId)
                 .orElseThrow(() -> new EntityNotFoundException("Arquivo não encontrado com ID: " + arquivoId));
 
         // 🔒 Verifica permissão
-        if (!arquivo.getPasta().getUsuariosComPermissao().contains(usuarioLogado)) {
+        if (!pastaAclService.temPermissao(usuarioLogado, arquivo.getPasta())) {
             throw new AccessDeniedException("Você não possui permissão para acessar este arquivo.");
         }
 
-        Path caminho = Paths.get(arquivo.getCaminhoArmazenamento());
-        if (!Files.exists(caminho)) {
-            throw new FileNotFoundException("Arquivo não encontrado no sistema de arquivos.");
-        }
-
-        // Detecta o tipo MIME automaticamente
-        String contentType = Files.probeContentType(caminho);
-        if (contentType == null) {
-            contentType = "application/octet-stream";
-        }
-
-        Resource resource = new FileSystemResource(caminho);
-
-        return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(contentType))
-                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + arquivo.getNomeArquivo() + "\"")
-                .body(resource);
+        arquivoDownloadService.enviar(arquivo, true, request, response);
     }
 
 
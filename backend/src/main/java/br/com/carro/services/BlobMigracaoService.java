@@ -0,0 +1,69 @@
+package br.com.carro.services;
+
+import br.com.carro.repositories.ArquivoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Migra em segundo plano os arquivos do layout antigo (um arquivo físico por registro, dentro da pasta)
+ * para o armazenamento deduplicado.
+ * <p>
+ * Só pega arquivos que já têm hash (gravados após o cálculo na escrita ou preenchidos pelo
+ * {@link HashArquivoBackfillService}); cada um vira um hard link no diretório de blobs, então a migração
+ * não relê conteúdo. O caminho antigo é apagado depois do commit, e só se nenhum outro registro o usar.
+ */
+@Service
+public class BlobMigracaoService {
+    private static final Logger logger = LoggerFactory.getLogger(BlobMigracaoService.class);
+
+    private final ArquivoRepository arquivoRepository;
+    private final BlobStoreService blobStoreService;
+
+    @Value("${storage.blob.migracao.habilitada:true}")
+    private boolean habilitada;
+
+    @Value("${storage.blob.migracao.tamanho-lote:200}")
+    private int tamanhoLote;
+
+    public BlobMigracaoService(ArquivoRepository arquivoRepository, BlobStoreService blobStoreService) {
+        this.arquivoRepository = arquivoRepository;
+        this.blobStoreService = blobStoreService;
+    }
+
+    @Scheduled(initialDelayString = "${storage.blob.migracao.atraso-inicial-ms:90000}",
+            fixedDelayString = "${storage.blob.migracao.intervalo-ms:300000}")
+    public void migrarPendentes() {
+        if (!habilitada) return;
+
+        long ultimoId = 0;
+        int migrados = 0;
+        List<Long> lote;
+        while (!(lote = arquivoRepository.findIdsParaMigrarAposId(ultimoId, PageRequest.of(0, tamanhoLote))).isEmpty()) {
+            for (Long id : lote) {
+                ultimoId = id;
+                try {
+                    Path legado = blobStoreService.migrar(id);
+                    if (legado == null) continue;
+                    migrados++;
+                    if (!arquivoRepository.existsByCaminhoArmazenamentoAndBlobHashIsNull(legado.toString())) {
+                        Files.deleteIfExists(legado);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("Migração de blob: falha no arquivo {}", id, e);
+                }
+            }
+        }
+        if (migrados > 0) {
+            logger.info("Migração de blob: {} arquivos levados para o armazenamento deduplicado.", migrados);
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package br.com.carro.services;
+
+import br.com.carro.entities.Arquivo;
+import br.com.carro.repositories.ArquivoRepository;
+import br.com.carro.repositories.BlobRepository;
+import br.com.carro.utils.ArquivoUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Armazenamento deduplicado por conteúdo.
+ * <p>
+ * Os bytes ficam uma única vez em {@code storage.blob.dir/<aa>/<bb>/<sha256>} e cada {@link Arquivo}
+ * aponta para o blob ({@code blobHash} e {@code caminhoArmazenamento}). Copiar um arquivo ou uma pasta
+ * inteira vira só uma referência a mais em tb_blob; renomear e mover não tocam no disco.
+ * <p>
+ * As referências são somadas/subtraídas na transação da operação do usuário. O arquivo físico só
+ * é apagado pela coleta periódica, depois que o blob fica sem referências confirmadas.
+ * O disco acompanha o desfecho da transação: um blob colocado por ela sai de novo se ela for desfeita
+ * (e nenhuma outra tiver criado a linha), e o arquivo do layout antigo só é apagado depois do commit.
+ * Arquivos com {@code blobHash} NULL continuam no layout antigo até o {@link BlobMigracaoService} migrá-los.
+ */
+@Service
+public class BlobStoreService {
+    private static final Logger logger = LoggerFactory.getLogger(BlobStoreService.class);
+
+    public record BlobArmazenado(String hash, Path caminho, long tamanho) {}
+
+    // Conteúdo pronto num temporário, fora de transação; ver preparar/armazenarPreparado
+    public record ConteudoPreparado(String hash, Path temporario, long tamanho) {}
+
+    private final BlobRepository blobRepository;
+    private final ArquivoRepository arquivoRepository;
+    private final TransactionTemplate transactionTemplate;
+    // Limpeza depois de um rollback: a transação original já terminou e não pode ser reaproveitada
+    private final TransactionTemplate transacaoNova;
+
+    // Deve ficar no mesmo volume das pastas e de .uploads para que a entrada no armazenamento seja um rename
+    @Value("${storage.blob.dir:${storage.root-dir}/.blobs}")
+    private String diretorioBlobs;
+
+    @Value("${storage.blob.coleta-lote:500}")
+    private int tamanhoLoteColeta;
+
+    public BlobStoreService(BlobRepository blobRepository, ArquivoRepository arquivoRepository,
+                            TransactionTemplate transactionTemplate) {
+        this.blobRepository = blobRepository;
+        this.arquivoRepository = arquivoRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.transacaoNova = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.transacaoNova.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    // ========================
+    // ESCRITA
+    // ========================
+
+    /**
+     * Grava um conteúdo novo (upload). O SHA-256 é calculado na mesma passada da gravação;
+     * se o blob já existir, o temporário é descartado e só a referência é somada.
+     */
+    public BlobArmazenado armazenar(InputStream origem) throws IOException {
+        Path temporario = novoTemporario();
+        try {
+            String hash = ArquivoUtils.gravarComHash(origem, temporario);
+            return registrar(hash, temporario, Files.size(temporario));
+        } finally {
+            Files.deleteIfExists(temporario);
+        }
+    }
+
+    /**
+     * Conteúdo já gravado em disco com hash conhecido (ex.: upload em partes).
+     * O arquivo é movido para o armazenamento, ou apagado se o blob já existir.
+     */
+    public BlobArmazenado armazenarArquivo(Path arquivo, String hash) throws IOException {
+        return registrar(hash, arquivo, Files.size(arquivo));
+    }
+
+    /**
+     * Conteúdo para a cópia de {@code origem}. Se a origem já está no armazenamento,
+     * a cópia é só uma referência a mais; senão o arquivo antigo é lido uma vez e armazenado.
+     */
+    public BlobArmazenado referenciar(Arquivo origem) throws IOException {
+        if (origem.getBlobHash() != null) {
+            blobRepository.somarReferencias(origem.getBlobHash(), 1);
+            return new BlobArmazenado(origem.getBlobHash(), caminhoDoBlob(origem.getBlobHash()),
+                    origem.getTamanho() != null ? origem.getTamanho() : 0L);
+        }
+        try (InputStream in = Files.newInputStream(Paths.get(origem.getCaminhoArmazenamento()))) {
+            return armazenar(in);
+        }
+    }
+
+    /**
+     * Cópias de arquivos que já estão no armazenamento: uma referência a mais por cópia,
+     * com uma atualização por hash distinto.
+     */
+    public void referenciarCopias(Collection<String> hashes) {
+        // Em ordem de hash: duas cópias simultâneas travam as linhas na mesma sequência
+        Map<String, Long> contagem = hashes.stream()
+                .collect(Collectors.groupingBy(Function.identity(), TreeMap::new, Collectors.counting()));
+        contagem.forEach((hash, quantidade) -> blobRepository.somarReferencias(hash, quantidade.intValue()));
+    }
+
+    /**
+     * Parte demorada da cópia de um arquivo do layout antigo, feita fora da transação (e em paralelo
+     * pela cópia de pastas). Com hash conhecido o temporário é um hard link da origem e nada é lido;
+     * sem hash, a origem é lida uma vez calculando o SHA-256. O chamador termina com
+     * {@link #armazenarPreparado} ou, se desistir, {@link #descartar}.
+     */
+    public ConteudoPreparado preparar(Path legado, String hashConhecido) throws IOException {
+        Path temporario = novoTemporario();
+        try {
+            if (hashConhecido != null) {
+                ligarOuCopiar(legado, temporario);
+                return new ConteudoPreparado(hashConhecido, temporario, Files.size(temporario));
+            }
+            try (InputStream in = Files.newInputStream(legado)) {
+                String hash = ArquivoUtils.gravarComHash(in, temporario);
+                return new ConteudoPreparado(hash, temporario, Files.size(temporario));
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporario);
+            throw e;
+        }
+    }
+
+    // Registra a referência (dentro da transação do chamador) e move o temporário para o armazenamento
+    public BlobArmazenado armazenarPreparado(ConteudoPreparado conteudo) throws IOException {
+        try {
+            return registrar(conteudo.hash(), conteudo.temporario(), conteudo.tamanho());
+        } finally {
+            Files.deleteIfExists(conteudo.temporario());
+        }
+    }
+
+    public void descartar(ConteudoPreparado conteudo) {
+        try {
+            Files.deleteIfExists(conteudo.temporario());
+        } catch (IOException e) {
+            logger.warn("Temporário {} não pôde ser removido", conteudo.temporario(), e);
+        }
+    }
+
+    // Aponta o arquivo para o blob
+    public void vincular(Arquivo arquivo, BlobArmazenado blob) {
+        arquivo.setCaminhoArmazenamento(blob.caminho().toString());
+        arquivo.setHashArquivo(blob.hash());
+        arquivo.setBlobHash(blob.hash());
+        arquivo.setTamanho(blob.tamanho());
+    }
+
+    // ========================
+    // LIBERAÇÃO
+    // ========================
+
+    /**
+     * Solta o conteúdo de um arquivo que está sendo excluído ou substituído.
+     * Blob: uma referência a menos (o disco é liberado pela coleta). Layout antigo: apaga o arquivo físico
+     * depois do commit; se a exclusão for desfeita, a linha continua apontando para um arquivo que existe.
+     */
+    public void liberar(Arquivo arquivo) {
+        if (arquivo.getBlobHash() != null) {
+            blobRepository.somarReferencias(arquivo.getBlobHash(), -1);
+        } else {
+            Path legado = Paths.get(arquivo.getCaminhoArmazenamento());
+            aposCommit(() -> {
+                try {
+                    Files.deleteIfExists(legado);
+                } catch (IOException e) {
+                    logger.warn("Arquivo {} não pôde ser removido", legado, e);
+                }
+            });
+        }
+    }
+
+    // Solta os blobs de todos os arquivos da subárvore (uma atualização por hash distinto)
+    public void liberarSubarvore(Long pastaId) {
+        Map<String, Long> contagem = arquivoRepository.findBlobHashesDaSubarvore(pastaId).stream()
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+        contagem.forEach((hash, quantidade) -> blobRepository.somarReferencias(hash, -quantidade.intValue()));
+    }
+
+    // ========================
+    // MIGRAÇÃO DO LAYOUT ANTIGO
+    // ========================
+
+    /**
+     * Leva um arquivo do layout antigo (que já tem hash) para o armazenamento, sem reler o conteúdo:
+     * o blob é criado como hard link do arquivo existente, ou descartado se outro igual já estiver lá.
+     *
+     * @return caminho antigo, a ser apagado pelo chamador depois do commit (null se nada mudou)
+     */
+    @Transactional
+    public Path migrar(Long arquivoId) throws IOException {
+        Arquivo arquivo = arquivoRepository.findById(arquivoId).orElse(null);
+        if (arquivo == null || arquivo.getBlobHash() != null || arquivo.getHashArquivo() == null) {
+            return null;
+        }
+        Path legado = Paths.get(arquivo.getCaminhoArmazenamento());
+        if (!Files.exists(legado)) {
+            logger.debug("Migração de blob: arquivo {} não existe no disco ({})", arquivoId, legado);
+            return null;
+        }
+
+        String hash = arquivo.getHashArquivo();
+        long tamanho = Files.size(legado);
+        blobRepository.inserirOuReferenciar(hash, tamanho);
+        Path destino = caminhoDoBlob(hash);
+        if (!Files.exists(destino)) {
+            Path temporario = novoTemporario();
+            ligarOuCopiar(legado, temporario);
+            colocar(temporario, destino);
+            removerSeDesfeita(hash);
+        }
+        vincular(arquivo, new BlobArmazenado(hash, destino, tamanho));
+        arquivoRepository.save(arquivo);
+        return legado;
+    }
+
+    // ========================
+    // COLETA
+    // ========================
+
+    /**
+     * Apaga blobs sem referência. Cada blob é travado com NOWAIT antes de sair do banco e do disco;
+     * se uma operação em andamento acabou de referenciá-lo, ele fica para a próxima rodada.
+     */
+    @Scheduled(initialDelayString = "${storage.blob.coleta-atraso-inicial-ms:120000}",
+            fixedDelayString = "${storage.blob.coleta-intervalo-ms:600000}")
+    public void coletarSemReferencia() {
+        List<String> candidatos = blobRepository.findHashesSemReferencia(PageRequest.of(0, tamanhoLoteColeta));
+        int removidos = 0;
+        for (String hash : candidatos) {
+            try {
+                Boolean removido = transactionTemplate.execute(status -> {
+                    if (blobRepository.travarSemReferencia(hash).isEmpty()) return false;
+                    blobRepository.excluirSeSemReferencia(hash);
+                    try {
+                        Files.deleteIfExists(caminhoDoBlob(hash));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return true;
+                });
+                if (Boolean.TRUE.equals(removido)) removidos++;
+            } catch (DataIntegrityViolationException e) {
+                // Ainda há arquivos apontando para o blob: contador divergente, recalcula a partir de tb_arquivo
+                logger.warn("Blob {} sem referências no contador mas em uso; recontando.", hash);
+                transactionTemplate.executeWithoutResult(status -> blobRepository.recontarReferencias(hash));
+            } catch (DataAccessException e) {
+                logger.debug("Blob {} em uso por outra transação; fica para a próxima coleta.", hash);
+            } catch (UncheckedIOException e) {
+                logger.warn("Não foi possível apagar o blob {}", hash, e);
+            }
+        }
+        if (removidos > 0) {
+            logger.info("Coleta de blobs: {} blobs sem referência removidos.", removidos);
+        }
+    }
+
+    // ========================
+    // AUXILIARES
+    // ========================
+
+    public Path caminhoDoBlob(String hash) {
+        return Paths.get(diretorioBlobs, hash.substring(0, 2), hash.substring(2, 4), hash);
+    }
+
+    private BlobArmazenado registrar(String hash, Path conteudo, long tamanho) throws IOException {
+        // A referência vem antes do arquivo: com a linha travada por esta transação a coleta não apaga o blob
+        blobRepository.inserirOuReferenciar(hash, tamanho);
+        Path destino = caminhoDoBlob(hash);
+        if (Files.exists(destino)) {
+            Files.deleteIfExists(conteudo);
+        } else {
+            colocar(conteudo, destino);
+            removerSeDesfeita(hash);
+        }
+        return new BlobArmazenado(hash, destino, tamanho);
+    }
+
+    // O blob foi colocado por esta transação: se ela for desfeita, o arquivo fica sem linha em tb_blob
+    private void removerSeDesfeita(String hash) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) removerSemLinha(hash);
+            }
+        });
+    }
+
+    // Com a linha (ou a falta dela) travada, um registro concorrente do mesmo hash ou já confirmou a linha
+    // (e o arquivo fica) ou espera este apagar o arquivo e coloca o seu
+    private void removerSemLinha(String hash) {
+        try {
+            transacaoNova.executeWithoutResult(status -> {
+                if (blobRepository.travar(hash).isPresent()) return;
+                try {
+                    Files.deleteIfExists(caminhoDoBlob(hash));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (RuntimeException e) {
+            logger.warn("Blob {} de uma transação desfeita não pôde ser removido", hash, e);
+        }
+    }
+
+    private void aposCommit(Runnable acao) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    acao.run();
+                }
+            });
+        } else {
+            acao.run();
+        }
+    }
+
+    private static void ligarOuCopiar(Path origem, Path destino) throws IOException {
+        try {
+            Files.createLink(destino, origem);
+        } catch (UnsupportedOperationException | IOException e) {
+            // Sistema de arquivos sem hard link (ou outro volume): cópia comum
+            Files.copy(origem, destino, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void colocar(Path origem, Path destino) throws IOException {
+        Files.createDirectories(destino.getParent());
+        try {
+            Files.move(origem, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(origem, destino, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private Path novoTemporario() throws IOException {
+        Path dir = Paths.get(diretorioBlobs, "tmp");
+        Files.createDirectories(dir);
+        return dir.resolve(UUID.randomUUID() + ".tmp");
+    }
+}
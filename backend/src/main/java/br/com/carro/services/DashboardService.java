@@ -6,7 +6,6 @@ import br.com.carro.repositories.DashboardRepository;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,6 +24,8 @@ public class DashboardService {
 
     /**
      * Gera o DashboardDTO com todas as métricas consolidadas.
+     * Séries, rankings e distribuições vêm das tabelas de métricas mantidas pelo {@link MetricasService}
+     * (leitura de poucas linhas, independente do volume de tb_arquivo).
      *
      * @param diasHistorico Quantos dias considerar para o gráfico de uploads por dia.
      * @param limiteTop     Quantos usuários/tipos devem ser retornados nos rankings.
@@ -46,22 +47,20 @@ public class DashboardService {
         // UPLOADS POR DIA
         // ========================
         LocalDate dataInicial = LocalDate.now().minusDays(diasHistorico);
-        LocalDateTime inicio = dataInicial.atStartOfDay();
-        Map<LocalDate, Long> uploadsPorDia = dashboardRepository.contarUploadsPorDia(inicio)
-                .stream()
-                .collect(Collectors.toMap(
-                        obj -> ((LocalDateTime) obj[0]).toLocalDate(),
-                        obj -> (Long) obj[1],
-                        Long::sum,
-                        LinkedHashMap::new
-                ));
+        Map<LocalDate, Long> uploadsPorDia = new LinkedHashMap<>();
+        // Série densa: dias sem upload aparecem com zero
+        for (LocalDate dia = dataInicial; !dia.isAfter(LocalDate.now()); dia = dia.plusDays(1)) {
+            uploadsPorDia.put(dia, 0L);
+        }
+        for (Object[] obj : dashboardRepository.contarUploadsPorDia(dataInicial)) {
+            uploadsPorDia.merge(toLocalDate(obj[0]), ((Number) obj[1]).longValue(), Long::sum);
+        }
 
         // ========================
         // TOP USUÁRIOS
         // ========================
-        Map<String, Long> topUsuariosPorUpload = dashboardRepository.topUsuariosPorUpload()
+        Map<String, Long> topUsuariosPorUpload = dashboardRepository.topUsuariosPorUpload(limiteTop)
                 .stream()
-                .limit(limiteTop)
                 .collect(Collectors.toMap(
                         obj -> (String) obj[0],
                         obj -> ((Number) obj[1]).longValue(),
@@ -69,9 +68,8 @@ public class DashboardService {
                         LinkedHashMap::new
                 ));
 
-        Map<String, Long> topUsuariosPorEspaco = dashboardRepository.topUsuariosPorEspaco()
+        Map<String, Long> topUsuariosPorEspaco = dashboardRepository.topUsuariosPorEspaco(limiteTop)
                 .stream()
-                .limit(limiteTop)
                 .collect(Collectors.toMap(
                         obj -> (String) obj[0],
                         obj -> ((Number) obj[1]).longValue(),
@@ -85,28 +83,26 @@ public class DashboardService {
         Map<String, Long> distribuicaoPorTipo = dashboardRepository.distribuicaoPorTipo()
                 .stream()
                 .collect(Collectors.toMap(
-                        obj -> obj[0] != null ? (String) obj[0] : "desconhecido",
+                        obj -> nomeTipo(obj[0]),
                         obj -> ((Number) obj[1]).longValue(),
                         Long::sum,
                         LinkedHashMap::new
                 ));
 
-        Map<String, Long> topTiposPorEspaco = dashboardRepository.topTiposPorEspaco()
+        Map<String, Long> topTiposPorEspaco = dashboardRepository.topTiposPorEspaco(limiteTop)
                 .stream()
-                .limit(limiteTop)
                 .collect(Collectors.toMap(
-                        obj -> obj[0] != null ? (String) obj[0] : "desconhecido",
+                        obj -> nomeTipo(obj[0]),
                         obj -> ((Number) obj[1]).longValue(),
                         Long::sum,
                         LinkedHashMap::new
                 ));
 
         // ========================
-        // USUÁRIOS (SessionTracker)      // ========================
-
-
-        long usuariosAtivosAgora = dashboardRepository.contarUsuariosAtivosAgora();
-        long usuariosLogaramHoje = dashboardRepository.contarUsuariosLogaramHoje();
+        // USUÁRIOS (SessionTracker, em memória)
+        // ========================
+        long usuariosAtivosAgora = sessionTracker.getUsuariosAtivosAgora();
+        long usuariosLogaramHoje = sessionTracker.getUsuariosLogaramHoje();
 
         // ========================
         // RETORNA DTO FINAL
@@ -126,4 +122,15 @@ public class DashboardService {
                 usuariosLogaramHoje
         );
     }
-}
\ No newline at end of file
+
+    // tb_metricas_tipo guarda '' para arquivos sem tipo MIME
+    private static String nomeTipo(Object tipo) {
+        return tipo == null || ((String) tipo).isEmpty() ? "desconhecido" : (String) tipo;
+    }
+
+    private static LocalDate toLocalDate(Object valor) {
+        if (valor instanceof LocalDate data) return data;
+        if (valor instanceof java.sql.Date data) return data.toLocalDate();
+        throw new IllegalArgumentException("Tipo de data inesperado: " + valor.getClass());
+    }
+}
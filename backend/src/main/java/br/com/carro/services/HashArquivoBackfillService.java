@@ -0,0 +1,119 @@
+package br.com.carro.services;
+
+import br.com.carro.repositories.ArquivoRepository;
+import br.com.carro.repositories.ArquivoRepository.ArquivoSemHash;
+import br.com.carro.utils.ArquivoUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.List;
+
+/**
+ * Preenche hash_arquivo (SHA-256) dos arquivos gravados antes do cálculo na escrita.
+ * <p>
+ * Roda em segundo plano, em lotes pela ordem do id, com leitura limitada a
+ * {@code storage.hash.backfill.bytes-por-segundo} para não disputar disco com downloads e uploads.
+ * Arquivos novos já chegam com hash (ver {@link ArquivoUtils#gravarComHash}); este job só cobre o legado.
+ */
+@Service
+public class HashArquivoBackfillService {
+    private static final Logger logger = LoggerFactory.getLogger(HashArquivoBackfillService.class);
+
+    private static final int TAMANHO_BUFFER = 64 * 1024;
+
+    private final ArquivoRepository arquivoRepository;
+
+    @Value("${storage.hash.backfill.habilitado:true}")
+    private boolean habilitado;
+
+    @Value("${storage.hash.backfill.tamanho-lote:100}")
+    private int tamanhoLote;
+
+    @Value("${storage.hash.backfill.bytes-por-segundo:52428800}")
+    private long bytesPorSegundo;
+
+    // Último id visitado; arquivos ausentes ou ilegíveis não voltam a ser tentados até o próximo reinício
+    private volatile long ultimoId = 0;
+
+    public HashArquivoBackfillService(ArquivoRepository arquivoRepository) {
+        this.arquivoRepository = arquivoRepository;
+    }
+
+    @Scheduled(initialDelayString = "${storage.hash.backfill.atraso-inicial-ms:60000}",
+            fixedDelayString = "${storage.hash.backfill.intervalo-ms:300000}")
+    public void preencherPendentes() {
+        if (!habilitado) return;
+
+        int preenchidos = 0;
+        List<ArquivoSemHash> lote;
+        while (!(lote = arquivoRepository.findSemHashAposId(ultimoId, PageRequest.of(0, tamanhoLote))).isEmpty()) {
+            for (ArquivoSemHash arquivo : lote) {
+                ultimoId = arquivo.getId();
+                try {
+                    String hash = calcularHash(Paths.get(arquivo.getCaminhoArmazenamento()));
+                    if (hash != null && arquivoRepository.preencherHash(arquivo.getId(), hash) > 0) {
+                        preenchidos++;
+                    }
+                } catch (NoSuchFileException e) {
+                    logger.warn("Backfill de hash: arquivo {} não existe no disco ({})", arquivo.getId(), e.getFile());
+                } catch (IOException e) {
+                    logger.warn("Backfill de hash: falha ao ler o arquivo {}", arquivo.getId(), e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+        if (preenchidos > 0) {
+            logger.info("Backfill de hash: {} arquivos preenchidos.", preenchidos);
+        }
+    }
+
+    /**
+     * SHA-256 do arquivo com leitura limitada por taxa.
+     * Retorna null se o arquivo mudou durante a leitura (o próximo write já grava o hash certo).
+     */
+    private String calcularHash(Path caminho) throws IOException, InterruptedException {
+        FileTime modificadoAntes = Files.getLastModifiedTime(caminho);
+        MessageDigest digest = ArquivoUtils.novoDigest();
+        byte[] buffer = new byte[TAMANHO_BUFFER];
+        long inicio = System.nanoTime();
+        long lidos = 0;
+
+        try (InputStream in = Files.newInputStream(caminho)) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, n);
+                lidos += n;
+                aguardarCota(lidos, inicio);
+            }
+        }
+
+        if (!Files.getLastModifiedTime(caminho).equals(modificadoAntes)) {
+            return null;
+        }
+        return ArquivoUtils.hex(digest);
+    }
+
+    // Dorme o necessário para manter a média em bytesPorSegundo
+    private void aguardarCota(long lidos, long inicioNanos) throws InterruptedException {
+        if (bytesPorSegundo <= 0) return;
+        long esperadoMs = lidos * 1000 / bytesPorSegundo;
+        long decorridoMs = (System.nanoTime() - inicioNanos) / 1_000_000;
+        if (esperadoMs > decorridoMs) {
+            Thread.sleep(esperadoMs - decorridoMs);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package br.com.carro.services;
+
+import br.com.carro.entities.DTO.JobDTO;
+import br.com.carro.entities.Job.Job;
+import br.com.carro.entities.Job.StatusJob;
+import br.com.carro.entities.Job.TipoJob;
+import br.com.carro.entities.Usuario.Usuario;
+import br.com.carro.repositories.JobRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.file.AccessDeniedException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executa operações longas fora da requisição HTTP.
+ * <p>
+ * A tarefa é registrada em tb_job e entregue a um pool limitado ({@code job.workers} threads,
+ * fila de {@code job.fila}); a requisição responde 202 com o id. O progresso fica em memória e é
+ * gravado no banco no máximo a cada {@code job.progresso-intervalo-ms}. O cancelamento é cooperativo:
+ * a tarefa verifica o pedido entre um lote e outro.
+ */
+@Service
+public class JobService {
+    private static final Logger logger = LoggerFactory.getLogger(JobService.class);
+
+    private static final int TAMANHO_MAXIMO_TEXTO = 1000;
+
+    @FunctionalInterface
+    public interface Tarefa {
+        // Retorna o texto de resultado gravado no job (ex.: id da pasta criada)
+        String executar(JobContexto contexto) throws Exception;
+    }
+
+    public static class JobCanceladoException extends RuntimeException {
+        public JobCanceladoException() {
+            super("Tarefa cancelada pelo usuário.");
+        }
+    }
+
+    /**
+     * Canal entre a tarefa e o JobService: contadores de progresso e pedido de cancelamento.
+     */
+    public final class JobContexto {
+        private final String id;
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong processados = new AtomicLong();
+        private volatile boolean cancelado;
+        private volatile long ultimaGravacao;
+
+        private JobContexto(String id) {
+            this.id = id;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public void somarTotal(long itens) {
+            total.addAndGet(itens);
+            gravarSeNecessario();
+        }
+
+        public void avancar(long itens) {
+            processados.addAndGet(itens);
+            gravarSeNecessario();
+        }
+
+        public boolean isCancelado() {
+            return cancelado;
+        }
+
+        public void verificarCancelamento() {
+            if (cancelado) throw new JobCanceladoException();
+        }
+
+        private void gravarSeNecessario() {
+            long agora = System.currentTimeMillis();
+            if (agora - ultimaGravacao < intervaloProgressoMs) return;
+            ultimaGravacao = agora;
+            jobRepository.atualizarProgresso(id, total.get(), processados.get(), LocalDateTime.now());
+        }
+    }
+
+    private final JobRepository jobRepository;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, JobContexto> ativos = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    @Value("${job.progresso-intervalo-ms:1000}")
+    private long intervaloProgressoMs;
+
+    public JobService(JobRepository jobRepository, MeterRegistry meterRegistry,
+                      @Value("${job.workers:2}") int workers,
+                      @Value("${job.fila:100}") int capacidadeFila) {
+        this.jobRepository = jobRepository;
+        this.meterRegistry = meterRegistry;
+
+        AtomicInteger sequencia = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(capacidadeFila),
+                r -> {
+                    Thread t = new Thread(r, "job-worker-" + sequencia.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+
+        meterRegistry.gauge("portal.job.em_execucao", executor, ThreadPoolExecutor::getActiveCount);
+        meterRegistry.gauge("portal.job.fila", executor, e -> e.getQueue().size());
+    }
+
+    // Tarefas que estavam na fila ou rodando quando a aplicação parou não serão retomadas
+    @EventListener(ApplicationReadyEvent.class)
+    public void marcarInterrompidos() {
+        int n = jobRepository.marcarInterrompidos(List.of(StatusJob.PENDENTE, StatusJob.EXECUTANDO),
+                "Interrompida pelo reinício do servidor.", LocalDateTime.now());
+        if (n > 0) {
+            logger.warn("{} tarefas interrompidas pelo reinício foram marcadas como FALHOU.", n);
+        }
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        ativos.values().forEach(c -> c.cancelado = true);
+        executor.shutdownNow();
+    }
+
+    // ========================
+    // SUBMISSÃO
+    // ========================
+
+    /**
+     * Registra e enfileira a tarefa. Se chamado dentro de uma transação, a execução só
+     * começa depois do commit (a tarefa pode depender do que a transação gravou).
+     *
+     * @throws IllegalStateException se a fila estiver cheia
+     */
+    public JobDTO submeter(TipoJob tipo, String descricao, Usuario usuarioLogado, Tarefa tarefa) {
+        if (executor.getQueue().remainingCapacity() == 0) {
+            throw new IllegalStateException("Muitas tarefas em andamento. Tente novamente em instantes.");
+        }
+
+        LocalDateTime agora = LocalDateTime.now();
+        Job job = new Job();
+        job.setId(UUID.randomUUID().toString());
+        job.setTipo(tipo);
+        job.setStatus(StatusJob.PENDENTE);
+        job.setDescricao(truncar(descricao));
+        job.setTotalItens(0L);
+        job.setItensProcessados(0L);
+        job.setCancelamentoSolicitado(false);
+        job.setCriadoPor(usuarioLogado);
+        job.setDataCriacao(agora);
+        job.setDataAtualizacao(agora);
+        job = jobRepository.save(job);
+
+        JobContexto contexto = new JobContexto(job.getId());
+        ativos.put(job.getId(), contexto);
+
+        Runnable enfileirar = () -> enfileirar(tipo, contexto, tarefa);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enfileirar.run();
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) ativos.remove(contexto.getId());
+                }
+            });
+        } else {
+            enfileirar.run();
+        }
+        return JobDTO.fromEntity(job);
+    }
+
+    private void enfileirar(TipoJob tipo, JobContexto contexto, Tarefa tarefa) {
+        try {
+            executor.execute(() -> executar(tipo, contexto, tarefa));
+        } catch (RejectedExecutionException e) {
+            ativos.remove(contexto.getId());
+            jobRepository.finalizar(contexto.getId(), StatusJob.FALHOU, 0, 0, null,
+                    "Fila de tarefas cheia.", LocalDateTime.now());
+        }
+    }
+
+    private void executar(TipoJob tipo, JobContexto contexto, Tarefa tarefa) {
+        String id = contexto.getId();
+        StatusJob status;
+        String resultado = null;
+        String erro = null;
+        try {
+            if (contexto.isCancelado()) throw new JobCanceladoException();
+            jobRepository.marcarInicio(id, StatusJob.EXECUTANDO, LocalDateTime.now());
+            resultado = tarefa.executar(contexto);
+            status = StatusJob.CONCLUIDO;
+        } catch (JobCanceladoException e) {
+            status = StatusJob.CANCELADO;
+            erro = e.getMessage();
+        } catch (Exception e) {
+            logger.error("Tarefa {} ({}) falhou", id, tipo, e);
+            status = StatusJob.FALHOU;
+            erro = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        } finally {
+            ativos.remove(id);
+        }
+
+        try {
+            jobRepository.finalizar(id, status, contexto.total.get(), contexto.processados.get(),
+                    truncar(resultado), truncar(erro), LocalDateTime.now());
+        } catch (RuntimeException e) {
+            logger.error("Não foi possível gravar o resultado da tarefa {}", id, e);
+        }
+        meterRegistry.counter("portal.job", "tipo", tipo.name(), "status", status.name()).increment();
+    }
+
+    // ========================
+    // CONSULTA E CANCELAMENTO
+    // ========================
+
+    public JobDTO consultar(String id, Usuario usuarioLogado) throws AccessDeniedException {
+        return paraDTO(buscarDoUsuario(id, usuarioLogado));
+    }
+
+    public Page<JobDTO> listar(Usuario usuarioLogado, Pageable pageable) {
+        return jobRepository.findByCriadoPorIdOrderByDataCriacaoDesc(usuarioLogado.getId(), pageable)
+                .map(this::paraDTO);
+    }
+
+    public JobDTO cancelar(String id, Usuario usuarioLogado) throws AccessDeniedException {
+        Job job = buscarDoUsuario(id, usuarioLogado);
+        if (job.getStatus().isFinal()) {
+            throw new IllegalStateException("A tarefa já terminou com status " + job.getStatus() + ".");
+        }
+        jobRepository.solicitarCancelamento(id, LocalDateTime.now());
+        JobContexto contexto = ativos.get(id);
+        if (contexto != null) contexto.cancelado = true;
+        job.setCancelamentoSolicitado(true);
+        return paraDTO(job);
+    }
+
+    // Job concluído do usuário, para entregar o resultado (ex.: download do ZIP)
+    public Job buscarConcluido(String id, TipoJob tipo, Usuario usuarioLogado) throws AccessDeniedException {
+        Job job = buscarDoUsuario(id, usuarioLogado);
+        if (job.getTipo() != tipo) {
+            throw new IllegalArgumentException("A tarefa " + id + " não é do tipo " + tipo + ".");
+        }
+        if (job.getStatus() != StatusJob.CONCLUIDO) {
+            throw new IllegalStateException("A tarefa ainda não foi concluída (status " + job.getStatus() + ").");
+        }
+        return job;
+    }
+
+    private Job buscarDoUsuario(String id, Usuario usuarioLogado) throws AccessDeniedException {
+        Job job = jobRepository.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException("Tarefa não encontrada: " + id));
+        if (usuarioLogado == null
+                || (!usuarioLogado.isAdmin() && !job.getCriadoPor().getId().equals(usuarioLogado.getId()))) {
+            throw new AccessDeniedException("Esta tarefa pertence a outro usuário.");
+        }
+        return job;
+    }
+
+    // Enquanto roda, os contadores em memória são mais recentes que os gravados
+    private JobDTO paraDTO(Job job) {
+        JobContexto contexto = ativos.get(job.getId());
+        if (contexto != null && !job.getStatus().isFinal()) {
+            return JobDTO.fromEntity(job, contexto.total.get(), contexto.processados.get());
+        }
+        return JobDTO.fromEntity(job);
+    }
+
+    private static String truncar(String texto) {
+        if (texto == null || texto.length() <= TAMANHO_MAXIMO_TEXTO) return texto;
+        return texto.substring(0, TAMANHO_MAXIMO_TEXTO);
+    }
+}
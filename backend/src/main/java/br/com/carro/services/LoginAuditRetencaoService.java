@@ -0,0 +1,134 @@
+package br.com.carro.services;
+
+import br.com.carro.repositories.LoginAuditRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Retenção de tb_login_audit, particionada por mês (V12).
+ * <p>
+ * Roda de madrugada: resume os dias fechados em tb_login_resumo_diario (usuários distintos e logins
+ * por dia), cria as partições dos próximos {@code login-audit.particoes-futuras} meses e remove com
+ * DROP PARTITION as que terminam antes da janela de {@code login-audit.retencao-meses}. O histórico
+ * além da janela fica só no resumo.
+ */
+@Service
+public class LoginAuditRetencaoService {
+    private static final Logger logger = LoggerFactory.getLogger(LoginAuditRetencaoService.class);
+
+    private static final String PARTICAO_FUTURO = "p_futuro";
+    private static final DateTimeFormatter NOME_PARTICAO = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    private record Particao(String nome, LocalDate limite) {}
+
+    private final LoginAuditRepository loginAuditRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${login-audit.retencao-meses:12}")
+    private int retencaoMeses;
+
+    @Value("${login-audit.particoes-futuras:3}")
+    private int particoesFuturas;
+
+    public LoginAuditRetencaoService(LoginAuditRepository loginAuditRepository, JdbcTemplate jdbcTemplate,
+                                     TransactionTemplate transactionTemplate) {
+        this.loginAuditRepository = loginAuditRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @Scheduled(cron = "${login-audit.retencao-cron:0 30 3 * * *}")
+    public void executar() {
+        executar(LocalDate.now());
+    }
+
+    void executar(LocalDate hoje) {
+        long inicio = System.currentTimeMillis();
+        int dias = resumir(hoje);
+
+        List<Particao> particoes = listarParticoes();
+        if (particoes.isEmpty()) {
+            logger.warn("tb_login_audit não está particionada; retenção por partição ignorada.");
+            return;
+        }
+        int criadas = criarParticoesFuturas(particoes, hoje.withDayOfMonth(1).plusMonths(particoesFuturas + 1L));
+        List<String> removidas = removerAntigas(particoes, hoje.withDayOfMonth(1).minusMonths(retencaoMeses));
+        logger.info("Retenção de tb_login_audit: {} dia(s) resumido(s), {} partição(ões) criada(s), removidas {} em {} ms",
+                dias, criadas, removidas, System.currentTimeMillis() - inicio);
+    }
+
+    // ========================
+    // RESUMO
+    // ========================
+
+    // Reprocessa a partir do último dia resumido (logins gravados com atraso pela fila) até ontem
+    private int resumir(LocalDate hoje) {
+        String ultimo = loginAuditRepository.ultimoDiaResumido();
+        LocalDate desde = ultimo != null ? LocalDate.parse(ultimo) : LocalDate.of(1970, 1, 1);
+        if (!desde.isBefore(hoje)) return 0;
+        Integer linhas = transactionTemplate.execute(status ->
+                loginAuditRepository.resumirDias(desde.atStartOfDay(), hoje.atStartOfDay()));
+        return linhas != null ? linhas : 0;
+    }
+
+    // ========================
+    // PARTIÇÕES
+    // ========================
+
+    private List<Particao> listarParticoes() {
+        return jdbcTemplate.query(
+                "SELECT PARTITION_NAME, PARTITION_DESCRIPTION FROM information_schema.PARTITIONS " +
+                        "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'tb_login_audit' AND PARTITION_NAME IS NOT NULL " +
+                        "ORDER BY PARTITION_ORDINAL_POSITION",
+                (rs, i) -> new Particao(rs.getString(1), limite(rs.getString(2))));
+    }
+
+    // Divide p_futuro (vazia em operação normal, então é só metadado) até cobrir o horizonte
+    private int criarParticoesFuturas(List<Particao> particoes, LocalDate horizonte) {
+        LocalDate ultimoLimite = particoes.stream()
+                .map(Particao::limite)
+                .filter(l -> l != null)
+                .max(LocalDate::compareTo)
+                .orElse(null);
+        if (ultimoLimite == null) return 0;
+
+        List<String> novas = new ArrayList<>();
+        for (LocalDate mes = ultimoLimite; mes.isBefore(horizonte); mes = mes.plusMonths(1)) {
+            novas.add("PARTITION " + mes.format(NOME_PARTICAO) + " VALUES LESS THAN ('" + mes.plusMonths(1) + "')");
+        }
+        if (novas.isEmpty()) return 0;
+        novas.add("PARTITION " + PARTICAO_FUTURO + " VALUES LESS THAN (MAXVALUE)");
+        jdbcTemplate.execute("ALTER TABLE tb_login_audit REORGANIZE PARTITION " + PARTICAO_FUTURO +
+                " INTO (" + String.join(", ", novas) + ")");
+        return novas.size() - 1;
+    }
+
+    // Só remove partições inteiramente antes do corte e já cobertas pelo resumo (que vai até ontem)
+    private List<String> removerAntigas(List<Particao> particoes, LocalDate corte) {
+        List<String> antigas = particoes.stream()
+                .filter(p -> p.limite() != null && !p.limite().isAfter(corte))
+                .map(Particao::nome)
+                .toList();
+        if (!antigas.isEmpty()) {
+            jdbcTemplate.execute("ALTER TABLE tb_login_audit DROP PARTITION " + String.join(", ", antigas));
+        }
+        return antigas;
+    }
+
+    // PARTITION_DESCRIPTION: '2026-11-01 00:00:00' (com aspas) ou MAXVALUE
+    private static LocalDate limite(String descricao) {
+        if (descricao == null || descricao.equalsIgnoreCase("MAXVALUE")) return null;
+        return LocalDate.parse(descricao.replace("'", "").substring(0, 10));
+    }
+}
@@ -0,0 +1,166 @@
+package br.com.carro.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Grava tb_login_audit fora da requisição de login.
+ * <p>
+ * O login só coloca o registro numa fila limitada ({@code login-audit.fila}); uma thread dedicada
+ * esvazia a fila em lotes de até {@code login-audit.tamanho-lote} linhas com um único batch JDBC.
+ * Com a fila cheia o login espera no máximo {@code login-audit.espera-maxima-ms} por espaço e, se
+ * ainda assim não houver, o registro é descartado e contado em {@code portal.login.auditoria.descartados}
+ * (o login nunca falha por causa da auditoria). No encerramento da aplicação a fila é gravada por inteiro.
+ */
+@Service
+public class LoginAuditService {
+    private static final Logger logger = LoggerFactory.getLogger(LoginAuditService.class);
+
+    private static final String INSERIR = "INSERT INTO tb_login_audit (username, data_login) VALUES (?, ?)";
+    private static final int TENTATIVAS = 3;
+
+    private record Registro(String username, LocalDateTime dataLogin, long enfileiradoEm) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlockingQueue<Registro> fila;
+    private final int tamanhoLote;
+    private final long esperaMaximaMs;
+    private final Thread gravador;
+    private volatile boolean ativo = true;
+
+    private final Counter gravados;
+    private final Counter descartadosFilaCheia;
+    private final Counter descartadosErro;
+    private final Timer latencia;
+
+    public LoginAuditService(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                             @Value("${login-audit.fila:10000}") int capacidadeFila,
+                             @Value("${login-audit.tamanho-lote:200}") int tamanhoLote,
+                             @Value("${login-audit.espera-maxima-ms:50}") long esperaMaximaMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.fila = new ArrayBlockingQueue<>(capacidadeFila);
+        this.tamanhoLote = tamanhoLote;
+        this.esperaMaximaMs = esperaMaximaMs;
+
+        this.gravados = meterRegistry.counter("portal.login.auditoria.gravados");
+        this.descartadosFilaCheia = meterRegistry.counter("portal.login.auditoria.descartados", "motivo", "fila_cheia");
+        this.descartadosErro = meterRegistry.counter("portal.login.auditoria.descartados", "motivo", "erro_banco");
+        this.latencia = Timer.builder("portal.login.auditoria.latencia")
+                .description("Tempo entre o login e a gravação do registro")
+                .register(meterRegistry);
+        meterRegistry.gauge("portal.login.auditoria.fila", fila, BlockingQueue::size);
+
+        this.gravador = new Thread(this::executar, "login-audit-writer");
+        this.gravador.setDaemon(true);
+        this.gravador.start();
+    }
+
+    /**
+     * Enfileira o registro do login. Não acessa o banco.
+     */
+    public void registrar(String username) {
+        Registro registro = new Registro(username, LocalDateTime.now(), System.nanoTime());
+        try {
+            if (fila.offer(registro) || fila.offer(registro, esperaMaximaMs, TimeUnit.MILLISECONDS)) return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        descartadosFilaCheia.increment();
+        logger.warn("Fila de auditoria de login cheia; login de '{}' não será registrado.", username);
+    }
+
+    // ========================
+    // GRAVAÇÃO
+    // ========================
+
+    private void executar() {
+        List<Registro> lote = new ArrayList<>(tamanhoLote);
+        while (ativo) {
+            try {
+                Registro primeiro = fila.poll(1, TimeUnit.SECONDS);
+                if (primeiro == null) continue;
+                lote.add(primeiro);
+                fila.drainTo(lote, tamanhoLote - 1);
+                gravar(lote);
+            } catch (InterruptedException e) {
+                // o restante da fila é gravado por encerrar()
+                if (!lote.isEmpty()) gravarSemEspera(lote);
+                break;
+            } finally {
+                lote.clear();
+            }
+        }
+    }
+
+    private void gravar(List<Registro> lote) throws InterruptedException {
+        for (int tentativa = 1; ; tentativa++) {
+            try {
+                jdbcTemplate.batchUpdate(INSERIR, lote, lote.size(), (ps, r) -> {
+                    ps.setString(1, r.username());
+                    ps.setTimestamp(2, Timestamp.valueOf(r.dataLogin()));
+                });
+                long agora = System.nanoTime();
+                lote.forEach(r -> latencia.record(agora - r.enfileiradoEm(), TimeUnit.NANOSECONDS));
+                gravados.increment(lote.size());
+                return;
+            } catch (RuntimeException e) {
+                if (tentativa >= TENTATIVAS || !ativo) {
+                    descartadosErro.increment(lote.size());
+                    logger.error("Não foi possível gravar {} registro(s) de login após {} tentativa(s)",
+                            lote.size(), tentativa, e);
+                    return;
+                }
+                logger.warn("Falha ao gravar auditoria de login (tentativa {}), repetindo: {}", tentativa, e.getMessage());
+                Thread.sleep(500L * tentativa);
+            }
+        }
+    }
+
+    /**
+     * Para a thread e grava o que ainda estiver na fila. O Spring destrói este bean antes do
+     * DataSource, do qual ele depende.
+     */
+    @PreDestroy
+    public void encerrar() {
+        // Sem interrupt: um lote em andamento termina normalmente; a espera na fila dura no máximo 1 s
+        ativo = false;
+        try {
+            gravador.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<Registro> lote = new ArrayList<>(tamanhoLote);
+        int total = 0;
+        while (fila.drainTo(lote, tamanhoLote) > 0) {
+            gravarSemEspera(lote);
+            total += lote.size();
+            lote.clear();
+        }
+        if (total > 0) logger.info("{} registro(s) de login pendentes processados no encerramento.", total);
+    }
+
+    // Com ativo = false, gravar() faz uma única tentativa e não dorme
+    private void gravarSemEspera(List<Registro> lote) {
+        try {
+            gravar(lote);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package br.com.carro.services;
+
+import br.com.carro.autenticacao.LimitadorTentativasLogin;
+import br.com.carro.entities.Usuario.Usuario;
+import br.com.carro.exceptions.LimiteExcedidoException;
+import br.com.carro.repositories.UsuarioRepository;
+import br.com.carro.utils.AuthService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Verificação de senha do login fora das threads do Tomcat.
+ * <p>
+ * O BCrypt é proposital e caro; numa troca de turno ou num ataque de força bruta ele ocupava todos os
+ * núcleos e atrasava downloads. Aqui cada tentativa passa antes pelo {@link LimitadorTentativasLogin}
+ * e depois roda num pool de {@code login.bcrypt-workers} threads com fila de {@code login.bcrypt-fila};
+ * fila cheia responde 429 na hora. O tempo de fila e o de verificação são medidos separadamente.
+ * <p>
+ * Hashes com custo menor que {@code senha.bcrypt-custo} são refeitos depois do login, no mesmo pool,
+ * sem atrasar a resposta (só quando há vaga: senão fica para o próximo login). Custo maior fica como está.
+ */
+@Service
+public class LoginService {
+    private static final Logger logger = LoggerFactory.getLogger(LoginService.class);
+
+    private static final Pattern CUSTO_BCRYPT = Pattern.compile("^\\$2[aby]?\\$(\\d{2})\\$");
+
+    private final AuthenticationManager authenticationManager;
+    private final LimitadorTentativasLogin limitador;
+    private final PasswordEncoder passwordEncoder;
+    private final UsuarioRepository usuarioRepository;
+    private final AuthService authService;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor executor;
+
+    private final Timer tempoFila;
+    private final Timer tempoVerificacao;
+    private final Counter rejeitados;
+    private final Counter rehashes;
+
+    @Value("${login.bcrypt-timeout-ms:10000}")
+    private long timeoutMs;
+
+    @Value("${senha.bcrypt-custo:10}")
+    private int custoConfigurado;
+
+    public LoginService(AuthenticationManager authenticationManager, LimitadorTentativasLogin limitador,
+                        PasswordEncoder passwordEncoder, UsuarioRepository usuarioRepository, AuthService authService,
+                        TransactionTemplate transactionTemplate, MeterRegistry meterRegistry,
+                        @Value("${login.bcrypt-workers:0}") int workers,
+                        @Value("${login.bcrypt-fila:64}") int capacidadeFila) {
+        this.authenticationManager = authenticationManager;
+        this.limitador = limitador;
+        this.passwordEncoder = passwordEncoder;
+        this.usuarioRepository = usuarioRepository;
+        this.authService = authService;
+        this.transactionTemplate = transactionTemplate;
+
+        // 0 = metade dos núcleos: sobra CPU para o resto da aplicação
+        int threads = workers > 0 ? workers : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger sequencia = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidadeFila),
+                r -> {
+                    Thread t = new Thread(r, "bcrypt-" + sequencia.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+
+        this.tempoFila = meterRegistry.timer("portal.login.bcrypt.fila.tempo");
+        this.tempoVerificacao = meterRegistry.timer("portal.login.bcrypt.verificacao");
+        this.rejeitados = meterRegistry.counter("portal.login.bcrypt.rejeitados");
+        this.rehashes = meterRegistry.counter("portal.login.bcrypt.rehash");
+        meterRegistry.gauge("portal.login.bcrypt.fila", executor, e -> e.getQueue().size());
+        meterRegistry.gauge("portal.login.bcrypt.em_execucao", executor, ThreadPoolExecutor::getActiveCount);
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Autentica usuário e senha.
+     *
+     * @throws LimiteExcedidoException se o usuário/IP excedeu o limite ou o pool estiver saturado
+     * @throws org.springframework.security.core.AuthenticationException se as credenciais forem inválidas
+     */
+    public Authentication autenticar(String username, String senha, String ip) {
+        limitador.verificar(username, ip);
+
+        long enfileiradoEm = System.nanoTime();
+        Future<Authentication> futuro;
+        try {
+            futuro = executor.submit(() -> {
+                tempoFila.record(System.nanoTime() - enfileiradoEm, TimeUnit.NANOSECONDS);
+                return tempoVerificacao.recordCallable(() ->
+                        authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(username, senha)));
+            });
+        } catch (RejectedExecutionException e) {
+            // Nem chegou a conferir a senha: não conta contra o usuário
+            limitador.devolver(username);
+            rejeitados.increment();
+            throw new LimiteExcedidoException("Muitos logins simultâneos. Tente novamente em instantes.", 2);
+        }
+
+        Authentication authentication;
+        try {
+            authentication = futuro.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException("Falha ao verificar a senha.", e.getCause());
+        } catch (TimeoutException e) {
+            futuro.cancel(true);
+            rejeitados.increment();
+            throw new LimiteExcedidoException("Servidor ocupado verificando logins. Tente novamente em instantes.", 2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Login interrompido.", e);
+        }
+
+        limitador.devolver(username);
+        if (authentication.getPrincipal() instanceof Usuario usuario) {
+            agendarRehash(usuario.getId(), usuario.getPassword(), senha);
+        }
+        return authentication;
+    }
+
+    // ========================
+    // REHASH
+    // ========================
+
+    private void agendarRehash(Long usuarioId, String hashAtual, String senha) {
+        if (hashAtual == null || !precisaRehash(hashAtual, custoConfigurado)) return;
+        try {
+            executor.execute(() -> rehash(usuarioId, hashAtual, senha));
+        } catch (RejectedExecutionException e) {
+            logger.debug("Pool de BCrypt cheio; rehash do usuário {} fica para o próximo login.", usuarioId);
+        }
+    }
+
+    private void rehash(Long usuarioId, String hashAtual, String senha) {
+        try {
+            String novoHash = passwordEncoder.encode(senha);
+            // Só troca se a senha não mudou enquanto isso
+            Integer atualizados = transactionTemplate.execute(status ->
+                    usuarioRepository.atualizarHashSenha(usuarioId, hashAtual, novoHash));
+            if (atualizados != null && atualizados > 0) {
+                authService.invalidarUsuario(usuarioId);
+                rehashes.increment();
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Não foi possível refazer o hash da senha do usuário {}", usuarioId, e);
+        }
+    }
+
+    // Só sobe o custo: um hash mais forte que o configurado não é trocado por um mais fraco
+    static boolean precisaRehash(String hash, int custoConfigurado) {
+        return custo(hash) < custoConfigurado;
+    }
+
+    // -1 se não for um hash BCrypt reconhecível (nesse caso é refeito com o custo configurado)
+    static int custo(String hash) {
+        Matcher m = CUSTO_BCRYPT.matcher(hash);
+        return m.find() ? Integer.parseInt(m.group(1)) : -1;
+    }
+}
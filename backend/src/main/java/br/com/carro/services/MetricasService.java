@@ -0,0 +1,115 @@
+package br.com.carro.services;
+
+import br.com.carro.entities.Arquivo;
+import br.com.carro.repositories.DashboardRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Mantém as tabelas de métricas do painel (tb_metricas_diarias, tb_metricas_usuario, tb_metricas_tipo)
+ * a cada arquivo incluído ou excluído, com um upsert por dia/usuário/tipo afetado. O
+ * {@link DashboardService} só lê essas linhas, sem agregar tb_arquivo.
+ * <p>
+ * Chamado pelo {@link PastaAgregadoService}, que já é avisado de toda inclusão e exclusão de arquivos.
+ * A série diária registra eventos (uma exclusão não apaga o upload do histórico); os totais por
+ * usuário e por tipo refletem o estado atual e são recalculados pela compactação diária.
+ */
+@Service
+public class MetricasService {
+    private static final Logger logger = LoggerFactory.getLogger(MetricasService.class);
+
+    // tipo_mime nulo vira '' (chave primária)
+    private static final String TIPO_DESCONHECIDO = "";
+
+    private final DashboardRepository dashboardRepository;
+
+    public MetricasService(DashboardRepository dashboardRepository) {
+        this.dashboardRepository = dashboardRepository;
+    }
+
+    @Transactional
+    public void arquivosIncluidos(Collection<Arquivo> arquivos) {
+        Map<LocalDate, long[]> porDia = new HashMap<>();
+        for (Arquivo arquivo : arquivos) {
+            LocalDate dia = arquivo.getDataUpload() != null ? arquivo.getDataUpload().toLocalDate() : LocalDate.now();
+            somar(porDia, dia, 1, tamanho(arquivo));
+        }
+        porDia.forEach((dia, t) -> dashboardRepository.somarMetricaDiaria(dia, t[0], t[1], 0, 0));
+        somarPorUsuarioETipo(arquivos, 1);
+    }
+
+    @Transactional
+    public void arquivosExcluidos(Collection<Arquivo> arquivos) {
+        if (arquivos.isEmpty()) return;
+        long bytes = arquivos.stream().mapToLong(MetricasService::tamanho).sum();
+        dashboardRepository.somarMetricaDiaria(LocalDate.now(), 0, 0, arquivos.size(), bytes);
+        somarPorUsuarioETipo(arquivos, -1);
+    }
+
+    /**
+     * Conteúdo do arquivo trocado: o tipo e o tamanho anteriores saem, os novos entram.
+     */
+    @Transactional
+    public void arquivoSubstituido(String tipoAnterior, long tamanhoAnterior, Arquivo arquivo) {
+        String tipoNovo = tipo(arquivo.getTipoMime());
+        String tipoVelho = tipo(tipoAnterior);
+        long diferenca = tamanho(arquivo) - tamanhoAnterior;
+        if (tipoNovo.equals(tipoVelho)) {
+            if (diferenca != 0) dashboardRepository.somarMetricaTipo(tipoNovo, 0, diferenca);
+        } else {
+            dashboardRepository.somarMetricaTipo(tipoVelho, -1, -tamanhoAnterior);
+            dashboardRepository.somarMetricaTipo(tipoNovo, 1, tamanho(arquivo));
+        }
+        if (diferenca != 0 && arquivo.getCriadoPor() != null) {
+            dashboardRepository.somarMetricaUsuario(arquivo.getCriadoPor().getId(), 0, diferenca);
+        }
+    }
+
+    /**
+     * Recalcula os totais por usuário e por tipo a partir de tb_arquivo (corrige desvios e remove
+     * usuários/tipos sem arquivos). Roda de madrugada; a série diária não é recalculada.
+     */
+    @Scheduled(cron = "${metricas.compactacao-cron:0 15 3 * * *}")
+    @Transactional
+    public void compactar() {
+        long inicio = System.currentTimeMillis();
+        dashboardRepository.limparMetricasUsuario();
+        int usuarios = dashboardRepository.recalcularMetricasUsuario();
+        dashboardRepository.limparMetricasTipo();
+        int tipos = dashboardRepository.recalcularMetricasTipo();
+        logger.info("Métricas do painel compactadas: {} usuários, {} tipos em {} ms",
+                usuarios, tipos, System.currentTimeMillis() - inicio);
+    }
+
+    private void somarPorUsuarioETipo(Collection<Arquivo> arquivos, int sinal) {
+        Map<Long, long[]> porUsuario = new HashMap<>();
+        Map<String, long[]> porTipo = new HashMap<>();
+        for (Arquivo arquivo : arquivos) {
+            long bytes = tamanho(arquivo);
+            if (arquivo.getCriadoPor() != null) somar(porUsuario, arquivo.getCriadoPor().getId(), 1, bytes);
+            somar(porTipo, tipo(arquivo.getTipoMime()), 1, bytes);
+        }
+        porUsuario.forEach((id, t) -> dashboardRepository.somarMetricaUsuario(id, sinal * t[0], sinal * t[1]));
+        porTipo.forEach((tipo, t) -> dashboardRepository.somarMetricaTipo(tipo, sinal * t[0], sinal * t[1]));
+    }
+
+    private static <K> void somar(Map<K, long[]> totais, K chave, long arquivos, long bytes) {
+        long[] t = totais.computeIfAbsent(chave, k -> new long[2]);
+        t[0] += arquivos;
+        t[1] += bytes;
+    }
+
+    private static String tipo(String tipoMime) {
+        return tipoMime != null ? tipoMime : TIPO_DESCONHECIDO;
+    }
+
+    private static long tamanho(Arquivo arquivo) {
+        return arquivo.getTamanho() != null ? arquivo.getTamanho() : 0L;
+    }
+}
@@ -0,0 +1,260 @@
+package br.com.carro.services;
+
+import br.com.carro.entities.Pasta;
+import br.com.carro.entities.Usuario.Usuario;
+import br.com.carro.repositories.PastaRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Índice em memória de tb_permissao_pasta: para cada usuário, um {@link BitSet} com os ids das pastas
+ * em que ele recebeu permissão diretamente.
+ * <p>
+ * A permissão é herdada: quem tem permissão numa pasta tem em toda a subárvore dela, e tb_permissao_pasta
+ * guarda só as concessões explícitas (não há cópia para cada subpasta). A verificação sobe pelo mapa
+ * pasta -> pai, também em memória, testando o bit de cada ancestral no BitSet do usuário; não há consulta
+ * ao banco nem inicialização de {@code Pasta.usuariosComPermissao}. A subida para numa pasta com
+ * {@code herda_permissoes = false}: ali só valem as concessões da própria pasta (e de quem estiver abaixo
+ * dela no caminho), como antes da herança. Os BitSets publicados nunca são
+ * alterados: cada mudança cria uma cópia, então as leituras não precisam de lock.
+ * <p>
+ * Quem grava em tb_permissao_pasta chama {@link #atualizarPastas} ou {@link #removerUsuario}; o índice
+ * relê só as linhas afetadas depois do commit. Criação e movimentação de pastas chegam por
+ * {@link PastaHierarquiaService}. Uma recarga completa periódica cobre alterações feitas
+ * por outra instância da aplicação ou direto no banco.
+ */
+@Service
+public class PastaAclService {
+    private static final Logger logger = LoggerFactory.getLogger(PastaAclService.class);
+
+    private final PastaRepository pastaRepository;
+
+    // Limite de níveis percorridos; acima disso (ou em ciclo) a verificação vai ao banco
+    private static final int PROFUNDIDADE_MAXIMA = 1000;
+    private static final Long SEM_PAI = 0L;
+
+    // usuarioId -> ids das pastas com concessão explícita; null até a primeira carga
+    private volatile Map<Long, BitSet> indice;
+
+    // pastaId -> id do pai (SEM_PAI para as raízes)
+    private volatile Map<Long, Long> pais;
+
+    // Pastas que não herdam dos ancestrais
+    private volatile Set<Long> semHeranca;
+
+    public PastaAclService(PastaRepository pastaRepository, MeterRegistry meterRegistry) {
+        this.pastaRepository = pastaRepository;
+        meterRegistry.gauge("portal.acl.usuarios", this, s -> s.indice == null ? 0 : s.indice.size());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void carregarNaInicializacao() {
+        recarregar();
+    }
+
+    @Scheduled(initialDelayString = "${acl.recarga-intervalo-ms:600000}",
+            fixedDelayString = "${acl.recarga-intervalo-ms:600000}")
+    public synchronized void recarregar() {
+        long inicio = System.currentTimeMillis();
+        Map<Long, Long> novosPais = new ConcurrentHashMap<>();
+        Set<Long> novasSemHeranca = ConcurrentHashMap.newKeySet();
+        for (Object[] linha : pastaRepository.carregarHierarquia()) {
+            long pastaId = ((Number) linha[0]).longValue();
+            novosPais.put(pastaId, linha[1] == null ? SEM_PAI : ((Number) linha[1]).longValue());
+            if (!PastaArvoreLoader.toBoolean(linha[2])) novasSemHeranca.add(pastaId);
+        }
+
+        Map<Long, BitSet> novo = new ConcurrentHashMap<>();
+        long linhas = 0;
+        for (Object[] linha : pastaRepository.carregarTodasPermissoes()) {
+            long pastaId = ((Number) linha[1]).longValue();
+            if (!cabeNoIndice(pastaId)) continue;
+            novo.computeIfAbsent(((Number) linha[0]).longValue(), k -> new BitSet()).set((int) pastaId);
+            linhas++;
+        }
+        pais = novosPais;
+        semHeranca = novasSemHeranca;
+        indice = novo;
+        logger.debug("Índice de permissões carregado: {} usuários, {} permissões, {} pastas ({} sem herança) em {} ms",
+                novo.size(), linhas, novosPais.size(), novasSemHeranca.size(), System.currentTimeMillis() - inicio);
+    }
+
+    // ========================
+    // CONSULTA
+    // ========================
+
+    /**
+     * O usuário tem permissão na pasta ou num ancestral de quem ela herda? (não considera o papel ADMIN)
+     */
+    public boolean temPermissao(Long usuarioId, Long pastaId) {
+        if (usuarioId == null || pastaId == null) return false;
+        Boolean resultado = procurarConcessao(usuarioId, pastaId);
+        return resultado != null ? resultado : pastaRepository.contarPermissaoEfetiva(pastaId, usuarioId) > 0;
+    }
+
+    public boolean temPermissao(Usuario usuario, Pasta pasta) {
+        return usuario != null && pasta != null && temPermissao(usuario.getId(), pasta.getId());
+    }
+
+    /**
+     * A permissão vem de um ancestral (e não só de uma concessão na própria pasta)?
+     * Uma permissão herdada não pode ser removida na subpasta, só na pasta onde foi concedida.
+     */
+    public boolean temPermissaoHerdada(Long usuarioId, Long pastaId) {
+        if (usuarioId == null || pastaId == null) return false;
+        Map<Long, Long> atuais = pais;
+        Set<Long> bloqueadas = semHeranca;
+        Long paiId = atuais != null ? atuais.get(pastaId) : null;
+        if (paiId == null || bloqueadas == null) {
+            return pastaRepository.contarPermissaoHerdada(pastaId, usuarioId) > 0;
+        }
+        return !SEM_PAI.equals(paiId) && !bloqueadas.contains(pastaId) && temPermissao(usuarioId, paiId);
+    }
+
+    // true/false pelo índice; null quando o índice não sabe responder (ainda não carregado,
+    // pasta desconhecida ou id fora do BitSet) e é preciso consultar o banco
+    private Boolean procurarConcessao(Long usuarioId, Long pastaId) {
+        Map<Long, BitSet> atual = indice;
+        Map<Long, Long> atuais = pais;
+        Set<Long> bloqueadas = semHeranca;
+        if (atual == null || atuais == null || bloqueadas == null) return null;
+
+        BitSet concedidas = atual.get(usuarioId);
+        Long id = pastaId;
+        for (int nivel = 0; nivel < PROFUNDIDADE_MAXIMA; nivel++) {
+            if (!cabeNoIndice(id)) return null;
+            if (concedidas != null && concedidas.get((int) id.longValue())) return true;
+            Long paiId = atuais.get(id);
+            if (paiId == null) return null;
+            if (SEM_PAI.equals(paiId) || bloqueadas.contains(id)) return false;
+            id = paiId;
+        }
+        return null;
+    }
+
+    /**
+     * Mantém só os ids em que o usuário tem permissão, na ordem recebida (montagem de árvores).
+     */
+    public List<Long> filtrarPermitidas(Long usuarioId, Collection<Long> pastaIds) {
+        List<Long> permitidas = new ArrayList<>(pastaIds.size());
+        for (Long id : pastaIds) {
+            if (temPermissao(usuarioId, id)) permitidas.add(id);
+        }
+        return permitidas;
+    }
+
+    // ========================
+    // ATUALIZAÇÃO
+    // ========================
+
+    /**
+     * Relê as permissões das pastas informadas (criadas, alteradas ou excluídas).
+     * Dentro de uma transação, só depois do commit.
+     */
+    public void atualizarPastas(Collection<Long> pastaIds) {
+        if (pastaIds == null || pastaIds.isEmpty()) return;
+        List<Long> ids = List.copyOf(pastaIds);
+        aposCommit(() -> aplicar(ids));
+    }
+
+    public void atualizarPasta(Long pastaId) {
+        if (pastaId != null) atualizarPastas(List.of(pastaId));
+    }
+
+    /**
+     * Pasta criada abaixo de {@code paiId}, ou na raiz se nulo. Dentro de uma transação,
+     * só depois do commit.
+     */
+    public void registrarPasta(Long pastaId, Long paiId, boolean herdaPermissoes) {
+        if (pastaId == null) return;
+        aposCommit(() -> aplicarPai(pastaId, paiId, herdaPermissoes));
+    }
+
+    // Pasta movida: troca o pai e mantém a herança como estava
+    public void registrarPasta(Long pastaId, Long paiId) {
+        if (pastaId == null) return;
+        aposCommit(() -> aplicarPai(pastaId, paiId, null));
+    }
+
+    // Usuário excluído: as linhas dele em tb_permissao_pasta saem junto
+    public void removerUsuario(Long usuarioId) {
+        aposCommit(() -> aplicarRemocaoUsuario(usuarioId));
+    }
+
+    // As alterações pontuais usam o mesmo lock de recarregar(): sem ele, uma alteração feita nos mapas
+    // antigos durante a recarga se perderia quando os novos (lidos antes do commit) fossem publicados
+    private synchronized void aplicarPai(Long pastaId, Long paiId, Boolean herdaPermissoes) {
+        Map<Long, Long> atuais = pais;
+        if (atuais != null) atuais.put(pastaId, paiId == null ? SEM_PAI : paiId);
+        Set<Long> bloqueadas = semHeranca;
+        if (bloqueadas != null && herdaPermissoes != null) {
+            if (herdaPermissoes) bloqueadas.remove(pastaId);
+            else bloqueadas.add(pastaId);
+        }
+    }
+
+    private synchronized void aplicarRemocaoUsuario(Long usuarioId) {
+        Map<Long, BitSet> atual = indice;
+        if (atual != null) atual.remove(usuarioId);
+    }
+
+    private synchronized void aplicar(List<Long> pastaIds) {
+        Map<Long, BitSet> atual = indice;
+        if (atual == null) return; // a carga inicial ainda vai ler o estado atual
+
+        Map<Long, BitSet> novasLinhas = new HashMap<>();
+        for (Object[] linha : pastaRepository.carregarPermissoesDasPastas(pastaIds)) {
+            long pastaId = ((Number) linha[0]).longValue();
+            if (!cabeNoIndice(pastaId)) continue;
+            novasLinhas.computeIfAbsent(((Number) linha[1]).longValue(), k -> new BitSet()).set((int) pastaId);
+        }
+        BitSet afetadas = new BitSet();
+        pastaIds.stream().filter(PastaAclService::cabeNoIndice).forEach(id -> afetadas.set((int) id.longValue()));
+
+        // Usuários que tinham alguma das pastas ou passaram a ter
+        Set<Long> usuarios = new HashSet<>(novasLinhas.keySet());
+        atual.forEach((usuarioId, pastas) -> {
+            if (pastas.intersects(afetadas)) usuarios.add(usuarioId);
+        });
+
+        for (Long usuarioId : usuarios) {
+            BitSet copia = (BitSet) atual.getOrDefault(usuarioId, new BitSet()).clone();
+            copia.andNot(afetadas);
+            BitSet concedidas = novasLinhas.get(usuarioId);
+            if (concedidas != null) copia.or(concedidas);
+            if (copia.isEmpty()) {
+                atual.remove(usuarioId);
+            } else {
+                atual.put(usuarioId, copia);
+            }
+        }
+    }
+
+    private void aposCommit(Runnable acao) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    acao.run();
+                }
+            });
+        } else {
+            acao.run();
+        }
+    }
+
+    // Ids acima de Integer.MAX_VALUE não cabem no BitSet: esses caem na consulta ao banco
+    private static boolean cabeNoIndice(long pastaId) {
+        return pastaId >= 0 && pastaId <= Integer.MAX_VALUE;
+    }
+}
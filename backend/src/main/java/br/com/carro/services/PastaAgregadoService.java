@@ -0,0 +1,151 @@
+package br.com.carro.services;
+
+import br.com.carro.entities.Arquivo;
+import br.com.carro.repositories.PastaRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Mantém os totais de cada pasta (arquivos e bytes diretos e da subárvore, última modificação)
+ * nas colunas de tb_pasta, para que ordenação por tamanho, painéis e cotas leiam um valor pronto
+ * em vez de somar tb_arquivo.
+ * <p>
+ * Cada operação que cria, remove ou move arquivos aplica a diferença na mesma transação, com um
+ * único UPDATE na pasta e em todos os ancestrais (via tb_pasta_closure). A última modificação só
+ * avança: exclusões não a recuam, e a reconciliação periódica devolve o valor exato, além de corrigir
+ * qualquer escrita feita fora da aplicação.
+ * <p>
+ * Inclusões e exclusões também são repassadas ao {@link MetricasService} (métricas do painel).
+ */
+@Service
+public class PastaAgregadoService {
+    private static final Logger logger = LoggerFactory.getLogger(PastaAgregadoService.class);
+
+    private final PastaRepository pastaRepository;
+    private final MetricasService metricasService;
+    private final Counter divergencias;
+
+    public PastaAgregadoService(PastaRepository pastaRepository, MetricasService metricasService, MeterRegistry meterRegistry) {
+        this.pastaRepository = pastaRepository;
+        this.metricasService = metricasService;
+        this.divergencias = meterRegistry.counter("portal.pasta.agregados.divergencias");
+    }
+
+    // ========================
+    // ARQUIVOS
+    // ========================
+
+    @Transactional
+    public void arquivosAdicionados(Collection<Arquivo> arquivos) {
+        aplicarPorPasta(arquivos, 1);
+        metricasService.arquivosIncluidos(arquivos);
+    }
+
+    @Transactional
+    public void arquivosRemovidos(Collection<Arquivo> arquivos) {
+        aplicarPorPasta(arquivos, -1);
+        metricasService.arquivosExcluidos(arquivos);
+    }
+
+    @Transactional
+    public void arquivoAdicionado(Arquivo arquivo) {
+        arquivosAdicionados(List.of(arquivo));
+    }
+
+    @Transactional
+    public void arquivoRemovido(Arquivo arquivo) {
+        arquivosRemovidos(List.of(arquivo));
+    }
+
+    /**
+     * Conteúdo ou metadados do arquivo mudaram na mesma pasta (substituição, renomeação).
+     */
+    @Transactional
+    public void arquivoAlterado(Long pastaId, long diferencaBytes, LocalDateTime modificadoEm) {
+        pastaRepository.somarAgregados(pastaId, 0, diferencaBytes, modificadoEm, true);
+    }
+
+    @Transactional
+    public void arquivoMovido(Arquivo arquivo, Long origemId) {
+        long bytes = tamanho(arquivo);
+        pastaRepository.somarAgregados(origemId, -1, -bytes, null, true);
+        pastaRepository.somarAgregados(arquivo.getPasta().getId(), 1, bytes, arquivo.getDataAtualizacao(), true);
+    }
+
+    // ========================
+    // PASTAS
+    // ========================
+
+    /**
+     * A subárvore da pasta saiu de {@code antigoPaiId} e entrou em {@code novoPaiId} (qualquer um
+     * pode ser nulo = raiz). Os totais da própria pasta não mudam, só os dos ancestrais.
+     */
+    @Transactional
+    public void subarvoreMovida(Long pastaId, Long antigoPaiId, Long novoPaiId) {
+        if (Objects.equals(antigoPaiId, novoPaiId)) return;
+        List<Object[]> linhas = pastaRepository.carregarAgregados(pastaId);
+        if (linhas.isEmpty()) return;
+        Object[] agregados = linhas.get(0);
+        long arquivos = ((Number) agregados[0]).longValue();
+        long bytes = ((Number) agregados[1]).longValue();
+        LocalDateTime ultima = PastaArvoreLoader.toDateTime(agregados[2]);
+        if (arquivos == 0 && bytes == 0) return;
+
+        if (antigoPaiId != null) pastaRepository.somarAgregados(antigoPaiId, -arquivos, -bytes, null, false);
+        if (novoPaiId != null) pastaRepository.somarAgregados(novoPaiId, arquivos, bytes, ultima, false);
+    }
+
+    // ========================
+    // RECONCILIAÇÃO
+    // ========================
+
+    /**
+     * Recalcula os totais a partir de tb_arquivo quando algum divergir. Na maior parte das execuções
+     * é só a consulta de conferência.
+     */
+    @Scheduled(initialDelayString = "${pasta.agregados.reconciliacao-atraso-inicial-ms:300000}",
+            fixedDelayString = "${pasta.agregados.reconciliacao-intervalo-ms:21600000}")
+    @Transactional
+    public void reconciliar() {
+        long inicio = System.currentTimeMillis();
+        long divergentes = pastaRepository.contarAgregadosDivergentes();
+        if (divergentes == 0) {
+            logger.debug("Totais das pastas conferidos em {} ms, sem divergências.", System.currentTimeMillis() - inicio);
+            return;
+        }
+        divergencias.increment(divergentes);
+        pastaRepository.recalcularAgregados();
+        logger.warn("Totais de {} pasta(s) divergiam de tb_arquivo e foram recalculados em {} ms.",
+                divergentes, System.currentTimeMillis() - inicio);
+    }
+
+    // Agrupa por pasta: um UPDATE por pasta afetada, não por arquivo
+    private void aplicarPorPasta(Collection<Arquivo> arquivos, int sinal) {
+        Map<Long, long[]> porPasta = new HashMap<>();
+        Map<Long, LocalDateTime> modificacao = new HashMap<>();
+        for (Arquivo arquivo : arquivos) {
+            if (arquivo.getPasta() == null) continue;
+            Long pastaId = arquivo.getPasta().getId();
+            long[] totais = porPasta.computeIfAbsent(pastaId, k -> new long[2]);
+            totais[0]++;
+            totais[1] += tamanho(arquivo);
+            if (sinal > 0 && arquivo.getDataAtualizacao() != null) {
+                modificacao.merge(pastaId, arquivo.getDataAtualizacao(), (a, b) -> a.isAfter(b) ? a : b);
+            }
+        }
+        porPasta.forEach((pastaId, totais) ->
+                pastaRepository.somarAgregados(pastaId, sinal * totais[0], sinal * totais[1], modificacao.get(pastaId), true));
+    }
+
+    private static long tamanho(Arquivo arquivo) {
+        return arquivo.getTamanho() != null ? arquivo.getTamanho() : 0L;
+    }
+}
@@ -0,0 +1,120 @@
+package br.com.carro.services;
+
+import br.com.carro.entities.DTO.ArquivoDTO;
+import br.com.carro.repositories.PastaRepository;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Carrega a subárvore de uma ou mais pastas com um número constante de consultas
+ * (pastas e arquivos), em vez de navegar pelas coleções lazy de cada nó.
+ * O resultado fica indexado por id para montar os DTOs em memória.
+ * Permissões não são carregadas aqui: ver {@link PastaAclService}.
+ */
+@Component
+public class PastaArvoreLoader {
+
+    private final PastaRepository pastaRepository;
+
+    public PastaArvoreLoader(PastaRepository pastaRepository) {
+        this.pastaRepository = pastaRepository;
+    }
+
+    public record NoPasta(
+            Long id,
+            String nomePasta,
+            String caminhoCompleto,
+            LocalDateTime dataCriacao,
+            LocalDateTime dataAtualizacao,
+            Long pastaPaiId,
+            String criadoPor,
+            long bytesTotal
+    ) {}
+
+    /**
+     * Subárvore carregada, indexada por id da pasta.
+     */
+    public static class SubArvore {
+        private final Map<Long, NoPasta> pastas = new HashMap<>();
+        private final Map<Long, List<Long>> filhos = new HashMap<>();
+        private final Map<Long, List<ArquivoDTO>> arquivos = new HashMap<>();
+
+        public NoPasta pasta(Long id) {
+            return pastas.get(id);
+        }
+
+        public List<NoPasta> subPastas(Long pastaId) {
+            return filhos.getOrDefault(pastaId, List.of()).stream().map(pastas::get).toList();
+        }
+
+        public List<ArquivoDTO> arquivos(Long pastaId) {
+            return arquivos.getOrDefault(pastaId, List.of());
+        }
+
+        public int totalPastas() {
+            return pastas.size();
+        }
+    }
+
+    /**
+     * Carrega as raízes informadas e todos os seus descendentes em duas consultas.
+     */
+    public SubArvore carregar(Collection<Long> raizIds) {
+        SubArvore arvore = new SubArvore();
+        if (raizIds == null || raizIds.isEmpty()) {
+            return arvore;
+        }
+
+        for (Object[] linha : pastaRepository.carregarPastasDaSubarvore(raizIds)) {
+            NoPasta no = new NoPasta(
+                    toLong(linha[0]),
+                    (String) linha[1],
+                    (String) linha[2],
+                    toDateTime(linha[3]),
+                    toDateTime(linha[4]),
+                    toLong(linha[5]),
+                    linha[6] != null ? (String) linha[6] : "Sistema",
+                    linha[7] != null ? ((Number) linha[7]).longValue() : 0L
+            );
+            arvore.pastas.put(no.id(), no);
+            if (no.pastaPaiId() != null) {
+                arvore.filhos.computeIfAbsent(no.pastaPaiId(), k -> new ArrayList<>()).add(no.id());
+            }
+        }
+
+        for (Object[] linha : pastaRepository.carregarArquivosDaSubarvore(raizIds)) {
+            ArquivoDTO arquivo = new ArquivoDTO(
+                    toLong(linha[0]),
+                    (String) linha[1],
+                    (String) linha[2],
+                    toLong(linha[3]),
+                    toDateTime(linha[4]),
+                    toDateTime(linha[5]),
+                    linha[7] != null ? (String) linha[7] : "Sistema"
+            );
+            arvore.arquivos.computeIfAbsent(toLong(linha[6]), k -> new ArrayList<>()).add(arquivo);
+        }
+
+        return arvore;
+    }
+
+    static Long toLong(Object valor) {
+        return valor == null ? null : ((Number) valor).longValue();
+    }
+
+    // BOOLEAN do MySQL chega como Boolean ou número, conforme o driver
+    static boolean toBoolean(Object valor) {
+        if (valor instanceof Boolean b) return b;
+        return ((Number) valor).intValue() != 0;
+    }
+
+    static LocalDateTime toDateTime(Object valor) {
+        if (valor == null) return null;
+        if (valor instanceof LocalDateTime ldt) return ldt;
+        if (valor instanceof Timestamp ts) return ts.toLocalDateTime();
+        throw new IllegalArgumentException("Tipo de data inesperado: " + valor.getClass());
+    }
+}
@@ -0,0 +1,107 @@
+package br.com.carro.services;
+
+import br.com.carro.entities.Pasta;
+import br.com.carro.repositories.PastaRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Mantém o índice de hierarquia de pastas (tabela tb_pasta_closure).
+ * <p>
+ * Perguntas como "X está dentro de Y?", "todos os descendentes de Y" e "tamanho da subárvore"
+ * viram uma única consulta indexada, sem percorrer os pais/filhos entidade por entidade.
+ * Criação, cópia e movimentação devem passar por aqui; a exclusão é tratada pelo
+ * ON DELETE CASCADE da própria tabela.
+ */
+@Service
+public class PastaHierarquiaService {
+    private static final Logger logger = LoggerFactory.getLogger(PastaHierarquiaService.class);
+
+    private final PastaRepository pastaRepository;
+    private final PastaAclService pastaAclService;
+
+    public PastaHierarquiaService(PastaRepository pastaRepository, PastaAclService pastaAclService) {
+        this.pastaRepository = pastaRepository;
+        this.pastaAclService = pastaAclService;
+    }
+
+    /**
+     * Registra uma pasta recém-persistida (precisa já ter id) abaixo do seu pai.
+     */
+    @Transactional
+    public void registrar(Pasta pasta) {
+        pastaRepository.inserirAutoReferenciaClosure(pasta.getId());
+        if (pasta.getPastaPai() != null) {
+            pastaRepository.inserirAncestraisClosure(pasta.getId(), pasta.getPastaPai().getId());
+        }
+        pastaAclService.registrarPasta(pasta.getId(), pasta.getPastaPai() != null ? pasta.getPastaPai().getId() : null,
+                pasta.isHerdaPermissoes());
+    }
+
+    /**
+     * Move a subárvore da pasta para baixo de um novo pai (ou para a raiz, se nulo).
+     */
+    @Transactional
+    public void mover(Long pastaId, Long novoPaiId) {
+        pastaRepository.desligarSubarvoreClosure(pastaId);
+        if (novoPaiId != null) {
+            pastaRepository.ligarSubarvoreClosure(pastaId, novoPaiId);
+        }
+        // As permissões herdadas passam a vir dos novos ancestrais
+        pastaAclService.registrarPasta(pastaId, novoPaiId);
+    }
+
+    /**
+     * Indica se {@code candidatoId} é a própria pasta {@code ancestralId} ou está dentro dela.
+     */
+    public boolean isDescendente(Long candidatoId, Long ancestralId) {
+        return pastaRepository.contarLigacaoClosure(ancestralId, candidatoId) > 0;
+    }
+
+    /**
+     * Ids da pasta e de todas as suas descendentes.
+     */
+    public List<Long> listarIdsSubarvore(Long pastaId) {
+        return pastaRepository.findIdsDescendentes(pastaId);
+    }
+
+    /**
+     * Ids dos ancestrais, do mais próximo (a própria pasta) até a raiz.
+     */
+    public List<Long> listarIdsAncestrais(Long pastaId) {
+        return pastaRepository.findIdsAncestrais(pastaId);
+    }
+
+    public long contarDescendentes(Long pastaId) {
+        return pastaRepository.contarDescendentes(pastaId);
+    }
+
+    /**
+     * Recalcula todo o índice a partir de pasta_pai_id.
+     */
+    @Transactional
+    public void reconstruir() {
+        pastaRepository.limparClosure();
+        pastaRepository.reconstruirClosure();
+        logger.info("Índice de hierarquia de pastas reconstruído ({} pastas).", pastaRepository.contarAutoReferenciasClosure());
+    }
+
+    // Backfill: na subida, reconstrói o índice se ele não cobre todas as pastas
+    // (ex.: pastas criadas antes da migração ou fora da aplicação)
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void verificarNaInicializacao() {
+        long indexadas = pastaRepository.contarAutoReferenciasClosure();
+        long total = pastaRepository.count();
+        if (indexadas != total) {
+            logger.warn("Índice de hierarquia desatualizado ({} de {} pastas). Reconstruindo...", indexadas, total);
+            reconstruir();
+        }
+    }
+}
@@ -0,0 +1,620 @@
+package br.com.carro.services;
+
+import br.com.carro.entities.Arquivo;
+import br.com.carro.entities.Pasta;
+import br.com.carro.entities.Usuario.Usuario;
+import br.com.carro.repositories.ArquivoRepository;
+import br.com.carro.repositories.PastaRepository;
+import br.com.carro.repositories.UsuarioRepository;
+import br.com.carro.services.JobService.JobContexto;
+import br.com.carro.utils.ArquivoUtils;
+import br.com.carro.utils.FileUtils;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Execução das operações de pasta que rodam como tarefa ({@link JobService}).
+ * <p>
+ * Nada aqui roda numa transação única: o trabalho é dividido em lotes de {@code job.tamanho-lote}
+ * itens, cada um com seu commit, e o cancelamento é verificado entre os lotes. Assim uma pasta com
+ * dezenas de milhares de arquivos não segura locks nem uma sessão JPA enorme até o fim.
+ * A validação de permissões é feita antes, na requisição, pelo {@link PastaService}.
+ */
+@Service
+public class PastaJobService {
+    private static final Logger logger = LoggerFactory.getLogger(PastaJobService.class);
+
+    public record ZipGerado(ZipCacheService.ZipAberto zip, String nomeArquivo) {}
+
+    private record PastaOrigem(Long id, String nome, Long paiId, Set<Long> usuariosComPermissao, boolean herdaPermissoes) {}
+
+    private record EntradaZip(String nome, Path caminho) {}
+
+    private record DiretorioPlanejado(PastaOrigem origem, String nome, Path caminho) {}
+
+    private record ArquivoOrigem(Long id, String nome, String caminho, Long pastaId, Long tamanho,
+                                 String hash, String blobHash, String tipoMime) {}
+
+    // Arquivos lidos e o conteúdo do layout antigo sendo preparado no pool (por id de origem)
+    private record LoteCopia(List<ArquivoOrigem> arquivos,
+                             Map<Long, Future<BlobStoreService.ConteudoPreparado>> preparados) {}
+
+    private final PastaRepository pastaRepository;
+    private final ArquivoRepository arquivoRepository;
+    private final UsuarioRepository usuarioRepository;
+    private final PastaHierarquiaService pastaHierarquiaService;
+    private final BlobStoreService blobStoreService;
+    private final ZipCacheService zipCacheService;
+    private final PastaAclService pastaAclService;
+    private final PastaAgregadoService pastaAgregadoService;
+    private final TransactionTemplate transactionTemplate;
+
+    // Leitura/gravação do conteúdo antigo na cópia de pastas; fila cheia = a própria tarefa faz o trabalho
+    private final ThreadPoolExecutor copiaExecutor;
+
+    @Value("${storage.root-dir}")
+    private String rootDirectory;
+
+    @Value("${job.tamanho-lote:500}")
+    private int tamanhoLote;
+
+    public PastaJobService(PastaRepository pastaRepository, ArquivoRepository arquivoRepository,
+                           UsuarioRepository usuarioRepository, PastaHierarquiaService pastaHierarquiaService,
+                           BlobStoreService blobStoreService, ZipCacheService zipCacheService,
+                           PastaAclService pastaAclService, PastaAgregadoService pastaAgregadoService,
+                           TransactionTemplate transactionTemplate,
+                           @Value("${job.copia.workers:4}") int workersCopia) {
+        this.pastaRepository = pastaRepository;
+        this.arquivoRepository = arquivoRepository;
+        this.usuarioRepository = usuarioRepository;
+        this.pastaHierarquiaService = pastaHierarquiaService;
+        this.blobStoreService = blobStoreService;
+        this.zipCacheService = zipCacheService;
+        this.pastaAclService = pastaAclService;
+        this.pastaAgregadoService = pastaAgregadoService;
+        this.transactionTemplate = transactionTemplate;
+
+        AtomicInteger sequencia = new AtomicInteger();
+        this.copiaExecutor = new ThreadPoolExecutor(workersCopia, workersCopia, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(1000),
+                r -> {
+                    Thread t = new Thread(r, "pasta-copia-" + sequencia.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        copiaExecutor.shutdownNow();
+    }
+
+    // ========================
+    // EXCLUSÃO
+    // ========================
+
+    /**
+     * Exclui as pastas informadas com tudo o que têm dentro.
+     * Se cancelada, para no fim do lote atual: o que já foi excluído não volta.
+     */
+    public String excluir(JobContexto contexto, List<Long> pastaIds) {
+        for (Long id : pastaIds) {
+            contexto.somarTotal(arquivoRepository.contarDaSubarvore(id) + pastaHierarquiaService.contarDescendentes(id) + 1);
+        }
+        for (Long id : pastaIds) {
+            excluirSubarvore(contexto, id, true);
+        }
+        return pastaIds.size() + " pasta(s) excluída(s).";
+    }
+
+    /**
+     * Arquivos primeiro (liberando os blobs), depois as pastas da mais funda para a mais rasa.
+     * Os diretórios físicos são removidos depois do commit de cada lote.
+     */
+    private void excluirSubarvore(JobContexto contexto, Long pastaId, boolean incluirRaiz) {
+        int excluidos;
+        do {
+            verificarCancelamento(contexto);
+            excluidos = Objects.requireNonNull(transactionTemplate.execute(status -> {
+                List<Arquivo> arquivos = arquivoRepository.findAllById(arquivoRepository.findIdsDaSubarvore(pastaId, tamanhoLote));
+                arquivos.forEach(blobStoreService::liberar);
+                arquivoRepository.deleteAllInBatch(arquivos);
+                pastaAgregadoService.arquivosRemovidos(arquivos);
+                return arquivos.size();
+            }));
+            avancar(contexto, excluidos);
+        } while (excluidos > 0);
+
+        List<Long> pastas = pastaRepository.findIdsDescendentesDoMaisFundo(pastaId, incluirRaiz ? 0 : 1);
+        for (int i = 0; i < pastas.size(); i += tamanhoLote) {
+            verificarCancelamento(contexto);
+            List<Long> fatia = pastas.subList(i, Math.min(i + tamanhoLote, pastas.size()));
+            List<Path> diretorios = transactionTemplate.execute(status -> {
+                Map<Long, Pasta> porId = pastaRepository.findAllById(fatia).stream()
+                        .collect(Collectors.toMap(Pasta::getId, Function.identity()));
+                List<Path> caminhos = new ArrayList<>();
+                // Mantém a ordem da consulta: filhos antes do pai
+                for (Long id : fatia) {
+                    Pasta pasta = porId.get(id);
+                    if (pasta == null) continue;
+                    caminhos.add(Paths.get(pasta.getCaminhoCompleto()));
+                    pastaRepository.delete(pasta);
+                }
+                pastaAclService.atualizarPastas(fatia);
+                return caminhos;
+            });
+            for (Path dir : Objects.requireNonNull(diretorios)) {
+                try {
+                    Files.deleteIfExists(dir);
+                } catch (IOException e) {
+                    logger.warn("Diretório {} não pôde ser removido após a exclusão da pasta", dir, e);
+                }
+            }
+            avancar(contexto, fatia.size());
+        }
+    }
+
+    // ========================
+    // CÓPIA
+    // ========================
+
+    /**
+     * Copia a pasta (com subpastas e arquivos) para dentro de {@code destinoPaiId}, ou para a raiz se nulo.
+     * Se falhar ou for cancelada, a cópia parcial é removida.
+     *
+     * @return id da nova pasta
+     */
+    public String copiar(JobContexto contexto, Long origemId, Long destinoPaiId, Long usuarioId) {
+        List<PastaOrigem> origem = carregarOrigem(origemId);
+        contexto.somarTotal(origem.size() + arquivoRepository.contarDaSubarvore(origemId));
+
+        Path dirDestino = destinoPaiId == null
+                ? Paths.get(rootDirectory).normalize()
+                : Paths.get(buscarCaminho(destinoPaiId)).normalize();
+
+        Map<Long, Long> copias = new HashMap<>();
+        Map<Long, Path> caminhos = new HashMap<>();
+        PastaOrigem raiz = comPermissoesEfetivas(origem.get(0), destinoPaiId);
+        Long novaRaizId = Objects.requireNonNull(transactionTemplate.execute(status ->
+                criarCopia(raiz, destinoPaiId, dirDestino, usuarioId, caminhos)));
+        pastaAclService.atualizarPasta(novaRaizId);
+        copias.put(raiz.id(), novaRaizId);
+        avancar(contexto, 1);
+
+        try {
+            copiarConteudo(contexto, origemId, origem, copias, caminhos, usuarioId);
+        } catch (RuntimeException e) {
+            desfazerCopia(novaRaizId, true, caminhos.get(novaRaizId));
+            throw e;
+        }
+        zipCacheService.invalidarIds(pastaHierarquiaService.listarIdsAncestrais(novaRaizId));
+        return String.valueOf(novaRaizId);
+    }
+
+    /**
+     * Esvazia a pasta destino e copia para ela o conteúdo da origem, mantendo os nomes.
+     * Se a cópia falhar ou for cancelada, o destino fica vazio.
+     */
+    public String substituirConteudo(JobContexto contexto, Long origemId, Long destinoId, Long usuarioId) {
+        contexto.somarTotal(arquivoRepository.contarDaSubarvore(destinoId) + pastaHierarquiaService.contarDescendentes(destinoId));
+        excluirSubarvore(contexto, destinoId, false);
+
+        List<PastaOrigem> origem = carregarOrigem(origemId);
+        contexto.somarTotal(origem.size() - 1 + arquivoRepository.contarDaSubarvore(origemId));
+
+        Map<Long, Long> copias = new HashMap<>();
+        Map<Long, Path> caminhos = new HashMap<>();
+        copias.put(origemId, destinoId);
+        caminhos.put(destinoId, Paths.get(buscarCaminho(destinoId)));
+
+        try {
+            copiarConteudo(contexto, origemId, origem, copias, caminhos, usuarioId);
+        } catch (RuntimeException e) {
+            desfazerCopia(destinoId, false, null);
+            throw e;
+        }
+        zipCacheService.invalidarIds(pastaHierarquiaService.listarIdsAncestrais(destinoId));
+        return String.valueOf(destinoId);
+    }
+
+    /**
+     * Nomes e diretórios de todas as subpastas primeiro (em memória, sem consultar o disco a cada filha),
+     * depois as linhas das pastas nível a nível e por fim os arquivos da subárvore inteira em lotes.
+     * Enquanto um lote de arquivos é gravado, o seguinte já está sendo lido e preparado.
+     */
+    private void copiarConteudo(JobContexto contexto, Long origemId, List<PastaOrigem> origem, Map<Long, Long> copias,
+                                Map<Long, Path> caminhos, Long usuarioId) {
+        long inicio = System.nanoTime();
+        Set<Long> existentes = Set.copyOf(copias.keySet());
+        List<DiretorioPlanejado> planejados = planejarDiretorios(origem, copias, caminhos);
+        try {
+            for (DiretorioPlanejado diretorio : planejados) {
+                Files.createDirectories(diretorio.caminho());
+            }
+        } catch (IOException e) {
+            removerDiretorios(planejados, existentes);
+            throw new UncheckedIOException("Erro ao criar as pastas da cópia", e);
+        }
+
+        long arquivos;
+        try {
+            for (int i = 0; i < planejados.size(); i += tamanhoLote) {
+                verificarCancelamento(contexto);
+                List<DiretorioPlanejado> fatia = planejados.subList(i, Math.min(i + tamanhoLote, planejados.size()));
+                transactionTemplate.executeWithoutResult(status -> {
+                    // O id sai do bloco reservado no save, sem INSERT: a fatia inteira vai num lote só no flush
+                    List<Pasta> novas = new ArrayList<>(fatia.size());
+                    for (DiretorioPlanejado diretorio : fatia) {
+                        PastaOrigem pasta = diretorio.origem();
+                        Pasta nova = pastaRepository.save(novaPasta(pasta, diretorio.nome(), diretorio.caminho(),
+                                copias.get(pasta.paiId()), usuarioId));
+                        copias.put(pasta.id(), nova.getId());
+                        caminhos.put(nova.getId(), diretorio.caminho());
+                        novas.add(nova);
+                    }
+                    // Em ordem de nível: a closure do pai já existe quando a do filho é inserida
+                    novas.forEach(pastaHierarquiaService::registrar);
+                    pastaAclService.atualizarPastas(novas.stream().map(Pasta::getId).toList());
+                });
+                avancar(contexto, fatia.size());
+            }
+            arquivos = copiarArquivos(contexto, origemId, copias, usuarioId);
+        } catch (RuntimeException e) {
+            // Diretórios de lotes que sofreram rollback (ou nem chegaram ao banco) não têm registro
+            removerDiretorios(planejados, existentes);
+            throw e;
+        }
+        logger.info("Cópia da pasta {}: {} pasta(s) e {} arquivo(s) em {} ms", origemId, planejados.size(), arquivos,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+    }
+
+    /**
+     * Nome e caminho de cada subpasta a copiar, em ordem de nível. Diretórios criados por esta cópia começam
+     * vazios, então basta comparar com os irmãos já planejados; o disco só é consultado abaixo de pastas que
+     * já existiam (a raiz da cópia ou o destino de uma substituição).
+     */
+    private List<DiretorioPlanejado> planejarDiretorios(List<PastaOrigem> origem, Map<Long, Long> copias,
+                                                        Map<Long, Path> caminhos) {
+        Map<Long, Path> dirPorOrigem = new HashMap<>();
+        copias.forEach((origemId, novaId) -> dirPorOrigem.put(origemId, caminhos.get(novaId)));
+        Map<Path, Set<String>> nomesUsados = new HashMap<>();
+
+        List<DiretorioPlanejado> planejados = new ArrayList<>();
+        for (PastaOrigem pasta : origem) {
+            if (copias.containsKey(pasta.id())) continue;
+            Path dirPai = dirPorOrigem.get(pasta.paiId());
+            boolean paiExistente = copias.containsKey(pasta.paiId());
+            Set<String> irmaos = nomesUsados.computeIfAbsent(dirPai, k -> new HashSet<>());
+
+            String nome = pasta.nome();
+            String sanitizado = FileUtils.sanitizeFileName(nome);
+            for (int i = 2; irmaos.contains(sanitizado.toLowerCase(Locale.ROOT))
+                    || (paiExistente && Files.exists(dirPai.resolve(sanitizado))); i++) {
+                nome = pasta.nome() + " (" + i + ")";
+                sanitizado = FileUtils.sanitizeFileName(nome);
+            }
+            irmaos.add(sanitizado.toLowerCase(Locale.ROOT));
+
+            Path caminho = dirPai.resolve(sanitizado).normalize();
+            dirPorOrigem.put(pasta.id(), caminho);
+            planejados.add(new DiretorioPlanejado(pasta, nome, caminho));
+        }
+        return planejados;
+    }
+
+    // Só os do primeiro nível abaixo de pastas que já existiam (ids de origem): o resto sai junto
+    private void removerDiretorios(List<DiretorioPlanejado> planejados, Set<Long> existentes) {
+        for (DiretorioPlanejado diretorio : planejados) {
+            if (!existentes.contains(diretorio.origem().paiId())) continue;
+            try {
+                FileUtils.deleteDirectory(diretorio.caminho());
+            } catch (IOException e) {
+                logger.warn("Diretório {} da cópia parcial não pôde ser removido", diretorio.caminho(), e);
+            }
+        }
+    }
+
+    private Long criarCopia(PastaOrigem origem, Long novoPaiId, Path dirPai, Long usuarioId, Map<Long, Path> caminhos) {
+        String nome = PastaService.gerarNomeCopiaDisponivel(origem.nome(), dirPai);
+        Path caminho = dirPai.resolve(FileUtils.sanitizeFileName(nome)).normalize();
+        try {
+            Files.createDirectories(caminho);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao criar pasta " + nome, e);
+        }
+        Pasta nova = pastaRepository.save(novaPasta(origem, nome, caminho, novoPaiId, usuarioId));
+        pastaHierarquiaService.registrar(nova);
+        caminhos.put(nova.getId(), caminho);
+        return nova.getId();
+    }
+
+    private Pasta novaPasta(PastaOrigem origem, String nome, Path caminho, Long novoPaiId, Long usuarioId) {
+        LocalDateTime agora = LocalDateTime.now();
+        Pasta nova = new Pasta();
+        nova.setNomePasta(nome);
+        nova.setCaminhoCompleto(caminho.toString());
+        nova.setDataCriacao(agora);
+        nova.setDataAtualizacao(agora);
+        nova.setCriadoPor(usuarioRepository.getReferenceById(usuarioId));
+        nova.setUsuariosComPermissao(origem.usuariosComPermissao().stream()
+                .map(usuarioRepository::getReferenceById)
+                .collect(Collectors.toCollection(HashSet::new)));
+        nova.setPastaPai(novoPaiId != null ? pastaRepository.getReferenceById(novoPaiId) : null);
+        nova.setHerdaPermissoes(origem.herdaPermissoes());
+        return nova;
+    }
+
+    // A cópia da raiz deixa de herdar dos ancestrais da origem: leva as permissões efetivas dela,
+    // menos as que o destino já dá por herança, e herda do destino. As subpastas mantêm a herança
+    // como na origem (uma subpasta restrita continua restrita na cópia)
+    private PastaOrigem comPermissoesEfetivas(PastaOrigem raiz, Long destinoPaiId) {
+        Set<Long> usuarios = new HashSet<>(pastaRepository.findIdsUsuariosComPermissaoEfetiva(raiz.id()));
+        if (destinoPaiId != null) {
+            usuarios.removeIf(usuarioId -> pastaAclService.temPermissao(usuarioId, destinoPaiId));
+        }
+        return new PastaOrigem(raiz.id(), raiz.nome(), raiz.paiId(), usuarios, true);
+    }
+
+    // ------------------------
+    // Arquivos da cópia
+    // ------------------------
+
+    // Percorre a subárvore de origem por id; retorna quantos arquivos foram copiados
+    private long copiarArquivos(JobContexto contexto, Long origemId, Map<Long, Long> copias, Long usuarioId) {
+        long copiados = 0;
+        LoteCopia atual = lerLote(origemId, 0);
+        try {
+            while (!atual.arquivos().isEmpty()) {
+                verificarCancelamento(contexto);
+                LoteCopia gravando = atual;
+                atual = lerLote(origemId, gravando.arquivos().get(gravando.arquivos().size() - 1).id());
+                transactionTemplate.executeWithoutResult(status -> gravarLote(gravando, copias, usuarioId));
+                copiados += gravando.arquivos().size();
+                avancar(contexto, gravando.arquivos().size());
+            }
+        } finally {
+            descartar(atual);
+        }
+        return copiados;
+    }
+
+    // Lê o lote e já manda o conteúdo do layout antigo (sem blob) para o pool de cópia
+    private LoteCopia lerLote(Long origemId, long aposId) {
+        List<ArquivoOrigem> arquivos = new ArrayList<>();
+        for (Object[] linha : arquivoRepository.carregarLoteDaSubarvore(origemId, aposId, tamanhoLote)) {
+            arquivos.add(new ArquivoOrigem(((Number) linha[0]).longValue(), (String) linha[1], (String) linha[2],
+                    ((Number) linha[3]).longValue(), linha[4] == null ? null : ((Number) linha[4]).longValue(),
+                    (String) linha[5], (String) linha[6], (String) linha[7]));
+        }
+        Map<Long, Future<BlobStoreService.ConteudoPreparado>> preparados = new HashMap<>();
+        for (ArquivoOrigem arquivo : arquivos) {
+            if (arquivo.blobHash() != null) continue;
+            preparados.put(arquivo.id(), copiaExecutor.submit(() ->
+                    blobStoreService.preparar(Paths.get(arquivo.caminho()), arquivo.hash())));
+        }
+        return new LoteCopia(arquivos, preparados);
+    }
+
+    private void gravarLote(LoteCopia lote, Map<Long, Long> copias, Long usuarioId) {
+        Usuario usuario = usuarioRepository.getReferenceById(usuarioId);
+        LocalDateTime agora = LocalDateTime.now();
+        List<Arquivo> novos = new ArrayList<>(lote.arquivos().size());
+        try {
+            // Conteúdo deduplicado: a cópia é só uma referência a mais ao mesmo blob
+            blobStoreService.referenciarCopias(lote.arquivos().stream()
+                    .map(ArquivoOrigem::blobHash).filter(Objects::nonNull).toList());
+
+            for (ArquivoOrigem arquivo : lote.arquivos()) {
+                BlobStoreService.BlobArmazenado blob;
+                if (arquivo.blobHash() != null) {
+                    blob = new BlobStoreService.BlobArmazenado(arquivo.blobHash(),
+                            blobStoreService.caminhoDoBlob(arquivo.blobHash()),
+                            arquivo.tamanho() != null ? arquivo.tamanho() : 0L);
+                } else {
+                    blob = blobStoreService.armazenarPreparado(aguardar(lote.preparados().remove(arquivo.id()), arquivo));
+                }
+                Arquivo novo = new Arquivo();
+                novo.setNomeArquivo(arquivo.nome());
+                novo.setTipoMime(arquivo.tipoMime());
+                blobStoreService.vincular(novo, blob);
+                novo.setPasta(pastaRepository.getReferenceById(copias.get(arquivo.pastaId())));
+                novo.setCriadoPor(usuario);
+                novo.setDataUpload(agora);
+                novo.setDataAtualizacao(agora);
+                novos.add(novo);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao copiar arquivos", e);
+        } finally {
+            descartar(lote);
+        }
+
+        // Ids já reservados (tb_id_alocador): o flush manda os INSERTs em lotes de hibernate.jdbc.batch_size
+        arquivoRepository.saveAll(novos);
+        pastaAgregadoService.arquivosAdicionados(novos);
+    }
+
+    private static BlobStoreService.ConteudoPreparado aguardar(Future<BlobStoreService.ConteudoPreparado> futuro,
+                                                              ArquivoOrigem arquivo) {
+        try {
+            return futuro.get();
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            if (causa instanceof IOException io) {
+                throw new UncheckedIOException("Erro ao copiar arquivo " + arquivo.nome(), io);
+            }
+            if (causa instanceof RuntimeException re) throw re;
+            throw new IllegalStateException("Erro ao copiar arquivo " + arquivo.nome(), causa);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Cópia interrompida.", e);
+        }
+    }
+
+    // Apaga os temporários que sobraram (lote não gravado); espera os que ainda estão sendo preparados
+    private void descartar(LoteCopia lote) {
+        for (Future<BlobStoreService.ConteudoPreparado> futuro : lote.preparados().values()) {
+            if (futuro.cancel(false)) continue;
+            try {
+                blobStoreService.descartar(futuro.get());
+            } catch (ExecutionException | CancellationException e) {
+                // Nada foi deixado no disco
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        lote.preparados().clear();
+    }
+
+    private void desfazerCopia(Long pastaId, boolean incluirRaiz, Path diretorioRaiz) {
+        try {
+            excluirSubarvore(null, pastaId, incluirRaiz);
+            // Diretórios criados em lotes que sofreram rollback não têm registro no banco
+            if (diretorioRaiz != null) FileUtils.deleteDirectory(diretorioRaiz);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Não foi possível remover a cópia parcial da pasta {}", pastaId, e);
+        }
+    }
+
+    // Pastas da subárvore em ordem de nível (a raiz primeiro), com as permissões de cada uma
+    private List<PastaOrigem> carregarOrigem(Long origemId) {
+        return transactionTemplate.execute(status -> {
+            Map<Long, Object[]> linhas = new HashMap<>();
+            for (Object[] linha : pastaRepository.carregarPastasDaSubarvore(List.of(origemId))) {
+                linhas.put(((Number) linha[0]).longValue(), linha);
+            }
+            if (linhas.isEmpty()) {
+                throw new EntityNotFoundException("Pasta não encontrada: " + origemId);
+            }
+            Map<Long, Set<Long>> permissoes = new HashMap<>();
+            for (Object[] linha : pastaRepository.carregarPermissoesDaSubarvore(List.of(origemId))) {
+                permissoes.computeIfAbsent(((Number) linha[0]).longValue(), k -> new HashSet<>())
+                        .add(((Number) linha[1]).longValue());
+            }
+
+            List<PastaOrigem> pastas = new ArrayList<>();
+            for (Long id : pastaRepository.findIdsDescendentesPorNivel(origemId)) {
+                Object[] linha = linhas.get(id);
+                if (linha == null) continue;
+                Long paiId = linha[5] == null ? null : ((Number) linha[5]).longValue();
+                pastas.add(new PastaOrigem(id, (String) linha[1], paiId, permissoes.getOrDefault(id, Set.of()),
+                        PastaArvoreLoader.toBoolean(linha[8])));
+            }
+            return pastas;
+        });
+    }
+
+    private String buscarCaminho(Long pastaId) {
+        return transactionTemplate.execute(status -> pastaRepository.findById(pastaId)
+                .map(Pasta::getCaminhoCompleto)
+                .orElseThrow(() -> new EntityNotFoundException("Pasta não encontrada: " + pastaId)));
+    }
+
+    // ========================
+    // ZIP
+    // ========================
+
+    /**
+     * Gera (ou reaproveita do cache) o ZIP da subárvore, com o mesmo layout do download direto.
+     *
+     * @return "pastaId:fingerprint", usado por {@link #localizarZip} para achar o arquivo no cache
+     */
+    public String gerarZip(JobContexto contexto, Long pastaId) throws IOException {
+        List<EntradaZip> entradas = new ArrayList<>();
+        MessageDigest digest = ArquivoUtils.novoDigest();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<Long, Object[]> pastas = new HashMap<>();
+            for (Object[] linha : pastaRepository.carregarPastasDaSubarvore(List.of(pastaId))) {
+                pastas.put(((Number) linha[0]).longValue(), linha);
+            }
+            Map<Long, String> prefixos = new HashMap<>();
+            prefixos.put(pastaId, "");
+            for (Object[] linha : arquivoRepository.carregarEntradasZipDaSubarvore(pastaId)) {
+                String nome = prefixo(((Number) linha[3]).longValue(), pastas, prefixos) + linha[1];
+                entradas.add(new EntradaZip(nome, Paths.get((String) linha[2])));
+                digest.update(("A|" + linha[0] + "|" + nome + "|" + linha[4] + "|" + linha[5] + "\n")
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        String fingerprint = ArquivoUtils.hex(digest);
+        contexto.somarTotal(entradas.size());
+
+        // Aqui só importa deixar o ZIP no cache; o download abre de novo pelo resultado da tarefa
+        ZipCacheService.ZipAberto gerado = zipCacheService.obterOuGerar(pastaId, fingerprint, destino -> {
+            try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(destino))) {
+                for (EntradaZip entrada : entradas) {
+                    contexto.verificarCancelamento();
+                    if (Files.exists(entrada.caminho())) {
+                        zos.putNextEntry(new ZipEntry(entrada.nome()));
+                        Files.copy(entrada.caminho(), zos);
+                        zos.closeEntry();
+                    }
+                    contexto.avancar(1);
+                }
+                zos.finish();
+            }
+        });
+        gerado.close();
+        return pastaId + ":" + fingerprint;
+    }
+
+    /**
+     * ZIP gerado por uma tarefa concluída, se ainda estiver no cache.
+     */
+    public ZipGerado localizarZip(String resultado) throws IOException {
+        String[] partes = resultado == null ? new String[0] : resultado.split(":", 2);
+        if (partes.length != 2) {
+            throw new IllegalStateException("A tarefa não registrou um ZIP.");
+        }
+        Long pastaId = Long.valueOf(partes[0]);
+        String nome = pastaRepository.findById(pastaId).map(Pasta::getNomePasta).orElse("pasta_" + pastaId);
+        ZipCacheService.ZipAberto zip = zipCacheService.abrir(partes[1])
+                .orElseThrow(() -> new IllegalStateException("O ZIP não está mais disponível. Gere novamente."));
+        return new ZipGerado(zip, nome + ".zip");
+    }
+
+    // Caminho relativo da pasta dentro do ZIP ("" para a raiz, "sub/outra/" para as demais)
+    private String prefixo(Long id, Map<Long, Object[]> pastas, Map<Long, String> prefixos) {
+        String existente = prefixos.get(id);
+        if (existente != null) return existente;
+        Object[] linha = pastas.get(id);
+        String prefixo = prefixo(((Number) linha[5]).longValue(), pastas, prefixos) + linha[1] + "/";
+        prefixos.put(id, prefixo);
+        return prefixo;
+    }
+
+    // ========================
+    // AUXILIARES
+    // ========================
+
+    // contexto nulo = limpeza interna, sem progresso nem cancelamento
+    private static void verificarCancelamento(JobContexto contexto) {
+        if (contexto != null) contexto.verificarCancelamento();
+    }
+
+    private static void avancar(JobContexto contexto, long itens) {
+        if (contexto != null && itens > 0) contexto.avancar(itens);
+    }
+}
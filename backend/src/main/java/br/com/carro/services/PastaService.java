@@ -2,9 +2,9 @@ package br.com.carro.services;
 
 import br.com.carro.entities.Arquivo;
 import br.com.carro.entities.DTO.*;
+import br.com.carro.entities.Job.TipoJob;
 import br.com.carro.entities.Pasta;
 import br.com.carro.entities.Usuario.Usuario;
-import br.com.carro.exceptions.ResourceNotFoundException;
 import br.com.carro.repositories.ArquivoRepository;
 import br.com.carro.repositories.PastaRepository;
 import br.com.carro.repositories.UsuarioRepository;
@@ -20,28 +20,50 @@ import org.springframework.transaction.annotation.Transactional;
 import java.nio.file.*;
 import java.util.*;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.stream.Collectors;
 
 @Service
 public class PastaService {
     private static final Logger logger = LoggerFactory.getLogger(PastaService.class);
+    private static final int TAMANHO_MAXIMO_PAGINA_FILHAS = 500;
 
     @Autowired
     private ArquivoRepository arquivoRepository;
     private PastaRepository pastaRepository;
     private UsuarioRepository usuarioRepository;
     private AuthService authService;
+    private ZipCacheService zipCacheService;
+    private PastaArvoreLoader pastaArvoreLoader;
+    private PastaHierarquiaService pastaHierarquiaService;
+    private BlobStoreService blobStoreService;
+    private JobService jobService;
+    private PastaJobService pastaJobService;
+    private PastaAclService pastaAclService;
+    private PastaAgregadoService pastaAgregadoService;
 
     @Value("${storage.root-dir}")
     private String rootDirectory;
 
     // ✅ Use constructor injection
-    public PastaService(PastaRepository pastaRepository, UsuarioRepository usuarioRepository, AuthService authService, ArquivoRepository arquivoRepository) {
+    public PastaService(PastaRepository pastaRepository, UsuarioRepository usuarioRepository, AuthService authService, ArquivoRepository arquivoRepository,
+                        ZipCacheService zipCacheService, PastaArvoreLoader pastaArvoreLoader,
+                        PastaHierarquiaService pastaHierarquiaService, BlobStoreService blobStoreService,
+                        JobService jobService, PastaJobService pastaJobService, PastaAclService pastaAclService,
+                        PastaAgregadoService pastaAgregadoService) {
         this.pastaRepository = pastaRepository;
         this.usuarioRepository = usuarioRepository;
         this.authService = authService;
         this.arquivoRepository = arquivoRepository;
+        this.zipCacheService = zipCacheService;
+        this.pastaArvoreLoader = pastaArvoreLoader;
+        this.pastaHierarquiaService = pastaHierarquiaService;
+        this.blobStoreService = blobStoreService;
+        this.jobService = jobService;
+        this.pastaJobService = pastaJobService;
+        this.pastaAclService = pastaAclService;
+        this.pastaAgregadoService = pastaAgregadoService;
     }
 
     // ✅ ENDPOINT 01 - Service para criar pasta raiz ou subpastas
@@ -94,17 +116,15 @@ public class PastaService {
         else {
             validarPermissaoCriacao(usuarioLogado, pastaPai);
 
-            // ✅ Sempre adicionar todos os administradores
-            List<Usuario> admins = usuarioRepository.findByRolesNome("ADMIN");
-            usuariosComPermissao.addAll(admins);
-
-            // ✅ Herdar donos da pasta pai
-            if (pastaPai.getUsuariosComPermissao() != null) {
-                usuariosComPermissao.addAll(pastaPai.getUsuariosComPermissao());
+            // ✅ Administradores e criador (pode ser gerente ou admin) com acesso à subpasta.
+            // Quem tem permissão na pasta pai já herda a subpasta: só grava quem ainda não herda.
+            List<Usuario> donos = new ArrayList<>(usuarioRepository.findByRolesNome("ADMIN"));
+            donos.add(usuarioLogado);
+            for (Usuario dono : donos) {
+                if (!pastaAclService.temPermissao(dono, pastaPai)) {
+                    usuariosComPermissao.add(dono);
+                }
             }
-
-            // ✅ Criador também dono (pode ser gerente ou admin)
-            usuariosComPermissao.add(usuarioLogado);
         }
 
         // ======================================================
@@ -136,9 +156,13 @@ public class PastaService {
 
         if (pastaPai != null) {
             novaPasta.setPastaPai(pastaPai);
+            zipCacheService.invalidar(pastaPai);
         }
 
-        return pastaRepository.save(novaPasta);
+        novaPasta = pastaRepository.save(novaPasta);
+        pastaHierarquiaService.registrar(novaPasta);
+        pastaAclService.atualizarPasta(novaPasta.getId());
+        return novaPasta;
     }
 
 
@@ -152,28 +176,32 @@ public class PastaService {
         }
     }
 
-    @Transactional
+    @Transactional(readOnly = true)
     public List<PastaCompletaDTO> getTodasPastasCompletas(Usuario usuarioLogado, PastaFilterDTO filtro) throws AccessDeniedException{
-        List<Pasta> pastasRaiz = pastaRepository.findByPastaPaiIsNull();
+        List<Long> raizIds = pastaRepository.findIdsPastasRaiz();
+        PastaArvoreLoader.SubArvore arvore = pastaArvoreLoader.carregar(raizIds);
 
-        return pastasRaiz.stream()
-                .filter(p -> usuarioLogado.isAdmin() || p.getUsuariosComPermissao().contains(usuarioLogado))
-                .map(p -> mapRecursivo(p, usuarioLogado, filtro, 0))
+        List<Long> visiveis = usuarioLogado.isAdmin() ? raizIds : pastaAclService.filtrarPermitidas(usuarioLogado.getId(), raizIds);
+        return visiveis.stream()
+                .map(id -> mapRecursivo(arvore, arvore.pasta(id), usuarioLogado, filtro, 0))
                 .collect(Collectors.toList());
     }
 
     // ENDPOINT 02 - Método para busca de pastas e arquivos por id
     @Transactional(readOnly = true)
     public PastaCompletaDTO getPastaCompletaPorId(Long idPasta, Usuario usuarioLogado, PastaFilterDTO filtro)throws AccessDeniedException{
-        Pasta pasta = pastaRepository.findById(idPasta)
-                .orElseThrow(() -> new EntityNotFoundException("Pasta não encontrada."));
+        PastaArvoreLoader.SubArvore arvore = pastaArvoreLoader.carregar(List.of(idPasta));
+        PastaArvoreLoader.NoPasta pasta = arvore.pasta(idPasta);
+        if (pasta == null) {
+            throw new EntityNotFoundException("Pasta não encontrada.");
+        }
 
         // Permissão: admin ou usuário listado
-        if (!usuarioLogado.isAdmin() && !pasta.getUsuariosComPermissao().contains(usuarioLogado)) {
+        if (!usuarioLogado.isAdmin() && !pastaAclService.temPermissao(usuarioLogado.getId(), idPasta)) {
             throw new SecurityException("Você não tem permissão para acessar esta pasta.");
         }
 
-        return mapRecursivo(pasta, usuarioLogado, filtro, 0);
+        return mapRecursivo(arvore, pasta, usuarioLogado, filtro, 0);
     }
 
     /**
@@ -184,50 +212,107 @@ public class PastaService {
     @Transactional(readOnly = true)
     public List<PastaCompletaDTO> listarPastasPorUsuario(Usuario usuarioLogado, PastaFilterDTO filtro) throws AccessDeniedException {
         // Admin vê todas as pastas raiz, outros apenas as pastas onde tem permissão
-        List<Pasta> pastasRaiz;
+        List<Long> raizIds;
         if (usuarioLogado.isAdmin()) {
-            pastasRaiz = pastaRepository.findByPastaPaiIsNull();
+            raizIds = pastaRepository.findIdsPastasRaiz();
         } else {
-            pastasRaiz = pastaRepository.findByPastaPaiIsNullAndUsuariosComPermissaoContains(usuarioLogado);
+            raizIds = pastaRepository.findByPastaPaiIsNullAndUsuariosComPermissaoContains(usuarioLogado).stream()
+                    .map(Pasta::getId)
+                    .toList();
         }
 
-        return pastasRaiz.stream()
-                .map(pasta -> mapRecursivo(pasta, usuarioLogado, filtro, 0))
+        PastaArvoreLoader.SubArvore arvore = pastaArvoreLoader.carregar(raizIds);
+        return raizIds.stream()
+                .map(id -> mapRecursivo(arvore, arvore.pasta(id), usuarioLogado, filtro, 0))
                 .collect(Collectors.toList());
     }
 
-    private PastaCompletaDTO mapRecursivo(Pasta pasta, Usuario usuarioLogado, PastaFilterDTO filtro, int nivelAtual) {
-        // Limite de profundidade
+    /**
+     * Subpastas diretas de {@code paiId} (ou as raízes, se nulo), uma página por vez, com totais
+     * de subpastas, arquivos e tamanho, para o cliente expandir a árvore sob demanda.
+     * O {@code cursor} vem de {@link PaginaCursorDTO#proximoCursor()} da página anterior (nulo na primeira).
+     */
+    // ENDPOINT 15 - Expansão da árvore um nível por vez
+    @Transactional(readOnly = true)
+    public PaginaCursorDTO<PastaNoDTO> listarFilhas(Long paiId, String cursor, int tamanho, Usuario usuarioLogado) {
+        if (tamanho < 1 || tamanho > TAMANHO_MAXIMO_PAGINA_FILHAS) {
+            throw new IllegalArgumentException("O tamanho da página deve estar entre 1 e " + TAMANHO_MAXIMO_PAGINA_FILHAS + ".");
+        }
+
+        // Raízes: admin vê todas, os demais só as que receberam; subpastas: quem vê a pasta vê todas as filhas
+        Long filtroUsuarioId = null;
+        if (paiId == null) {
+            if (!usuarioLogado.isAdmin()) filtroUsuarioId = usuarioLogado.getId();
+        } else {
+            if (!pastaRepository.existsById(paiId)) {
+                throw new EntityNotFoundException("Pasta não encontrada.");
+            }
+            if (!usuarioLogado.isAdmin() && !pastaAclService.temPermissao(usuarioLogado.getId(), paiId)) {
+                throw new SecurityException("Você não tem permissão para acessar esta pasta.");
+            }
+        }
+
+        String aposNome = null;
+        Long aposId = null;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                String texto = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separador = texto.indexOf(':');
+                aposId = Long.valueOf(texto.substring(0, separador));
+                aposNome = texto.substring(separador + 1);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Cursor de paginação inválido.", e);
+            }
+        }
+
+        // Uma linha a mais indica se há próxima página
+        List<Object[]> linhas = pastaRepository.listarFilhasComTotais(paiId, filtroUsuarioId, aposNome, aposId, tamanho + 1);
+        boolean temMais = linhas.size() > tamanho;
+        List<PastaNoDTO> pagina = linhas.stream().limit(tamanho).map(linha -> {
+            long subpastas = ((Number) linha[5]).longValue();
+            return new PastaNoDTO(
+                    PastaArvoreLoader.toLong(linha[0]),
+                    (String) linha[1],
+                    PastaArvoreLoader.toDateTime(linha[2]),
+                    PastaArvoreLoader.toDateTime(linha[3]),
+                    linha[4] != null ? (String) linha[4] : "Sistema",
+                    subpastas,
+                    ((Number) linha[6]).longValue(),
+                    ((Number) linha[7]).longValue(),
+                    subpastas > 0);
+        }).toList();
+
+        String proximoCursor = null;
+        if (temMais) {
+            PastaNoDTO ultima = pagina.get(pagina.size() - 1);
+            proximoCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                    (ultima.id() + ":" + ultima.nomePasta()).getBytes(StandardCharsets.UTF_8));
+        }
+        return new PaginaCursorDTO<>(pagina, proximoCursor, temMais);
+    }
+
+    // Monta o DTO a partir da subárvore já carregada em memória (sem novas consultas por nível)
+    private PastaCompletaDTO mapRecursivo(PastaArvoreLoader.SubArvore arvore, PastaArvoreLoader.NoPasta pasta,
+                                          Usuario usuarioLogado, PastaFilterDTO filtro, int nivelAtual) {
+        // Limite de profundidade: a partir daqui a subárvore segue completa, sem filtros
         if (filtro.getProfundidadeMax() != null && nivelAtual >= filtro.getProfundidadeMax()) {
-            return PastaCompletaDTO.fromEntity(pasta);
+            return mapCompleto(arvore, pasta);
         }
 
-        // Filtrar subpastas por permissão
-        List<PastaCompletaDTO> subPastasDTO = pasta.getSubPastas().stream()
-                .filter(sub -> usuarioLogado.isAdmin() || sub.getUsuariosComPermissao().contains(usuarioLogado))
-                .map(sub -> mapRecursivo(sub, usuarioLogado, filtro, nivelAtual + 1))
+        // Filtrar subpastas por permissão (uma consulta ao índice de ACL para todas as filhas)
+        List<Long> subIds = arvore.subPastas(pasta.id()).stream().map(PastaArvoreLoader.NoPasta::id).toList();
+        List<Long> subIdsVisiveis = usuarioLogado.isAdmin() ? subIds : pastaAclService.filtrarPermitidas(usuarioLogado.getId(), subIds);
+        List<PastaCompletaDTO> subPastasDTO = subIdsVisiveis.stream()
+                .map(sub -> mapRecursivo(arvore, arvore.pasta(sub), usuarioLogado, filtro, nivelAtual + 1))
                 .collect(Collectors.toList());
 
         // Filtrar arquivos
-        List<ArquivoDTO> arquivosFiltrados = pasta.getArquivos().stream()
-                .filter(a -> filtro.getExtensaoArquivo() == null || a.getNomeArquivo().endsWith("." + filtro.getExtensaoArquivo()))
-                .filter(a -> filtro.getTamanhoMinArquivo() == null || a.getTamanho() >= filtro.getTamanhoMinArquivo())
-                .filter(a -> filtro.getTamanhoMaxArquivo() == null || a.getTamanho() <= filtro.getTamanhoMaxArquivo())
-                .map(ArquivoDTO::fromEntity)
+        List<ArquivoDTO> arquivosFiltrados = arvore.arquivos(pasta.id()).stream()
+                .filter(a -> filtro.getExtensaoArquivo() == null || a.nome().endsWith("." + filtro.getExtensaoArquivo()))
+                .filter(a -> filtro.getTamanhoMinArquivo() == null || tamanhoDe(a) >= filtro.getTamanhoMinArquivo())
+                .filter(a -> filtro.getTamanhoMaxArquivo() == null || tamanhoDe(a) <= filtro.getTamanhoMaxArquivo())
                 .collect(Collectors.toList());
 
-        // Criar DTO
-        PastaCompletaDTO dto = new PastaCompletaDTO(
-                pasta.getId(),
-                pasta.getNomePasta(),
-                pasta.getCaminhoCompleto(),
-                pasta.getDataCriacao(),
-                pasta.getDataAtualizacao(),
-                pasta.getCriadoPor().getUsername(),
-                arquivosFiltrados,
-                subPastasDTO
-        );
-
         // Ordenação de subpastas
         Comparator<PastaCompletaDTO> comparator;
         switch (filtro.getOrdenarPor()) {
@@ -235,25 +320,51 @@ public class PastaService {
                 comparator = Comparator.comparing(PastaCompletaDTO::dataCriacao);
                 break;
             case "tamanho":
-                comparator = Comparator.comparingInt(p -> p.arquivos().stream().mapToInt(a -> a.tamanho().intValue()).sum());
+                // Tamanho da subárvore inteira, já agregado em tb_pasta
+                comparator = Comparator.comparingLong(p -> arvore.pasta(p.id()).bytesTotal());
                 break;
             case "nome":
             default:
                 comparator = Comparator.comparing(PastaCompletaDTO::nomePasta);
         }
         if (!filtro.isOrdemAsc()) comparator = comparator.reversed();
+        subPastasDTO.sort(comparator);
+
+        return new PastaCompletaDTO(
+                pasta.id(),
+                pasta.nomePasta(),
+                pasta.caminhoCompleto(),
+                pasta.dataCriacao(),
+                pasta.dataAtualizacao(),
+                pasta.criadoPor(),
+                arquivosFiltrados,
+                subPastasDTO
+        );
+    }
 
-        dto = dto.withSubPastas(
-                dto.subPastas().stream().sorted(comparator).collect(Collectors.toList())
+    // Equivalente a PastaCompletaDTO.fromEntity, mas sobre a subárvore em memória
+    private PastaCompletaDTO mapCompleto(PastaArvoreLoader.SubArvore arvore, PastaArvoreLoader.NoPasta pasta) {
+        return new PastaCompletaDTO(
+                pasta.id(),
+                pasta.nomePasta(),
+                pasta.caminhoCompleto(),
+                pasta.dataCriacao(),
+                pasta.dataAtualizacao(),
+                pasta.criadoPor(),
+                arvore.arquivos(pasta.id()),
+                arvore.subPastas(pasta.id()).stream().map(sub -> mapCompleto(arvore, sub)).toList()
         );
+    }
 
-        return dto;
+    private long tamanhoDe(ArquivoDTO arquivo) {
+        return arquivo.tamanho() != null ? arquivo.tamanho() : 0L;
     }
 
 
     // --- Métodos para exclusão de pastas e subpastas por id
+    // A exclusão roda como tarefa (ver PastaJobService); aqui só valida e enfileira
     @Transactional
-    public void excluirPasta(Long pastaId, Usuario usuarioLogado) throws AccessDeniedException {
+    public JobDTO excluirPasta(Long pastaId, Usuario usuarioLogado) throws AccessDeniedException {
         if (usuarioLogado == null) {
             throw new AccessDeniedException("Usuário autenticado não foi encontrado.");
         }
@@ -271,64 +382,15 @@ public class PastaService {
         }
 
         // Permissão: ADMIN pode tudo, os demais só se tiverem permissão na pasta
-        if (!isAdmin && !pasta.getUsuariosComPermissao().contains(usuarioLogado)) {
+        if (!isAdmin && !pastaAclService.temPermissao(usuarioLogado, pasta)) {
             throw new AccessDeniedException("Você não tem permissão para excluir esta pasta.");
         }
 
-        // Excluir subpastas recursivamente
-        excluirSubPastasRecursivo(pasta);
-
-        // Excluir arquivos da pasta
-        for (Arquivo arquivo : pasta.getArquivos()) {
-            Path arquivoPath = Paths.get(arquivo.getCaminhoArmazenamento());
-            try {
-                Files.deleteIfExists(arquivoPath);
-            } catch (IOException e) {
-                throw new RuntimeException("Erro ao excluir arquivo: " + arquivo.getNomeArquivo(), e);
-            }
-            arquivoRepository.delete(arquivo);
-        }
-
-        // Excluir a pasta do filesystem
-        Path caminhoPasta = Paths.get(pasta.getCaminhoCompleto());
-        try {
-            Files.deleteIfExists(caminhoPasta);
-        } catch (IOException e) {
-            throw new RuntimeException("Erro ao excluir a pasta: " + pasta.getNomePasta(), e);
-        }
-
-        // Excluir a pasta do banco
-        pastaRepository.delete(pasta);
-    }
-
-
-    // Método auxiliar para exclusão recursiva
-    private void excluirSubPastasRecursivo(Pasta pasta)throws AccessDeniedException {
-        for (Pasta sub : pasta.getSubPastas()) {
-            excluirSubPastasRecursivo(sub);
-
-            // Excluir arquivos da subpasta
-            for (Arquivo arquivo : sub.getArquivos()) {
-                Path arquivoPath = Paths.get(arquivo.getCaminhoArmazenamento());
-                try {
-                    Files.deleteIfExists(arquivoPath);
-                } catch (IOException e) {
-                    throw new RuntimeException("Erro ao excluir arquivo: " + arquivo.getNomeArquivo(), e);
-                }
-                arquivoRepository.delete(arquivo);
-            }
-
-            // Excluir subpasta do filesystem
-            Path caminhoSub = Paths.get(sub.getCaminhoCompleto());
-            try {
-                Files.deleteIfExists(caminhoSub);
-            } catch (IOException e) {
-                throw new RuntimeException("Erro ao excluir a subpasta: " + sub.getNomePasta(), e);
-            }
-
-            pastaRepository.delete(sub);
-        }
+        zipCacheService.invalidar(pasta);
+        zipCacheService.invalidarIds(pastaHierarquiaService.listarIdsSubarvore(pasta.getId()));
 
+        return jobService.submeter(TipoJob.EXCLUIR_PASTA, "Excluir pasta '" + pasta.getNomePasta() + "'", usuarioLogado,
+                contexto -> pastaJobService.excluir(contexto, List.of(pastaId)));
     }
 
 
@@ -347,7 +409,7 @@ public class PastaService {
         }
 
         // ✅ Permissão: ADMIN pode tudo, demais só se tiver permissão
-        if (!isAdmin && !pasta.getUsuariosComPermissao().contains(usuarioLogado)) {
+        if (!isAdmin && !pastaAclService.temPermissao(usuarioLogado, pasta)) {
             throw new AccessDeniedException("Você não tem permissão para renomear esta pasta.");
         }
 
@@ -370,6 +432,7 @@ public class PastaService {
         pasta.setNomePasta(novoNome);
         pasta.setCaminhoCompleto(novoCaminho.toString());
         pasta.setDataAtualizacao(LocalDateTime.now());
+        zipCacheService.invalidar(pasta);
 
         return pastaRepository.save(pasta);
     }
@@ -382,7 +445,7 @@ public class PastaService {
                 .orElseThrow(() -> new EntityNotFoundException("Pasta não encontrada."));
 
         // 🔐 Verifica permissão
-        if (!usuarioLogado.isAdmin() && !pasta.getUsuariosComPermissao().contains(usuarioLogado)) {
+        if (!usuarioLogado.isAdmin() && !pastaAclService.temPermissao(usuarioLogado, pasta)) {
             throw new AccessDeniedException("Você não tem permissão para atualizar esta pasta.");
         }
 
@@ -408,6 +471,7 @@ public class PastaService {
 
             // Atualiza caminhos das subpastas e arquivos recursivamente
             atualizarCaminhoRecursivo(pasta, caminhoNovo);
+            zipCacheService.invalidar(pasta);
         }
 
         // 🧑‍🤝‍🧑 Atualiza usuários com permissão (se informado no DTO)
@@ -422,14 +486,16 @@ public class PastaService {
             pasta.setUsuariosComPermissao(usuarios);
         }
 
-        // 🔑 Garante pelo menos um usuário com permissão
-        if (pasta.getUsuariosComPermissao() == null || pasta.getUsuariosComPermissao().isEmpty()) {
+        // 🔑 Garante pelo menos um usuário com permissão (subpastas herdam da pasta pai, salvo as sem herança)
+        if ((pasta.getPastaPai() == null || !pasta.isHerdaPermissoes())
+                && (pasta.getUsuariosComPermissao() == null || pasta.getUsuariosComPermissao().isEmpty())) {
             pasta.setUsuariosComPermissao(Set.of(usuarioLogado));
         }
 
         // 📌 Atualiza data de modificação
         pasta.setDataAtualizacao(LocalDateTime.now());
 
+        pastaAclService.atualizarPasta(pasta.getId());
         return pastaRepository.save(pasta);
     }
 
@@ -447,6 +513,8 @@ public class PastaService {
         // Atualiza arquivos dentro da pasta
         if (pasta.getArquivos() != null) {
             for (Arquivo arq : pasta.getArquivos()) {
+                // Conteúdo no armazenamento deduplicado não depende do caminho da pasta
+                if (arq.getBlobHash() != null) continue;
                 Path arqNovoCaminho = novoCaminho.resolve(arq.getNomeArquivo());
                 arq.setCaminhoArmazenamento(arqNovoCaminho.toString());
             }
@@ -467,10 +535,14 @@ public class PastaService {
         }
 
         // Permissões
-        if (!usuarioLogado.isAdmin() && !pasta.getUsuariosComPermissao().contains(usuarioLogado)) {
+        if (!usuarioLogado.isAdmin() && !pastaAclService.temPermissao(usuarioLogado, pasta)) {
             throw new AccessDeniedException("Você não tem permissão para mover esta pasta.");
         }
 
+        // A pasta sai da subárvore dos ancestrais atuais
+        zipCacheService.invalidar(pasta);
+        Long antigoPaiId = pasta.getPastaPai() != null ? pasta.getPastaPai().getId() : null;
+
         String novoCaminhoPai;
         if (novaPastaPaiId == null) {
             // Tornar a pasta raiz
@@ -480,9 +552,12 @@ public class PastaService {
             Pasta novaPastaPai = pastaRepository.findById(novaPastaPaiId)
                     .orElseThrow(() -> new EntityNotFoundException("Nova pasta pai não encontrada."));
 
-            if (!usuarioLogado.isAdmin() && !novaPastaPai.getUsuariosComPermissao().contains(usuarioLogado)) {
+            if (!usuarioLogado.isAdmin() && !pastaAclService.temPermissao(usuarioLogado, novaPastaPai)) {
                 throw new AccessDeniedException("Você não tem permissão para mover a pasta para este destino.");
             }
+            if (isDescendente(novaPastaPai, pasta)) {
+                throw new IllegalArgumentException("Não é possível mover uma pasta para dentro dela mesma ou de uma de suas subpastas.");
+            }
             pasta.setPastaPai(novaPastaPai);
             novoCaminhoPai = novaPastaPai.getCaminhoCompleto();
         }
@@ -496,8 +571,12 @@ public class PastaService {
 
         pasta.setCaminhoCompleto(novoCaminho.toString());
         pasta.setDataAtualizacao(LocalDateTime.now());
+        zipCacheService.invalidar(pasta);
 
-        return pastaRepository.save(pasta);
+        pasta = pastaRepository.save(pasta);
+        pastaHierarquiaService.mover(pasta.getId(), novaPastaPaiId);
+        pastaAgregadoService.subarvoreMovida(pasta.getId(), antigoPaiId, novaPastaPaiId);
+        return pasta;
     }
 
 
@@ -514,13 +593,14 @@ public class PastaService {
 
     // --- COPIAR PASTA --- //
 
+    // A cópia roda como tarefa (ver PastaJobService); aqui só valida e enfileira
     @Transactional
-    public Pasta copiarPasta(Long id, Long idDestino, Usuario usuarioLogado) throws AccessDeniedException {
+    public JobDTO copiarPasta(Long id, Long idDestino, Usuario usuarioLogado) throws AccessDeniedException {
         logger.info("copiarPasta called: pastaId={}, idDestino={}, usuario={}",
                 id, idDestino, usuarioLogado != null ? usuarioLogado.getUsername() : null);
 
         Pasta pastaOriginal = pastaRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Pasta original não encontrada"));
+                .orElseThrow(() -> new EntityNotFoundException("Pasta original não encontrada"));
 
         // ❌ Bloqueia GERENTE em pasta raiz
         boolean isGerente = usuarioLogado.getRoles().stream()
@@ -529,15 +609,18 @@ public class PastaService {
             throw new AccessDeniedException("Usuários GERENTE não podem copiar pastas raiz.");
         }
 
-        Pasta pastaPaiDestino = null;
         Path caminhoDestino;
-
         if (idDestino != null) {
-            pastaPaiDestino = pastaRepository.findById(idDestino)
-                    .orElseThrow(() -> new ResourceNotFoundException("Pasta destino não encontrada"));
+            Pasta pastaPaiDestino = pastaRepository.findById(idDestino)
+                    .orElseThrow(() -> new EntityNotFoundException("Pasta destino não encontrada"));
 
             // ✅ Usa diretamente o caminho da pasta pai destino
             caminhoDestino = Paths.get(pastaPaiDestino.getCaminhoCompleto()).normalize();
+
+            // A cópia seria feita dentro dela mesma, sem fim
+            if (isDescendente(pastaPaiDestino, pastaOriginal)) {
+                throw new IllegalArgumentException("Não é possível copiar uma pasta para dentro dela mesma.");
+            }
         } else {
             // ✅ Caso não informado, cai para raiz
             caminhoDestino = Paths.get(rootDirectory).normalize();
@@ -550,124 +633,22 @@ public class PastaService {
             throw new IllegalArgumentException("Caminho de destino fora do diretório raiz configurado.");
         }
 
-        // Gera um nome válido para a nova pasta
-        String nomeNovaPasta = gerarNomeCopiaDisponivel(pastaOriginal.getNomePasta(), caminhoDestino);
-        Path caminhoNovaPasta = caminhoDestino.resolve(FileUtils.sanitizeFileName(nomeNovaPasta)).normalize();
-
-        logger.info("Criando pasta de copia: nomeNovaPasta='{}', caminhoDestino='{}', caminhoNovaPasta='{}'",
-                nomeNovaPasta, caminhoDestino, caminhoNovaPasta);
-
-        try {
-            Files.createDirectories(caminhoNovaPasta);
-        } catch (IOException e) {
-            logger.error("Erro ao criar nova pasta no FS: {}", caminhoNovaPasta, e);
-            throw new RuntimeException("Erro ao criar nova pasta", e);
-        }
-
-        // Persistência no banco
-        Pasta novaPasta = new Pasta();
-        novaPasta.setNomePasta(nomeNovaPasta);
-        novaPasta.setCaminhoCompleto(caminhoNovaPasta.toString());
-        novaPasta.setDataCriacao(LocalDateTime.now());
-        novaPasta.setDataAtualizacao(LocalDateTime.now());
-        novaPasta.setCriadoPor(usuarioLogado);
-        novaPasta.setUsuariosComPermissao(new HashSet<>(Optional.ofNullable(pastaOriginal.getUsuariosComPermissao()).orElse(Set.of())));
-        novaPasta.setPastaPai(pastaPaiDestino);
-
-        novaPasta = pastaRepository.save(novaPasta);
-
-        // Copia recursiva de subpastas e arquivos
-        copiarSubpastasEArquivos(pastaOriginal, novaPasta, caminhoNovaPasta, usuarioLogado);
-
-        logger.info("Cópia concluída: novaPasta.id={}, caminho='{}'", novaPasta.getId(), novaPasta.getCaminhoCompleto());
-        return novaPasta;
-    }
-
-
-    private void copiarSubpastasEArquivos(Pasta pastaOriginal, Pasta pastaDestino, Path caminhoDestino, Usuario usuarioLogado)throws AccessDeniedException {
-        logger.debug("copiarSubpastasEArquivos: originalId={}, destinoId={}, caminhoDestino={}",
-                pastaOriginal.getId(), pastaDestino.getId(), caminhoDestino);
-
-        // 1) Copiar arquivos da pasta atual
-        if (pastaOriginal.getArquivos() != null) {
-            for (Arquivo arquivo : pastaOriginal.getArquivos()) {
-                Path origemArquivo = Paths.get(arquivo.getCaminhoArmazenamento()).normalize();
-                Path destinoArquivo = caminhoDestino.resolve(arquivo.getNomeArquivo()).normalize();
-
-                logger.debug("Copiando arquivo: origem='{}' -> destino='{}'", origemArquivo, destinoArquivo);
-                try {
-                    // garante diretório pai
-                    Files.createDirectories(destinoArquivo.getParent());
-                    Files.copy(origemArquivo, destinoArquivo, StandardCopyOption.REPLACE_EXISTING);
-                } catch (IOException e) {
-                    logger.error("Erro ao copiar arquivo {} -> {}", origemArquivo, destinoArquivo, e);
-                    throw new RuntimeException("Erro ao copiar arquivo " + arquivo.getNomeArquivo(), e);
-                }
-
-                // Persistir registro no banco (preenchendo campos obrigatórios)
-                Arquivo novoArquivo = new Arquivo();
-                novoArquivo.setNomeArquivo(arquivo.getNomeArquivo());
-                novoArquivo.setCaminhoArmazenamento(destinoArquivo.toString());
-                novoArquivo.setPasta(pastaDestino);
-                novoArquivo.setCriadoPor(usuarioLogado);
-                novoArquivo.setDataUpload(LocalDateTime.now());
-                novoArquivo.setDataAtualizacao(LocalDateTime.now());
-
-                arquivoRepository.save(novoArquivo);
-                logger.debug("Arquivo salvo no banco: {}", novoArquivo.getNomeArquivo());
-            }
-        }
-
-        // 2) Copiar subpastas recursivamente
-        if (pastaOriginal.getSubPastas() != null) {
-            for (Pasta sub : pastaOriginal.getSubPastas()) {
-                // Gera nome disponível no mesmo caminhoDestino (evita colisão)
-                String nomeBaseSub = sub.getNomePasta();
-                String novoNomeSub = gerarNomeCopiaDisponivel(nomeBaseSub, caminhoDestino);
-                Path caminhoSubDestino = caminhoDestino.resolve(FileUtils.sanitizeFileName(novoNomeSub)).normalize();
-
-                logger.debug("Criando subpasta destino: {} -> {}", sub.getNomePasta(), caminhoSubDestino);
-                try {
-                    Files.createDirectories(caminhoSubDestino);
-                } catch (IOException e) {
-                    logger.error("Erro ao criar subpasta {}", caminhoSubDestino, e);
-                    throw new RuntimeException("Erro ao criar subpasta " + novoNomeSub, e);
-                }
-
-                // Persistir subpasta no banco
-                Pasta novaSub = new Pasta();
-                novaSub.setNomePasta(novoNomeSub);
-                novaSub.setCaminhoCompleto(caminhoSubDestino.toString());
-                novaSub.setDataCriacao(LocalDateTime.now());
-                novaSub.setDataAtualizacao(LocalDateTime.now());
-                novaSub.setCriadoPor(usuarioLogado);
-                novaSub.setUsuariosComPermissao(new HashSet<>(Optional.ofNullable(sub.getUsuariosComPermissao()).orElse(Set.of())));
-                novaSub.setPastaPai(pastaDestino);
-                novaSub = pastaRepository.save(novaSub);
-
-                // chamada recursiva
-                copiarSubpastasEArquivos(sub, novaSub, caminhoSubDestino, usuarioLogado);
-            }
-        }
+        Long usuarioId = usuarioLogado.getId();
+        return jobService.submeter(TipoJob.COPIAR_PASTA, "Copiar pasta '" + pastaOriginal.getNomePasta() + "'", usuarioLogado,
+                contexto -> pastaJobService.copiar(contexto, id, idDestino, usuarioId));
     }
 
 
-
-
     private boolean temPermissao(Usuario u, Pasta p) {
-        return u != null && (u.isAdmin() || p.getUsuariosComPermissao().contains(u));
+        return u != null && (u.isAdmin() || pastaAclService.temPermissao(u, p));
     }
 
+    // Consulta única no índice de hierarquia (antes subia pastaPai um carregamento por vez)
     private boolean isDescendente(Pasta candidato, Pasta ancestral) {
-        Pasta atual = candidato;
-        while (atual != null) {
-            if (atual.getId().equals(ancestral.getId())) return true;
-            atual = atual.getPastaPai();
-        }
-        return false;
+        return pastaHierarquiaService.isDescendente(candidato.getId(), ancestral.getId());
     }
 
-    private String gerarNomeCopiaDisponivel(String baseNome, Path dirPai) {
+    static String gerarNomeCopiaDisponivel(String baseNome, Path dirPai) {
         String nome = baseNome;
         int i = 1;
         while (Files.exists(dirPai.resolve(FileUtils.sanitizeFileName(nome)))) {
@@ -684,179 +665,80 @@ public class PastaService {
 
     // ---EXCLUSÃO DE VARIOS OU TODOS ITENS DA PASTA------------------//
     @Transactional
-    public void excluirPastasEmLote(List<Long> idsPastas, boolean excluirConteudo, Usuario usuarioLogado) throws AccessDeniedException {
+    public JobDTO excluirPastasEmLote(List<Long> idsPastas, boolean excluirConteudo, Usuario usuarioLogado) throws AccessDeniedException {
         if (idsPastas == null || idsPastas.isEmpty()) {
             throw new IllegalArgumentException("Nenhuma pasta foi selecionada para exclusão.");
         }
 
+        // Valida todas antes de enfileirar: ou a tarefa exclui todas, ou nada é feito
         for (Long idPasta : idsPastas) {
             Pasta pasta = pastaRepository.findById(idPasta)
                     .orElseThrow(() -> new EntityNotFoundException("Pasta com ID " + idPasta + " não encontrada."));
 
             // Verificar permissão
-            if (!usuarioLogado.isAdmin() && !pasta.getUsuariosComPermissao().contains(usuarioLogado)) {
+            if (!usuarioLogado.isAdmin() && !pastaAclService.temPermissao(usuarioLogado, pasta)) {
                 throw new AccessDeniedException("Você não tem permissão para excluir a pasta " + pasta.getNomePasta());
             }
 
-            if (excluirConteudo) {
-                excluirPastaRecursiva(pasta); // já apaga tudo
-            } else {
-                if (!pasta.getSubPastas().isEmpty() || !pasta.getArquivos().isEmpty()) {
-                    throw new IllegalArgumentException("A pasta '" + pasta.getNomePasta() + "' contém itens. "
-                            + "Ative 'excluirConteudo=true' para excluir tudo junto.");
-                }
-                excluirSomentePasta(pasta);
-            }
-        }
-    }
-
-    /**
-     * Exclui recursivamente a pasta, subpastas e arquivos.
-     */
-    private void excluirPastaRecursiva(Pasta pasta) {
-        // Primeiro apagar subpastas
-        for (Pasta sub : pasta.getSubPastas()) {
-            excluirPastaRecursiva(sub);
-        }
-
-        // Apagar arquivos
-        for (Arquivo arquivo : pasta.getArquivos()) {
-            try {
-                Files.deleteIfExists(Paths.get(arquivo.getCaminhoArmazenamento()));
-            } catch (IOException e) {
-                throw new RuntimeException("Erro ao excluir arquivo: " + arquivo.getNomeArquivo(), e);
+            if (!excluirConteudo && (!pasta.getSubPastas().isEmpty() || !pasta.getArquivos().isEmpty())) {
+                throw new IllegalArgumentException("A pasta '" + pasta.getNomePasta() + "' contém itens. "
+                        + "Ative 'excluirConteudo=true' para excluir tudo junto.");
             }
-            arquivoRepository.delete(arquivo);
-        }
 
-        // Excluir diretório físico
-        try {
-            Files.deleteIfExists(Paths.get(pasta.getCaminhoCompleto()));
-        } catch (IOException e) {
-            throw new RuntimeException("Erro ao excluir pasta do sistema de arquivos: " + pasta.getNomePasta(), e);
+            zipCacheService.invalidar(pasta);
+            zipCacheService.invalidarIds(pastaHierarquiaService.listarIdsSubarvore(pasta.getId()));
         }
 
-        pastaRepository.delete(pasta);
+        // Uma pasta dentro de outra da lista já sai junto com ela
+        List<Long> ids = idsPastas.stream().distinct()
+                .filter(id -> idsPastas.stream().noneMatch(outro -> !outro.equals(id) && pastaHierarquiaService.isDescendente(id, outro)))
+                .toList();
+        return jobService.submeter(TipoJob.EXCLUIR_PASTAS_LOTE, "Excluir " + ids.size() + " pasta(s)", usuarioLogado,
+                contexto -> pastaJobService.excluir(contexto, ids));
     }
 
-    /**
-     * Exclui apenas a pasta (se estiver vazia).
-     */
-    private void excluirSomentePasta(Pasta pasta) {
-        try {
-            Files.deleteIfExists(Paths.get(pasta.getCaminhoCompleto()));
-        } catch (IOException e) {
-            throw new RuntimeException("Erro ao excluir pasta do sistema de arquivos: " + pasta.getNomePasta(), e);
-        }
-        pastaRepository.delete(pasta);
-    }
-
-
-
 
     //----------------------------------------------------------------//
 
 
     // --- SUBSTITUIÇÃO DE PASTAS ----------------------------------//
 
+    // Esvazia o destino e copia o conteúdo da origem para ele, como tarefa (ver PastaJobService)
     @Transactional
-    public Pasta substituirConteudoPasta(Long idOrigem, Long idDestino, Usuario usuarioLogado) throws IOException {
+    public JobDTO substituirConteudoPasta(Long idOrigem, Long idDestino, Usuario usuarioLogado) throws IOException {
         Pasta pastaOrigem = pastaRepository.findById(idOrigem)
                 .orElseThrow(() -> new EntityNotFoundException("Pasta origem não encontrada."));
         Pasta pastaDestino = pastaRepository.findById(idDestino)
                 .orElseThrow(() -> new EntityNotFoundException("Pasta destino não encontrada."));
 
         // Validação de permissão
-        if (!usuarioLogado.isAdmin() && !pastaDestino.getUsuariosComPermissao().contains(usuarioLogado)) {
+        if (!usuarioLogado.isAdmin() && !pastaAclService.temPermissao(usuarioLogado, pastaDestino)) {
             throw new AccessDeniedException("Você não tem permissão para substituir esta pasta.");
         }
 
-        // Limpar conteúdo da pasta destino
-        FileUtils.deleteDirectory(Paths.get(pastaDestino.getCaminhoCompleto()));
-        pastaDestino.getArquivos().clear();
-        pastaDestino.getSubPastas().clear();
-        pastaRepository.save(pastaDestino);
-
-        // Copiar conteúdo da pasta origem para a pasta destino
-        for (Arquivo arquivo : pastaOrigem.getArquivos()) {
-            Path destinoArquivo = Paths.get(pastaDestino.getCaminhoCompleto(), arquivo.getNomeArquivo());
-            try {
-                Files.copy(Paths.get(arquivo.getCaminhoArmazenamento()), destinoArquivo);
-            } catch (IOException e) {
-                throw new RuntimeException("Erro ao copiar arquivo: " + arquivo.getNomeArquivo(), e);
-            }
-
-            // Persistir arquivo no banco, associando à pasta destino
-            Arquivo novoArquivo = new Arquivo();
-            novoArquivo.setNomeArquivo(arquivo.getNomeArquivo());
-            novoArquivo.setCaminhoArmazenamento(destinoArquivo.toString());
-            novoArquivo.setDataUpload(LocalDateTime.now());
-            novoArquivo.setDataAtualizacao(LocalDateTime.now());
-            novoArquivo.setCriadoPor(usuarioLogado);
-            novoArquivo.setPasta(pastaDestino);
-            arquivoRepository.save(novoArquivo);
-            pastaDestino.getArquivos().add(novoArquivo);
+        // Esvaziar o destino apagaria a origem; copiar a origem para dentro de si mesma não termina
+        if (isDescendente(pastaOrigem, pastaDestino) || isDescendente(pastaDestino, pastaOrigem)) {
+            throw new IllegalArgumentException("A pasta origem e a pasta destino não podem estar uma dentro da outra.");
         }
 
-        // Copiar subpastas recursivamente
-        for (Pasta sub : pastaOrigem.getSubPastas()) {
-            Pasta copiaSub = copiarSubPastaRecursiva(sub, pastaDestino, usuarioLogado);
-            pastaDestino.getSubPastas().add(copiaSub);
-        }
+        zipCacheService.invalidar(pastaDestino);
+        zipCacheService.invalidarIds(pastaHierarquiaService.listarIdsSubarvore(pastaDestino.getId()));
 
-        return pastaRepository.save(pastaDestino);
+        Long usuarioId = usuarioLogado.getId();
+        return jobService.submeter(TipoJob.SUBSTITUIR_CONTEUDO_PASTA,
+                "Substituir conteúdo de '" + pastaDestino.getNomePasta() + "' por '" + pastaOrigem.getNomePasta() + "'",
+                usuarioLogado, contexto -> pastaJobService.substituirConteudo(contexto, idOrigem, idDestino, usuarioId));
     }
 
-    private Pasta copiarSubPastaRecursiva(Pasta original, Pasta novaPastaPai, Usuario usuarioLogado) {
-        // Cria o nome da nova subpasta
-        String nomeNovaSub = original.getNomePasta() + "_copy";
-        Path caminhoNovaSub = Paths.get(novaPastaPai.getCaminhoCompleto(), FileUtils.sanitizeFileName(nomeNovaSub));
 
-        try {
-            Files.createDirectory(caminhoNovaSub);
-        } catch (IOException e) {
-            throw new RuntimeException("Erro ao criar subpasta no sistema de arquivos.", e);
-        }
-
-        // Cria a subpasta no banco
-        Pasta novaSub = new Pasta();
-        novaSub.setNomePasta(nomeNovaSub);
-        novaSub.setCaminhoCompleto(caminhoNovaSub.toString());
-        novaSub.setDataCriacao(LocalDateTime.now());
-        novaSub.setDataAtualizacao(LocalDateTime.now());
-        novaSub.setCriadoPor(usuarioLogado);
-        novaSub.setUsuariosComPermissao(new HashSet<>(original.getUsuariosComPermissao()));
-        novaSub.setPastaPai(novaPastaPai);
-        novaSub = pastaRepository.save(novaSub);
-
-        // Copiar arquivos da subpasta
-        for (Arquivo arquivo : original.getArquivos()) {
-            Path destinoArquivo = caminhoNovaSub.resolve(arquivo.getNomeArquivo());
-            try {
-                Files.copy(Paths.get(arquivo.getCaminhoArmazenamento()), destinoArquivo);
-            } catch (IOException e) {
-                throw new RuntimeException("Erro ao copiar arquivo da subpasta: " + arquivo.getNomeArquivo(), e);
-            }
-
-            // Persistir arquivo no banco de dados
-            Arquivo novoArquivo = new Arquivo();
-            novoArquivo.setNomeArquivo(arquivo.getNomeArquivo());
-            novoArquivo.setCaminhoArmazenamento(destinoArquivo.toString());
-            novoArquivo.setDataUpload(LocalDateTime.now());
-            novoArquivo.setDataAtualizacao(LocalDateTime.now());
-            novoArquivo.setCriadoPor(usuarioLogado);
-            novoArquivo.setPasta(novaSub);
-            arquivoRepository.save(novoArquivo);
-            novaSub.getArquivos().add(novoArquivo);
-        }
-
-        // Recursão para subpastas
-        for (Pasta sub : original.getSubPastas()) {
-            Pasta copiaSub = copiarSubPastaRecursiva(sub, novaSub, usuarioLogado);
-            novaSub.getSubPastas().add(copiaSub);
-        }
+    // ✅ ENDPOINT  - Gerar ZIP da pasta em segundo plano (o download é feito em /api/jobs/{id}/download)
+    @Transactional
+    public JobDTO gerarZipPasta(Long pastaId, Usuario usuarioLogado) {
+        Pasta pasta = pastaRepository.findById(pastaId)
+                .orElseThrow(() -> new EntityNotFoundException("Pasta não encontrada."));
 
-        return pastaRepository.save(novaSub);
+        return jobService.submeter(TipoJob.GERAR_ZIP_PASTA, "ZIP da pasta '" + pasta.getNomePasta() + "'", usuarioLogado,
+                contexto -> pastaJobService.gerarZip(contexto, pastaId));
     }
 
 
@@ -907,24 +789,32 @@ public class PastaService {
                     throw new IllegalArgumentException("Não é permitido remover o criador da pasta.");
                 }
 
+                // ❌ Regra 3: permissão herdada só sai na pasta onde foi concedida
+                if (pastaAclService.temPermissaoHerdada(usuarioRemover.getId(), pasta.getId())) {
+                    throw new IllegalArgumentException("O usuário " + usuarioRemover.getUsername()
+                            + " herda a permissão de uma pasta superior; remova-a na pasta de origem.");
+                }
+
                 pasta.getUsuariosComPermissao().remove(usuarioRemover);
             }
         }
 
         pasta.setDataAtualizacao(LocalDateTime.now());
         pastaRepository.save(pasta);
+        pastaAclService.atualizarPasta(pasta.getId());
     }
 
 
     //----------------------------------------------------------------------//
 
 
-    // ✅ ENDPOINT  - Retornar lista de usuários para uma pasta por id
+    // ✅ ENDPOINT  - Retornar lista de usuários para uma pasta por id (concedidos nela ou herdados)
     public List<Usuario> listarUsuariosPorPasta(Long pastaId,Usuario usuarioLogado) throws AccessDeniedException {
-        var pasta = pastaRepository.findById(pastaId)
-                .orElseThrow(() -> new EntityNotFoundException("Pasta não encontrada com id " + pastaId));
+        if (!pastaRepository.existsById(pastaId)) {
+            throw new EntityNotFoundException("Pasta não encontrada com id " + pastaId);
+        }
 
-        return new ArrayList<>(pasta.getUsuariosComPermissao());
+        return usuarioRepository.findAllById(pastaRepository.findIdsUsuariosComPermissaoEfetiva(pastaId));
     }
 
 
@@ -960,9 +850,7 @@ public class PastaService {
         // ==========================
         // 🔑 Gerente/Básico criando SUBPASTA
         // ==========================
-        boolean temPermissao = pastaPai.getUsuariosComPermissao() != null &&
-                pastaPai.getUsuariosComPermissao().stream()
-                        .anyMatch(u -> u != null && u.getId() != null && u.getId().equals(usuario.getId()));
+        boolean temPermissao = pastaAclService.temPermissao(usuario, pastaPai);
 
         if (!temPermissao) {
             logger.warn("Usuário {} não tem permissão na pastaPai id={}", usuario.getUsername(), pastaPai.getId());
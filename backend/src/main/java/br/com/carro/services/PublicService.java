@@ -2,28 +2,29 @@ package br.com.carro.services;
 
 import br.com.carro.entities.Arquivo;
 import br.com.carro.entities.DTO.ArquivoPublicoDTO;
+import br.com.carro.entities.DTO.PaginaCursorDTO;
 import br.com.carro.entities.Pasta;
 import br.com.carro.entities.DTO.PastaPublicaDTO;
 import br.com.carro.repositories.ArquivoRepository;
 import br.com.carro.repositories.PastaRepository;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
 import org.springframework.data.domain.*;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
 import java.io.IOException;
-import java.net.MalformedURLException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Comparator;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -33,10 +34,15 @@ public class PublicService {
     @Autowired
     private PastaRepository pastaRepository;
     private ArquivoRepository arquivoRepository;
+    private ZipCacheService zipCacheService;
+    private ArquivoDownloadService arquivoDownloadService;
 
-    public PublicService(PastaRepository pastaRepository, ArquivoRepository arquivoRepository) {
+    public PublicService(PastaRepository pastaRepository, ArquivoRepository arquivoRepository, ZipCacheService zipCacheService,
+                         ArquivoDownloadService arquivoDownloadService) {
         this.pastaRepository = pastaRepository;
         this.arquivoRepository = arquivoRepository;
+        this.zipCacheService = zipCacheService;
+        this.arquivoDownloadService = arquivoDownloadService;
     }
 
     /**
@@ -79,129 +85,96 @@ public class PublicService {
     }
 
     /**
-     * Listar arquivos na area publica por pastas
+     * Listar arquivos na area publica por pastas (filtro, ordenação e página resolvidos no banco)
      */
     public Page<ArquivoPublicoDTO> listarArquivosPublicos(Long pastaId, Pageable pageable, String extensao, String sortBy, String order) {
-        Pasta pasta = pastaRepository.findById(pastaId)
-                .orElseThrow(() -> new RuntimeException("Pasta não encontrada"));
-
-        Stream<Arquivo> streamArquivos = pasta.getArquivos().stream();
-
-        if (extensao != null && !extensao.isEmpty()) {
-            streamArquivos = streamArquivos.filter(a -> a.getNomeArquivo().endsWith("." + extensao));
+        if (!pastaRepository.existsById(pastaId)) {
+            throw new RuntimeException("Pasta não encontrada");
         }
+        return arquivoRepository.listarPublicosPorPasta(pastaId, extensao, campoOrdenacao(sortBy), "asc".equalsIgnoreCase(order), pageable);
+    }
 
-        List<ArquivoPublicoDTO> lista = streamArquivos
-                .sorted(getComparator(sortBy, order))
-                .map(ArquivoPublicoDTO::fromEntity)
-                .toList();
-
-        int start = (int) pageable.getOffset();
-        int end = Math.min(start + pageable.getPageSize(), lista.size());
-        return new PageImpl<>(lista.subList(start, end), pageable, lista.size());
+    /**
+     * Mesma listagem com paginação por cursor (keyset): custo constante por página, independente da posição
+     */
+    public PaginaCursorDTO<ArquivoPublicoDTO> listarArquivosPublicosPorCursor(Long pastaId, String cursor, int size, String extensao,
+                                                                            String sortBy, String order) {
+        if (!pastaRepository.existsById(pastaId)) {
+            throw new RuntimeException("Pasta não encontrada");
+        }
+        return arquivoRepository.listarPublicosPorPastaComCursor(pastaId, extensao, campoOrdenacao(sortBy),
+                "asc".equalsIgnoreCase(order), cursor, size);
     }
 
 
-    // Helper para ordenação
-    private Comparator<Arquivo> getComparator(String sortBy, String order) {
-        Comparator<Arquivo> comp;
+    // Helper para ordenação: parâmetro da API -> atributo da entidade
+    private String campoOrdenacao(String sortBy) {
         switch (sortBy) {
-            case "tamanho": comp = Comparator.comparing(Arquivo::getTamanho); break;
-            case "dataUpload": comp = Comparator.comparing(Arquivo::getDataUpload); break;
-            case "dataAtualizacao": comp = Comparator.comparing(Arquivo::getDataAtualizacao); break;
-            default: comp = Comparator.comparing(Arquivo::getNomeArquivo);
+            case "tamanho": return "tamanho";
+            case "dataUpload": return "dataUpload";
+            case "dataAtualizacao": return "dataAtualizacao";
+            default: return "nomeArquivo";
         }
-        return order.equalsIgnoreCase("asc") ? comp : comp.reversed();
     }
 
 
     /**
-     * Download - retorna o arquivo físico como Resource para download.
+     * Download / visualização - envia o arquivo físico com suporte a Range e ETag.
      */
-    public Resource getArquivoResource(Long id) {
+    public void enviarArquivo(Long id, boolean inline, HttpServletRequest request, HttpServletResponse response) throws IOException {
         Arquivo arquivo = arquivoRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Arquivo não encontrado"));
-
-        try {
-            Path path = Paths.get(arquivo.getCaminhoArmazenamento());
-            if (!Files.exists(path)) {
-                throw new RuntimeException("Arquivo físico não encontrado no servidor.");
-            }
-            return new UrlResource(path.toUri());
-        } catch (MalformedURLException e) {
-            throw new RuntimeException("Erro ao acessar o arquivo", e);
-        }
+                .orElseThrow(() -> new RuntimeException("Arquivo não encontrado com id: " + id));
+        arquivoDownloadService.enviar(arquivo, inline, request, response);
     }
 
 
     /**
-     * Gera um arquivo ZIP temporário contendo todos os arquivos da pasta (e subpastas).
+     * Retorna o ZIP com todos os arquivos da pasta (e subpastas).
+     * O ZIP é reaproveitado do cache enquanto o conteúdo da subárvore não mudar.
      */
     public Resource criarZipDaPasta(Long pastaId) {
         Pasta pasta = pastaRepository.findById(pastaId)
                 .orElseThrow(() -> new RuntimeException("Pasta não encontrada"));
+        String raiz = pasta.getNomePasta() + "/";
 
         try {
-            Path zipPath = Files.createTempFile("pasta_" + pastaId + "_", ".zip");
-            try (ZipOutputStream zs = new ZipOutputStream(Files.newOutputStream(zipPath))) {
-                adicionarPastaAoZip(pasta, zs, "");
-            }
-            return new UrlResource(zipPath.toUri());
+            ZipCacheService.ZipAberto zip = zipCacheService.obterOuGerar(pastaId, calcularFingerprint(pasta), destino -> {
+                try (ZipOutputStream zs = new ZipOutputStream(Files.newOutputStream(destino))) {
+                    // ✅ Entradas da CTE recursiva em páginas (caminho já montado), sem percorrer getArquivos/getSubPastas
+                    arquivoRepository.percorrerEntradasZip(pastaId, (nome, caminhoArmazenamento) -> {
+                        Path arquivoPath = Paths.get(caminhoArmazenamento);
+                        if (Files.exists(arquivoPath)) {
+                            zs.putNextEntry(new ZipEntry(raiz + nome));
+                            Files.copy(arquivoPath, zs);
+                            zs.closeEntry();
+                        }
+                    });
+                }
+            });
+            // Já aberto: se o ZIP sair do cache durante o envio, a leitura continua
+            return zip.comoResource("pasta_" + pastaId + ".zip");
         } catch (IOException e) {
             throw new RuntimeException("Erro ao criar ZIP da pasta", e);
         }
     }
 
     /**
-     * Método recursivo para adicionar arquivos e subpastas ao ZIP.
+     * Impressão digital da subárvore: muda sempre que um arquivo ou subpasta
+     * é criado, removido, renomeado ou atualizado. Uma consulta agregada só,
+     * inclusive nos acertos de cache.
      */
-    private void adicionarPastaAoZip(Pasta pasta, ZipOutputStream zs, String basePath) throws IOException {
-        String pastaPath = basePath + pasta.getNomePasta() + "/";
-
-        for (Arquivo arquivo : pasta.getArquivos()) {
-            Path arquivoPath = Paths.get(arquivo.getCaminhoArmazenamento());
-            if (Files.exists(arquivoPath)) {
-                zs.putNextEntry(new ZipEntry(pastaPath + arquivo.getNomeArquivo()));
-                Files.copy(arquivoPath, zs);
-                zs.closeEntry();
-            }
-        }
-
-        for (Pasta sub : pasta.getSubPastas()) {
-            adicionarPastaAoZip(sub, zs, pastaPath);
-        }
-    }
-
-    /**
-     * Retorna o conteúdo de um arquivo como Resource, pronto para visualização no navegador.
-     */
-    public Resource getArquivoParaVisualizacao(Long id) {
-        Arquivo arquivo = arquivoRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Arquivo não encontrado com id: " + id));
-
-        File file = new File(arquivo.getCaminhoArmazenamento());
-        if (!file.exists()) {
-            throw new RuntimeException("Arquivo físico não encontrado no servidor.");
-        }
-
-        return new FileSystemResource(file);
-    }
-
-    /**
-     * Descobre o Content-Type do arquivo para exibição correta no navegador.
-     */
-    public String getContentType(Long id) {
-        Arquivo arquivo = arquivoRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Arquivo não encontrado com id: " + id));
-
+    private String calcularFingerprint(Pasta pasta) {
+        MessageDigest digest;
         try {
-            Path path = Path.of(arquivo.getCaminhoArmazenamento());
-            return Files.probeContentType(path); // tenta identificar o tipo de arquivo
-        } catch (Exception e) {
-            return MediaType.APPLICATION_OCTET_STREAM_VALUE; // fallback genérico
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        StringBuilder base = new StringBuilder("P|").append(pasta.getId()).append('|').append(pasta.getNomePasta());
+        for (Object valor : arquivoRepository.carregarImpressaoDigitalDaSubarvore(pasta.getId()).get(0)) {
+            base.append('|').append(valor);
         }
+        return HexFormat.of().formatHex(digest.digest(base.toString().getBytes(StandardCharsets.UTF_8)));
     }
 
-
-
 }
@@ -2,6 +2,7 @@ package br.com.carro.services;
 
 import br.com.carro.entities.Usuario.Usuario;
 import br.com.carro.repositories.UsuarioRepository;
+import br.com.carro.utils.AuthService;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
@@ -12,10 +13,15 @@ public class RecuperarSenhaService {
 
     private final UsuarioRepository usuarioRepository;
     private final PasswordEncoder passwordEncoder;
+    private final AuthService authService;
+    private final RefreshTokenService refreshTokenService;
 
-    public RecuperarSenhaService(UsuarioRepository usuarioRepository, PasswordEncoder passwordEncoder) {
+    public RecuperarSenhaService(UsuarioRepository usuarioRepository, PasswordEncoder passwordEncoder, AuthService authService,
+                                 RefreshTokenService refreshTokenService) {
         this.usuarioRepository = usuarioRepository;
         this.passwordEncoder = passwordEncoder;
+        this.authService = authService;
+        this.refreshTokenService = refreshTokenService;
     }
 
     /**
@@ -35,6 +41,9 @@ public class RecuperarSenhaService {
         usuario.setSenhaProvisoria(true);
 
         usuarioRepository.save(usuario);
+        authService.invalidarUsuario(usuario.getId());
+        // Senha trocada: tokens emitidos com a senha anterior deixam de valer
+        refreshTokenService.revogarDoUsuario(usuario);
 
         return senhaProvisoria;  // Retorna para o admin entregar ao usuário
     }
@@ -59,6 +68,9 @@ public class RecuperarSenhaService {
         usuario.setSenhaProvisoria(false);  // Após redefinição, marca como definitiva
 
         usuarioRepository.save(usuario);
+        authService.invalidarUsuario(usuario.getId());
+        // Senha trocada: tokens emitidos com a senha anterior deixam de valer
+        refreshTokenService.revogarDoUsuario(usuario);
     }
 
     private String gerarSenhaAleatoria() {
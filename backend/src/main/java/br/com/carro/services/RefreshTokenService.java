@@ -0,0 +1,134 @@
+package br.com.carro.services;
+
+import br.com.carro.entities.RefreshToken;
+import br.com.carro.entities.Usuario.Usuario;
+import br.com.carro.repositories.RefreshTokenRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Refresh tokens com rotação.
+ * <p>
+ * O token é um valor aleatório de 256 bits; o banco guarda só o SHA-256 (não há o que quebrar por força
+ * bruta, então não precisa de BCrypt). A renovação faz uma consulta pelo índice único do hash, revoga o
+ * token apresentado e emite outro na mesma família. Se um token já revogado for reapresentado, alguém
+ * guardou uma cópia: a família inteira é revogada e o usuário precisa logar de novo.
+ */
+@Service
+public class RefreshTokenService {
+    private static final Logger logger = LoggerFactory.getLogger(RefreshTokenService.class);
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    public record Renovacao(Usuario usuario, String refreshToken) {}
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final RevogacaoTokenService revogacaoTokenService;
+
+    @Value("${jwt.refresh-ttl-horas:12}")
+    private long validadeHoras;
+
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository, RevogacaoTokenService revogacaoTokenService) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.revogacaoTokenService = revogacaoTokenService;
+    }
+
+    /**
+     * Emite o refresh token de um login (família nova).
+     */
+    @Transactional
+    public String emitir(Usuario usuario) {
+        return emitir(usuario, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Troca o refresh token por outro.
+     *
+     * @throws SecurityException se o token não existir, estiver expirado ou já tiver sido usado
+     */
+    @Transactional(noRollbackFor = SecurityException.class)
+    public Renovacao renovar(String token) {
+        if (token == null || token.isBlank()) {
+            throw new SecurityException("Refresh token não informado.");
+        }
+        RefreshToken atual = refreshTokenRepository.findComUsuarioByTokenHash(hash(token))
+                .orElseThrow(() -> new SecurityException("Refresh token inválido."));
+
+        LocalDateTime agora = LocalDateTime.now();
+        if (atual.getDataRevogacao() != null || refreshTokenRepository.revogar(atual.getId(), agora) == 0) {
+            refreshTokenRepository.revogarFamilia(atual.getFamilia(), agora);
+            logger.warn("Refresh token reutilizado pelo usuário '{}'; sessão {} revogada.",
+                    atual.getUsuario().getUsername(), atual.getFamilia());
+            throw new SecurityException("Sessão encerrada. Faça login novamente.");
+        }
+        if (atual.getDataExpiracao().isBefore(agora)) {
+            throw new SecurityException("Sessão expirada. Faça login novamente.");
+        }
+
+        Usuario usuario = atual.getUsuario();
+        return new Renovacao(usuario, emitir(usuario, atual.getFamilia()));
+    }
+
+    // Logout: encerra a sessão (família) do token informado
+    @Transactional
+    public void revogar(String token) {
+        if (token == null || token.isBlank()) return;
+        refreshTokenRepository.findByTokenHash(hash(token))
+                .ifPresent(t -> refreshTokenRepository.revogarFamilia(t.getFamilia(), LocalDateTime.now()));
+    }
+
+    /**
+     * Encerra todas as sessões do usuário: refresh tokens no banco e access tokens já emitidos.
+     */
+    @Transactional
+    public void revogarDoUsuario(Usuario usuario) {
+        refreshTokenRepository.revogarDoUsuario(usuario.getId(), LocalDateTime.now());
+        revogacaoTokenService.revogarUsuario(usuario.getUsername());
+    }
+
+    // Linhas revogadas ficam até expirar (detecção de reuso); depois disso não servem para nada
+    @Scheduled(fixedDelayString = "${jwt.refresh.limpeza-intervalo-ms:3600000}")
+    @Transactional
+    public void limparExpirados() {
+        int n = refreshTokenRepository.excluirExpirados(LocalDateTime.now());
+        if (n > 0) logger.info("{} refresh token(s) expirado(s) removido(s).", n);
+    }
+
+    private String emitir(Usuario usuario, String familia) {
+        byte[] bytes = new byte[32];
+        RANDOM.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        LocalDateTime agora = LocalDateTime.now();
+        RefreshToken refreshToken = new RefreshToken();
+        refreshToken.setUsuario(usuario);
+        refreshToken.setTokenHash(hash(token));
+        refreshToken.setFamilia(familia);
+        refreshToken.setDataCriacao(agora);
+        refreshToken.setDataExpiracao(agora.plusHours(validadeHoras));
+        refreshTokenRepository.save(refreshToken);
+        return token;
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package br.com.carro.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lista de revogação dos access tokens, em memória e consultada pelo decoder a cada requisição
+ * (duas leituras em ConcurrentHashMap).
+ * <p>
+ * Três formas de revogar: um token pelo {@code jti} (logout), todos os tokens de um usuário emitidos
+ * até agora (troca de senha, exclusão, mudança de roles) e todos os tokens emitidos até agora (edição de
+ * roles). Como os access tokens duram {@code jwt.acesso-ttl-segundos}, nenhuma entrada precisa viver mais
+ * que isso: a limpeza periódica remove as vencidas e a memória fica limitada aos últimos minutos.
+ * Quem ainda tem refresh token válido só precisa renovar.
+ */
+@Service
+public class RevogacaoTokenService {
+
+    // jti -> expiração do token (epoch s)
+    private final Map<String, Long> tokensRevogados = new ConcurrentHashMap<>();
+
+    // username -> tokens com iat anterior a este instante (epoch s) são recusados
+    private final Map<String, Long> usuariosRevogados = new ConcurrentHashMap<>();
+
+    private volatile long todosRevogadosAntesDe;
+
+    @Value("${jwt.acesso-ttl-segundos:900}")
+    private long validadeSegundos;
+
+    public boolean estaRevogado(Jwt jwt) {
+        Instant emitidoEm = jwt.getIssuedAt();
+        long iat = emitidoEm != null ? emitidoEm.getEpochSecond() : 0L;
+        if (iat < todosRevogadosAntesDe) return true;
+        Long corte = usuariosRevogados.get(jwt.getSubject());
+        if (corte != null && iat < corte) return true;
+        return jwt.getId() != null && tokensRevogados.containsKey(jwt.getId());
+    }
+
+    public void revogarToken(Jwt jwt) {
+        if (jwt.getId() == null) return;
+        long expira = jwt.getExpiresAt() != null ? jwt.getExpiresAt().getEpochSecond() : agora() + validadeSegundos;
+        tokensRevogados.put(jwt.getId(), expira);
+    }
+
+    /**
+     * Recusa os tokens já emitidos para o usuário. Dentro de uma transação, só depois do commit
+     * (antes disso, uma renovação ainda leria os dados antigos e emitiria um token novo com eles).
+     */
+    public void revogarUsuario(String username) {
+        aposCommit(() -> usuariosRevogados.merge(username, corte(), Math::max));
+    }
+
+    public void revogarTodos() {
+        aposCommit(() -> todosRevogadosAntesDe = corte());
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.revogacao.limpeza-intervalo-ms:300000}")
+    public void limpar() {
+        long agora = agora();
+        tokensRevogados.values().removeIf(expira -> expira < agora);
+        usuariosRevogados.values().removeIf(corte -> corte + validadeSegundos < agora);
+    }
+
+    // O iat tem precisão de segundos: um token emitido no mesmo segundo da revogação pode ser anterior a ela,
+    // então o corte vai para o segundo seguinte (um login nesse mesmo segundo também precisa ser refeito)
+    private static long corte() {
+        return agora() + 1;
+    }
+
+    private static long agora() {
+        return Instant.now().getEpochSecond();
+    }
+
+    private void aposCommit(Runnable acao) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    acao.run();
+                }
+            });
+        } else {
+            acao.run();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package br.com.carro.services;
 
 import br.com.carro.entities.Role.Role;
 import br.com.carro.repositories.RoleRepository;
+import br.com.carro.utils.AuthService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -11,9 +12,13 @@ import org.springframework.stereotype.Service;
 public class RoleService {
     @Autowired
     private final RoleRepository roleRepository;
+    private final AuthService authService;
+    private final RevogacaoTokenService revogacaoTokenService;
 
-    public RoleService(RoleRepository roleRepository) {
+    public RoleService(RoleRepository roleRepository, AuthService authService, RevogacaoTokenService revogacaoTokenService) {
         this.roleRepository = roleRepository;
+        this.authService = authService;
+        this.revogacaoTokenService = revogacaoTokenService;
     }
 
     public Role cadastrar(Role role) {
@@ -23,10 +28,16 @@ public class RoleService {
     public String atualizar(Long id, Role role) {
         role.setId(id);
         this.roleRepository.save(role);
+        // Os usuários em cache carregam as roles junto
+        authService.invalidarTodos();
+        // Os access tokens também (claim "roles"): todos renovam com os nomes novos
+        revogacaoTokenService.revogarTodos();
         return "Role atualizado com sucesso!";
     }
     public String excluir(Long id) {
         roleRepository.deleteById(id);
+        authService.invalidarTodos();
+        revogacaoTokenService.revogarTodos();
         return "Role excluído com sucesso!";
     }
 
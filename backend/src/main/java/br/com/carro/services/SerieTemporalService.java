@@ -0,0 +1,158 @@
+package br.com.carro.services;
+
+import br.com.carro.entities.DTO.SerieTemporalDTO;
+import br.com.carro.repositories.DashboardRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+
+/**
+ * Séries temporais do painel (uploads de tb_arquivo, logins de tb_login_audit) agrupadas por dia,
+ * semana ou mês no banco, em vez de trazer uma linha por registro e somar em Java.
+ * <p>
+ * As datas são gravadas como horário local do servidor ({@code LocalDateTime.now()}), no fuso
+ * {@code estatisticas.fuso-armazenamento}. Quando nenhum dos dois fusos muda de horário no período,
+ * a diferença é uma constante e o banco desloca e agrupa tudo ({@code CONVERT_TZ} com deslocamento
+ * fixo, que não depende das tabelas de fuso do MySQL). Caso contrário o banco agrupa por hora e os
+ * períodos são montados aqui com as regras completas do fuso.
+ */
+@Service
+public class SerieTemporalService {
+
+    public enum Metrica { UPLOADS, LOGINS }
+
+    public enum Intervalo { DIA, SEMANA, MES }
+
+    // Limite de pontos por série (ex.: pouco mais de 3 anos por dia)
+    private static final int MAXIMO_PONTOS = 1200;
+
+    private static final DateTimeFormatter FORMATO_HORA = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final DashboardRepository dashboardRepository;
+    private final ZoneId fusoArmazenamento;
+
+    public SerieTemporalService(DashboardRepository dashboardRepository,
+                                @Value("${estatisticas.fuso-armazenamento:}") String fusoArmazenamento) {
+        this.dashboardRepository = dashboardRepository;
+        this.fusoArmazenamento = fusoArmazenamento.isBlank() ? ZoneId.systemDefault() : ZoneId.of(fusoArmazenamento);
+    }
+
+    /**
+     * Série densa de {@code inicio} a {@code fim} (inclusive, datas no fuso informado).
+     */
+    public SerieTemporalDTO gerarSerie(String metrica, String intervalo, LocalDate inicio, LocalDate fim, String fuso) {
+        Metrica m = converter(Metrica.class, metrica, "Métrica");
+        Intervalo i = converter(Intervalo.class, intervalo, "Intervalo");
+        ZoneId zona;
+        try {
+            zona = fuso == null || fuso.isBlank() ? fusoArmazenamento : ZoneId.of(fuso);
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException("Fuso horário inválido: " + fuso);
+        }
+        if (inicio == null || fim == null || fim.isBefore(inicio)) {
+            throw new IllegalArgumentException("Informe inicio e fim, com fim igual ou posterior a inicio.");
+        }
+
+        LocalDate primeiro = inicioDoPeriodo(inicio, i);
+        if (contarPeriodos(primeiro, fim, i) > MAXIMO_PONTOS) {
+            throw new IllegalArgumentException("Período muito longo para o intervalo '" + intervalo
+                    + "' (máximo de " + MAXIMO_PONTOS + " pontos).");
+        }
+
+        // Faixa [início do primeiro período, dia seguinte ao fim) no fuso pedido, convertida para o de armazenamento
+        ZonedDateTime de = primeiro.atStartOfDay(zona);
+        ZonedDateTime ate = fim.plusDays(1).atStartOfDay(zona);
+        LocalDateTime deArmazenado = de.withZoneSameInstant(fusoArmazenamento).toLocalDateTime();
+        LocalDateTime ateArmazenado = ate.withZoneSameInstant(fusoArmazenamento).toLocalDateTime();
+
+        Map<LocalDate, Long> contagem = new HashMap<>();
+        if (deslocamentoFixo(zona, de, ate) && deslocamentoFixo(fusoArmazenamento, de, ate)) {
+            String deFuso = formatar(fusoArmazenamento.getRules().getOffset(de.toInstant()));
+            String paraFuso = formatar(zona.getRules().getOffset(de.toInstant()));
+            List<Object[]> linhas = m == Metrica.UPLOADS
+                    ? dashboardRepository.serieUploads(i.name(), deFuso, paraFuso, deArmazenado, ateArmazenado)
+                    : dashboardRepository.serieLogins(i.name(), deFuso, paraFuso, deArmazenado, ateArmazenado);
+            for (Object[] linha : linhas) {
+                contagem.merge(toLocalDate(linha[0]), ((Number) linha[1]).longValue(), Long::sum);
+            }
+        } else {
+            List<Object[]> linhas = m == Metrica.UPLOADS
+                    ? dashboardRepository.uploadsPorHora(deArmazenado, ateArmazenado)
+                    : dashboardRepository.loginsPorHora(deArmazenado, ateArmazenado);
+            for (Object[] linha : linhas) {
+                LocalDateTime hora = LocalDateTime.parse((String) linha[0], FORMATO_HORA);
+                LocalDate dia = hora.atZone(fusoArmazenamento).withZoneSameInstant(zona).toLocalDate();
+                contagem.merge(inicioDoPeriodo(dia, i), ((Number) linha[1]).longValue(), Long::sum);
+            }
+        }
+
+        // Preenche os períodos sem ocorrências com zero
+        List<SerieTemporalDTO.Ponto> pontos = new ArrayList<>();
+        long total = 0;
+        for (LocalDate periodo = primeiro; !periodo.isAfter(fim); periodo = proximoPeriodo(periodo, i)) {
+            long quantidade = contagem.getOrDefault(periodo, 0L);
+            pontos.add(new SerieTemporalDTO.Ponto(periodo, quantidade));
+            total += quantidade;
+        }
+        return new SerieTemporalDTO(m.name().toLowerCase(), i.name().toLowerCase(), zona.getId(), inicio, fim, total, pontos);
+    }
+
+    static LocalDate inicioDoPeriodo(LocalDate dia, Intervalo intervalo) {
+        return switch (intervalo) {
+            case DIA -> dia;
+            case SEMANA -> dia.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MES -> dia.withDayOfMonth(1);
+        };
+    }
+
+    private static LocalDate proximoPeriodo(LocalDate periodo, Intervalo intervalo) {
+        return switch (intervalo) {
+            case DIA -> periodo.plusDays(1);
+            case SEMANA -> periodo.plusWeeks(1);
+            case MES -> periodo.plusMonths(1);
+        };
+    }
+
+    private static long contarPeriodos(LocalDate primeiro, LocalDate fim, Intervalo intervalo) {
+        return switch (intervalo) {
+            case DIA -> ChronoUnit.DAYS.between(primeiro, fim) + 1;
+            case SEMANA -> ChronoUnit.WEEKS.between(primeiro, fim) + 1;
+            case MES -> ChronoUnit.MONTHS.between(primeiro, fim) + 1;
+        };
+    }
+
+    // Sem transição de horário de verão entre de e ate
+    private static boolean deslocamentoFixo(ZoneId zona, ZonedDateTime de, ZonedDateTime ate) {
+        if (zona.getRules().isFixedOffset()) return true;
+        var transicao = zona.getRules().nextTransition(de.toInstant());
+        return transicao == null || !transicao.getInstant().isBefore(ate.toInstant());
+    }
+
+    // CONVERT_TZ aceita '+HH:MM' sem as tabelas de fuso do MySQL ('Z' não)
+    private static String formatar(ZoneOffset offset) {
+        int segundos = offset.getTotalSeconds();
+        int minutos = Math.abs(segundos) / 60;
+        return String.format("%s%02d:%02d", segundos < 0 ? "-" : "+", minutos / 60, minutos % 60);
+    }
+
+    private static <E extends Enum<E>> E converter(Class<E> tipo, String valor, String nome) {
+        try {
+            return Enum.valueOf(tipo, valor.trim().toUpperCase());
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException(nome + " inválido(a): " + valor + ". Use "
+                    + Arrays.stream(tipo.getEnumConstants()).map(c -> c.name().toLowerCase()).toList() + ".");
+        }
+    }
+
+    private static LocalDate toLocalDate(Object valor) {
+        if (valor instanceof LocalDate data) return data;
+        if (valor instanceof java.sql.Date data) return data.toLocalDate();
+        if (valor instanceof LocalDateTime dataHora) return dataHora.toLocalDate();
+        throw new IllegalArgumentException("Tipo de data inesperado: " + valor.getClass());
+    }
+}
@@ -1,7 +1,8 @@
 package br.com.carro.services;
 
-import br.com.carro.entities.LoginAudit;
-import br.com.carro.repositories.LoginAuditRepository;
+import br.com.carro.autenticacao.SessionTracker;
+import br.com.carro.entities.Usuario.Usuario;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
@@ -12,34 +13,65 @@ import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.util.Collection;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Service
 public class TokenService {
 
     private final JwtEncoder jwtEncoder;
-    private final LoginAuditRepository loginAuditRepository;
+    private final LoginAuditService loginAuditService;
+    private final SessionTracker sessionTracker;
 
-    public TokenService(JwtEncoder jwtEncoder, LoginAuditRepository loginAuditRepository) {
+    @Value("${jwt.acesso-ttl-segundos:900}")
+    private long validadeSegundos;
+
+    public TokenService(JwtEncoder jwtEncoder, LoginAuditService loginAuditService,
+                        SessionTracker sessionTracker) {
         this.jwtEncoder = jwtEncoder;
-        this.loginAuditRepository = loginAuditRepository;
+        this.loginAuditService = loginAuditService;
+        this.sessionTracker = sessionTracker;
     }
 
+    /**
+     * Access token do login. Curto ({@code jwt.acesso-ttl-segundos}); o cliente renova com o refresh token.
+     */
     public String gerarToken(Authentication authentication) {
+        // ✅ Registrar login (fila assíncrona, gravada em lote pelo LoginAuditService)
+        loginAuditService.registrar(authentication.getName());
+        sessionTracker.registrarAcesso(authentication.getName());
+
+        return assinar(authentication.getName(), authentication.getAuthorities());
+    }
+
+    /**
+     * Access token de uma renovação (não é login: não entra na auditoria). As roles vêm do banco,
+     * então mudanças de permissão valem a partir da próxima renovação.
+     */
+    public String gerarToken(Usuario usuario) {
+        return assinar(usuario.getUsername(), usuario.getAuthorities());
+    }
+
+    public long getValidadeSegundos() {
+        return validadeSegundos;
+    }
+
+    private String assinar(String username, Collection<? extends GrantedAuthority> autoridades) {
         Instant now = Instant.now();
-        long expiry = 36000L; // 10 horas, como no seu log
 
         // ✅ Isso coleta as autoridades EXATAMENTE como elas são definidas no UserDetailsService
         // Se seu UserDetailsService define "ROLE_ADMIN", aqui será coletado "ROLE_ADMIN".
-        var scopes = authentication.getAuthorities().stream()
+        var scopes = autoridades.stream()
                 .map(GrantedAuthority::getAuthority)
                 .collect(Collectors.toList());
 
         JwtClaimsSet claims = JwtClaimsSet.builder()
                 .issuer("carro-api")
+                .id(UUID.randomUUID().toString()) // jti: permite revogar este token (logout)
                 .issuedAt(now)
-                .expiresAt(now.plusSeconds(expiry))
-                .subject(authentication.getName())
+                .expiresAt(now.plusSeconds(validadeSegundos))
+                .subject(username)
                 .claim("roles", scopes) // A claim "roles" terá, por exemplo, ["ROLE_ADMIN"]
                 .build();
 
@@ -47,11 +79,8 @@ public class TokenService {
         // >>> Header COM algoritmo HS256 <<<
         JwsHeader header = JwsHeader.with(MacAlgorithm.HS256).build();
 
-        // ✅ Registrar login no banco
-        loginAuditRepository.save(new LoginAudit(authentication.getName()));
-
         return jwtEncoder
                 .encode(JwtEncoderParameters.from(header, claims))
                 .getTokenValue();
     }
-}
\ No newline at end of file
+}
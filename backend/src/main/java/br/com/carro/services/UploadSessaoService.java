@@ -0,0 +1,357 @@
+package br.com.carro.services;
+
+import br.com.carro.entities.Arquivo;
+import br.com.carro.entities.DTO.UploadSessaoCreateDTO;
+import br.com.carro.entities.DTO.UploadSessaoDTO;
+import br.com.carro.entities.Pasta;
+import br.com.carro.entities.UploadSessao;
+import br.com.carro.entities.Usuario.Usuario;
+import br.com.carro.repositories.ArquivoRepository;
+import br.com.carro.repositories.PastaRepository;
+import br.com.carro.repositories.UploadSessaoRepository;
+import br.com.carro.utils.ArquivoUtils;
+import br.com.carro.utils.FileUtils;
+import jakarta.persistence.EntityNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Upload retomável em partes (chunks) para arquivos grandes.
+ * <p>
+ * Fluxo: abrir sessão → enviar chunks numerados (PUT, corpo binário) → confirmar (commit).
+ * Cada chunk é gravado direto do corpo da requisição no arquivo temporário da sessão,
+ * no mesmo volume das pastas; no commit o arquivo só é renomeado, sem nova cópia.
+ * Os chunks são aceitos em ordem: o cliente retoma a partir de {@code proximoChunk}
+ * e reenviar um chunk já confirmado é inofensivo.
+ * <p>
+ * O SHA-256 é acumulado em memória enquanto os chunks são gravados. Se esse estado se perder
+ * (reinício da aplicação no meio do upload), o arquivo é registrado sem hash e o
+ * {@link HashArquivoBackfillService} preenche depois; com o hash, o arquivo vai para o {@link BlobStoreService}.
+ */
+@Service
+public class UploadSessaoService {
+    private static final Logger logger = LoggerFactory.getLogger(UploadSessaoService.class);
+
+    private final UploadSessaoRepository uploadSessaoRepository;
+    private final PastaRepository pastaRepository;
+    private final ArquivoRepository arquivoRepository;
+    private final ZipCacheService zipCacheService;
+    private final BlobStoreService blobStoreService;
+    private final PastaAgregadoService pastaAgregadoService;
+    private final TransactionTemplate transactionTemplate;
+
+    // Fica dentro do storage.root-dir (mesmo volume das pastas), então o commit é só um rename.
+    // Não fica na pasta de destino para não impedir que ela seja excluída ou movida durante o upload.
+    private static final String DIRETORIO_TEMPORARIO = ".uploads";
+
+    // Digest parcial por sessão e quantos bytes ele já cobre
+    private record HashParcial(MessageDigest digest, long bytes) {}
+
+    private final Map<String, HashParcial> hashesParciais = new ConcurrentHashMap<>();
+
+    // Sessões com um chunk sendo gravado nesta instância
+    private final Set<String> sessoesGravando = ConcurrentHashMap.newKeySet();
+
+    @Value("${storage.root-dir}")
+    private String rootDirectory;
+
+    @Value("${storage.upload.tamanho-chunk:8388608}")
+    private int tamanhoChunk;
+
+    @Value("${storage.upload.tamanho-maximo:10737418240}")
+    private long tamanhoMaximo;
+
+    @Value("${storage.upload.expiracao-horas:24}")
+    private long expiracaoHoras;
+
+    public UploadSessaoService(UploadSessaoRepository uploadSessaoRepository, PastaRepository pastaRepository,
+                               ArquivoRepository arquivoRepository, ZipCacheService zipCacheService,
+                               BlobStoreService blobStoreService, PastaAgregadoService pastaAgregadoService,
+                               TransactionTemplate transactionTemplate) {
+        this.uploadSessaoRepository = uploadSessaoRepository;
+        this.pastaRepository = pastaRepository;
+        this.arquivoRepository = arquivoRepository;
+        this.zipCacheService = zipCacheService;
+        this.blobStoreService = blobStoreService;
+        this.pastaAgregadoService = pastaAgregadoService;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    // ✅ Abre a sessão e cria o arquivo temporário vazio
+    @Transactional
+    public UploadSessaoDTO iniciar(UploadSessaoCreateDTO dto, Usuario usuarioLogado) throws AccessDeniedException {
+        if (usuarioLogado == null) {
+            throw new SecurityException("Usuário não autenticado.");
+        }
+        if (dto.nomeArquivo() == null || dto.nomeArquivo().isBlank()) {
+            throw new IllegalArgumentException("O nome do arquivo é obrigatório.");
+        }
+        if (dto.tamanho() == null || dto.tamanho() <= 0) {
+            throw new IllegalArgumentException("O tamanho do arquivo deve ser maior que zero.");
+        }
+        if (dto.tamanho() > tamanhoMaximo) {
+            throw new IllegalArgumentException("O arquivo excede o tamanho máximo permitido de " + tamanhoMaximo + " bytes.");
+        }
+
+        Pasta pasta = pastaRepository.findById(dto.pastaId())
+                .orElseThrow(() -> new EntityNotFoundException("Pasta não encontrada com ID: " + dto.pastaId()));
+        validarPermissaoUpload(usuarioLogado);
+
+        String id = UUID.randomUUID().toString();
+        Path temporario = Paths.get(rootDirectory, DIRETORIO_TEMPORARIO, id + ".upload");
+        try {
+            Files.createDirectories(temporario.getParent());
+            Files.createFile(temporario);
+        } catch (IOException e) {
+            throw new RuntimeException("Erro ao preparar o arquivo temporário do upload.", e);
+        }
+
+        UploadSessao sessao = new UploadSessao();
+        sessao.setId(id);
+        sessao.setNomeArquivo(FileUtils.sanitizeFileName(dto.nomeArquivo()));
+        sessao.setTipoMime(dto.tipoMime());
+        sessao.setTamanhoTotal(dto.tamanho());
+        sessao.setTamanhoChunk(tamanhoChunk);
+        sessao.setBytesRecebidos(0L);
+        sessao.setCaminhoTemporario(temporario.toString());
+        sessao.setDataCriacao(LocalDateTime.now());
+        sessao.setDataAtualizacao(LocalDateTime.now());
+        sessao.setPasta(pasta);
+        sessao.setCriadoPor(usuarioLogado);
+
+        return UploadSessaoDTO.fromEntity(uploadSessaoRepository.save(sessao));
+    }
+
+    // ✅ Estado atual (usado pelo cliente para retomar)
+    @Transactional(readOnly = true)
+    public UploadSessaoDTO consultar(String id, Usuario usuarioLogado) throws AccessDeniedException {
+        return UploadSessaoDTO.fromEntity(buscarDoUsuario(id, usuarioLogado, false));
+    }
+
+    /**
+     * Grava o chunk {@code numero} lendo direto do corpo da requisição.
+     * <p>
+     * A gravação roda fora de transação: a linha da sessão só é bloqueada depois, numa transação curta
+     * que confere o offset e avança {@code bytesRecebidos}. Chunks simultâneos da mesma sessão
+     * (ex.: reenvio com o original ainda em andamento) são recusados em vez de gravar no mesmo trecho.
+     *
+     * @param tamanhoInformado Content-Length da requisição (-1 se desconhecido)
+     */
+    public UploadSessaoDTO receberChunk(String id, long numero, InputStream corpo, long tamanhoInformado,
+                                        Usuario usuarioLogado) throws IOException {
+        UploadSessao sessao = buscarDoUsuario(id, usuarioLogado, false);
+
+        long inicio = numero * sessao.getTamanhoChunk();
+        if (numero < 0 || inicio >= sessao.getTamanhoTotal()) {
+            throw new IllegalArgumentException("Número de chunk inválido: " + numero);
+        }
+        long esperado = Math.min(sessao.getTamanhoChunk(), sessao.getTamanhoTotal() - inicio);
+        if (tamanhoInformado >= 0 && tamanhoInformado != esperado) {
+            throw new IllegalArgumentException("O chunk " + numero + " deve ter " + esperado + " bytes.");
+        }
+
+        // Reenvio de chunk já confirmado (ex.: resposta perdida): nada a fazer
+        if (inicio + esperado <= sessao.getBytesRecebidos()) {
+            return UploadSessaoDTO.fromEntity(sessao);
+        }
+        if (inicio != sessao.getBytesRecebidos()) {
+            throw foraDeOrdem(sessao);
+        }
+
+        if (!sessoesGravando.add(id)) {
+            throw new IllegalStateException("Outro chunk desta sessão ainda está sendo gravado. Tente novamente em instantes.");
+        }
+        try {
+            MessageDigest digest = gravarChunk(sessao, numero, inicio, esperado, corpo);
+
+            UploadSessaoDTO atualizada = transactionTemplate.execute(status -> {
+                UploadSessao bloqueada = uploadSessaoRepository.findComBloqueioById(id)
+                        .orElseThrow(() -> new EntityNotFoundException("Sessão de upload não encontrada: " + id));
+                // Confirmado por outra instância enquanto gravávamos: os bytes são os mesmos
+                if (inicio + esperado <= bloqueada.getBytesRecebidos()) {
+                    return UploadSessaoDTO.fromEntity(bloqueada);
+                }
+                if (inicio != bloqueada.getBytesRecebidos()) {
+                    throw foraDeOrdem(bloqueada);
+                }
+                bloqueada.setBytesRecebidos(inicio + esperado);
+                bloqueada.setDataAtualizacao(LocalDateTime.now());
+                return UploadSessaoDTO.fromEntity(uploadSessaoRepository.save(bloqueada));
+            });
+
+            // Só depois do commit: o digest passa a valer para os bytes confirmados
+            if (digest != null && atualizada != null && atualizada.bytesRecebidos() == inicio + esperado) {
+                hashesParciais.put(id, new HashParcial(digest, inicio + esperado));
+            }
+            return atualizada;
+        } finally {
+            sessoesGravando.remove(id);
+        }
+    }
+
+    /**
+     * Copia o corpo para o trecho do chunk no temporário. Devolve o SHA-256 acumulado até o fim do chunk,
+     * ou nulo se o digest parcial da sessão não cobre exatamente os bytes anteriores.
+     */
+    private MessageDigest gravarChunk(UploadSessao sessao, long numero, long inicio, long esperado,
+                                      InputStream corpo) throws IOException {
+        // Trabalha numa cópia do digest: se o chunk falhar no meio, o estado anterior continua válido para o reenvio
+        HashParcial parcial = inicio == 0 ? new HashParcial(ArquivoUtils.novoDigest(), 0) : hashesParciais.get(sessao.getId());
+        DigestInputStream corpoComHash = parcial != null && parcial.bytes() == inicio
+                ? new DigestInputStream(corpo, copiar(parcial.digest()))
+                : null;
+
+        Path temporario = Paths.get(sessao.getCaminhoTemporario());
+        try (FileChannel canal = FileChannel.open(temporario, StandardOpenOption.WRITE)) {
+            ReadableByteChannel origem = Channels.newChannel(corpoComHash != null ? corpoComHash : corpo);
+            long gravado = 0;
+            while (gravado < esperado) {
+                long n = canal.transferFrom(origem, inicio + gravado, esperado - gravado);
+                if (n <= 0) break;
+                gravado += n;
+            }
+            if (gravado != esperado) {
+                // Chunk incompleto: descarta o trecho para manter o arquivo alinhado ao último chunk confirmado
+                canal.truncate(inicio);
+                throw new IllegalArgumentException("Chunk " + numero + " incompleto: recebidos " + gravado
+                        + " de " + esperado + " bytes.");
+            }
+            canal.force(false);
+        } catch (NoSuchFileException e) {
+            throw new IllegalStateException("Arquivo temporário do upload não existe mais. Inicie uma nova sessão.");
+        }
+        return corpoComHash != null ? corpoComHash.getMessageDigest() : null;
+    }
+
+    private static IllegalStateException foraDeOrdem(UploadSessao sessao) {
+        return new IllegalStateException("Chunk fora de ordem. Próximo chunk esperado: "
+                + sessao.getBytesRecebidos() / sessao.getTamanhoChunk());
+    }
+
+    // ✅ Conclui o upload: renomeia o temporário para o nome final e registra o arquivo
+    @Transactional
+    public Arquivo concluir(String id, Usuario usuarioLogado) throws IOException {
+        UploadSessao sessao = buscarDoUsuario(id, usuarioLogado, true);
+        if (!sessao.getBytesRecebidos().equals(sessao.getTamanhoTotal())) {
+            throw new IllegalStateException("Upload incompleto: recebidos " + sessao.getBytesRecebidos()
+                    + " de " + sessao.getTamanhoTotal() + " bytes.");
+        }
+
+        Pasta pasta = sessao.getPasta();
+        Path temporario = Paths.get(sessao.getCaminhoTemporario());
+        Arquivo arquivo = new Arquivo();
+        arquivo.setNomeArquivo(sessao.getNomeArquivo());
+        arquivo.setTipoMime(sessao.getTipoMime());
+
+        HashParcial parcial = hashesParciais.remove(id);
+        if (parcial != null && parcial.bytes() == sessao.getTamanhoTotal()) {
+            // Hash conhecido: o temporário entra direto no armazenamento deduplicado
+            blobStoreService.vincular(arquivo,
+                    blobStoreService.armazenarArquivo(temporario, ArquivoUtils.hex(parcial.digest())));
+        } else {
+            // Sem hash (estado perdido): layout antigo na pasta; o backfill e a migração cuidam depois
+            Path destino = Paths.get(pasta.getCaminhoCompleto(), sessao.getNomeArquivo());
+            try {
+                Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                // Pasta em outro volume que o storage.root-dir
+                Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING);
+            }
+            arquivo.setCaminhoArmazenamento(destino.toString());
+            arquivo.setTamanho(sessao.getTamanhoTotal());
+        }
+        arquivo.setDataUpload(LocalDateTime.now());
+        arquivo.setDataAtualizacao(LocalDateTime.now());
+        arquivo.setPasta(pasta);
+        arquivo.setCriadoPor(sessao.getCriadoPor());
+
+        Arquivo salvo = arquivoRepository.save(arquivo);
+        pastaAgregadoService.arquivoAdicionado(salvo);
+        uploadSessaoRepository.delete(sessao);
+        zipCacheService.invalidar(pasta);
+        return salvo;
+    }
+
+    // ✅ Cancela a sessão e apaga o temporário
+    @Transactional
+    public void cancelar(String id, Usuario usuarioLogado) throws AccessDeniedException {
+        UploadSessao sessao = buscarDoUsuario(id, usuarioLogado, true);
+        descartar(sessao);
+    }
+
+    /**
+     * Remove sessões sem atividade além do prazo de expiração (uploads abandonados).
+     */
+    @Scheduled(fixedDelayString = "${storage.upload.limpeza-intervalo-ms:3600000}")
+    @Transactional
+    public void limparSessoesAbandonadas() {
+        List<UploadSessao> expiradas = uploadSessaoRepository
+                .findByDataAtualizacaoBefore(LocalDateTime.now().minusHours(expiracaoHoras));
+        for (UploadSessao sessao : expiradas) {
+            descartar(sessao);
+        }
+        if (!expiradas.isEmpty()) {
+            logger.info("{} sessões de upload abandonadas removidas.", expiradas.size());
+        }
+    }
+
+    // ========================
+    // AUXILIARES
+    // ========================
+
+    private UploadSessao buscarDoUsuario(String id, Usuario usuarioLogado, boolean bloquear) throws AccessDeniedException {
+        UploadSessao sessao = (bloquear ? uploadSessaoRepository.findComBloqueioById(id) : uploadSessaoRepository.findById(id))
+                .orElseThrow(() -> new EntityNotFoundException("Sessão de upload não encontrada: " + id));
+        if (usuarioLogado == null || !sessao.getCriadoPor().getId().equals(usuarioLogado.getId())) {
+            throw new AccessDeniedException("Esta sessão de upload pertence a outro usuário.");
+        }
+        return sessao;
+    }
+
+    // Mesma regra do upload simples (ArquivoService.uploadArquivo)
+    private void validarPermissaoUpload(Usuario usuarioLogado) throws AccessDeniedException {
+        boolean temPermissao = usuarioLogado.getRoles().stream()
+                .anyMatch(r -> r.getNome().equals("ADMIN") || r.getNome().equals("GERENTE"));
+        if (!temPermissao) {
+            throw new AccessDeniedException("Usuário não tem permissão para enviar arquivos nesta pasta.");
+        }
+    }
+
+    private static MessageDigest copiar(MessageDigest digest) {
+        try {
+            return (MessageDigest) digest.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("Digest SHA-256 não suporta cópia.", e);
+        }
+    }
+
+    private void descartar(UploadSessao sessao) {
+        hashesParciais.remove(sessao.getId());
+        try {
+            Files.deleteIfExists(Paths.get(sessao.getCaminhoTemporario()));
+        } catch (IOException e) {
+            logger.warn("Não foi possível remover o temporário do upload {}", sessao.getCaminhoTemporario(), e);
+        }
+        uploadSessaoRepository.delete(sessao);
+    }
+}
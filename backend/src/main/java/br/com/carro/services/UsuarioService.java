@@ -7,6 +7,7 @@ import br.com.carro.entities.DTO.UsuarioLogadoDTO;
 import br.com.carro.exceptions.ResourceNotFoundException;
 import br.com.carro.repositories.RoleRepository;
 import br.com.carro.repositories.UsuarioRepository;
+import br.com.carro.utils.AuthService;
 import jakarta.persistence.EntityExistsException;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -34,11 +35,21 @@ public class UsuarioService {
     private final RoleRepository roleRepository;
     @Autowired
     private final PasswordEncoder passwordEncoder;
-
-    public UsuarioService(UsuarioRepository usuarioRepository, RoleRepository roleRepository, PasswordEncoder passwordEncoder) {
+    private final AuthService authService;
+    private final PastaAclService pastaAclService;
+    private final RefreshTokenService refreshTokenService;
+    private final RevogacaoTokenService revogacaoTokenService;
+
+    public UsuarioService(UsuarioRepository usuarioRepository, RoleRepository roleRepository, PasswordEncoder passwordEncoder,
+                          AuthService authService, PastaAclService pastaAclService,
+                          RefreshTokenService refreshTokenService, RevogacaoTokenService revogacaoTokenService) {
         this.usuarioRepository = usuarioRepository;
         this.roleRepository = roleRepository;
         this.passwordEncoder = passwordEncoder;
+        this.authService = authService;
+        this.pastaAclService = pastaAclService;
+        this.refreshTokenService = refreshTokenService;
+        this.revogacaoTokenService = revogacaoTokenService;
     }
 
     // ✅ Método de cadastro com roles
@@ -117,6 +128,10 @@ public class UsuarioService {
         Usuario usuarioExistente = usuarioRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Usuário não encontrado com id " + id));
 
+        // Username e roles vão dentro do access token: se mudarem, os tokens atuais são recusados
+        String usernameAnterior = usuarioExistente.getUsername();
+        Set<Long> rolesAnteriores = usuarioExistente.getRoles().stream().map(Role::getId).collect(Collectors.toSet());
+
         // Atualizar username e nome
         usuarioExistente.setUsername(usuarioComNovosDados.getUsername());
         usuarioExistente.setNome(usuarioComNovosDados.getNome());
@@ -137,8 +152,17 @@ public class UsuarioService {
         // ✅ Atualizar senha apenas se for fornecida
         if (usuarioComNovosDados.getPassword() != null && !usuarioComNovosDados.getPassword().isBlank()) {
             usuarioExistente.setPassword(usuarioComNovosDados.getPassword()); // já deve estar encodada
+            // Senha nova encerra todas as sessões (inclusive refresh tokens)
+            refreshTokenService.revogarDoUsuario(usuarioExistente);
+            revogacaoTokenService.revogarUsuario(usernameAnterior);
+        } else if (!usernameAnterior.equals(usuarioExistente.getUsername())
+                || !rolesAnteriores.equals(usuarioExistente.getRoles().stream().map(Role::getId).collect(Collectors.toSet()))) {
+            // Só os access tokens: a próxima renovação já traz os dados novos
+            revogacaoTokenService.revogarUsuario(usernameAnterior);
         }
 
+        // Username, roles ou senha podem ter mudado: o cache do usuário logado precisa recarregar
+        authService.invalidarUsuario(usuarioExistente.getId());
         return usuarioRepository.save(usuarioExistente);
     }
 
@@ -163,6 +187,10 @@ public class UsuarioService {
         usuario.getRoles().clear();
 
         usuarioRepository.delete(usuario);
+        authService.invalidarUsuario(id);
+        // Refresh tokens saem por ON DELETE CASCADE; os access tokens já emitidos são recusados
+        revogacaoTokenService.revogarUsuario(usuario.getUsername());
+        pastaAclService.removerUsuario(id);
     }
 
 
@@ -0,0 +1,229 @@
+package br.com.carro.services;
+
+import br.com.carro.entities.Pasta;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache em disco dos ZIPs gerados para download de pastas.
+ * <p>
+ * Cada ZIP é identificado pela impressão digital (fingerprint) da subárvore da pasta,
+ * calculada pelo chamador a partir de ids, datas de atualização e tamanhos dos arquivos.
+ * Qualquer alteração na subárvore gera uma nova fingerprint, então um ZIP em cache nunca
+ * é servido desatualizado. O tamanho total é limitado e a remoção segue a ordem LRU.
+ * Requisições simultâneas para a mesma fingerprint aguardam uma única construção.
+ * Os ZIPs são entregues já abertos ({@link ZipAberto}), para que uma remoção concorrente não
+ * corte um download em andamento.
+ */
+@Service
+public class ZipCacheService {
+    private static final Logger logger = LoggerFactory.getLogger(ZipCacheService.class);
+
+    @FunctionalInterface
+    public interface GeradorZip {
+        void gerar(Path destino) throws IOException;
+    }
+
+    private record Entrada(Long pastaId, Path caminho, long tamanho) {}
+
+    @Value("${storage.zip-cache.dir:${java.io.tmpdir}/portal-zip-cache}")
+    private String diretorioCache;
+
+    @Value("${storage.zip-cache.max-bytes:2147483648}")
+    private long tamanhoMaximoBytes;
+
+    // fingerprint -> entrada, em ordem de acesso (LRU)
+    private final LinkedHashMap<String, Entrada> entradas = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<Path>> emConstrucao = new ConcurrentHashMap<>();
+    private long tamanhoAtualBytes = 0;
+
+    private final Counter acertos;
+    private final Counter faltas;
+
+    public ZipCacheService(MeterRegistry meterRegistry) {
+        this.acertos = meterRegistry.counter("portal.zip.cache", "resultado", "hit");
+        this.faltas = meterRegistry.counter("portal.zip.cache", "resultado", "miss");
+        meterRegistry.gauge("portal.zip.cache.bytes", this, s -> s.tamanhoAtualBytes);
+    }
+
+    // O índice vive só em memória: arquivos de execuções anteriores são descartados
+    @PostConstruct
+    public void inicializar() throws IOException {
+        Path dir = Paths.get(diretorioCache);
+        Files.createDirectories(dir);
+        try (var arquivos = Files.list(dir)) {
+            arquivos.forEach(this::apagarSilenciosamente);
+        }
+    }
+
+    /**
+     * ZIP do cache já aberto para leitura. O canal é aberto sob o lock do índice, então uma remoção
+     * posterior (LRU ou invalidação) não atrapalha quem já está lendo: o arquivo só deixa de existir
+     * quando o último canal é fechado (no Windows o JDK abre arquivos com FILE_SHARE_DELETE).
+     * Quem recebe deve fechar, direto ou pelo {@link #comoResource}.
+     */
+    public record ZipAberto(FileChannel canal, long tamanho) implements Closeable {
+
+        // Resource de uso único para o corpo da resposta; o conversor do Spring fecha o canal ao terminar
+        public Resource comoResource(String nomeArquivo) {
+            return new InputStreamResource(Channels.newInputStream(canal)) {
+                @Override
+                public long contentLength() {
+                    return tamanho;
+                }
+
+                @Override
+                public String getFilename() {
+                    return nomeArquivo;
+                }
+            };
+        }
+
+        @Override
+        public void close() throws IOException {
+            canal.close();
+        }
+    }
+
+    /**
+     * Abre o ZIP da fingerprint informada, gerando-o se ainda não estiver em cache.
+     */
+    public ZipAberto obterOuGerar(Long pastaId, String fingerprint, GeradorZip gerador) throws IOException {
+        while (true) {
+            ZipAberto existente = abrirDoIndice(fingerprint);
+            if (existente != null) {
+                acertos.increment();
+                return existente;
+            }
+
+            CompletableFuture<Path> novo = new CompletableFuture<>();
+            CompletableFuture<Path> emAndamento = emConstrucao.putIfAbsent(fingerprint, novo);
+            if (emAndamento != null) {
+                // Outra requisição já está gerando este ZIP: aguarda e abre pelo índice (com o lock)
+                aguardar(emAndamento);
+                continue;
+            }
+
+            faltas.increment();
+            try {
+                Path destino = Paths.get(diretorioCache, "pasta_" + pastaId + "_" + fingerprint + ".zip");
+                Path temporario = Files.createTempFile(Paths.get(diretorioCache), "build_", ".tmp");
+                try {
+                    gerador.gerar(temporario);
+                    Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException | RuntimeException e) {
+                    Files.deleteIfExists(temporario);
+                    throw e;
+                }
+                ZipAberto aberto = registrarEAbrir(fingerprint, new Entrada(pastaId, destino, Files.size(destino)));
+                novo.complete(destino);
+                return aberto;
+            } catch (IOException | RuntimeException e) {
+                novo.completeExceptionally(e);
+                throw e;
+            } finally {
+                emConstrucao.remove(fingerprint);
+            }
+        }
+    }
+
+    /**
+     * ZIP já gerado para a fingerprint, sem gerar se não existir (ex.: resultado de uma tarefa).
+     */
+    public Optional<ZipAberto> abrir(String fingerprint) throws IOException {
+        return Optional.ofNullable(abrirDoIndice(fingerprint));
+    }
+
+    private synchronized ZipAberto abrirDoIndice(String fingerprint) throws IOException {
+        Entrada entrada = entradas.get(fingerprint);
+        if (entrada == null) return null;
+        try {
+            return new ZipAberto(FileChannel.open(entrada.caminho(), StandardOpenOption.READ), entrada.tamanho());
+        } catch (NoSuchFileException e) {
+            // Apagado por fora do cache: esquece a entrada
+            entradas.remove(fingerprint);
+            tamanhoAtualBytes -= entrada.tamanho();
+            return null;
+        }
+    }
+
+    /**
+     * Descarta os ZIPs da pasta e de todas as pastas ancestrais, pois todas
+     * contêm o conteúdo alterado. Deve ser chamado após qualquer alteração na pasta.
+     */
+    public void invalidar(Pasta pasta) {
+        Set<Long> ids = new HashSet<>();
+        for (Pasta atual = pasta; atual != null; atual = atual.getPastaPai()) {
+            if (atual.getId() != null) ids.add(atual.getId());
+        }
+        invalidarIds(ids);
+    }
+
+    public synchronized void invalidarIds(Collection<Long> pastaIds) {
+        if (pastaIds.isEmpty()) return;
+        Iterator<Entrada> it = entradas.values().iterator();
+        while (it.hasNext()) {
+            Entrada entrada = it.next();
+            if (pastaIds.contains(entrada.pastaId())) {
+                it.remove();
+                tamanhoAtualBytes -= entrada.tamanho();
+                apagarSilenciosamente(entrada.caminho());
+            }
+        }
+    }
+
+    // Abre antes de registrar: a partir do registro a entrada já pode ser removida por outra requisição
+    private synchronized ZipAberto registrarEAbrir(String fingerprint, Entrada entrada) throws IOException {
+        ZipAberto aberto = new ZipAberto(FileChannel.open(entrada.caminho(), StandardOpenOption.READ), entrada.tamanho());
+        Entrada anterior = entradas.put(fingerprint, entrada);
+        if (anterior != null) tamanhoAtualBytes -= anterior.tamanho();
+        tamanhoAtualBytes += entrada.tamanho();
+
+        // Remove os menos usados até caber no limite (mantém sempre o recém-gerado)
+        Iterator<Map.Entry<String, Entrada>> it = entradas.entrySet().iterator();
+        while (tamanhoAtualBytes > tamanhoMaximoBytes && it.hasNext()) {
+            Map.Entry<String, Entrada> maisAntiga = it.next();
+            if (maisAntiga.getKey().equals(fingerprint)) continue;
+            it.remove();
+            tamanhoAtualBytes -= maisAntiga.getValue().tamanho();
+            apagarSilenciosamente(maisAntiga.getValue().caminho());
+        }
+        return aberto;
+    }
+
+    private void aguardar(CompletableFuture<Path> futuro) throws IOException {
+        try {
+            futuro.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+
+    private void apagarSilenciosamente(Path caminho) {
+        try {
+            Files.deleteIfExists(caminho);
+        } catch (IOException | UncheckedIOException e) {
+            logger.warn("Não foi possível remover o ZIP em cache {}", caminho, e);
+        }
+    }
+}
@@ -4,21 +4,33 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.CopyOption;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 
 @Component
-public class ArquivoUtils {// Salvar arquivo enviado via MultipartFile
-    public Path salvarArquivo(MultipartFile file, String caminhoPasta) throws IOException {
+public class ArquivoUtils {
+
+    // Caminho gravado e SHA-256 (hex) do conteúdo, calculado na mesma passada da gravação
+    public record ArquivoGravado(Path caminho, String hash) {}
+
+    // Salvar arquivo enviado via MultipartFile
+    public ArquivoGravado salvarArquivo(MultipartFile file, String caminhoPasta) throws IOException {
         Path dir = Paths.get(caminhoPasta);
         if (!Files.exists(dir)) {
             Files.createDirectories(dir);
         }
         Path destino = dir.resolve(sanitizeFileName(file.getOriginalFilename()));
-        Files.copy(file.getInputStream(), destino, StandardCopyOption.REPLACE_EXISTING);
-        return destino;
+        try (InputStream in = file.getInputStream()) {
+            return new ArquivoGravado(destino, gravarComHash(in, destino));
+        }
     }
 
     // Renomear arquivo
@@ -52,8 +64,8 @@ public class ArquivoUtils {// Salvar arquivo enviado via MultipartFile
         return Files.move(arquivoAtual, destino, StandardCopyOption.REPLACE_EXISTING);
     }
 
-    // Copiar arquivo
-    public Path copiarArquivo(String caminhoAtual, String caminhoDestinoPasta) throws IOException {
+    // Copiar arquivo (reaproveita o hash da origem quando já existe)
+    public ArquivoGravado copiarArquivo(String caminhoAtual, String caminhoDestinoPasta, String hashOrigem) throws IOException {
         Path arquivoAtual = Paths.get(caminhoAtual);
         Path destinoDir = Paths.get(caminhoDestinoPasta);
 
@@ -62,7 +74,8 @@ public class ArquivoUtils {// Salvar arquivo enviado via MultipartFile
         }
 
         Path destino = destinoDir.resolve(arquivoAtual.getFileName());
-        return Files.copy(arquivoAtual, destino, StandardCopyOption.REPLACE_EXISTING);
+        String hash = copiarComHash(arquivoAtual, destino, hashOrigem, StandardCopyOption.REPLACE_EXISTING);
+        return new ArquivoGravado(destino, hash);
     }
 
     // **Substituir arquivo existente pelo novo arquivo**
@@ -81,4 +94,45 @@ public class ArquivoUtils {// Salvar arquivo enviado via MultipartFile
     public static String sanitizeFileName(String nome) {
         return nome.replaceAll("[\\\\/:*?\"<>|]", "_");
     }
-}
\ No newline at end of file
+
+    // ========================
+    // HASH (SHA-256)
+    // ========================
+
+    public static MessageDigest novoDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível na JVM.", e);
+        }
+    }
+
+    public static String hex(MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Grava o stream em {@code destino} (substituindo) e devolve o SHA-256 dos bytes gravados.
+     * O digest é atualizado enquanto os bytes passam para o disco, sem reler o arquivo.
+     */
+    public static String gravarComHash(InputStream origem, Path destino) throws IOException {
+        DigestInputStream in = new DigestInputStream(origem, novoDigest());
+        Files.copy(in, destino, StandardCopyOption.REPLACE_EXISTING);
+        return hex(in.getMessageDigest());
+    }
+
+    /**
+     * Copia {@code origem} para {@code destino}. Se a origem já tem hash, a cópia é byte a byte igual
+     * e herda o mesmo valor (cópia feita pelo sistema operacional); senão o hash é calculado durante a cópia.
+     */
+    public static String copiarComHash(Path origem, Path destino, String hashOrigem, CopyOption... opcoes) throws IOException {
+        if (hashOrigem != null) {
+            Files.copy(origem, destino, opcoes);
+            return hashOrigem;
+        }
+        try (DigestInputStream in = new DigestInputStream(Files.newInputStream(origem), novoDigest())) {
+            Files.copy(in, destino, opcoes);
+            return hex(in.getMessageDigest());
+        }
+    }
+}
@@ -2,14 +2,21 @@ package br.com.carro.utils;
 
 import br.com.carro.entities.Usuario.Usuario;
 import br.com.carro.repositories.UsuarioRepository;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.stereotype.Service;
 import org.springframework.security.core.Authentication;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.nio.file.AccessDeniedException;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -24,16 +31,35 @@ import java.util.List;
 
 
 @Service
-@RequiredArgsConstructor
 public class AuthService {
 
     private final UsuarioRepository usuarioRepository;
 
-    /**
-     * Retorna o usuário logado, consultando no banco de dados.
-     */
+    // 🗃️ Cache do usuário logado por username: uma consulta por usuário a cada TTL, não uma por requisição
+    private record UsuarioEmCache(Usuario usuario, long expiraEm) {}
+
+    private final LinkedHashMap<String, UsuarioEmCache> cacheUsuarios = new LinkedHashMap<>(16, 0.75f, true);
+    private final Counter acertos;
+    private final Counter faltas;
+
+    @Value("${auth.usuario-cache.ttl-ms:180000}")
+    private long ttlCacheMs;
+
+    @Value("${auth.usuario-cache.max-entradas:10000}")
+    private int maxEntradasCache;
+
+    public AuthService(UsuarioRepository usuarioRepository, MeterRegistry meterRegistry) {
+        this.usuarioRepository = usuarioRepository;
+        this.acertos = meterRegistry.counter("portal.auth.usuario.cache", "resultado", "hit");
+        this.faltas = meterRegistry.counter("portal.auth.usuario.cache", "resultado", "miss");
+        meterRegistry.gauge("portal.auth.usuario.cache.entradas", cacheUsuarios, Map::size);
+    }
+
     /**
      * Obtém o usuário logado a partir do Authentication.
+     * O registro vem do cache por até {@code auth.usuario-cache.ttl-ms}; alterações no usuário
+     * (dados, roles, senha, exclusão) chamam {@link #invalidarUsuario} ou {@link #invalidarTodos}.
+     * A instância é compartilhada entre requisições: trate-a como somente leitura.
      */
     public Usuario getUsuarioLogado(Authentication authentication) {
         if (authentication == null || !authentication.isAuthenticated()) {
@@ -49,8 +75,63 @@ public class AuthService {
             username = principal.toString(); // fallback
         }
 
-        return usuarioRepository.findByUsername(username)
+        long agora = System.currentTimeMillis();
+        synchronized (cacheUsuarios) {
+            UsuarioEmCache emCache = cacheUsuarios.get(username);
+            if (emCache != null && emCache.expiraEm() > agora) {
+                acertos.increment();
+                return emCache.usuario();
+            }
+        }
+
+        faltas.increment();
+        Usuario usuario = usuarioRepository.findByUsername(username)
                 .orElseThrow(() -> new RuntimeException("Usuário logado não encontrado."));
+
+        synchronized (cacheUsuarios) {
+            cacheUsuarios.put(username, new UsuarioEmCache(usuario, agora + ttlCacheMs));
+            // Remove os menos usados até caber no limite
+            Iterator<UsuarioEmCache> it = cacheUsuarios.values().iterator();
+            while (cacheUsuarios.size() > maxEntradasCache && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        return usuario;
+    }
+
+    /**
+     * Descarta o usuário do cache. Dentro de uma transação, só depois do commit
+     * (antes disso, outra requisição poderia recarregar e guardar os dados antigos).
+     */
+    public void invalidarUsuario(Long usuarioId) {
+        aposCommit(() -> {
+            synchronized (cacheUsuarios) {
+                cacheUsuarios.values().removeIf(e -> e.usuario().getId().equals(usuarioId));
+            }
+        });
+    }
+
+    // Para alterações que afetam vários usuários de uma vez (ex.: edição ou exclusão de role)
+    public void invalidarTodos() {
+        aposCommit(() -> {
+            synchronized (cacheUsuarios) {
+                cacheUsuarios.clear();
+            }
+        });
+    }
+
+    private void aposCommit(Runnable acao) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    acao.run();
+                }
+            });
+        } else {
+            acao.run();
+        }
     }
 
 
@@ -0,0 +1,48 @@
+--
+-- Métricas do painel (/api/estatisticas) materializadas e atualizadas a cada escrita (MetricasService),
+-- em vez de agregar tb_arquivo inteira a cada requisição.
+--   tb_metricas_diarias: eventos por dia (arquivos incluídos e excluídos, com bytes)
+--   tb_metricas_usuario: arquivos e bytes atuais por usuário criador
+--   tb_metricas_tipo:    arquivos e bytes atuais por tipo MIME ('' = desconhecido)
+-- A compactação periódica recalcula usuário/tipo a partir de tb_arquivo e remove linhas zeradas.
+--
+
+CREATE TABLE IF NOT EXISTS tb_metricas_diarias (
+    dia DATE PRIMARY KEY,
+    arquivos_incluidos BIGINT NOT NULL DEFAULT 0,
+    bytes_incluidos BIGINT NOT NULL DEFAULT 0,
+    arquivos_excluidos BIGINT NOT NULL DEFAULT 0,
+    bytes_excluidos BIGINT NOT NULL DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS tb_metricas_usuario (
+    usuario_id BIGINT PRIMARY KEY,
+    qtd_arquivos BIGINT NOT NULL DEFAULT 0,
+    bytes BIGINT NOT NULL DEFAULT 0,
+    KEY idx_metricas_usuario_qtd (qtd_arquivos),
+    KEY idx_metricas_usuario_bytes (bytes),
+    CONSTRAINT fk_metricas_usuario FOREIGN KEY (usuario_id) REFERENCES tb_usuarios (id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS tb_metricas_tipo (
+    tipo_mime VARCHAR(100) PRIMARY KEY,
+    qtd_arquivos BIGINT NOT NULL DEFAULT 0,
+    bytes BIGINT NOT NULL DEFAULT 0
+);
+
+-- Backfill: histórico diário a partir da data de upload dos arquivos existentes
+INSERT INTO tb_metricas_diarias (dia, arquivos_incluidos, bytes_incluidos)
+SELECT DATE(data_upload), COUNT(*), COALESCE(SUM(tamanho_bytes), 0)
+FROM tb_arquivo
+GROUP BY DATE(data_upload);
+
+INSERT INTO tb_metricas_usuario (usuario_id, qtd_arquivos, bytes)
+SELECT criado_por_id, COUNT(*), COALESCE(SUM(tamanho_bytes), 0)
+FROM tb_arquivo
+WHERE criado_por_id IS NOT NULL
+GROUP BY criado_por_id;
+
+INSERT INTO tb_metricas_tipo (tipo_mime, qtd_arquivos, bytes)
+SELECT COALESCE(tipo_mime, ''), COUNT(*), COALESCE(SUM(tamanho_bytes), 0)
+FROM tb_arquivo
+GROUP BY COALESCE(tipo_mime, '');
@@ -0,0 +1,7 @@
+--
+-- Índices para as séries temporais do painel (/api/estatisticas/serie): o filtro por período
+-- usa a coluna de data crua (sem função), então é uma varredura de faixa no índice.
+--
+
+CREATE INDEX idx_arquivo_data_upload ON tb_arquivo (data_upload);
+CREATE INDEX idx_login_audit_data_login ON tb_login_audit (data_login);
@@ -0,0 +1,41 @@
+--
+-- tb_login_audit particionada por mês (RANGE COLUMNS em data_login), com retenção feita pelo
+-- LoginAuditRetencaoService: partições antigas são resumidas em tb_login_resumo_diario e removidas
+-- com DROP PARTITION (instantâneo, sem DELETE linha a linha). O índice em data_login vem da V11.
+--
+-- Requisitos do MySQL para particionar:
+--   * toda chave única precisa conter a coluna de partição: a PK passa a ser (id, data_login);
+--   * RANGE COLUMNS não aceita TIMESTAMP: data_login vira DATETIME (mesmo valor exibido, pois a
+--     aplicação grava o horário local, não um instante).
+--
+
+CREATE TABLE IF NOT EXISTS tb_login_resumo_diario (
+    dia DATE PRIMARY KEY,
+    usuarios_distintos INT NOT NULL,
+    logins INT NOT NULL
+);
+
+INSERT INTO tb_login_resumo_diario (dia, usuarios_distintos, logins)
+SELECT DATE(data_login), COUNT(DISTINCT username), COUNT(*)
+FROM tb_login_audit
+WHERE data_login < CURDATE()
+GROUP BY DATE(data_login);
+
+ALTER TABLE tb_login_audit
+    MODIFY data_login DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, data_login);
+
+-- Partição inicial com todo o histórico, o mês corrente, os dois seguintes e p_futuro.
+-- Os limites dependem da data da migração, por isso o comando é montado dinamicamente.
+SET @mes = DATE_FORMAT(CURDATE(), '%Y-%m-01');
+SET @sql = CONCAT(
+    'ALTER TABLE tb_login_audit PARTITION BY RANGE COLUMNS (data_login) (',
+    'PARTITION p_inicial VALUES LESS THAN (''', @mes, '''), ',
+    'PARTITION p', DATE_FORMAT(@mes, '%Y%m'), ' VALUES LESS THAN (''', DATE_ADD(@mes, INTERVAL 1 MONTH), '''), ',
+    'PARTITION p', DATE_FORMAT(DATE_ADD(@mes, INTERVAL 1 MONTH), '%Y%m'), ' VALUES LESS THAN (''', DATE_ADD(@mes, INTERVAL 2 MONTH), '''), ',
+    'PARTITION p', DATE_FORMAT(DATE_ADD(@mes, INTERVAL 2 MONTH), '%Y%m'), ' VALUES LESS THAN (''', DATE_ADD(@mes, INTERVAL 3 MONTH), '''), ',
+    'PARTITION p_futuro VALUES LESS THAN (MAXVALUE))');
+PREPARE particionar FROM @sql;
+EXECUTE particionar;
+DEALLOCATE PREPARE particionar;
@@ -0,0 +1,20 @@
+--
+-- Refresh tokens (RefreshTokenService). O token em si nunca é gravado: só o SHA-256 em hex, com índice
+-- único, então a renovação é uma busca por igualdade. Cada uso gera um token novo na mesma família e
+-- revoga o anterior; reapresentar um token já usado revoga a família inteira (token vazado).
+-- Linhas revogadas ficam até expirar para detectar reuso; a limpeza periódica apaga as expiradas.
+--
+
+CREATE TABLE IF NOT EXISTS tb_refresh_token (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    usuario_id BIGINT NOT NULL,
+    token_hash CHAR(64) NOT NULL,
+    familia CHAR(36) NOT NULL,
+    data_criacao DATETIME(6) NOT NULL,
+    data_expiracao DATETIME(6) NOT NULL,
+    data_revogacao DATETIME(6) NULL,
+    UNIQUE KEY uk_refresh_token_hash (token_hash),
+    KEY idx_refresh_token_familia (familia),
+    KEY idx_refresh_token_expiracao (data_expiracao),
+    CONSTRAINT fk_refresh_token_usuario FOREIGN KEY (usuario_id) REFERENCES tb_usuarios (id) ON DELETE CASCADE
+);
@@ -0,0 +1,19 @@
+--
+-- Ids de tb_pasta e tb_arquivo passam a ser reservados pelo Hibernate em blocos de 50 (@TableGenerator,
+-- otimizador pooled), o que permite agrupar os INSERTs em lotes JDBC. Com AUTO_INCREMENT (IDENTITY) cada
+-- linha precisava de uma ida ao banco para saber o próprio id, e o Hibernate desligava o batch.
+-- "proximo" guarda o limite do último bloco reservado; semeado com o maior id atual + 50, nenhum bloco
+-- alcança ids já usados. O AUTO_INCREMENT das colunas continua, mas INSERTs nessas tabelas devem passar
+-- pelo Hibernate (um id gerado pelo banco poderia cair num bloco já reservado).
+--
+
+CREATE TABLE IF NOT EXISTS tb_id_alocador (
+    nome VARCHAR(64) NOT NULL PRIMARY KEY,
+    proximo BIGINT NOT NULL
+);
+
+INSERT INTO tb_id_alocador (nome, proximo)
+SELECT 'tb_pasta', COALESCE(MAX(id), 0) + 50 FROM tb_pasta;
+
+INSERT INTO tb_id_alocador (nome, proximo)
+SELECT 'tb_arquivo', COALESCE(MAX(id), 0) + 50 FROM tb_arquivo;
@@ -0,0 +1,28 @@
+--
+-- Índice de hierarquia das pastas (closure table).
+-- Uma linha para cada par ancestral/descendente, incluindo a própria pasta (profundidade 0).
+-- Requer MySQL 8+ (WITH RECURSIVE) para o preenchimento inicial.
+--
+
+CREATE TABLE IF NOT EXISTS tb_pasta_closure (
+    ancestral_id BIGINT NOT NULL,
+    descendente_id BIGINT NOT NULL,
+    profundidade INT NOT NULL,
+    PRIMARY KEY (ancestral_id, descendente_id),
+    KEY idx_pasta_closure_descendente (descendente_id, profundidade),
+    CONSTRAINT fk_pasta_closure_ancestral FOREIGN KEY (ancestral_id) REFERENCES tb_pasta (id) ON DELETE CASCADE,
+    CONSTRAINT fk_pasta_closure_descendente FOREIGN KEY (descendente_id) REFERENCES tb_pasta (id) ON DELETE CASCADE
+);
+
+-- Backfill das pastas existentes a partir de pasta_pai_id
+DELETE FROM tb_pasta_closure;
+
+INSERT INTO tb_pasta_closure (ancestral_id, descendente_id, profundidade)
+WITH RECURSIVE cl (ancestral_id, descendente_id, profundidade) AS (
+    SELECT id, id, 0 FROM tb_pasta
+    UNION ALL
+    SELECT cl.ancestral_id, p.id, cl.profundidade + 1
+    FROM tb_pasta p
+    JOIN cl ON p.pasta_pai_id = cl.descendente_id
+)
+SELECT ancestral_id, descendente_id, profundidade FROM cl;
@@ -0,0 +1,9 @@
+--
+-- Índices compostos para as listagens de arquivos por pasta.
+-- Cobrem o filtro por pasta + ordenação (e a paginação por cursor), já que o InnoDB
+-- acrescenta o id (PK) ao final de cada índice secundário como desempate.
+--
+
+CREATE INDEX idx_arquivo_pasta_nome ON tb_arquivo (pasta_id, nome_arquivo);
+CREATE INDEX idx_arquivo_pasta_data_upload ON tb_arquivo (pasta_id, data_upload);
+CREATE INDEX idx_arquivo_pasta_tamanho ON tb_arquivo (pasta_id, tamanho_bytes);
@@ -0,0 +1,20 @@
+--
+-- Sessões de upload em partes (retomáveis).
+--
+
+CREATE TABLE IF NOT EXISTS tb_upload_sessao (
+    id VARCHAR(36) PRIMARY KEY,
+    nome_arquivo VARCHAR(255) NOT NULL,
+    tipo_mime VARCHAR(100),
+    tamanho_total BIGINT NOT NULL,
+    tamanho_chunk INT NOT NULL,
+    bytes_recebidos BIGINT NOT NULL DEFAULT 0,
+    caminho_temporario VARCHAR(1024) NOT NULL,
+    data_criacao DATETIME(6) NOT NULL,
+    data_atualizacao DATETIME(6) NOT NULL,
+    pasta_id BIGINT NOT NULL,
+    criado_por_id BIGINT NOT NULL,
+    KEY idx_upload_sessao_atualizacao (data_atualizacao),
+    CONSTRAINT fk_upload_sessao_pasta FOREIGN KEY (pasta_id) REFERENCES tb_pasta (id) ON DELETE CASCADE,
+    CONSTRAINT fk_upload_sessao_usuario FOREIGN KEY (criado_por_id) REFERENCES tb_usuarios (id) ON DELETE CASCADE
+);
@@ -0,0 +1,19 @@
+--
+-- Armazenamento deduplicado por conteúdo (SHA-256).
+-- Cada blob é gravado uma única vez em storage.blob.dir/<aa>/<bb>/<hash>;
+-- tb_arquivo.blob_hash aponta para ele e tb_blob.referencias conta quantos arquivos o usam.
+-- Arquivos com blob_hash NULL continuam no layout antigo (um arquivo físico por registro)
+-- até serem migrados em segundo plano pelo BlobMigracaoService.
+--
+
+CREATE TABLE IF NOT EXISTS tb_blob (
+    hash VARCHAR(64) PRIMARY KEY,
+    tamanho_bytes BIGINT NOT NULL,
+    referencias INT NOT NULL DEFAULT 0,
+    data_criacao DATETIME(6) NOT NULL,
+    KEY idx_blob_referencias (referencias)
+);
+
+ALTER TABLE tb_arquivo
+    ADD COLUMN blob_hash VARCHAR(64) NULL,
+    ADD CONSTRAINT fk_arquivo_blob FOREIGN KEY (blob_hash) REFERENCES tb_blob (hash);
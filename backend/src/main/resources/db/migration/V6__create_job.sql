@@ -0,0 +1,24 @@
+--
+-- Tarefas assíncronas (cópia, exclusão e substituição de pastas, geração de ZIP).
+-- A requisição HTTP só registra a tarefa e responde 202; o andamento é consultado em /api/jobs/{id}.
+--
+
+CREATE TABLE IF NOT EXISTS tb_job (
+    id VARCHAR(36) PRIMARY KEY,
+    tipo VARCHAR(40) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    descricao VARCHAR(255),
+    total_itens BIGINT NOT NULL DEFAULT 0,
+    itens_processados BIGINT NOT NULL DEFAULT 0,
+    cancelamento_solicitado BOOLEAN NOT NULL DEFAULT FALSE,
+    resultado VARCHAR(1024),
+    erro VARCHAR(1024),
+    criado_por_id BIGINT NOT NULL,
+    data_criacao DATETIME(6) NOT NULL,
+    data_inicio DATETIME(6),
+    data_fim DATETIME(6),
+    data_atualizacao DATETIME(6) NOT NULL,
+    KEY idx_job_usuario_criacao (criado_por_id, data_criacao),
+    KEY idx_job_status (status),
+    CONSTRAINT fk_job_usuario FOREIGN KEY (criado_por_id) REFERENCES tb_usuarios (id) ON DELETE CASCADE
+);
@@ -0,0 +1,54 @@
+--
+-- Permissões de pasta passam a ser herdadas: uma concessão em tb_permissao_pasta vale para toda a
+-- subárvore da pasta. Antes, criarPasta e copiarPasta copiavam os usuários da pasta pai para cada
+-- subpasta, e a tabela crescia na ordem de usuários x pastas.
+--
+-- Até aqui o acesso a uma pasta era só o das linhas dela. Uma subpasta de onde alguém com acesso à pasta
+-- pai foi deixado de fora (ou removido) de propósito ficaria aberta para essa pessoa com a herança; essas
+-- subpastas ficam com herda_permissoes = FALSE e continuam valendo só as próprias linhas.
+-- Nas demais, o acesso à pasta pai está contido no da subpasta: as linhas repetidas da pasta pai saem.
+-- Por indução a partir das raízes, o acesso efetivo de toda pasta continua igual ao de antes.
+--
+
+ALTER TABLE tb_pasta
+    ADD COLUMN herda_permissoes BOOLEAN NOT NULL DEFAULT TRUE;
+
+-- Subpastas sem algum usuário que tem acesso à pasta pai
+CREATE TEMPORARY TABLE tmp_pastas_restritas (id BIGINT PRIMARY KEY) AS
+SELECT DISTINCT f.id
+FROM tb_pasta f
+JOIN tb_permissao_pasta pai
+    ON pai.pasta_id = f.pasta_pai_id
+LEFT JOIN tb_permissao_pasta propria
+    ON propria.pasta_id = f.id
+   AND propria.usuario_id = pai.usuario_id
+WHERE propria.pasta_id IS NULL;
+
+UPDATE tb_pasta p
+JOIN tmp_pastas_restritas r ON r.id = p.id
+SET p.herda_permissoes = FALSE;
+
+-- Linhas que a herança já cobre: o mesmo usuário tem linha na pasta pai e a pasta herda.
+-- Calculadas antes de apagar qualquer linha (a pasta pai também pode perder a dela para a avó).
+CREATE TEMPORARY TABLE tmp_permissoes_herdadas (
+    pasta_id BIGINT NOT NULL,
+    usuario_id BIGINT NOT NULL,
+    PRIMARY KEY (pasta_id, usuario_id)
+) AS
+SELECT pp.pasta_id, pp.usuario_id
+FROM tb_permissao_pasta pp
+JOIN tb_pasta f
+    ON f.id = pp.pasta_id
+   AND f.herda_permissoes = TRUE
+JOIN tb_permissao_pasta pai
+    ON pai.pasta_id = f.pasta_pai_id
+   AND pai.usuario_id = pp.usuario_id;
+
+DELETE pp
+FROM tb_permissao_pasta pp
+JOIN tmp_permissoes_herdadas h
+    ON h.pasta_id = pp.pasta_id
+   AND h.usuario_id = pp.usuario_id;
+
+DROP TEMPORARY TABLE tmp_permissoes_herdadas;
+DROP TEMPORARY TABLE tmp_pastas_restritas;
@@ -0,0 +1,6 @@
+--
+-- Índice para a listagem de subpastas diretas (expansão da árvore um nível por vez):
+-- filtro por pasta pai + ordenação por nome, com o id (PK) como desempate da paginação por cursor.
+--
+
+CREATE INDEX idx_pasta_pai_nome ON tb_pasta (pasta_pai_id, nome_pasta);
@@ -0,0 +1,35 @@
+--
+-- Totais de cada pasta mantidos de forma incremental (PastaAgregadoService):
+-- arquivos e bytes diretos (só da pasta) e da subárvore inteira, e a data de atualização
+-- mais recente entre os arquivos da subárvore. Cada upload/exclusão/movimentação/cópia aplica
+-- a diferença na pasta e em todos os ancestrais (via tb_pasta_closure); uma reconciliação
+-- periódica recalcula tudo a partir de tb_arquivo.
+--
+
+ALTER TABLE tb_pasta
+    ADD COLUMN qtd_arquivos_diretos BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN bytes_diretos BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN qtd_arquivos_total BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN bytes_total BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN ultima_modificacao DATETIME(6) NULL;
+
+-- Backfill a partir dos arquivos existentes
+UPDATE tb_pasta p
+JOIN (
+    SELECT pasta_id, COUNT(*) AS qtd, COALESCE(SUM(tamanho_bytes), 0) AS bytes
+    FROM tb_arquivo
+    GROUP BY pasta_id
+) d ON d.pasta_id = p.id
+SET p.qtd_arquivos_diretos = d.qtd,
+    p.bytes_diretos = d.bytes;
+
+UPDATE tb_pasta p
+JOIN (
+    SELECT c.ancestral_id, COUNT(*) AS qtd, COALESCE(SUM(a.tamanho_bytes), 0) AS bytes, MAX(a.data_atualizacao) AS ultima
+    FROM tb_pasta_closure c
+    JOIN tb_arquivo a ON a.pasta_id = c.descendente_id
+    GROUP BY c.ancestral_id
+) t ON t.ancestral_id = p.id
+SET p.qtd_arquivos_total = t.qtd,
+    p.bytes_total = t.bytes,
+    p.ultima_modificacao = t.ultima;
@@ -0,0 +1,102 @@
+package br.com.carro.autenticacao;
+
+import com.nimbusds.jose.jwk.source.ImmutableSecret;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.*;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Medição do decode + conversão de autoridades por requisição, com o NimbusJwtDecoder (HS256) direto
+ * e atrás do {@link JwtDecoderComCache}, sobre um conjunto de tokens reais que se repetem como nas
+ * requisições de usuários logados. Não precisa de banco, mas não roda no {@code mvn test}:
+ * <pre>
+ * mvn test -Dtest=JwtDecoderComCacheDesempenhoTest -Ddesempenho=true
+ * </pre>
+ * Sem JMH no build: aquecimento e medição são rodadas fixas e o resultado é a média de ns por requisição.
+ */
+@EnabledIfSystemProperty(named = "desempenho", matches = "true")
+class JwtDecoderComCacheDesempenhoTest {
+    private static final Logger logger = LoggerFactory.getLogger("desempenho");
+
+    private static final int TOKENS = Integer.getInteger("desempenho.tokens", 1_000);
+    private static final int REQUISICOES = Integer.getInteger("desempenho.requisicoes", 200_000);
+    private static final int RODADAS = 5;
+
+    @Test
+    void decodeComCacheContraSemCache() {
+        SecretKeySpec chave = new SecretKeySpec("chave-de-teste-com-pelo-menos-32-bytes!!".getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        JwtEncoder encoder = new NimbusJwtEncoder(new ImmutableSecret<>(chave));
+        List<String> tokens = IntStream.range(0, TOKENS).mapToObj(i -> assinar(encoder, "usuario-" + i)).toList();
+
+        JwtAuthenticationConverter conversor = conversor();
+        JwtDecoder nimbus = NimbusJwtDecoder.withSecretKey(chave).build();
+        JwtDecoderComCache comCache = new JwtDecoderComCache(NimbusJwtDecoder.withSecretKey(chave).build(), conversor,
+                jwt -> false, TOKENS * 2, new SimpleMeterRegistry());
+
+        double semCache = medir(tokens, token -> conversor.convert(nimbus.decode(token)));
+        double cacheado = medir(tokens, token -> comCache.converter(comCache.decode(token)));
+
+        logger.info("jwt: {} tokens, {} requisições/rodada -> sem cache {} ns/req, com cache {} ns/req ({}x)",
+                TOKENS, REQUISICOES, Math.round(semCache), Math.round(cacheado), Math.round(semCache / cacheado));
+        assertTrue(cacheado < semCache);
+    }
+
+    // Média de ns por requisição nas rodadas medidas, depois de rodadas de aquecimento iguais
+    private static double medir(List<String> tokens, Function<String, Object> requisicao) {
+        long sumidouro = 0;
+        for (int i = 0; i < RODADAS; i++) sumidouro += rodada(tokens, requisicao);
+        long inicio = System.nanoTime();
+        for (int i = 0; i < RODADAS; i++) sumidouro += rodada(tokens, requisicao);
+        double ns = (System.nanoTime() - inicio) / (double) (RODADAS * REQUISICOES);
+        // Usa o resultado para o JIT não descartar as chamadas
+        assertTrue(sumidouro != 0);
+        return ns;
+    }
+
+    private static long rodada(List<String> tokens, Function<String, Object> requisicao) {
+        long soma = 0;
+        for (int i = 0; i < REQUISICOES; i++) {
+            soma += requisicao.apply(tokens.get(i % tokens.size())).hashCode();
+        }
+        return soma | 1;
+    }
+
+    // Como em SecurityConfigurations.jwtAuthenticationConverter
+    private static JwtAuthenticationConverter conversor() {
+        JwtGrantedAuthoritiesConverter autoridades = new JwtGrantedAuthoritiesConverter();
+        autoridades.setAuthorityPrefix("ROLE_");
+        autoridades.setAuthoritiesClaimName("roles");
+        JwtAuthenticationConverter conversor = new JwtAuthenticationConverter();
+        conversor.setJwtGrantedAuthoritiesConverter(autoridades);
+        return conversor;
+    }
+
+    private static String assinar(JwtEncoder encoder, String usuario) {
+        Instant agora = Instant.now();
+        JwtClaimsSet claims = JwtClaimsSet.builder()
+                .issuer("carro-api")
+                .id(UUID.randomUUID().toString())
+                .issuedAt(agora)
+                .expiresAt(agora.plusSeconds(36_000))
+                .subject(usuario)
+                .claim("roles", List.of("ROLE_BASIC"))
+                .build();
+        return encoder.encode(JwtEncoderParameters.from(JwsHeader.with(MacAlgorithm.HS256).build(), claims)).getTokenValue();
+    }
+}
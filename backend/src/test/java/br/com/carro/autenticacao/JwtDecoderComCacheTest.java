@@ -0,0 +1,102 @@
+package br.com.carro.autenticacao;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class JwtDecoderComCacheTest {
+
+    private JwtDecoder delegate;
+    private final Set<String> revogados = new HashSet<>();
+    private SimpleMeterRegistry registro;
+
+    @BeforeEach
+    void setUp() {
+        delegate = mock(JwtDecoder.class);
+        when(delegate.decode(anyString())).thenAnswer(inv -> jwt(inv.getArgument(0), Instant.now().plusSeconds(900)));
+    }
+
+    @Test
+    void acertoNaoPassaPeloDecoderOriginal() {
+        JwtDecoderComCache decoder = novo(100);
+
+        Jwt primeiro = decoder.decode("token-a");
+        Jwt segundo = decoder.decode("token-a");
+
+        assertSame(primeiro, segundo);
+        verify(delegate, times(1)).decode("token-a");
+    }
+
+    @Test
+    void tokenRevogadoERecusadoMesmoEmCache() {
+        JwtDecoderComCache decoder = novo(100);
+        decoder.decode("token-a");
+
+        revogados.add("token-a");
+
+        assertThrows(BadJwtException.class, () -> decoder.decode("token-a"));
+    }
+
+    @Test
+    void tokenVencidoNaoEReaproveitado() {
+        when(delegate.decode("vencido")).thenAnswer(inv -> jwt("vencido", Instant.now().minusSeconds(1)));
+        JwtDecoderComCache decoder = novo(100);
+
+        decoder.decode("vencido");
+        decoder.decode("vencido");
+
+        verify(delegate, times(2)).decode("vencido");
+    }
+
+    @Test
+    void numeroDeEntradasFicaNoLimiteComDecodesConcorrentes() throws Exception {
+        JwtDecoderComCache decoder = novo(50);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            Future<?>[] tarefas = new Future<?>[8];
+            for (int t = 0; t < tarefas.length; t++) {
+                int inicio = t * 100;
+                tarefas[t] = pool.submit(() -> {
+                    for (int i = 0; i < 100; i++) decoder.decode("token-" + (inicio + i));
+                });
+            }
+            for (Future<?> tarefa : tarefas) tarefa.get();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // Inserções feitas enquanto outra thread podava podem sobrar; o próximo decode poda de novo
+        decoder.decode("token-final");
+        assertTrue(registro.get("portal.auth.jwt.cache.entradas").gauge().value() <= 50);
+    }
+
+    private JwtDecoderComCache novo(int maxEntradas) {
+        registro = new SimpleMeterRegistry();
+        return new JwtDecoderComCache(delegate, new JwtAuthenticationConverter(),
+                jwt -> revogados.contains(jwt.getTokenValue()), maxEntradas, registro);
+    }
+
+    private static Jwt jwt(String valor, Instant expiraEm) {
+        return Jwt.withTokenValue(valor)
+                .header("alg", "HS256")
+                .subject("maria")
+                .issuedAt(expiraEm.minusSeconds(900))
+                .expiresAt(expiraEm)
+                .build();
+    }
+}
@@ -0,0 +1,102 @@
+package br.com.carro.autenticacao;
+
+import br.com.carro.exceptions.LimiteExcedidoException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.filter.ForwardedHeaderFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Limite de login (usuário: 3 fichas, IP: 5 fichas, recarga lenta) e o IP usado como chave.
+ */
+class LimitadorTentativasLoginTest {
+
+    private final LimitadorTentativasLogin limitador =
+            new LimitadorTentativasLogin(new SimpleMeterRegistry(), 3, 1, 5, 1, 1000);
+
+    @Test
+    void tentativaGastaFichaDoUsuarioEAcertoDevolve() {
+        for (int i = 0; i < 3; i++) limitador.verificar("maria", "10.0.0." + i);
+        assertThrows(LimiteExcedidoException.class, () -> limitador.verificar("Maria", "10.0.1.1"));
+
+        limitador.devolver("maria");
+        assertDoesNotThrow(() -> limitador.verificar("maria", "10.0.1.2"));
+    }
+
+    @Test
+    void tentativasSimultaneasNaoPassamDaCapacidadeDoUsuario() throws Exception {
+        int threads = 32;
+        CountDownLatch largada = new CountDownLatch(1);
+        AtomicInteger liberadas = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> tarefas = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                String ip = "10.0.2." + i;
+                tarefas.add(pool.submit(() -> {
+                    largada.await();
+                    try {
+                        limitador.verificar("maria", ip);
+                        liberadas.incrementAndGet();
+                    } catch (LimiteExcedidoException ignorada) {
+                    }
+                    return null;
+                }));
+            }
+            largada.countDown();
+            for (Future<?> tarefa : tarefas) tarefa.get();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(3, liberadas.get());
+    }
+
+    @Test
+    void todaTentativaGastaFichaDoIp() {
+        for (int i = 0; i < 5; i++) limitador.verificar("usuario" + i, "10.0.0.1");
+        assertThrows(LimiteExcedidoException.class, () -> limitador.verificar("outro", "10.0.0.1"));
+    }
+
+    @Test
+    void xForwardedForDoClienteNaoTrocaOIp() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/auth/login");
+        request.setRemoteAddr("203.0.113.7");
+        request.addHeader("X-Forwarded-For", "198.51.100.1");
+
+        // Mesmo depois do ForwardedHeaderFilter (que reescreve getRemoteAddr), vale o IP da conexão
+        String[] visto = new String[2];
+        new ForwardedHeaderFilter().doFilter(request, new MockHttpServletResponse(),
+                (req, res) -> {
+                    visto[0] = req.getRemoteAddr();
+                    visto[1] = new EnderecoCliente(List.of()).resolver((HttpServletRequest) req);
+                });
+
+        assertEquals("198.51.100.1", visto[0]);
+        assertEquals("203.0.113.7", visto[1]);
+    }
+
+    @Test
+    void proxyConfiavelRepassaOUltimoEnderecoNaoConfiavel() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/auth/login");
+        request.setRemoteAddr("10.0.0.2");
+        // "1.1.1.1" foi escrito pelo cliente; 198.51.100.9 foi quem conectou no primeiro proxy
+        request.addHeader("X-Forwarded-For", "1.1.1.1, 198.51.100.9, 10.0.0.3");
+
+        EnderecoCliente endereco = new EnderecoCliente(List.of("10.0.0.2", " 10.0.0.3"));
+
+        assertEquals("198.51.100.9", endereco.resolver(request));
+    }
+}
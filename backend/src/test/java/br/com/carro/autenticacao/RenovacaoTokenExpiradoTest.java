@@ -0,0 +1,133 @@
+package br.com.carro.autenticacao;
+
+import br.com.carro.controllers.AuthenticationController;
+import br.com.carro.entities.Usuario.Usuario;
+import br.com.carro.repositories.UsuarioRepository;
+import br.com.carro.services.LoginAuditService;
+import br.com.carro.services.LoginService;
+import br.com.carro.services.RefreshTokenService;
+import br.com.carro.services.RevogacaoTokenService;
+import br.com.carro.services.TokenService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Fluxo do cliente quando o access token vence: a API recusa com 401, a renovação e o logout
+ * aceitam a requisição mesmo com o token vencido no Authorization, e o token novo volta a passar.
+ */
+@WebMvcTest(AuthenticationController.class)
+@Import({SecurityConfigurations.class, TokenService.class, RenovacaoTokenExpiradoTest.Registro.class})
+class RenovacaoTokenExpiradoTest {
+
+    @Autowired private MockMvc mvc;
+    @Autowired private JwtEncoder jwtEncoder;
+    @Autowired private ObjectMapper objectMapper;
+
+    @MockitoBean private LoginService loginService;
+    @MockitoBean private UsuarioRepository usuarioRepository;
+    @MockitoBean private RefreshTokenService refreshTokenService;
+    @MockitoBean private RevogacaoTokenService revogacaoTokenService;
+    @MockitoBean private EnderecoCliente enderecoCliente;
+    @MockitoBean private SessionTracker sessionTracker;
+    @MockitoBean private LoginAuditService loginAuditService;
+    @MockitoBean private UserDetailsService userDetailsService;
+
+    @TestConfiguration
+    static class Registro {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Test
+    void tokenVencidoERenovadoEAceitoDeNovo() throws Exception {
+        String vencido = assinar(Instant.now().minusSeconds(60));
+        Usuario usuario = mock(Usuario.class);
+        when(usuario.getUsername()).thenReturn("maria");
+        when(refreshTokenService.renovar("refresh-1")).thenReturn(new RefreshTokenService.Renovacao(usuario, "refresh-2"));
+
+        mvc.perform(get("/api/pastas").header(HttpHeaders.AUTHORIZATION, "Bearer " + vencido))
+                .andExpect(status().isUnauthorized());
+
+        String corpo = mvc.perform(post("/api/token/refresh")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + vencido)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"refreshToken\":\"refresh-1\"}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        JsonNode resposta = objectMapper.readTree(corpo);
+
+        int repetida = mvc.perform(get("/api/pastas")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + resposta.get("accessToken").asText()))
+                .andReturn().getResponse().getStatus();
+        assertNotEquals(401, repetida);
+        assertNotEquals("refresh-1", resposta.get("refreshToken").asText());
+    }
+
+    @Test
+    void logoutComTokenVencidoRevogaSoORefresh() throws Exception {
+        mvc.perform(post("/api/logout")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + assinar(Instant.now().minusSeconds(60)))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"refreshToken\":\"refresh-1\"}"))
+                .andExpect(status().isNoContent());
+
+        verify(refreshTokenService).revogar("refresh-1");
+        verify(revogacaoTokenService, never()).revogarToken(any());
+    }
+
+    @Test
+    void logoutComTokenValidoTambemORevoga() throws Exception {
+        mvc.perform(post("/api/logout")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + assinar(Instant.now().plusSeconds(600)))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"refreshToken\":\"refresh-1\"}"))
+                .andExpect(status().isNoContent());
+
+        verify(revogacaoTokenService).revogarToken(any(Jwt.class));
+    }
+
+    private String assinar(Instant expiraEm) {
+        JwtClaimsSet claims = JwtClaimsSet.builder()
+                .issuer("carro-api")
+                .id(UUID.randomUUID().toString())
+                .issuedAt(expiraEm.minusSeconds(900))
+                .expiresAt(expiraEm)
+                .subject("maria")
+                .claim("roles", List.of("ROLE_ADMIN"))
+                .build();
+        return jwtEncoder.encode(JwtEncoderParameters.from(JwsHeader.with(MacAlgorithm.HS256).build(), claims))
+                .getTokenValue();
+    }
+}
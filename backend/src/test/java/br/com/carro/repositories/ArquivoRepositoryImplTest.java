@@ -0,0 +1,49 @@
+package br.com.carro.repositories;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Entradas do ZIP em páginas: cada página começa depois da última (prefixo, id) entregue e a
+ * leitura para na primeira página incompleta.
+ */
+class ArquivoRepositoryImplTest {
+
+    @Test
+    void entradasDoZipVemEmPaginasPorKeyset() throws Exception {
+        int tamanho = ArquivoRepositoryImpl.TAMANHO_PAGINA_ZIP;
+        List<Object[]> primeira = new ArrayList<>();
+        for (int i = 1; i <= tamanho; i++) {
+            primeira.add(new Object[]{"", (long) i, "arquivo-" + i, "/blobs/" + i});
+        }
+        List<Object[]> segunda = List.<Object[]>of(new Object[]{"sub/", 7L, "ultimo.txt", "/blobs/ultimo"});
+
+        Query query = mock(Query.class);
+        when(query.setParameter(anyString(), any())).thenReturn(query);
+        when(query.getResultList()).thenReturn(primeira, segunda);
+        EntityManager entityManager = mock(EntityManager.class);
+        when(entityManager.createNativeQuery(anyString())).thenReturn(query);
+
+        ArquivoRepositoryImpl repositorio = new ArquivoRepositoryImpl();
+        ReflectionTestUtils.setField(repositorio, "entityManager", entityManager);
+
+        List<String> nomes = new ArrayList<>();
+        repositorio.percorrerEntradasZip(42L, (nome, caminho) -> nomes.add(nome));
+
+        assertEquals(tamanho + 1, nomes.size());
+        assertEquals("sub/ultimo.txt", nomes.get(tamanho));
+        verify(query, times(2)).getResultList();
+        verify(query, times(2)).setParameter("aposPrefixo", "");
+        verify(query).setParameter("aposId", 0L);
+        verify(query).setParameter("aposId", (long) tamanho);
+    }
+}
@@ -0,0 +1,120 @@
+package br.com.carro.services;
+
+import br.com.carro.entities.Arquivo;
+import br.com.carro.repositories.ArquivoRepository;
+import br.com.carro.repositories.BlobRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * O disco acompanha o desfecho da transação: blob colocado por uma transação desfeita não fica órfão,
+ * e o arquivo do layout antigo só some depois do commit.
+ */
+class BlobStoreServiceTest {
+
+    @TempDir Path raiz;
+
+    private BlobRepository blobRepository;
+    private BlobStoreService blobStoreService;
+
+    @BeforeEach
+    void setUp() {
+        blobRepository = mock(BlobRepository.class);
+        blobStoreService = new BlobStoreService(blobRepository, mock(ArquivoRepository.class),
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(blobStoreService, "diretorioBlobs", raiz.resolve(".blobs").toString());
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void rollbackRemoveOBlobColocadoPelaTransacao() throws Exception {
+        when(blobRepository.travar(anyString())).thenReturn(Optional.empty());
+
+        BlobStoreService.BlobArmazenado blob = armazenar("conteúdo");
+        assertTrue(Files.exists(blob.caminho()));
+
+        concluir(TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertFalse(Files.exists(blob.caminho()));
+    }
+
+    @Test
+    void rollbackMantemOBlobQueOutraTransacaoConfirmou() throws Exception {
+        when(blobRepository.travar(anyString())).thenAnswer(inv -> Optional.of(inv.getArgument(0)));
+
+        BlobStoreService.BlobArmazenado blob = armazenar("conteúdo");
+
+        concluir(TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertTrue(Files.exists(blob.caminho()));
+    }
+
+    @Test
+    void commitMantemOBlob() throws Exception {
+        BlobStoreService.BlobArmazenado blob = armazenar("conteúdo");
+
+        concluir(TransactionSynchronization.STATUS_COMMITTED);
+        assertTrue(Files.exists(blob.caminho()));
+        verify(blobRepository, never()).travar(anyString());
+    }
+
+    @Test
+    void arquivoDoLayoutAntigoSoEApagadoDepoisDoCommit() throws Exception {
+        Arquivo desfeito = legado("desfeito.txt");
+        blobStoreService.liberar(desfeito);
+        assertTrue(Files.exists(Path.of(desfeito.getCaminhoArmazenamento())));
+        concluir(TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertTrue(Files.exists(Path.of(desfeito.getCaminhoArmazenamento())));
+
+        TransactionSynchronizationManager.initSynchronization();
+        Arquivo confirmado = legado("confirmado.txt");
+        blobStoreService.liberar(confirmado);
+        assertTrue(Files.exists(Path.of(confirmado.getCaminhoArmazenamento())));
+        concluir(TransactionSynchronization.STATUS_COMMITTED);
+        assertFalse(Files.exists(Path.of(confirmado.getCaminhoArmazenamento())));
+    }
+
+    private BlobStoreService.BlobArmazenado armazenar(String conteudo) throws Exception {
+        return blobStoreService.armazenar(new ByteArrayInputStream(conteudo.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private Arquivo legado(String nome) throws Exception {
+        Path caminho = Files.writeString(raiz.resolve(nome), nome);
+        Arquivo arquivo = new Arquivo();
+        arquivo.setCaminhoArmazenamento(caminho.toString());
+        return arquivo;
+    }
+
+    // Simula o fim da transação como o gerenciador faz: afterCommit só no commit, afterCompletion sempre
+    private void concluir(int status) {
+        List<TransactionSynchronization> sincronizacoes = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        if (status == TransactionSynchronization.STATUS_COMMITTED) {
+            sincronizacoes.forEach(TransactionSynchronization::afterCommit);
+        }
+        sincronizacoes.forEach(s -> s.afterCompletion(status));
+    }
+}
@@ -0,0 +1,62 @@
+package br.com.carro.services;
+
+import br.com.carro.entities.DTO.JobDTO;
+import br.com.carro.entities.DTO.PastaRequestDTO;
+import br.com.carro.entities.Job.StatusJob;
+import br.com.carro.entities.Pasta;
+import br.com.carro.entities.Usuario.Usuario;
+import br.com.carro.repositories.ArquivoRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Medição da cópia de pastas (tempo e comandos SQL preparados) sobre uma árvore montada pelos
+ * serviços, por padrão 20 subpastas x 1.000 arquivos. Não roda no {@code mvn test}: precisa de
+ * banco e storage descartáveis.
+ * <pre>
+ * mvn test -Dtest=CopiaPastaDesempenhoTest -Ddesempenho=true \
+ *     -Dspring.datasource.url=... -Dstorage.root-dir=/tmp/portal-desempenho
+ * </pre>
+ * Para comparar com a cópia antiga (um arquivo por vez), rode a mesma classe num checkout do commit
+ * anterior ao planejamento da cópia: ela só usa APIs de serviço que já existiam.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@EnabledIfSystemProperty(named = "desempenho", matches = "true")
+class CopiaPastaDesempenhoTest extends DesempenhoSuporte {
+
+    @Autowired private ArquivoRepository arquivoRepository;
+
+    @Value("${desempenho.subpastas:20}") private int subpastas;
+    @Value("${desempenho.arquivos-por-pasta:1000}") private int arquivosPorPasta;
+    @Value("${desempenho.tamanho-arquivo:4096}") private int tamanhoArquivo;
+
+    @Test
+    void copiaDeArvoreGrande() throws Exception {
+        Usuario admin = usuario();
+        Pasta raiz = criarRaiz(admin);
+        try {
+            Pasta origem = pastaService.criarPasta(new PastaRequestDTO("origem", raiz.getId(), null), admin);
+            Pasta destino = pastaService.criarPasta(new PastaRequestDTO("destino", raiz.getId(), null), admin);
+            for (int p = 0; p < subpastas; p++) {
+                Pasta sub = pastaService.criarPasta(new PastaRequestDTO("sub-" + p, origem.getId(), null), admin);
+                arquivoService.uploadArquivos(sub.getId(), arquivos("sub-" + p, arquivosPorPasta, tamanhoArquivo), admin);
+            }
+
+            JobDTO[] job = new JobDTO[1];
+            Medicao medicao = medir(() -> job[0] = aguardar(pastaService.copiarPasta(origem.getId(), destino.getId(), admin), admin));
+
+            int total = subpastas * arquivosPorPasta;
+            logger.info("copia: {} pastas, {} arquivos -> {} ms ({} arquivos/s), {} comandos preparados",
+                    subpastas + 1, total, medicao.ms(), medicao.porSegundo(total), medicao.comandosPreparados());
+            assertEquals(StatusJob.CONCLUIDO, job[0].status(), job[0].erro());
+            assertEquals(total, arquivoRepository.contarDaSubarvore(destino.getId()));
+        } finally {
+            excluir(raiz, admin);
+        }
+    }
+}
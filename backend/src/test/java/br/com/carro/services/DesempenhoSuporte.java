@@ -0,0 +1,90 @@
+package br.com.carro.services;
+
+import br.com.carro.entities.DTO.JobDTO;
+import br.com.carro.entities.DTO.PastaRequestDTO;
+import br.com.carro.entities.Pasta;
+import br.com.carro.entities.Usuario.Usuario;
+import br.com.carro.repositories.UsuarioRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base das medições opt-in ({@code -Ddesempenho=true}): usuário, pasta raiz descartável, arquivos
+ * sintéticos, espera de jobs e contagem de comandos SQL pelas estatísticas do Hibernate.
+ * As subclasses usam {@code @SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")}.
+ */
+abstract class DesempenhoSuporte {
+    protected static final Logger logger = LoggerFactory.getLogger("desempenho");
+
+    @Autowired protected PastaService pastaService;
+    @Autowired protected ArquivoService arquivoService;
+    @Autowired private JobService jobService;
+    @Autowired private UsuarioRepository usuarioRepository;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+
+    @Value("${desempenho.usuario:admin}") private String username;
+
+    protected record Medicao(long ms, long comandosPreparados, long entidadesInseridas) {
+        long porSegundo(long quantidade) {
+            return ms == 0 ? quantidade : quantidade * 1000 / ms;
+        }
+    }
+
+    @FunctionalInterface
+    protected interface Operacao {
+        void executar() throws Exception;
+    }
+
+    protected Usuario usuario() {
+        return usuarioRepository.findByUsername(username).orElseThrow();
+    }
+
+    protected Pasta criarRaiz(Usuario usuario) throws Exception {
+        return pastaService.criarPasta(new PastaRequestDTO("desempenho-" + System.currentTimeMillis(), null, null), usuario);
+    }
+
+    protected void excluir(Pasta raiz, Usuario usuario) throws Exception {
+        aguardar(pastaService.excluirPasta(raiz.getId(), usuario), usuario);
+    }
+
+    // Conteúdo distinto por arquivo (a marca vai no início): nenhum cai na deduplicação de blobs
+    protected static List<MultipartFile> arquivos(String marca, int quantidade, int tamanho) {
+        List<MultipartFile> lista = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            byte[] conteudo = new byte[tamanho];
+            byte[] prefixo = (marca + "/" + i).getBytes(StandardCharsets.UTF_8);
+            System.arraycopy(prefixo, 0, conteudo, 0, Math.min(prefixo.length, tamanho));
+            lista.add(new MockMultipartFile("arquivos", "arquivo-" + i + ".bin", "application/octet-stream", conteudo));
+        }
+        return lista;
+    }
+
+    protected JobDTO aguardar(JobDTO job, Usuario usuario) throws Exception {
+        while (!job.status().isFinal()) {
+            Thread.sleep(100);
+            job = jobService.consultar(job.id(), usuario);
+        }
+        return job;
+    }
+
+    // Tempo e comandos da operação; as estatísticas são zeradas antes para não contar a preparação
+    protected Medicao medir(Operacao operacao) throws Exception {
+        Statistics estatisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estatisticas.clear();
+        long inicio = System.nanoTime();
+        operacao.executar();
+        return new Medicao((System.nanoTime() - inicio) / 1_000_000,
+                estatisticas.getPrepareStatementCount(), estatisticas.getEntityInsertCount());
+    }
+}
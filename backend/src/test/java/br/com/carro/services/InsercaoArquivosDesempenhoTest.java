@@ -0,0 +1,52 @@
+package br.com.carro.services;
+
+import br.com.carro.entities.Pasta;
+import br.com.carro.entities.Usuario.Usuario;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Medição do upload em lote de 10.000 arquivos (tempo, linhas/s, comandos SQL preparados e entidades
+ * inseridas). Com os ids de tabela e o hibernate.jdbc.batch_size, os INSERTs de tb_arquivo saem em
+ * lotes; com IDENTITY, um comando por linha. Não roda no {@code mvn test}: precisa de banco e storage
+ * descartáveis.
+ * <pre>
+ * mvn test -Dtest=InsercaoArquivosDesempenhoTest -Ddesempenho=true \
+ *     -Dspring.datasource.url=... -Dstorage.root-dir=/tmp/portal-desempenho
+ * </pre>
+ * Para comparar com IDENTITY, rode a mesma classe num checkout do commit anterior aos ids de tabela.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@EnabledIfSystemProperty(named = "desempenho", matches = "true")
+class InsercaoArquivosDesempenhoTest extends DesempenhoSuporte {
+
+    @Value("${desempenho.arquivos:10000}") private int quantidade;
+    @Value("${desempenho.tamanho-arquivo:1024}") private int tamanhoArquivo;
+
+    @Test
+    void uploadDeMuitosArquivosPequenos() throws Exception {
+        Usuario admin = usuario();
+        Pasta pasta = criarRaiz(admin);
+        try {
+            List<MultipartFile> arquivos = arquivos("upload", quantidade, tamanhoArquivo);
+
+            int[] enviados = new int[1];
+            Medicao medicao = medir(() -> enviados[0] = arquivoService.uploadArquivos(pasta.getId(), arquivos, admin).size());
+
+            logger.info("upload: {} arquivos -> {} ms ({} linhas/s), {} comandos preparados, {} entidades inseridas",
+                    enviados[0], medicao.ms(), medicao.porSegundo(enviados[0]), medicao.comandosPreparados(),
+                    medicao.entidadesInseridas());
+            assertEquals(quantidade, enviados[0]);
+            assertEquals(quantidade, medicao.entidadesInseridas());
+        } finally {
+            excluir(pasta, admin);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package br.com.carro.services;
+
+import br.com.carro.repositories.LoginAuditRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Escolha das partições criadas e removidas, com "hoje" = 2026-10-17, 12 meses de retenção
+ * e 3 meses de partições futuras.
+ */
+class LoginAuditRetencaoServiceTest {
+
+    private static final LocalDate HOJE = LocalDate.of(2026, 10, 17);
+
+    private LoginAuditRepository loginAuditRepository;
+    private JdbcTemplate jdbcTemplate;
+    private LoginAuditRetencaoService retencaoService;
+
+    @BeforeEach
+    void setUp() {
+        loginAuditRepository = mock(LoginAuditRepository.class);
+        jdbcTemplate = mock(JdbcTemplate.class);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(inv ->
+                inv.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+
+        retencaoService = new LoginAuditRetencaoService(loginAuditRepository, jdbcTemplate, transactionTemplate);
+        ReflectionTestUtils.setField(retencaoService, "retencaoMeses", 12);
+        ReflectionTestUtils.setField(retencaoService, "particoesFuturas", 3);
+    }
+
+    @Test
+    void removeSoAsParticoesInteiramenteForaDaJanela() throws Exception {
+        // p202509 (até 2025-10-01) ... p202611 (até 2026-12-01) + p_futuro
+        List<String[]> particoes = new ArrayList<>();
+        for (LocalDate mes = LocalDate.of(2025, 9, 1); mes.isBefore(LocalDate.of(2026, 12, 1)); mes = mes.plusMonths(1)) {
+            particoes.add(new String[]{String.format("p%d%02d", mes.getYear(), mes.getMonthValue()),
+                    "'" + mes.plusMonths(1) + " 00:00:00'"});
+        }
+        particoes.add(new String[]{"p_futuro", "MAXVALUE"});
+        simularParticoes(particoes);
+
+        retencaoService.executar(HOJE);
+
+        List<String> comandos = comandosExecutados();
+        assertEquals(2, comandos.size());
+        // Corte em 2025-10-01: p202510 ainda tem linhas dentro da janela de 12 meses
+        assertEquals("ALTER TABLE tb_login_audit DROP PARTITION p202509", comandos.get(1));
+        // Horizonte em 2027-02-01: faltam dezembro e janeiro
+        assertEquals("ALTER TABLE tb_login_audit REORGANIZE PARTITION p_futuro INTO ("
+                + "PARTITION p202612 VALUES LESS THAN ('2027-01-01'), "
+                + "PARTITION p202701 VALUES LESS THAN ('2027-02-01'), "
+                + "PARTITION p_futuro VALUES LESS THAN (MAXVALUE))", comandos.get(0));
+    }
+
+    @Test
+    void nadaAFazerQuandoAsParticoesJaCobremAJanela() throws Exception {
+        List<String[]> particoes = new ArrayList<>();
+        for (LocalDate mes = LocalDate.of(2025, 10, 1); mes.isBefore(LocalDate.of(2027, 2, 1)); mes = mes.plusMonths(1)) {
+            particoes.add(new String[]{String.format("p%d%02d", mes.getYear(), mes.getMonthValue()),
+                    "'" + mes.plusMonths(1) + " 00:00:00'"});
+        }
+        particoes.add(new String[]{"p_futuro", "MAXVALUE"});
+        simularParticoes(particoes);
+
+        retencaoService.executar(HOJE);
+
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    @Test
+    void tabelaSemParticoesNaoRecebeDdl() throws Exception {
+        simularParticoes(List.of());
+
+        retencaoService.executar(HOJE);
+
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    @Test
+    void resumeDoUltimoDiaResumidoAteOntem() throws Exception {
+        when(loginAuditRepository.ultimoDiaResumido()).thenReturn("2026-10-15");
+        simularParticoes(List.of());
+
+        retencaoService.executar(HOJE);
+
+        verify(loginAuditRepository).resumirDias(LocalDateTime.of(2026, 10, 15, 0, 0), LocalDateTime.of(2026, 10, 17, 0, 0));
+    }
+
+    // Responde à consulta de information_schema.PARTITIONS passando cada linha pelo RowMapper do serviço
+    @SuppressWarnings("unchecked")
+    private void simularParticoes(List<String[]> linhas) throws Exception {
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class))).thenAnswer(inv -> {
+            RowMapper<Object> mapper = inv.getArgument(1);
+            List<Object> resultado = new ArrayList<>();
+            for (int i = 0; i < linhas.size(); i++) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getString(1)).thenReturn(linhas.get(i)[0]);
+                when(rs.getString(2)).thenReturn(linhas.get(i)[1]);
+                resultado.add(mapper.mapRow(rs, i));
+            }
+            return resultado;
+        });
+    }
+
+    private List<String> comandosExecutados() {
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate, atLeast(0)).execute(sql.capture());
+        return sql.getAllValues();
+    }
+}
@@ -0,0 +1,100 @@
+package br.com.carro.services;
+
+import br.com.carro.autenticacao.LimitadorTentativasLogin;
+import br.com.carro.exceptions.LimiteExcedidoException;
+import br.com.carro.repositories.UsuarioRepository;
+import br.com.carro.utils.AuthService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Limite por usuário com o BCrypt lento: chutes simultâneos contra a mesma conta, de IPs diferentes,
+ * não passam da capacidade do balde do usuário (3).
+ */
+class LoginServiceTest {
+
+    private final CountDownLatch bcryptLiberado = new CountDownLatch(1);
+    private final AtomicInteger verificacoes = new AtomicInteger();
+    private LoginService loginService;
+
+    @BeforeEach
+    void setUp() {
+        AuthenticationManager authenticationManager = mock(AuthenticationManager.class);
+        when(authenticationManager.authenticate(any())).thenAnswer(inv -> {
+            verificacoes.incrementAndGet();
+            bcryptLiberado.await(5, TimeUnit.SECONDS);
+            throw new BadCredentialsException("Senha incorreta");
+        });
+
+        LimitadorTentativasLogin limitador = new LimitadorTentativasLogin(new SimpleMeterRegistry(), 3, 1, 100, 1, 1000);
+        loginService = new LoginService(authenticationManager, limitador, mock(PasswordEncoder.class),
+                mock(UsuarioRepository.class), mock(AuthService.class), mock(TransactionTemplate.class),
+                new SimpleMeterRegistry(), 4, 64);
+        ReflectionTestUtils.setField(loginService, "timeoutMs", 10_000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        loginService.encerrar();
+    }
+
+    @Test
+    void chutesSimultaneosNaoPassamDaCapacidadeDoUsuario() throws Exception {
+        int tentativas = 20;
+        AtomicInteger recusadas = new AtomicInteger();
+        ExecutorService clientes = Executors.newFixedThreadPool(tentativas);
+        try {
+            List<Future<?>> futuros = new ArrayList<>();
+            for (int i = 0; i < tentativas; i++) {
+                String ip = "10.0.0." + i;
+                futuros.add(clientes.submit(() -> {
+                    try {
+                        loginService.autenticar("maria", "chute", ip);
+                    } catch (LimiteExcedidoException e) {
+                        recusadas.incrementAndGet();
+                    } catch (BadCredentialsException ignorada) {
+                    }
+                }));
+            }
+
+            // Todas as recusas saem enquanto as senhas liberadas ainda estão no BCrypt
+            long limite = System.currentTimeMillis() + 5_000;
+            while (recusadas.get() < tentativas - 3 && System.currentTimeMillis() < limite) Thread.sleep(10);
+            bcryptLiberado.countDown();
+            for (Future<?> futuro : futuros) futuro.get();
+        } finally {
+            clientes.shutdownNow();
+        }
+
+        assertEquals(3, verificacoes.get());
+        assertEquals(tentativas - 3, recusadas.get());
+    }
+
+    @Test
+    void rehashSoSobeOCusto() {
+        assertFalse(LoginService.precisaRehash("$2a$12$abcdefghijklmnopqrstuv", 10));
+        assertFalse(LoginService.precisaRehash("$2a$10$abcdefghijklmnopqrstuv", 10));
+        assertTrue(LoginService.precisaRehash("$2a$08$abcdefghijklmnopqrstuv", 10));
+        assertTrue(LoginService.precisaRehash("{noop}senha", 10));
+    }
+}
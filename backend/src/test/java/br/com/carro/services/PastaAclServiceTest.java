@@ -0,0 +1,134 @@
+package br.com.carro.services;
+
+import br.com.carro.repositories.PastaRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * Herança de permissões pelo índice em memória: raiz (1) -> 2 -> 3 -> 4, e uma segunda raiz (10).
+ * A pasta 30, filha de 2, não herda (o usuário foi deixado de fora dela antes da herança); 31 é filha de 30.
+ */
+class PastaAclServiceTest {
+
+    private static final long USUARIO = 7L;
+    private static final long OUTRO = 8L;
+
+    private PastaRepository pastaRepository;
+    private PastaAclService pastaAclService;
+
+    @BeforeEach
+    void setUp() {
+        pastaRepository = mock(PastaRepository.class);
+        when(pastaRepository.carregarHierarquia()).thenReturn(List.of(
+                new Object[]{1L, null, true},
+                new Object[]{2L, 1L, true},
+                new Object[]{3L, 2L, true},
+                new Object[]{4L, 3L, true},
+                new Object[]{30L, 2L, false},
+                new Object[]{31L, 30L, 1},
+                new Object[]{10L, null, true}
+        ));
+        // Concessões explícitas: USUARIO na pasta 2, OUTRO na pasta 30
+        when(pastaRepository.carregarTodasPermissoes()).thenReturn(List.of(
+                new Object[]{USUARIO, 2L},
+                new Object[]{OUTRO, 30L}
+        ));
+
+        pastaAclService = new PastaAclService(pastaRepository, new SimpleMeterRegistry());
+        pastaAclService.recarregar();
+    }
+
+    @Test
+    void concessaoValeParaTodaASubarvore() {
+        assertTrue(pastaAclService.temPermissao(USUARIO, 2L));
+        assertTrue(pastaAclService.temPermissao(USUARIO, 3L));
+        assertTrue(pastaAclService.temPermissao(USUARIO, 4L));
+        verify(pastaRepository, never()).contarPermissaoEfetiva(anyLong(), anyLong());
+    }
+
+    @Test
+    void concessaoNaoSobeParaAncestraisNemOutrasRaizes() {
+        assertFalse(pastaAclService.temPermissao(USUARIO, 1L));
+        assertFalse(pastaAclService.temPermissao(USUARIO, 10L));
+        assertFalse(pastaAclService.temPermissao(99L, 4L));
+        verify(pastaRepository, never()).contarPermissaoEfetiva(anyLong(), anyLong());
+    }
+
+    @Test
+    void permissaoHerdadaSoAbaixoDaPastaConcedida() {
+        // Na própria pasta a concessão é direta: pode ser removida ali
+        assertFalse(pastaAclService.temPermissaoHerdada(USUARIO, 2L));
+        assertTrue(pastaAclService.temPermissaoHerdada(USUARIO, 3L));
+        assertTrue(pastaAclService.temPermissaoHerdada(USUARIO, 4L));
+        assertFalse(pastaAclService.temPermissaoHerdada(USUARIO, 1L));
+        verify(pastaRepository, never()).contarPermissaoHerdada(anyLong(), anyLong());
+    }
+
+    @Test
+    void subpastaSemHerancaContinuaFechadaParaQuemFoiDeixadoDeFora() {
+        assertFalse(pastaAclService.temPermissao(USUARIO, 30L));
+        assertFalse(pastaAclService.temPermissao(USUARIO, 31L));
+        assertFalse(pastaAclService.temPermissaoHerdada(USUARIO, 30L));
+
+        // A concessão feita na própria pasta restrita vale para ela e para baixo
+        assertTrue(pastaAclService.temPermissao(OUTRO, 30L));
+        assertTrue(pastaAclService.temPermissao(OUTRO, 31L));
+        assertFalse(pastaAclService.temPermissaoHerdada(OUTRO, 30L));
+        assertTrue(pastaAclService.temPermissaoHerdada(OUTRO, 31L));
+        verify(pastaRepository, never()).contarPermissaoEfetiva(anyLong(), anyLong());
+    }
+
+    @Test
+    void pastaMovidaMantemAHerancaInterrompida() {
+        pastaAclService.registrarPasta(30L, 3L);
+
+        assertFalse(pastaAclService.temPermissao(USUARIO, 30L));
+        assertFalse(pastaAclService.temPermissao(USUARIO, 31L));
+    }
+
+    @Test
+    void pastaNovaSemHerancaNaoRecebeAsPermissoesDoPai() {
+        pastaAclService.registrarPasta(11L, 4L, false);
+
+        assertFalse(pastaAclService.temPermissao(USUARIO, 11L));
+    }
+
+    @Test
+    void pastaForaDoIndiceConsultaOBanco() {
+        when(pastaRepository.contarPermissaoEfetiva(50L, USUARIO)).thenReturn(1L);
+        when(pastaRepository.contarPermissaoHerdada(50L, USUARIO)).thenReturn(0L);
+
+        assertTrue(pastaAclService.temPermissao(USUARIO, 50L));
+        assertFalse(pastaAclService.temPermissaoHerdada(USUARIO, 50L));
+        verify(pastaRepository).contarPermissaoEfetiva(50L, USUARIO);
+        verify(pastaRepository).contarPermissaoHerdada(50L, USUARIO);
+    }
+
+    @Test
+    void pastaRegistradaHerdaDoNovoPai() {
+        pastaAclService.registrarPasta(5L, 4L);
+
+        assertTrue(pastaAclService.temPermissao(USUARIO, 5L));
+        assertTrue(pastaAclService.temPermissaoHerdada(USUARIO, 5L));
+    }
+
+    @Test
+    void cicloNaHierarquiaNaoTravaAVerificacao() {
+        when(pastaRepository.carregarHierarquia()).thenReturn(List.of(
+                new Object[]{20L, 21L, true},
+                new Object[]{21L, 20L, true}
+        ));
+        when(pastaRepository.contarPermissaoEfetiva(20L, USUARIO)).thenReturn(0L);
+        pastaAclService.recarregar();
+
+        assertFalse(pastaAclService.temPermissao(USUARIO, 20L));
+        verify(pastaRepository).contarPermissaoEfetiva(20L, USUARIO);
+    }
+}
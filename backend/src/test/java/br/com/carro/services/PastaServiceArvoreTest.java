@@ -0,0 +1,91 @@
+package br.com.carro.services;
+
+import br.com.carro.entities.DTO.PastaCompletaDTO;
+import br.com.carro.entities.DTO.PastaFilterDTO;
+import br.com.carro.entities.Usuario.Usuario;
+import br.com.carro.repositories.ArquivoRepository;
+import br.com.carro.repositories.PastaRepository;
+import br.com.carro.repositories.UsuarioRepository;
+import br.com.carro.utils.AuthService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+/**
+ * A árvore de {@link PastaService#getPastaCompletaPorId} deve custar o mesmo número de consultas
+ * qualquer que seja a profundidade (antes era uma consulta por pasta visitada).
+ */
+class PastaServiceArvoreTest {
+
+    private PastaRepository pastaRepository;
+    private ArquivoRepository arquivoRepository;
+    private PastaService pastaService;
+    private Usuario admin;
+
+    @BeforeEach
+    void setUp() {
+        pastaRepository = mock(PastaRepository.class);
+        arquivoRepository = mock(ArquivoRepository.class);
+        pastaService = new PastaService(pastaRepository, mock(UsuarioRepository.class),
+                mock(AuthService.class), arquivoRepository, mock(ZipCacheService.class),
+                new PastaArvoreLoader(pastaRepository), mock(PastaHierarquiaService.class),
+                mock(BlobStoreService.class), mock(JobService.class), mock(PastaJobService.class),
+                mock(PastaAclService.class), mock(PastaAgregadoService.class));
+
+        admin = mock(Usuario.class);
+        when(admin.isAdmin()).thenReturn(true);
+    }
+
+    @Test
+    void numeroDeConsultasNaoDependeDaProfundidade() throws Exception {
+        int consultasRasa = consultasParaCadeia(1);
+        int consultasProfunda = consultasParaCadeia(25);
+
+        assertEquals(consultasRasa, consultasProfunda);
+        assertEquals(2, consultasProfunda);
+        verifyNoInteractions(arquivoRepository);
+    }
+
+    @Test
+    void montaTodosOsNiveisDaCadeia() throws Exception {
+        simularCadeia(25);
+
+        PastaCompletaDTO dto = pastaService.getPastaCompletaPorId(1L, admin, new PastaFilterDTO());
+
+        int niveis = 0;
+        for (PastaCompletaDTO atual = dto; atual != null;
+             atual = atual.subPastas().isEmpty() ? null : atual.subPastas().get(0)) {
+            assertEquals(1, atual.arquivos().size());
+            niveis++;
+        }
+        assertEquals(25, niveis);
+    }
+
+    // Consultas ao PastaRepository para montar uma cadeia raiz -> ... -> folha com "profundidade" pastas
+    private int consultasParaCadeia(int profundidade) throws Exception {
+        clearInvocations(pastaRepository);
+        simularCadeia(profundidade);
+        pastaService.getPastaCompletaPorId(1L, admin, new PastaFilterDTO());
+        return mockingDetails(pastaRepository).getInvocations().size();
+    }
+
+    // Cada pasta i (1..profundidade) é filha de i-1 e tem um arquivo
+    private void simularCadeia(int profundidade) {
+        LocalDateTime agora = LocalDateTime.now();
+        List<Object[]> pastas = new ArrayList<>();
+        List<Object[]> arquivos = new ArrayList<>();
+        for (long i = 1; i <= profundidade; i++) {
+            pastas.add(new Object[]{i, "pasta" + i, "/pasta" + i, agora, agora, i == 1 ? null : i - 1, "admin", 10L});
+            arquivos.add(new Object[]{100 + i, "arquivo" + i + ".txt", "text/plain", 10L, agora, agora, i, "admin"});
+        }
+        when(pastaRepository.carregarPastasDaSubarvore(anyCollection())).thenReturn(pastas);
+        when(pastaRepository.carregarArquivosDaSubarvore(anyCollection())).thenReturn(arquivos);
+    }
+}
@@ -0,0 +1,133 @@
+package br.com.carro.services;
+
+import br.com.carro.entities.RefreshToken;
+import br.com.carro.entities.Usuario.Usuario;
+import br.com.carro.repositories.RefreshTokenRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Rotação e detecção de reuso dos refresh tokens, com o repositório simulado em memória.
+ */
+class RefreshTokenServiceTest {
+
+    // tokenHash -> linha "gravada"
+    private final Map<String, RefreshToken> linhas = new HashMap<>();
+
+    private RefreshTokenRepository refreshTokenRepository;
+    private RefreshTokenService refreshTokenService;
+    private Usuario usuario;
+
+    @BeforeEach
+    void setUp() {
+        refreshTokenRepository = mock(RefreshTokenRepository.class);
+        long[] sequencia = {0};
+
+        when(refreshTokenRepository.save(any(RefreshToken.class))).thenAnswer(inv -> {
+            RefreshToken token = inv.getArgument(0);
+            token.setId(++sequencia[0]);
+            linhas.put(token.getTokenHash(), token);
+            return token;
+        });
+        when(refreshTokenRepository.findComUsuarioByTokenHash(anyString()))
+                .thenAnswer(inv -> Optional.ofNullable(copia(linhas.get(inv.<String>getArgument(0)))));
+        when(refreshTokenRepository.revogar(anyLong(), any())).thenAnswer(inv -> {
+            RefreshToken token = linhas.values().stream()
+                    .filter(t -> t.getId().equals(inv.getArgument(0))).findFirst().orElseThrow();
+            if (token.getDataRevogacao() != null) return 0;
+            token.setDataRevogacao(inv.getArgument(1));
+            return 1;
+        });
+        when(refreshTokenRepository.revogarFamilia(anyString(), any())).thenAnswer(inv -> {
+            int n = 0;
+            for (RefreshToken token : linhas.values()) {
+                if (token.getFamilia().equals(inv.getArgument(0)) && token.getDataRevogacao() == null) {
+                    token.setDataRevogacao(inv.getArgument(1));
+                    n++;
+                }
+            }
+            return n;
+        });
+
+        refreshTokenService = new RefreshTokenService(refreshTokenRepository, mock(RevogacaoTokenService.class));
+        ReflectionTestUtils.setField(refreshTokenService, "validadeHoras", 12L);
+
+        usuario = mock(Usuario.class);
+        when(usuario.getUsername()).thenReturn("maria");
+    }
+
+    @Test
+    void renovacaoTrocaOTokenNaMesmaFamilia() {
+        String primeiro = refreshTokenService.emitir(usuario);
+
+        RefreshTokenService.Renovacao renovacao = refreshTokenService.renovar(primeiro);
+
+        assertNotEquals(primeiro, renovacao.refreshToken());
+        assertSame(usuario, renovacao.usuario());
+        assertEquals(1, linhas.values().stream().map(RefreshToken::getFamilia).distinct().count());
+        assertEquals(1, linhas.values().stream().filter(t -> t.getDataRevogacao() == null).count());
+    }
+
+    @Test
+    void reusoDeTokenJaTrocadoRevogaAFamiliaInteira() {
+        String primeiro = refreshTokenService.emitir(usuario);
+        String segundo = refreshTokenService.renovar(primeiro).refreshToken();
+
+        // Cópia antiga reapresentada: a sessão inteira cai, inclusive o token ainda válido
+        assertThrows(SecurityException.class, () -> refreshTokenService.renovar(primeiro));
+        assertTrue(linhas.values().stream().allMatch(t -> t.getDataRevogacao() != null));
+        assertThrows(SecurityException.class, () -> refreshTokenService.renovar(segundo));
+    }
+
+    @Test
+    void renovacaoConcorrenteQuePerdeORevogarContaComoReuso() {
+        String token = refreshTokenService.emitir(usuario);
+        // Outra requisição revogou entre a leitura e o UPDATE
+        doReturn(0).when(refreshTokenRepository).revogar(anyLong(), any());
+
+        assertThrows(SecurityException.class, () -> refreshTokenService.renovar(token));
+        verify(refreshTokenRepository).revogarFamilia(eq(linhas.values().iterator().next().getFamilia()), any());
+    }
+
+    @Test
+    void reusoNaoAfetaOutrasSessoesDoUsuario() {
+        String sessaoA = refreshTokenService.emitir(usuario);
+        String sessaoB = refreshTokenService.emitir(usuario);
+        refreshTokenService.renovar(sessaoA);
+
+        assertThrows(SecurityException.class, () -> refreshTokenService.renovar(sessaoA));
+        assertDoesNotThrow(() -> refreshTokenService.renovar(sessaoB));
+    }
+
+    @Test
+    void tokenExpiradoOuDesconhecidoERecusado() {
+        String token = refreshTokenService.emitir(usuario);
+        linhas.values().forEach(t -> t.setDataExpiracao(LocalDateTime.now().minusMinutes(1)));
+
+        assertThrows(SecurityException.class, () -> refreshTokenService.renovar(token));
+        assertThrows(SecurityException.class, () -> refreshTokenService.renovar("desconhecido"));
+        assertThrows(SecurityException.class, () -> refreshTokenService.renovar(" "));
+    }
+
+    // Como uma leitura do banco: alterações posteriores na linha não aparecem no objeto já lido
+    private static RefreshToken copia(RefreshToken origem) {
+        if (origem == null) return null;
+        RefreshToken copia = new RefreshToken();
+        copia.setId(origem.getId());
+        copia.setUsuario(origem.getUsuario());
+        copia.setTokenHash(origem.getTokenHash());
+        copia.setFamilia(origem.getFamilia());
+        copia.setDataCriacao(origem.getDataCriacao());
+        copia.setDataExpiracao(origem.getDataExpiracao());
+        copia.setDataRevogacao(origem.getDataRevogacao());
+        return copia;
+    }
+}
@@ -0,0 +1,105 @@
+package br.com.carro.services;
+
+import br.com.carro.entities.DTO.SerieTemporalDTO;
+import br.com.carro.repositories.DashboardRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Preenchimento com zero e separação de períodos na troca de horário de verão.
+ * Datas gravadas em UTC (estatisticas.fuso-armazenamento).
+ */
+class SerieTemporalServiceTest {
+
+    private DashboardRepository dashboardRepository;
+    private SerieTemporalService serieTemporalService;
+
+    @BeforeEach
+    void setUp() {
+        dashboardRepository = mock(DashboardRepository.class);
+        serieTemporalService = new SerieTemporalService(dashboardRepository, "UTC");
+    }
+
+    @Test
+    void diasSemOcorrenciasEntramComZero() {
+        when(dashboardRepository.serieUploads(anyString(), anyString(), anyString(), any(), any())).thenReturn(List.of(
+                new Object[]{LocalDate.of(2026, 1, 2), 3L},
+                new Object[]{java.sql.Date.valueOf("2026-01-04"), 1L}
+        ));
+
+        SerieTemporalDTO serie = serieTemporalService.gerarSerie("uploads", "dia",
+                LocalDate.of(2026, 1, 1), LocalDate.of(2026, 1, 5), "UTC");
+
+        assertEquals(List.of(0L, 3L, 0L, 1L, 0L), quantidades(serie));
+        assertEquals(LocalDate.of(2026, 1, 1), serie.pontos().get(0).periodo());
+        assertEquals(4L, serie.total());
+        verify(dashboardRepository).serieUploads("DIA", "+00:00", "+00:00",
+                LocalDateTime.of(2026, 1, 1, 0, 0), LocalDateTime.of(2026, 1, 6, 0, 0));
+    }
+
+    @Test
+    void semanaComecaNaSegundaAnteriorAoInicio() {
+        when(dashboardRepository.serieLogins(anyString(), anyString(), anyString(), any(), any())).thenReturn(List.of());
+
+        // 2026-01-07 é uma quarta-feira
+        SerieTemporalDTO serie = serieTemporalService.gerarSerie("logins", "semana",
+                LocalDate.of(2026, 1, 7), LocalDate.of(2026, 1, 20), "UTC");
+
+        assertEquals(List.of(LocalDate.of(2026, 1, 5), LocalDate.of(2026, 1, 12), LocalDate.of(2026, 1, 19)),
+                serie.pontos().stream().map(SerieTemporalDTO.Ponto::periodo).toList());
+        assertEquals(List.of(0L, 0L, 0L), quantidades(serie));
+    }
+
+    @Test
+    void fusoComDeslocamentoFixoAgrupaNoBanco() {
+        when(dashboardRepository.serieUploads(anyString(), anyString(), anyString(), any(), any())).thenReturn(List.of());
+
+        serieTemporalService.gerarSerie("uploads", "dia", LocalDate.of(2026, 1, 1), LocalDate.of(2026, 1, 2),
+                "America/Sao_Paulo");
+
+        // Meia-noite em São Paulo (-03:00) é 03:00 em UTC
+        verify(dashboardRepository).serieUploads("DIA", "+00:00", "-03:00",
+                LocalDateTime.of(2026, 1, 1, 3, 0), LocalDateTime.of(2026, 1, 3, 3, 0));
+        verify(dashboardRepository, never()).uploadsPorHora(any(), any());
+    }
+
+    @Test
+    void trocaDeHorarioDeVeraoSeparaOsDiasPorHora() {
+        // Berlim passa de +01:00 para +02:00 em 2026-03-29 às 01:00 UTC
+        when(dashboardRepository.uploadsPorHora(any(), any())).thenReturn(List.of(
+                new Object[]{"2026-03-28 22:00:00", 1L},  // 23:00 do dia 28 em Berlim
+                new Object[]{"2026-03-28 23:00:00", 2L},  // 00:00 do dia 29 (+01:00)
+                new Object[]{"2026-03-29 21:00:00", 4L},  // 23:00 do dia 29 (+02:00)
+                new Object[]{"2026-03-29 22:00:00", 8L}   // 00:00 do dia 30 (+02:00)
+        ));
+
+        SerieTemporalDTO serie = serieTemporalService.gerarSerie("uploads", "dia",
+                LocalDate.of(2026, 3, 28), LocalDate.of(2026, 3, 30), "Europe/Berlin");
+
+        assertEquals(List.of(1L, 6L, 8L), quantidades(serie));
+        assertEquals(15L, serie.total());
+        verify(dashboardRepository).uploadsPorHora(LocalDateTime.of(2026, 3, 27, 23, 0),
+                LocalDateTime.of(2026, 3, 30, 22, 0));
+        verify(dashboardRepository, never()).serieUploads(anyString(), anyString(), anyString(), any(), any());
+    }
+
+    @Test
+    void periodoAcimaDoLimiteDePontosERecusado() {
+        assertThrows(IllegalArgumentException.class, () -> serieTemporalService.gerarSerie("uploads", "dia",
+                LocalDate.of(2020, 1, 1), LocalDate.of(2026, 1, 1), "UTC"));
+        verifyNoInteractions(dashboardRepository);
+    }
+
+    private static List<Long> quantidades(SerieTemporalDTO serie) {
+        return serie.pontos().stream().map(SerieTemporalDTO.Ponto::quantidade).toList();
+    }
+}
@@ -1,5 +1,5 @@
 import { Injectable } from '@angular/core';
-import { HttpClient } from '@angular/common/http';
+import { HttpClient, HttpParams } from '@angular/common/http';
 import { Observable } from 'rxjs';
 
 export interface Pasta {
@@ -8,6 +8,25 @@ export interface Pasta {
   subPastas?: Pasta[];
 }
 
+// Nó da árvore carregado sob demanda (GET /api/pastas/filhas)
+export interface PastaNo {
+  id: number;
+  nomePasta: string;
+  dataCriacao: string;
+  dataAtualizacao: string;
+  criadoPor: string;
+  quantidadeSubpastas: number;
+  quantidadeArquivos: number;
+  tamanhoTotal: number;
+  temFilhos: boolean;
+}
+
+export interface PaginaCursor<T> {
+  conteudo: T[];
+  proximoCursor: string | null;
+  temMais: boolean;
+}
+
 @Injectable({ providedIn: 'root' })
 export class PastaService {
   // private readonly apiUrl = '/api/pastas';
@@ -23,6 +42,14 @@ export class PastaService {
     return this.http.get<Pasta[]>(`${this.apiUrl}/${idPasta}/subpastas`);
   }
   
+  // Subpastas diretas (raízes, sem paiId), uma página por vez: envie proximoCursor para a próxima
+  listarFilhas(paiId?: number, cursor?: string, size = 100): Observable<PaginaCursor<PastaNo>> {
+    let params = new HttpParams().set('size', size);
+    if (paiId != null) params = params.set('paiId', paiId);
+    if (cursor) params = params.set('cursor', cursor);
+    return this.http.get<PaginaCursor<PastaNo>>(`${this.apiUrl}/filhas`, { params });
+  }
+
   criarPasta(nomePasta: string, pastaPaiId?: number): Observable<Pasta> {
     return this.http.post<Pasta>(this.apiUrl, { nomePasta, pastaPaiId });
   }
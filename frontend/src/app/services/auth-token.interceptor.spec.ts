@@ -1,17 +1,111 @@
 import { TestBed } from '@angular/core/testing';
-import { HttpInterceptorFn } from '@angular/common/http';
+import {
+  HTTP_INTERCEPTORS,
+  HttpClient,
+  provideHttpClient,
+  withInterceptorsFromDi,
+} from '@angular/common/http';
+import {
+  HttpTestingController,
+  provideHttpClientTesting,
+} from '@angular/common/http/testing';
+import { provideRouter } from '@angular/router';
 
-import { authTokenInterceptor } from './auth-token.interceptor';
+import { AuthTokenInterceptor } from './auth-token.interceptor';
+import { environment } from '../../environment/environment.prod';
 
-describe('authTokenInterceptor', () => {
-  const interceptor: HttpInterceptorFn = (req, next) => 
-    TestBed.runInInjectionContext(() => authTokenInterceptor(req, next));
+// JWT só com o payload que o AuthService lê (sub e roles)
+function jwt(nome: string): string {
+  return `h.${btoa(JSON.stringify({ sub: nome, roles: [] }))}.${nome}`;
+}
+
+describe('AuthTokenInterceptor', () => {
+  const API = `${environment.apiUrl}/api/pastas`;
+  const REFRESH = `${environment.apiUrl}/api/token/refresh`;
+  let http: HttpClient;
+  let backend: HttpTestingController;
 
   beforeEach(() => {
-    TestBed.configureTestingModule({});
+    localStorage.clear();
+    localStorage.setItem('auth_token', jwt('vencido'));
+    localStorage.setItem('refresh_token', 'refresh-1');
+
+    TestBed.configureTestingModule({
+      providers: [
+        provideRouter([{ path: 'login', children: [] }]),
+        provideHttpClient(withInterceptorsFromDi()),
+        provideHttpClientTesting(),
+        { provide: HTTP_INTERCEPTORS, useClass: AuthTokenInterceptor, multi: true },
+      ],
+    });
+    http = TestBed.inject(HttpClient);
+    backend = TestBed.inject(HttpTestingController);
+  });
+
+  afterEach(() => {
+    backend.verify();
+    localStorage.clear();
+  });
+
+  it('renova o token vencido e repete a requisição', () => {
+    let resposta: unknown;
+    http.get(API).subscribe((r) => (resposta = r));
+
+    backend.expectOne(API).flush(null, { status: 401, statusText: 'Unauthorized' });
+
+    const renovacao = backend.expectOne(REFRESH);
+    expect(renovacao.request.headers.has('Authorization')).toBeFalse();
+    expect(renovacao.request.body).toEqual({ refreshToken: 'refresh-1' });
+    renovacao.flush({ accessToken: jwt('novo'), expiresIn: 900, refreshToken: 'refresh-2' });
+
+    const repetida = backend.expectOne(API);
+    expect(repetida.request.headers.get('Authorization')).toBe(`Bearer ${jwt('novo')}`);
+    repetida.flush({ ok: true });
+
+    expect(resposta).toEqual({ ok: true });
+    expect(localStorage.getItem('refresh_token')).toBe('refresh-2');
+  });
+
+  it('usa uma única renovação para 401 simultâneos', () => {
+    http.get(API).subscribe();
+    http.get(`${API}/1`).subscribe();
+
+    backend.expectOne(API).flush(null, { status: 401, statusText: 'Unauthorized' });
+    backend.expectOne(`${API}/1`).flush(null, { status: 401, statusText: 'Unauthorized' });
+
+    backend
+      .expectOne(REFRESH)
+      .flush({ accessToken: jwt('novo'), expiresIn: 900, refreshToken: 'refresh-2' });
+
+    backend.expectOne(API).flush({});
+    backend.expectOne(`${API}/1`).flush({});
   });
 
-  it('should be created', () => {
-    expect(interceptor).toBeTruthy();
+  it('repete só uma vez: um novo 401 chega a quem chamou', () => {
+    let status = 0;
+    http.get(API).subscribe({ error: (e) => (status = e.status) });
+
+    backend.expectOne(API).flush(null, { status: 401, statusText: 'Unauthorized' });
+    backend
+      .expectOne(REFRESH)
+      .flush({ accessToken: jwt('novo'), expiresIn: 900, refreshToken: 'refresh-2' });
+    backend.expectOne(API).flush(null, { status: 401, statusText: 'Unauthorized' });
+
+    expect(status).toBe(401);
+  });
+
+  it('desloga quando a renovação é recusada', () => {
+    let status = 0;
+    http.get(API).subscribe({ error: (e) => (status = e.status) });
+
+    backend.expectOne(API).flush(null, { status: 401, statusText: 'Unauthorized' });
+    backend.expectOne(REFRESH).flush(null, { status: 401, statusText: 'Unauthorized' });
+
+    const logout = backend.expectOne(`${environment.apiUrl}/api/logout`);
+    expect(logout.request.headers.has('Authorization')).toBeFalse();
+    logout.flush(null, { status: 204, statusText: 'No Content' });
+
+    expect(status).toBe(401);
+    expect(localStorage.getItem('auth_token')).toBeNull();
   });
 });
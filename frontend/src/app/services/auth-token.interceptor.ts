@@ -4,8 +4,10 @@ import {
   HttpHandler,
   HttpEvent,
   HttpInterceptor,
+  HttpErrorResponse,
 } from '@angular/common/http';
-import { Observable } from 'rxjs';
+import { Observable, throwError } from 'rxjs';
+import { catchError, switchMap } from 'rxjs/operators';
 import { AuthService } from '../services/auth.service'; // Ajuste o caminho se necessário
 
 @Injectable()
@@ -22,6 +24,10 @@ export class AuthTokenInterceptor implements HttpInterceptor {
     const isPublicApi = request.url.includes('/api/publico/');
     const isLoginApi = request.url.includes('/api/login');
     const isApiRequest = request.url.includes('/api/');
+    // Renovação e logout não levam o access token: vencido, ele faria o backend responder 401
+    const isSessaoApi =
+      request.url.includes('/api/token/refresh') ||
+      request.url.includes('/api/logout');
 
     console.log(
       `%c[Interceptor Debug]%c URL: ${request.url}`,
@@ -54,11 +60,9 @@ export class AuthTokenInterceptor implements HttpInterceptor {
     // Só adiciona o token se:
     // 1. Houver um token.
     // 2. For uma requisição para a API.
-    // 3. NÃO for uma rota de login ou uma rota pública.
-    if (token && isApiRequest && !isPublicApi && !isLoginApi) {
-      const authReq = request.clone({
-        headers: request.headers.set('Authorization', `Bearer ${token}`),
-      });
+    // 3. NÃO for uma rota de login, pública ou de renovação/logout.
+    if (token && isApiRequest && !isPublicApi && !isLoginApi && !isSessaoApi) {
+      const authReq = this.comToken(request, token);
       console.log(
         `%c[Interceptor Debug]%c Authorization Header ADDED: ${authReq.headers.get(
           'Authorization'
@@ -66,7 +70,9 @@ export class AuthTokenInterceptor implements HttpInterceptor {
         'color: green; font-weight: bold;',
         'color: unset;'
       );
-      return next.handle(authReq);
+      return next
+        .handle(authReq)
+        .pipe(catchError((erro) => this.renovarERepetir(erro, request, token, next)));
     }
 
     console.log(
@@ -76,4 +82,36 @@ export class AuthTokenInterceptor implements HttpInterceptor {
     );
     return next.handle(request);
   }
+
+  private comToken(
+    request: HttpRequest<unknown>,
+    token: string
+  ): HttpRequest<unknown> {
+    return request.clone({
+      headers: request.headers.set('Authorization', `Bearer ${token}`),
+    });
+  }
+
+  // ✅ 401 com token: access token vencido. Renova (uma renovação para todas as requisições que
+  // falharem juntas) e repete a requisição uma única vez; um novo 401 segue para quem chamou.
+  private renovarERepetir(
+    erro: unknown,
+    request: HttpRequest<unknown>,
+    tokenUsado: string,
+    next: HttpHandler
+  ): Observable<HttpEvent<unknown>> {
+    if (!(erro instanceof HttpErrorResponse) || erro.status !== 401) {
+      return throwError(() => erro);
+    }
+
+    // Outra requisição já renovou enquanto esta estava em voo: basta repetir com o token atual
+    const atual = this.authService.getToken();
+    if (atual && atual !== tokenUsado) {
+      return next.handle(this.comToken(request, atual));
+    }
+
+    return this.authService
+      .renovarToken()
+      .pipe(switchMap((novo) => next.handle(this.comToken(request, novo))));
+  }
 }
@@ -1,7 +1,7 @@
 import { inject, Injectable } from '@angular/core';
 import { HttpClient } from '@angular/common/http'; // Importe o HttpClient
-import { BehaviorSubject, Observable } from 'rxjs';
-import { map, tap } from 'rxjs/operators';
+import { BehaviorSubject, Observable, throwError } from 'rxjs';
+import { catchError, finalize, map, shareReplay, tap } from 'rxjs/operators';
 import { Router } from '@angular/router';
 import { environment } from '../../environment/environment.prod';
 
@@ -10,6 +10,8 @@ interface AuthResponse {
   expiresIn: number;
   // ✅ Adicione esta propriedade
   senhaProvisoria?: boolean;
+  // Troca por um novo accessToken em /api/token/refresh (cada um vale uma vez)
+  refreshToken?: string;
 }
 @Injectable({
   providedIn: 'root',
@@ -25,6 +27,7 @@ export class AuthService {
   private readonly API_URL = environment.apiUrl;
 
   private readonly TOKEN_KEY = 'auth_token';
+  private readonly REFRESH_KEY = 'refresh_token';
   private readonly USERNAME_KEY = 'logged_username';
   private readonly ROLES_KEY = 'logged_roles';
 
@@ -42,6 +45,9 @@ export class AuthService {
   );
   loggedInRoles$ = this._loggedInRoles.asObservable();
 
+  // Renovação em andamento, compartilhada pelas requisições que receberem 401 ao mesmo tempo
+  private renovacaoEmAndamento: Observable<string> | null = null;
+
   // Injetando o HttpClient no construtor
   constructor() {}
 
@@ -93,8 +99,45 @@ export class AuthService {
     return this._loggedInRoles.getValue();
   }
 
+  // ✅ Renova o access token (curto) com o refresh token; o backend devolve um refresh token novo.
+  // Uma renovação por vez: o refresh token só vale uma vez, e duas trocas em paralelo com o mesmo
+  // token seriam tratadas como reuso (o backend derruba a sessão). Se a renovação falhar, desloga.
+  renovarToken(): Observable<string> {
+    if (this.renovacaoEmAndamento) {
+      return this.renovacaoEmAndamento;
+    }
+    const refreshToken = localStorage.getItem(this.REFRESH_KEY);
+    if (!refreshToken) {
+      this.logout();
+      return throwError(() => new Error('Sessão sem refresh token.'));
+    }
+    this.renovacaoEmAndamento = this.http
+      .post<AuthResponse>(`${this.API_URL}/api/token/refresh`, { refreshToken })
+      .pipe(
+        tap((response: AuthResponse) => this.salvarTokens(response)),
+        map((response: AuthResponse) => response.accessToken),
+        catchError((erro) => {
+          this.logout();
+          return throwError(() => erro);
+        }),
+        finalize(() => (this.renovacaoEmAndamento = null)),
+        shareReplay(1)
+      );
+    return this.renovacaoEmAndamento;
+  }
+
+  private salvarTokens(response: AuthResponse): void {
+    if (response.accessToken) {
+      this.setToken(response.accessToken);
+    }
+    if (response.refreshToken) {
+      localStorage.setItem(this.REFRESH_KEY, response.refreshToken);
+    }
+  }
+
   private clearSession(): void {
     localStorage.removeItem(this.TOKEN_KEY);
+    localStorage.removeItem(this.REFRESH_KEY);
     localStorage.removeItem(this.USERNAME_KEY); // ✅ Remove info do usuário
     localStorage.removeItem(this.ROLES_KEY); // ✅ Remove info do usuário
     this._isLoggedIn.next(false);
@@ -109,9 +152,7 @@ export class AuthService {
       .pipe(
         tap((response: AuthResponse) => {
           // ✅ Apenas chama setToken() e deixa a lógica de extração lá
-          if (response.accessToken) {
-            this.setToken(response.accessToken);
-          }
+          this.salvarTokens(response);
 
           // ✅ Adicione esta linha para depuração
           console.log('Resposta completa do backend:', response);
@@ -143,6 +184,11 @@ export class AuthService {
 
   // Limpa o token e todas as informações do usuário do localStorage e redireciona para o login
   logout(): void {
+    // Encerra a sessão no backend (refresh token); falhas não impedem o logout local
+    const refreshToken = localStorage.getItem(this.REFRESH_KEY);
+    if (refreshToken) {
+      this.http.post(`${this.API_URL}/api/logout`, { refreshToken }).subscribe({ error: () => {} });
+    }
     this.clearSession();
     this.router.navigate(['/login']);
     console.log('Logout realizado.');